@@ -0,0 +1,80 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorCache;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+
+
+/**
+ * Benchmarks of the accelerator of a cloud of spheres, built by the
+ * AcceleratorSelector and loaded from an AcceleratorCache, for each
+ * accelerator. The load also hashes the shapes, to find the cache file.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+public class AcceleratorCacheBenchmark {
+
+	@Param({"BOUNDING_VOLUME_HIERARCHY", "UNIFORM_GRID", "KD_TREE"})
+	private AcceleratorSelector.Type type;
+
+	@Param({"100000", "1000000"})
+	private int sphereCount;
+
+	private List<Shape> shapes;
+	private File directory;
+	private AcceleratorCache cache;
+
+
+	@Setup(Level.Trial)
+	public void setUp () throws IOException {
+		this.shapes = BenchmarkScenes.createSphereCloud(this.sphereCount).compile().getShapes();
+		this.directory = Files.createTempDirectory("accelerator-cache").toFile();
+		this.cache = new AcceleratorCache(this.directory);
+		this.cache.select(this.type, this.shapes);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown () {
+		for (File file : this.directory.listFiles()) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	@Benchmark
+	public AcceleratorSelector.Selection build () {
+		return AcceleratorSelector.select(this.type, this.shapes);
+	}
+
+	@Benchmark
+	public AcceleratorSelector.Selection load () {
+		return this.cache.select(this.type, this.shapes);
+	}
+}
@@ -0,0 +1,87 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.graphics.Animation;
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Light;
+import com.jinwroh.raytracer.graphics.Scene;
+
+
+/**
+ * Benchmarks of the frames of an animation of a cloud of spheres, each sphere
+ * drifting a little every frame while the light turns, rendered at a small
+ * resolution so the setup of the frames weighs. The hierarchy is refit while
+ * it stays within a rebuild threshold of 1.5, or rebuilt every frame with a
+ * threshold of 0. The score is the time per frame.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+public class AnimationBenchmark {
+
+	private static final int FRAME_COUNT = 8;
+
+	@Param({"100000", "1000000"})
+	private int sphereCount;
+
+	@Param({"0", "1.5"})
+	private double rebuildThreshold;
+
+	private Scene scene;
+	private Point[] centers;
+	private Light light;
+	private Animation animation;
+
+
+	@Setup
+	public void setUp () {
+		this.scene = BenchmarkScenes.createSphereCloud(this.sphereCount);
+		this.centers = new Point[this.sphereCount];
+		for (int i = 0; i < this.sphereCount; i++) {
+			this.centers[i] = ((Sphere) this.scene.getShape(i + 1)).getCenter();
+		}
+		this.light = this.scene.getLights().get(0);
+
+		Camera camera = BenchmarkScenes.createCamera(64, 64);
+		camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+		this.animation = new Animation(camera, this.scene);
+		this.animation.setRebuildThreshold(this.rebuildThreshold);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FRAME_COUNT)
+	public int frames () {
+		this.animation.render(FRAME_COUNT, (animation, frame) -> {
+			double drift = 0.01 * frame;
+			for (int i = 0; i < this.sphereCount; i++) {
+				Point center = this.centers[i];
+				animation.moveSphere(i + 1, new Point(center.getX() + drift * Math.sin(i), center.getY() + drift * Math.cos(i), center.getZ()));
+			}
+			this.light.setDirection(new Vector(Math.cos(0.1 * frame), -0.57735027, 0.57735027));
+		}, (frameBuffer, frame, frameCount) -> { });
+		return this.animation.getRefitCount();
+	}
+}
@@ -0,0 +1,112 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.Random;
+
+import com.jinwroh.raytracer.Driver;
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.graphics.Light;
+import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.Viewport;
+import com.jinwroh.raytracer.graphics.Window;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+
+/**
+ * The BenchmarkScenes class creates the scene elements shared by the
+ * benchmarks. The camera and the sphere are the ones of the Driver.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class BenchmarkScenes {
+
+	private BenchmarkScenes () {
+	}
+	
+	
+	/**
+	 * Creates the camera of the Driver, with a Window of the given size.
+	 * @param width     the width of the Window, in pixels
+	 * @param height    the height of the Window, in pixels
+	 * @return          the camera
+	 */
+	static Camera createCamera (int width, int height) {
+		Point eye = new Point(0.0, 0.0, 0.0);
+		Viewport viewport = new Viewport(2, 2, new Point(0, 0, 2));
+		return new Camera(eye, viewport, new Window(width, height));
+	}
+	
+	/**
+	 * Creates the scene of the Driver.
+	 * @return    the scene
+	 */
+	static Scene createDriverScene () {
+		return Driver.createScene();
+	}
+	
+	/**
+	 * Creates the sphere of the Driver.
+	 * @return    the sphere
+	 */
+	static Sphere createSphere () {
+		return createSphere(new Point(0, 0, 20), 3.0);
+	}
+	
+	/**
+	 * Creates a sphere with the material of the Driver sphere.
+	 * @param center    the center of the sphere
+	 * @param radius    the radius of the sphere
+	 * @return          the sphere
+	 */
+	static Sphere createSphere (Point center, double radius) {
+		Shape.Properties properties = new Shape.Properties();
+		properties.ambientColorProperty = new Color(0.1, 0.1, 0.1);
+		properties.diffuseColorProperty = new Color(1.0, 0.0, 0.0);
+		properties.specularColorProperty = new Color(1.0, 1.0, 1.0);
+		properties.specularCoefficient = 500;
+		return new Sphere(center, radius, properties, new BlinnPhongShadingStrategy());
+	}
+	
+	/**
+	 * Creates a scene with the sphere of the Driver, lit by the given number of
+	 * dim lights spread around the view direction.
+	 * @param lightCount    the number of lights
+	 * @return              the scene
+	 */
+	static Scene createLitScene (int lightCount) {
+		Scene scene = new Scene();
+		scene.addShape(createSphere());
+		
+		double intensity = 1.0 / lightCount;
+		for (int i = 0; i < lightCount; i++) {
+			double angle = 2 * Math.PI * i / lightCount;
+			Vector direction = new Vector(Math.cos(angle), Math.sin(angle), 1.0);
+			scene.addLight(new Light(direction, new Color(intensity, intensity, intensity)));
+		}
+		return scene;
+	}
+	
+	/**
+	 * Creates a scene of the given number of small spheres, scattered at random
+	 * (with a fixed seed) in a box in front of the camera of the Driver, lit by
+	 * the light of the Driver.
+	 * @param sphereCount    the number of spheres
+	 * @return               the scene
+	 */
+	static Scene createSphereCloud (int sphereCount) {
+		Scene scene = new Scene();
+		scene.addLight(new Light(new Vector(0.57735027, -0.57735027, 0.57735027), new Color(1.0, 1.0, 1.0)));
+		
+		Random random = new Random(42);
+		for (int i = 0; i < sphereCount; i++) {
+			Point center = new Point(random.nextDouble() * 60 - 30, random.nextDouble() * 60 - 30, 20 + random.nextDouble() * 60);
+			scene.addShape(createSphere(center, 0.05));
+		}
+		return scene;
+	}
+}
@@ -0,0 +1,107 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.Driver;
+import com.jinwroh.raytracer.distributed.RenderCoordinator;
+
+
+/**
+ * Benchmarks distributed renders of the Driver scene (See RenderCoordinator),
+ * with 1, 2 and 4 worker JVMs on this machine, connected over the loopback
+ * interface. The workers are started once per trial, with the command line
+ * of the Driver, so the renders run on warm workers. The pixels rendered are
+ * counted, so JMH reports them per second as the "pixels" secondary result;
+ * the scaling is the ratio of the pixels per second to the ones of a single
+ * worker.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class DistributedBenchmark {
+
+	@Param({"1", "2", "4"})
+	private int workers;
+	
+	private RenderCoordinator coordinator;
+	private List<Process> processes = new ArrayList<Process>();
+	
+	
+	@Setup
+	public void setUp () throws IOException, InterruptedException {
+		this.coordinator = new RenderCoordinator(Driver.createCamera(), Driver.createScene(), 0);
+		
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for (int i = 0; i < this.workers; i++) {
+			ProcessBuilder builder = new ProcessBuilder(java, "--add-modules=jdk.incubator.vector",
+					"-cp", System.getProperty("java.class.path"), Driver.class.getName(),
+					"worker", "localhost", Integer.toString(this.coordinator.getPort()));
+			builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+			builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+			this.processes.add(builder.start());
+		}
+		
+		if (!this.coordinator.awaitWorkers(this.workers, 60000)) {
+			throw new IllegalStateException("The workers did not connect");
+		}
+	}
+	
+	@TearDown
+	public void tearDown () throws IOException, InterruptedException {
+		this.coordinator.close();
+		for (Process process : this.processes) {
+			if (!process.waitFor(10, TimeUnit.SECONDS)) {
+				process.destroy();
+			}
+		}
+	}
+	
+	@Benchmark
+	public void render (PixelCounter counter) throws InterruptedException {
+		this.coordinator.shoot();
+		counter.pixels += this.coordinator.getStatistics().pixels;
+	}
+	
+	
+	/**
+	 * PixelCounter counts the pixels rendered by the renders of an iteration.
+	 * 
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class PixelCounter {
+		public long pixels;
+		
+		@Setup(Level.Iteration)
+		public void reset () {
+			this.pixels = 0;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Scene;
+
+
+/**
+ * Benchmark of parallel renders of the Driver scene, printed into output.png
+ * in the working directory, with the frame buffer on the heap and mapped from
+ * a temporary file (See MappedFrameBuffer).
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class FrameBufferBenchmark {
+
+	private static final int SIZE = 2000;
+	
+	@Param({"array", "mapped"})
+	private String frameBuffer;
+	
+	private Camera camera;
+	private Scene scene;
+	private File file;
+	
+	
+	@Setup
+	public void setUp () throws IOException {
+		this.camera = BenchmarkScenes.createCamera(SIZE, SIZE);
+		this.camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+		this.scene = BenchmarkScenes.createDriverScene();
+		
+		if (this.frameBuffer.equals("mapped")) {
+			this.file = File.createTempFile("framebuffer", ".bin");
+			this.file.deleteOnExit();
+			this.camera.setFrameBufferFile(this.file);
+		}
+	}
+	
+	@TearDown
+	public void tearDown () {
+		if (this.file != null) {
+			this.file.delete();
+		}
+	}
+	
+	@Benchmark
+	public void renderAndPrint () {
+		this.camera.shoot(this.scene);
+		this.camera.print();
+	}
+}
@@ -0,0 +1,90 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.graphics.IncrementalRenderer;
+import com.jinwroh.raytracer.graphics.Scene;
+
+
+/**
+ * Benchmarks of the renders of a cloud of spheres after a single edit: a full
+ * render of the scene, against an IncrementalRenderer after a sphere is
+ * recolored (its Properties edited in place), and after a sphere is moved.
+ * Each edit is undone by the next invocation, so the scene stays the same.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+public class IncrementalRenderBenchmark {
+
+	@Param({"10000", "100000"})
+	private int sphereCount;
+
+	private Scene scene;
+	private Camera camera;
+	private IncrementalRenderer renderer;
+	private int sphereId;
+	private Sphere sphere;
+	private Sphere movedSphere;
+	private int edit;
+
+
+	@Setup
+	public void setUp () {
+		this.scene = BenchmarkScenes.createSphereCloud(this.sphereCount);
+		this.sphereId = this.sphereCount / 2;
+		this.sphere = (Sphere) this.scene.getShape(this.sphereId);
+		Point center = this.sphere.getCenter();
+		this.movedSphere = new Sphere(new Point(center.getX() + 0.1, center.getY(), center.getZ()),
+				this.sphere.getRadius(), this.sphere.getProperties(), this.sphere.getShadingStrategy());
+
+		this.camera = BenchmarkScenes.createCamera(256, 256);
+		this.camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+		this.renderer = new IncrementalRenderer(this.camera, this.scene);
+		this.renderer.render();
+	}
+
+	@Benchmark
+	public Camera full () {
+		this.camera.shoot(this.scene);
+		return this.camera;
+	}
+
+	@Benchmark
+	public IncrementalRenderer recolor () {
+		this.edit++;
+		this.sphere.getProperties().diffuseColorProperty = ((this.edit & 1) == 0) ? new Color(1.0, 0.0, 0.0) : new Color(0.0, 0.0, 1.0);
+		this.renderer.render();
+		return this.renderer;
+	}
+
+	@Benchmark
+	public IncrementalRenderer move () {
+		this.edit++;
+		this.scene.setShape(this.sphereId, ((this.edit & 1) == 0) ? this.sphere : this.movedSphere);
+		this.renderer.render();
+		return this.renderer;
+	}
+}
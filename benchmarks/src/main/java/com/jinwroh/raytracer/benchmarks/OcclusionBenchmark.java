@@ -0,0 +1,103 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.acceleration.Accelerator;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+
+
+/**
+ * Benchmarks of shadow rays through a cloud of spheres, answered with an
+ * occlusion query (Accelerator.anyHit) and with a closest hit query, for each
+ * accelerator. Each invocation traces the same set of rays, which start at 
+ * random points of the cloud towards a directional light.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class OcclusionBenchmark {
+
+	private static final int RAY_COUNT = 1024;
+	
+	@Param({"BOUNDING_VOLUME_HIERARCHY", "UNIFORM_GRID", "KD_TREE"})
+	private AcceleratorSelector.Type type;
+	
+	@Param({"10000"})
+	private int sphereCount;
+	
+	private Accelerator accelerator;
+	private Ray[] rays;
+	private Intersection intersection;
+	
+	
+	@Setup
+	public void setUp () {
+		Random random = new Random(42);
+		
+		List<Shape> shapes = new ArrayList<Shape>(this.sphereCount);
+		for (int i = 0; i < this.sphereCount; i++) {
+			shapes.add(BenchmarkScenes.createSphere(new Point(random.nextDouble() * 100, 
+					random.nextDouble() * 100, random.nextDouble() * 100), 0.5 + random.nextDouble()));
+		}
+		this.accelerator = AcceleratorSelector.select(this.type, shapes).accelerator;
+		
+		Vector towardsLight = new Vector(-0.57735027, 0.57735027, -0.57735027);
+		this.rays = new Ray[RAY_COUNT];
+		for (int i = 0; i < RAY_COUNT; i++) {
+			Point origin = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+			this.rays[i] = new Ray(origin, towardsLight);
+		}
+		this.intersection = new Intersection();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(RAY_COUNT)
+	public int anyHit () {
+		int occluded = 0;
+		for (Ray ray : this.rays) {
+			if (this.accelerator.anyHit(ray, 1e-6, Double.POSITIVE_INFINITY, this.intersection)) {
+				occluded++;
+			}
+		}
+		return occluded;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(RAY_COUNT)
+	public int closestHit () {
+		int occluded = 0;
+		for (Ray ray : this.rays) {
+			if (this.accelerator.closestHit(ray, this.intersection)) {
+				occluded++;
+			}
+		}
+		return occluded;
+	}
+}
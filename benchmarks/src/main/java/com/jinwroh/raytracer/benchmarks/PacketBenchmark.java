@@ -0,0 +1,106 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.RayPacket;
+import com.jinwroh.raytracer.graphics.CompiledScene;
+import com.jinwroh.raytracer.graphics.Sampler;
+import com.jinwroh.raytracer.graphics.Viewport;
+import com.jinwroh.raytracer.strategy.acceleration.Accelerator;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+
+
+/**
+ * Benchmarks the closest hit queries of the primary rays of a frame, traced
+ * one ray at a time (a packet size of 1) and as square packets of neighboring
+ * rays, through a bounding volume hierarchy. The Driver scene is a single
+ * large sphere; the cloud scene is a million small spheres. Shading is left
+ * out, so the results compare the ray queries alone. 
+ * 
+ * The primary rays traced are counted, so JMH reports the rays per second as
+ * the "rays" secondary result.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+public class PacketBenchmark {
+
+	private static final int SIZE = 512;
+	
+	@Param({"driver", "cloud"})
+	private String scene;
+	
+	@Param({"1", "4", "8"})
+	private int packetSize;
+	
+	private Accelerator accelerator;
+	private Sampler sampler;
+	private Intersection intersection;
+	private Ray ray;
+	private RayPacket packet;
+	
+	
+	@Setup
+	public void setUp () {
+		CompiledScene compiled = this.scene.equals("driver") ? 
+				BenchmarkScenes.createDriverScene().compile() : 
+				BenchmarkScenes.createSphereCloud(1000000).compile();
+		
+		this.accelerator = AcceleratorSelector.select(
+				AcceleratorSelector.Type.BOUNDING_VOLUME_HIERARCHY, compiled.getShapes()).accelerator;
+		this.sampler = new Sampler(new Viewport(2, 2, new Point(0, 0, 2)), SIZE, SIZE);
+		this.intersection = new Intersection();
+		this.ray = new Ray();
+		this.packet = new RayPacket(this.packetSize * this.packetSize);
+	}
+	
+	@Benchmark
+	public void trace (RenderBenchmark.RayCounter counter, Blackhole blackhole) {
+		
+		double sampleZ = this.sampler.getSampleZ();
+		
+		// The eye of the Driver camera is at the origin
+		for (int blockY = 0; blockY < SIZE; blockY += this.packetSize) {
+			for (int blockX = 0; blockX < SIZE; blockX += this.packetSize) {
+				
+				if (this.packetSize == 1) {
+					this.ray.set(0, 0, 0, this.sampler.getSampleX(blockX), this.sampler.getSampleY(blockY), sampleZ);
+					blackhole.consume(this.accelerator.closestHit(this.ray, this.intersection));
+					continue;
+				}
+				
+				this.packet.clear();
+				for (int y = blockY; y < blockY + this.packetSize; y++) {
+					for (int x = blockX; x < blockX + this.packetSize; x++) {
+						this.packet.add(0, 0, 0, this.sampler.getSampleX(x), this.sampler.getSampleY(y), sampleZ);
+					}
+				}
+				this.accelerator.closestHits(this.packet, this.intersection);
+				blackhole.consume(this.packet.getShape(0));
+			}
+		}
+		counter.rays += SIZE * SIZE;
+	}
+}
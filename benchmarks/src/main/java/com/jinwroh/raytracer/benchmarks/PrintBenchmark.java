@@ -0,0 +1,59 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.graphics.Camera;
+
+
+/**
+ * Benchmark of Camera.print, which encodes the frame buffer of the Driver
+ * scene into output.png, in the working directory. The PNG is compressed on
+ * one thread, and on a thread per processor (See PngWriter).
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class PrintBenchmark {
+
+	@Param({"500", "2000"})
+	private int size;
+	
+	@Param({"serial", "parallel"})
+	private String mode;
+	
+	private Camera camera;
+	
+	
+	@Setup
+	public void setUp () {
+		this.camera = BenchmarkScenes.createCamera(this.size, this.size);
+		this.camera.shoot(BenchmarkScenes.createDriverScene());
+		
+		if (this.mode.equals("parallel")) {
+			this.camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+		}
+	}
+	
+	@Benchmark
+	public void print () {
+		this.camera.print();
+	}
+}
@@ -0,0 +1,78 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.graphics.Light;
+import com.jinwroh.raytracer.graphics.Scene;
+
+
+/**
+ * Benchmarks of the renders of a cloud of spheres after its light is edited:
+ * a full shoot of the scene, against a relight from the geometry buffer of
+ * the last shot (See Camera.relight). Each invocation changes the color of
+ * the light.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+public class RelightBenchmark {
+
+	@Param({"10000", "100000"})
+	private int sphereCount;
+
+	private Scene scene;
+	private Camera camera;
+	private Light light;
+	private int edit;
+
+
+	@Setup
+	public void setUp () {
+		this.scene = BenchmarkScenes.createSphereCloud(this.sphereCount);
+		this.light = this.scene.getLights().get(0);
+
+		this.camera = BenchmarkScenes.createCamera(256, 256);
+		this.camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+		this.camera.setGeometryBufferEnabled(true);
+		this.camera.shoot(this.scene);
+	}
+
+	@Benchmark
+	public Camera full () {
+		this.editLight();
+		this.camera.shoot(this.scene);
+		return this.camera;
+	}
+
+	@Benchmark
+	public Camera relight () {
+		this.editLight();
+		this.camera.relight(this.scene);
+		return this.camera;
+	}
+
+	private void editLight () {
+		this.edit++;
+		this.light.setColor(((this.edit & 1) == 0) ? new Color(1.0, 1.0, 1.0) : new Color(0.8, 0.7, 0.6));
+	}
+}
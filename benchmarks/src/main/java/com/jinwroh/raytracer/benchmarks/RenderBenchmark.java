@@ -0,0 +1,104 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Scene;
+
+
+/**
+ * Macrobenchmarks that render the Driver scene at several resolutions, with 
+ * a single thread and with a thread per processor. Besides the renders per
+ * second, the benchmark counts the primary rays traced, so JMH reports the 
+ * rays per second as the "rays" secondary result.
+ * 
+ * The allocation rate is reported by the GC profiler: either run this class
+ * (which enables it), or pass -prof gc to the benchmarks jar.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RenderBenchmark {
+
+	@Param({"250", "500", "1000", "2000"})
+	private int size;
+	
+	@Param({"serial", "parallel"})
+	private String mode;
+	
+	private Camera camera;
+	private Scene scene;
+	
+	
+	@Setup
+	public void setUp () {
+		this.camera = BenchmarkScenes.createCamera(this.size, this.size);
+		this.scene = BenchmarkScenes.createDriverScene();
+		
+		if (this.mode.equals("parallel")) {
+			this.camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+		}
+	}
+	
+	@Benchmark
+	public void render (RayCounter counter) {
+		this.camera.shoot(this.scene);
+		counter.rays += (long) this.size * this.size;
+	}
+	
+	
+	/**
+	 * Runs the render benchmarks with the GC profiler.
+	 * @param args    unused
+	 */
+	public static void main (String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(RenderBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+	
+	
+	/**
+	 * RayCounter counts the primary rays traced by the renders of an iteration.
+	 * 
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class RayCounter {
+		public long rays;
+		
+		@Setup(Level.Iteration)
+		public void reset () {
+			this.rays = 0;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.graphics.Sample;
+import com.jinwroh.raytracer.graphics.Sampler;
+import com.jinwroh.raytracer.graphics.Viewport;
+
+
+/**
+ * Microbenchmarks of a full iteration over the samples of the Driver viewport:
+ * with the Sampler iterator, and with the primitive sample coordinates used by
+ * the Camera.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SamplerBenchmark {
+
+	@Param({"500"})
+	private int size;
+	
+	private Sampler sampler;
+	
+	
+	@Setup
+	public void setUp () {
+		Viewport viewport = new Viewport(2, 2, new Point(0, 0, 2));
+		this.sampler = new Sampler(viewport, this.size, this.size);
+	}
+	
+	@Benchmark
+	public void iterate (Blackhole blackhole) {
+		for (Sample sample : this.sampler) {
+			blackhole.consume(sample);
+		}
+	}
+	
+	@Benchmark
+	public void coordinates (Blackhole blackhole) {
+		for (int y = 0; y < this.size; y++) {
+			double sampleY = this.sampler.getSampleY(y);
+			for (int x = 0; x < this.size; x++) {
+				blackhole.consume(this.sampler.getSampleX(x));
+				blackhole.consume(sampleY);
+			}
+		}
+	}
+}
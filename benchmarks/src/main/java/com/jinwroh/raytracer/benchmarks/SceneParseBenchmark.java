@@ -0,0 +1,185 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.graphics.Light;
+import com.jinwroh.raytracer.graphics.MappedScene;
+import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.SceneFile;
+import com.jinwroh.raytracer.graphics.SceneReader;
+import com.jinwroh.raytracer.graphics.Viewport;
+import com.jinwroh.raytracer.graphics.Window;
+import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
+
+
+/**
+ * Benchmarks the scene files, on clouds of spheres: parsing a text scene file
+ * (See SceneFile) alone, with a handler that keeps nothing, loading it into a
+ * whole Scene, and opening the same scene as a binary scene file (See
+ * MappedScene), whose time does not grow with the spheres. The coordinates
+ * are written with 4 decimals, as a hand-written file, or with the full
+ * precision of a double, as a file written by SceneFile. The bytes and the
+ * spheres read are counted, so JMH reports both per second as the "bytes" and
+ * "spheres" secondary results.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx4g"})
+public class SceneParseBenchmark {
+
+	@Param({"100000", "1000000"})
+	private int sphereCount;
+
+	@Param({"short", "full"})
+	private String precision;
+
+	private File file;
+	private File binaryFile;
+
+
+	@Setup(Level.Trial)
+	public void setUp () throws IOException {
+		Scene cloud = BenchmarkScenes.createSphereCloud(this.sphereCount);
+		if (this.precision.equals("short")) {
+			Scene rounded = new Scene();
+			for (Light light : cloud.getLights()) {
+				rounded.addLight(light);
+			}
+			for (Shape shape : cloud.getShapes()) {
+				Point center = ((Sphere) shape).getCenter();
+				rounded.addShape(BenchmarkScenes.createSphere(new Point(round(center.getX()), round(center.getY()), round(center.getZ())), 0.05));
+			}
+			cloud = rounded;
+		}
+
+		this.file = File.createTempFile("scene", ".scene");
+		this.file.deleteOnExit();
+		SceneFile.write(this.file, BenchmarkScenes.createCamera(500, 500), cloud);
+
+		this.binaryFile = File.createTempFile("scene", ".rtsb");
+		this.binaryFile.deleteOnExit();
+		MappedScene.convert(this.file, this.binaryFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown () {
+		this.file.delete();
+		this.binaryFile.delete();
+	}
+
+	@Benchmark
+	public long parse (ParseCounter counter) throws IOException {
+		try (SceneReader reader = new SceneReader(new FileInputStream(this.file))) {
+			CountingHandler handler = new CountingHandler();
+			reader.read(handler);
+			counter.bytes += reader.getByteCount();
+			counter.spheres += reader.getSphereCount();
+			return handler.checksum;
+		}
+	}
+
+	@Benchmark
+	public Scene load (ParseCounter counter) throws IOException {
+		Scene scene = SceneFile.read(this.file).getScene();
+		counter.bytes += this.file.length();
+		counter.spheres += this.sphereCount;
+		return scene;
+	}
+
+	@Benchmark
+	public MappedScene map (ParseCounter counter) throws IOException {
+		MappedScene scene = new MappedScene(this.binaryFile);
+		counter.bytes += this.binaryFile.length();
+		counter.spheres += scene.getSphereCount();
+		return scene;
+	}
+
+
+	private static double round (double value) {
+		return Math.round(value * 1e4) / 1e4;
+	}
+
+
+	/**
+	 * ParseCounter counts the bytes and the spheres read by the parses of an
+	 * iteration.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class ParseCounter {
+		public long bytes;
+		public long spheres;
+
+		@Setup(Level.Iteration)
+		public void reset () {
+			this.bytes = 0;
+			this.spheres = 0;
+		}
+	}
+
+	/**
+	 * CountingHandler keeps no statement, but sums the radii of the spheres,
+	 * so the parse cannot be optimized away.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class CountingHandler implements SceneReader.Handler {
+		long checksum;
+
+		@Override
+		public void eye (Point eye) {
+		}
+
+		@Override
+		public void viewport (Viewport viewport) {
+		}
+
+		@Override
+		public void window (Window window) {
+		}
+
+		@Override
+		public void material (int material, String name, Shape.Properties properties, ShadingStrategy shadingStrategy) {
+		}
+
+		@Override
+		public void light (Light light) {
+		}
+
+		@Override
+		public void sphere (double x, double y, double z, double radius, int material) {
+			this.checksum += Double.doubleToRawLongBits(x + y + z + radius);
+		}
+	}
+}
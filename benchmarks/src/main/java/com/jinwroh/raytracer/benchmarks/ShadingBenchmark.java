@@ -0,0 +1,72 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.graphics.CompiledScene;
+import com.jinwroh.raytracer.graphics.Tracer;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+
+/**
+ * Microbenchmarks of BlinnPhongShadingStrategy.shade at a point of the sphere
+ * of the Driver, with 1, 8 and 64 lights in the scene. Every light casts a
+ * shadow ray.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ShadingBenchmark {
+
+	@Param({"1", "8", "64"})
+	private int lightCount;
+	
+	private BlinnPhongShadingStrategy strategy;
+	private Shape.Properties properties;
+	private Tracer tracer;
+	private Ray ray;
+	private Shape.LocalCalculations calculations;
+	private double[] color;
+	
+	
+	@Setup
+	public void setUp () {
+		CompiledScene scene = BenchmarkScenes.createLitScene(this.lightCount).compile();
+		Shape sphere = scene.getShape(0);
+		this.tracer = new Tracer(scene, AcceleratorSelector.select(scene.getShapes()).accelerator);
+		
+		this.strategy = new BlinnPhongShadingStrategy();
+		this.properties = sphere.getProperties();
+		this.ray = new Ray(new Point(0, 0, 0), new Vector(0.05, 0.05, 1.0));
+		this.calculations = sphere.calculateIntersection(this.ray);
+		this.color = new double[3];
+	}
+	
+	@Benchmark
+	public double[] shade () {
+		this.strategy.shade(this.ray, this.calculations, this.properties, this.tracer, this.color);
+		return this.color;
+	}
+}
@@ -0,0 +1,86 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+
+
+/**
+ * Microbenchmarks of Sphere.calculateIntersection, for a ray that hits the
+ * sphere and for a ray that misses it. The calculations are filled into a 
+ * reused data object, as on the render path; the allocating variant is 
+ * measured for comparison, and so is the distance-only first phase of the
+ * intersection (Sphere.calculateHitTime), which the accelerators use.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SphereBenchmark {
+
+	private Sphere sphere;
+	private Ray hitRay;
+	private Ray missRay;
+	private Shape.LocalCalculations calculations;
+	
+	
+	@Setup
+	public void setUp () {
+		this.sphere = BenchmarkScenes.createSphere();
+		this.hitRay = new Ray(new Point(0, 0, 0), new Vector(0.05, 0.05, 1.0));
+		this.missRay = new Ray(new Point(0, 0, 0), new Vector(0.5, 0.5, 1.0));
+		this.calculations = new Shape.LocalCalculations();
+	}
+	
+	@Benchmark
+	public Shape.LocalCalculations hit () {
+		this.sphere.calculateIntersection(this.hitRay, this.calculations);
+		return this.calculations;
+	}
+	
+	@Benchmark
+	public Shape.LocalCalculations miss () {
+		this.sphere.calculateIntersection(this.missRay, this.calculations);
+		return this.calculations;
+	}
+	
+	@Benchmark
+	public double hitTime () {
+		return this.sphere.calculateHitTime(this.hitRay);
+	}
+	
+	@Benchmark
+	public double missTime () {
+		return this.sphere.calculateHitTime(this.missRay);
+	}
+	
+	@Benchmark
+	public Shape.LocalCalculations hitAllocating () {
+		return this.sphere.calculateIntersection(this.hitRay);
+	}
+	
+	@Benchmark
+	public Shape.LocalCalculations missAllocating () {
+		return this.sphere.calculateIntersection(this.missRay);
+	}
+}
@@ -0,0 +1,92 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.TraceStatistics;
+
+
+/**
+ * Benchmarks parallel renders of the Driver scene with adaptive supersampling,
+ * for several max samples per pixel and contrast thresholds. A max of one
+ * sample is the plain render. The samples and the pixels rendered are
+ * counted, so JMH reports both per second as the "samples" and "pixels"
+ * secondary results; their ratio is the average samples spent per pixel.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SupersamplingBenchmark {
+
+	private static final int SIZE = 1000;
+
+	@Param({"1", "4", "16"})
+	private int maxSamples;
+
+	@Param({"0.1", "0.02"})
+	private double contrastThreshold;
+
+	private Camera camera;
+	private Scene scene;
+
+
+	@Setup
+	public void setUp () {
+		this.camera = BenchmarkScenes.createCamera(SIZE, SIZE);
+		this.camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+		this.camera.setMaxSamples(this.maxSamples);
+		this.camera.setContrastThreshold(this.contrastThreshold);
+		this.scene = BenchmarkScenes.createDriverScene();
+	}
+
+	@Benchmark
+	public void render (SampleCounter counter) {
+		this.camera.shoot(this.scene);
+
+		TraceStatistics statistics = this.camera.getTraceStatistics();
+		counter.samples += statistics.primaryRays;
+		counter.pixels += statistics.pixels;
+	}
+
+
+	/**
+	 * SampleCounter counts the samples and the pixels rendered by the renders
+	 * of an iteration.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class SampleCounter {
+		public long samples;
+		public long pixels;
+
+		@Setup(Level.Iteration)
+		public void reset () {
+			this.samples = 0;
+			this.pixels = 0;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.jinwroh.raytracer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jinwroh.raytracer.geometric.Vector;
+
+
+/**
+ * Microbenchmarks of the Vector arithmetic. The operands are fields, so the
+ * JIT compiler cannot fold the arithmetic into constants.
+ * 
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorBenchmark {
+
+	private Vector a;
+	private Vector b;
+	private double scalar;
+	
+	
+	@Setup
+	public void setUp () {
+		this.a = new Vector(0.57735027, -0.57735027, 0.57735027);
+		this.b = new Vector(1.5, 2.5, -3.5);
+		this.scalar = 2.0;
+	}
+	
+	@Benchmark
+	public Vector add () {
+		return Vector.add(this.a, this.b);
+	}
+	
+	@Benchmark
+	public Vector subtract () {
+		return Vector.subtract(this.a, this.b);
+	}
+	
+	@Benchmark
+	public Vector multiply () {
+		return Vector.multiply(this.a, this.scalar);
+	}
+	
+	@Benchmark
+	public Vector divide () {
+		return Vector.divide(this.a, this.scalar);
+	}
+	
+	@Benchmark
+	public double dotProduct () {
+		return Vector.dotProduct(this.a, this.b);
+	}
+	
+	@Benchmark
+	public double magnitude () {
+		return new Vector(this.b.getX(), this.b.getY(), this.b.getZ()).getMagnitude();
+	}
+	
+	@Benchmark
+	public Vector normalize () {
+		Vector vector = new Vector(this.b.getX(), this.b.getY(), this.b.getZ());
+		vector.normalize();
+		return vector;
+	}
+}
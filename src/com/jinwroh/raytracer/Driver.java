@@ -1,28 +1,170 @@
 package com.jinwroh.raytracer;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.jinwroh.raytracer.distributed.RenderCoordinator;
+import com.jinwroh.raytracer.distributed.RenderWorker;
 import com.jinwroh.raytracer.geometric.Point;
 import com.jinwroh.raytracer.geometric.Shape;
 import com.jinwroh.raytracer.geometric.Sphere;
 import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.graphics.Animation;
 import com.jinwroh.raytracer.graphics.Camera;
 import com.jinwroh.raytracer.graphics.Color;
 import com.jinwroh.raytracer.graphics.Light;
+import com.jinwroh.raytracer.graphics.MappedScene;
 import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.SceneFile;
 import com.jinwroh.raytracer.graphics.Viewport;
 import com.jinwroh.raytracer.graphics.Window;
+import com.jinwroh.raytracer.server.RenderServer;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorCache;
 import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
 import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
 
 public class Driver {
 
-	public static void main (String[] args) {
+	/**
+	 * Renders the test scene into output.png, or the scene of the text or
+	 * binary scene file given as the only argument, with its camera (See
+	 * SceneFile and MappedScene). The accelerators of the scene files are
+	 * cached in the accelerator-cache directory, so rendering the same file
+	 * again skips the build (See AcceleratorCache). With "convert <scene file> <binary file>",
+	 * a text scene file (or the test scene, for "driver") is converted into a
+	 * binary scene file. With "animate <frames>", the given number of frames
+	 * of the test scene are rendered into frame-000.png and on, the sphere
+	 * circling while the light turns (See Animation). With "coordinator <port>", the scene is rendered by
+	 * the workers that connect to the given port (See RenderCoordinator); with
+	 * "worker <host> <port>", this JVM renders tiles for the coordinator at the
+	 * given address (See RenderWorker); with "server <port>", this JVM stays up
+	 * and renders the jobs requested on the given port (See RenderServer).
+	 * 
+	 * @param args    the command line arguments
+	 * @throws Exception    if the scene file is invalid, the distributed render fails, or the server cannot start
+	 */
+	public static void main (String[] args) throws Exception {
 		
 		// Setting up the raytracer elementes
+		Camera camera = createCamera();
+		camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+		
+		// Setting up the scene
+		Scene sceneOne = createScene();
+		
+		if (args.length == 2 && args[0].equals("coordinator")) {
+			try (RenderCoordinator coordinator = new RenderCoordinator(camera, sceneOne, Integer.parseInt(args[1]))) {
+				System.out.println("Waiting for workers on port " + coordinator.getPort());
+				coordinator.shoot();
+				camera.print();
+				System.out.println(coordinator.getStatistics());
+				System.out.println(camera.getTraceStatistics());
+			}
+			return;
+		}
+		if (args.length == 3 && args[0].equals("worker")) {
+			int tiles = new RenderWorker(camera, sceneOne).run(args[1], Integer.parseInt(args[2]));
+			System.out.println("Rendered " + tiles + " tiles");
+			return;
+		}
+		if (args.length == 2 && args[0].equals("server")) {
+			RenderServer server = new RenderServer(Integer.parseInt(args[1]), Runtime.getRuntime().availableProcessors(), 2);
+			Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+			System.out.println("Rendering jobs on port " + server.getPort());
+			return;
+		}
+		
+		if (args.length == 2 && args[0].equals("animate")) {
+			animate(camera, sceneOne, Integer.parseInt(args[1]));
+			return;
+		}
+		if (args.length == 3 && args[0].equals("convert")) {
+			if (args[1].equals("driver")) {
+				MappedScene.write(new File(args[2]), camera, sceneOne);
+			}
+			else {
+				MappedScene.convert(new File(args[1]), new File(args[2]));
+			}
+			return;
+		}
+		if (args.length == 1) {
+			File file = new File(args[0]);
+			if (MappedScene.accepts(file)) {
+				MappedScene mappedScene = new MappedScene(file);
+				camera = mappedScene.createCamera();
+				sceneOne = mappedScene;
+			}
+			else {
+				SceneFile sceneFile = SceneFile.read(file);
+				camera = sceneFile.createCamera();
+				sceneOne = sceneFile.getScene();
+			}
+			camera.setThreadCount(Runtime.getRuntime().availableProcessors());
+			camera.setAcceleratorCache(new AcceleratorCache(new File("accelerator-cache")));
+		}
+		
+		// ACTION!
+		camera.shoot(sceneOne);
+		camera.print();
+		
+		System.out.println(camera.getAcceleratorSelection());
+		System.out.println(camera.getTraceStatistics());
+	}
+	
+	/**
+	 * Renders the given number of frames of the test scene: the sphere circles
+	 * around its center, and the light turns around the sphere. The frames are
+	 * written into frame-000.png and on.
+	 * 
+	 * @param camera        the camera of the driver
+	 * @param scene         the test scene
+	 * @param frameCount    the number of frames
+	 */
+	private static void animate (Camera camera, Scene scene, int frameCount) {
+		
+		int sphereId = 1;
+		Point center = ((Sphere) scene.getShape(sphereId)).getCenter();
+		Light light = scene.getLights().get(0);
+		
+		Animation animation = new Animation(camera, scene);
+		animation.render(frameCount, (frameAnimation, frame) -> {
+			double angle = 2 * Math.PI * frame / frameCount;
+			frameAnimation.moveSphere(sphereId, new Point(center.getX() + 2 * Math.cos(angle), 
+					center.getY() + 2 * Math.sin(angle), center.getZ()));
+			light.setDirection(new Vector(0.57735027 * Math.cos(angle), -0.57735027, 0.57735027 * Math.sin(angle) + 0.57735027));
+		}, (frameBuffer, frame, count) -> {
+			try {
+				camera.print(new File(String.format("frame-%03d.png", frame)));
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		System.out.println(animation);
+	}
+	
+	/**
+	 * Creates the camera of the driver: a 500x500 Window, looking down the z
+	 * axis. The coordinator and the workers of a distributed render create the
+	 * same camera.
+	 * 
+	 * @return    the camera of the driver
+	 */
+	public static Camera createCamera () {
 		Point eye = new Point(0.0, 0.0, 0.0);
 		Viewport viewport = new Viewport(2, 2, new Point(0, 0, 2));
 		Window window = new Window(500, 500);
-		Camera camera = new Camera(eye, viewport, window);		
-		
+		return new Camera(eye, viewport, window);
+	}
+	
+	/**
+	 * Creates the test scene of the driver: a sphere lit by a single light.
+	 * The benchmarks render the same scene.
+	 * 
+	 * @return    the test scene
+	 */
+	public static Scene createScene () {
 		
 		// Create a test sphere
 		Point sphereCenterPoint = new Point(0, 0, 20);
@@ -57,8 +199,6 @@ public class Driver {
 		sceneOne.addShape(sphere);
 		//sceneOne.addShape(sphere2);
 		
-		// ACTION!
-		camera.shoot(sceneOne);
-		camera.print();
+		return sceneOne;
 	}
 }
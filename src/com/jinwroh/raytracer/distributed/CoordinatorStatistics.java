@@ -0,0 +1,99 @@
+package com.jinwroh.raytracer.distributed;
+
+import java.util.Arrays;
+
+
+/**
+ * The CoordinatorStatistics class counts the tiles of a distributed render
+ * (See RenderCoordinator): the tiles rendered, the tiles handed out again
+ * because their worker failed or was slow, and the late results of tiles
+ * that were already done.
+ *
+ * It also reports how the throughput scales with the workers: the time of
+ * the render and the pixels rendered are split by the number of workers that
+ * were connected at the time, so a render that workers join while it runs
+ * reports its throughput at 1, 2, 3... workers.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class CoordinatorStatistics {
+	public long tiles;
+	public long pixels;
+	public long reassignedTiles;
+	public long speculativeTiles;
+	public long discardedResults;
+	public long failedWorkers;
+	public long elapsedNanos;
+
+	/**
+	 * The time spent and the pixels rendered, indexed by the number of workers
+	 * connected at the time.
+	 */
+	private long[] nanosByWorkers = new long[0];
+	private long[] pixelsByWorkers = new long[0];
+
+
+	/**
+	 * Adds the given time and pixels to the given number of workers.
+	 * @param workers    the number of workers connected
+	 * @param nanos      the time spent, in nanoseconds
+	 * @param pixels     the pixels rendered
+	 */
+	void record (int workers, long nanos, long pixels) {
+		if (workers >= this.nanosByWorkers.length) {
+			this.nanosByWorkers = Arrays.copyOf(this.nanosByWorkers, workers + 1);
+			this.pixelsByWorkers = Arrays.copyOf(this.pixelsByWorkers, workers + 1);
+		}
+		this.nanosByWorkers[workers] += nanos;
+		this.pixelsByWorkers[workers] += pixels;
+	}
+
+	/**
+	 * Gets the highest number of workers connected during the render.
+	 * @return    the max number of workers
+	 */
+	public int getMaxWorkers () {
+		for (int workers = this.nanosByWorkers.length - 1; workers > 0; workers--) {
+			if (this.nanosByWorkers[workers] > 0) {
+				return workers;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the throughput of the render while the given number of workers were
+	 * connected.
+	 * @param workers    the number of workers
+	 * @return           the pixels rendered per second, or zero if the render never had as many workers
+	 */
+	public double getThroughput (int workers) {
+		if (workers >= this.nanosByWorkers.length || this.nanosByWorkers[workers] == 0) {
+			return 0.0;
+		}
+		return this.pixelsByWorkers[workers] * 1e9 / this.nanosByWorkers[workers];
+	}
+
+	@Override
+	public String toString () {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("Tiles: %d, %d pixels in %.1f ms"
+				+ "\n\tReassigned: %d from %d failed workers, %d from slow workers, %d late results discarded",
+				this.tiles, this.pixels, this.elapsedNanos / 1e6,
+				this.reassignedTiles, this.failedWorkers, this.speculativeTiles, this.discardedResults));
+
+		double single = this.getThroughput(1);
+		for (int workers = 1; workers <= this.getMaxWorkers(); workers++) {
+			double throughput = this.getThroughput(workers);
+			if (throughput == 0.0) {
+				continue;
+			}
+			builder.append(String.format("\n\t%d %s: %.0f pixels per second", workers, (workers == 1) ? "worker" : "workers", throughput));
+			if (single > 0.0 && workers > 1) {
+				builder.append(String.format(" (%.2fx)", throughput / single));
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,615 @@
+package com.jinwroh.raytracer.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.FrameBuffer;
+import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.Tile;
+import com.jinwroh.raytracer.graphics.TraceStatistics;
+
+
+/**
+ * The RenderCoordinator class renders a scene on worker JVMs (See
+ * RenderWorker), over TCP sockets. The coordinator splits the Window of its
+ * camera into square tiles of the tile size of the camera, and hands them out
+ * to the workers that connect to it; each worker holds its own copy of the
+ * scene and the camera, checked against the ones of the coordinator by their
+ * fingerprint (See Camera.fingerprint). The finished tiles are streamed back
+ * and written into the frame buffer of the camera, so the image is printed
+ * from the camera once the render is done (See Camera.print). The final image
+ * is the same as the one of Camera.shoot.
+ *
+ * The workers pull the tiles: every worker is handed two tiles per render
+ * thread (See RenderWorker), so each thread has a tile to render while the
+ * result of the other is sent back, and gets a new tile for each tile it
+ * sends back, so fast workers render more tiles than slow ones. The results
+ * come back in any order. The tiles
+ * of a worker that fails (its connection drops) are handed out again. A tile
+ * that a worker has held for longer than the tile timeout is handed out
+ * again as well, to the next idle worker; the first result of a tile wins.
+ * A worker that holds tiles, but sends nothing for twice the tile timeout, is
+ * dropped as failed.
+ *
+ * Workers may connect and leave at any time, also during a render. The
+ * throughput of every render is reported by the number of workers connected
+ * (See CoordinatorStatistics).
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class RenderCoordinator implements Closeable {
+
+	/**
+	 * The protocol between the coordinator and its workers. A worker opens
+	 * with MAGIC, VERSION, the fingerprint of its render and its number of
+	 * render threads, and the coordinator answers ACCEPTED or REJECTED. The
+	 * coordinator then sends TILE messages (handout number, x, y, width,
+	 * height), answered by results (handout number, packed RGB values row by
+	 * row, trace statistics) in any order, and FINISH when it is closed. All
+	 * values are big-endian.
+	 */
+	static final int MAGIC = 0x52544457;
+	static final int VERSION = 2;
+	static final int ACCEPTED = 1;
+	static final int REJECTED = 0;
+	static final int TILE = 1;
+	static final int FINISH = 2;
+
+	private static final long DEFAULT_TILE_TIMEOUT = 10000;
+	private static final int TILES_IN_FLIGHT = 2;
+	private static final int MAX_WORKER_THREADS = 1024;
+
+	/**
+	 * The results of nextTile, other than a tile index.
+	 */
+	private static final int NO_TILE = -1;
+	private static final int CLOSED = -2;
+
+	private final Camera camera;
+	private final long fingerprint;
+	private final ServerSocket serverSocket;
+	private final Set<Socket> sockets = new HashSet<Socket>();
+	private volatile long tileTimeoutNanos = DEFAULT_TILE_TIMEOUT * 1000000L;
+
+	/**
+	 * The state of the render in progress, guarded by the coordinator: its
+	 * tiles (null between renders) and its number, the tiles waiting for a
+	 * worker, the tiles held by workers, by the time they were last handed
+	 * out (oldest first), the number of workers holding each tile, and the
+	 * tiles that are done.
+	 */
+	private List<Tile> tiles;
+	private int shotNumber;
+	private ArrayDeque<Integer> pendingTiles;
+	private LinkedHashMap<Integer, Long> heldTiles;
+	private int[] holders;
+	private boolean[] doneTiles;
+	private int doneCount;
+	private FrameBuffer frameBuffer;
+
+	private int workerCount;
+	private boolean closed;
+	private long lastEvent;
+	private CoordinatorStatistics statistics;
+
+
+	/**
+	 * Constructs a RenderCoordinator of the given scene, as shot by the given
+	 * camera, and starts accepting workers on the given port of the loopback
+	 * and network interfaces.
+	 *
+	 * @param camera    the camera of the render
+	 * @param scene     the scene of the render
+	 * @param port      the port the workers connect to, or zero for any free port
+	 * @throws IOException    if the port cannot be bound
+	 */
+	public RenderCoordinator (Camera camera, Scene scene, int port) throws IOException {
+
+		this.camera = camera;
+		this.fingerprint = camera.fingerprint(scene);
+		this.serverSocket = new ServerSocket(port);
+
+		Thread acceptor = new Thread(this::accept, "render-coordinator");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+
+	/**
+	 * Renders the scene with the workers connected, into a new frame buffer of
+	 * the camera, and waits until every tile is done. The render waits for
+	 * workers if none is connected (See awaitWorkers).
+	 *
+	 * @throws InterruptedException    if the thread is interrupted while waiting for the tiles
+	 */
+	public void shoot () throws InterruptedException {
+
+		this.camera.resetFrameBuffer();
+		List<Tile> shotTiles = Tile.split(this.camera.getWindow(), this.camera.getTileSize(), this.camera.getTileSize());
+
+		synchronized (this) {
+			if (this.closed) {
+				throw new IllegalStateException("The coordinator is closed");
+			}
+
+			this.tiles = shotTiles;
+			this.shotNumber++;
+			this.pendingTiles = new ArrayDeque<Integer>(shotTiles.size());
+			for (int i = 0; i < shotTiles.size(); i++) {
+				this.pendingTiles.add(i);
+			}
+			this.heldTiles = new LinkedHashMap<Integer, Long>();
+			this.holders = new int[shotTiles.size()];
+			this.doneTiles = new boolean[shotTiles.size()];
+			this.doneCount = 0;
+			this.frameBuffer = this.camera.getFrameBuffer();
+
+			this.statistics = new CoordinatorStatistics();
+			this.lastEvent = System.nanoTime();
+			long start = this.lastEvent;
+			this.notifyAll();
+
+			try {
+				while (this.doneCount < shotTiles.size()) {
+					if (this.closed) {
+						throw new IllegalStateException("The coordinator was closed during the render");
+					}
+					this.wait();
+				}
+			}
+			finally {
+				this.account(0);
+				this.statistics.elapsedNanos = System.nanoTime() - start;
+				this.tiles = null;
+				this.pendingTiles = null;
+				this.heldTiles = null;
+			}
+		}
+	}
+
+	/**
+	 * Waits until the given number of workers are connected.
+	 *
+	 * @param count            the number of workers
+	 * @param timeoutMillis    the max time to wait, in milliseconds
+	 * @return                 true if the workers are connected, false if the time ran out
+	 * @throws InterruptedException    if the thread is interrupted while waiting
+	 */
+	public synchronized boolean awaitWorkers (int count, long timeoutMillis) throws InterruptedException {
+
+		long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+		while (this.workerCount < count) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0 || this.closed) {
+				return false;
+			}
+			this.wait(Math.max(1, remaining / 1000000L));
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the port the workers connect to.
+	 * @return    the port
+	 */
+	public int getPort () {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Gets the number of workers connected.
+	 * @return    the number of workers
+	 */
+	public synchronized int getWorkerCount () {
+		return this.workerCount;
+	}
+
+	/**
+	 * Gets the time a worker may hold a tile before it is handed out again.
+	 * @return    the tile timeout, in milliseconds
+	 */
+	public long getTileTimeout () {
+		return this.tileTimeoutNanos / 1000000L;
+	}
+
+	/**
+	 * Sets the time a worker may hold a tile before it is handed out again to
+	 * an idle worker. It should be well above the time a tile takes.
+	 * @param tileTimeout    the tile timeout, in milliseconds
+	 */
+	public void setTileTimeout (long tileTimeout) {
+		if (tileTimeout < 1) {
+			throw new IllegalArgumentException("Tile timeout must be positive");
+		}
+		this.tileTimeoutNanos = tileTimeout * 1000000L;
+	}
+
+	/**
+	 * Gets the counts of the tiles of the last render, and its throughput by
+	 * the number of workers.
+	 * @return    the coordinator statistics, or null before the first render
+	 */
+	public synchronized CoordinatorStatistics getStatistics () {
+		return this.statistics;
+	}
+
+	/**
+	 * Stops accepting workers, and tells the connected workers to finish once
+	 * they have sent back the tiles they hold. The connections of the workers
+	 * that are not done within the tile timeout are closed. A render in
+	 * progress fails.
+	 *
+	 * @throws IOException    if the server socket cannot be closed
+	 */
+	@Override
+	public void close () throws IOException {
+
+		List<Socket> open;
+		synchronized (this) {
+			this.closed = true;
+			this.notifyAll();
+
+			long deadline = System.nanoTime() + this.tileTimeoutNanos;
+			try {
+				long remaining;
+				while (!this.sockets.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+					this.wait(Math.max(1, remaining / 1000000L));
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			open = new ArrayList<Socket>(this.sockets);
+		}
+
+		this.serverSocket.close();
+		for (Socket socket : open) {
+			close(socket);
+		}
+	}
+
+
+	/**
+	 * Accepts the workers, each on a thread of its own, until the coordinator
+	 * is closed.
+	 */
+	private void accept () {
+
+		try {
+			while (true) {
+				Socket socket = this.serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				synchronized (this) {
+					if (this.closed) {
+						close(socket);
+						continue;
+					}
+					this.sockets.add(socket);
+				}
+
+				Thread thread = new Thread(() -> this.serve(socket), "render-coordinator-" + socket.getPort());
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+		catch (IOException e) {
+			// The server socket is closed
+		}
+	}
+
+	/**
+	 * Serves a worker until it leaves, or the coordinator is closed. The
+	 * worker is handed a tile whenever it holds less than TILES_IN_FLIGHT
+	 * tiles per render thread; otherwise, its next result is read, for at
+	 * most twice the tile timeout.
+	 *
+	 * @param socket    the socket of the worker
+	 */
+	private void serve (Socket socket) {
+
+		// The tiles held by the worker, as (shot number, tile index, x, y, width,
+		// height), by their handout number, in the order they were handed out.
+		LinkedHashMap<Integer, int[]> held = new LinkedHashMap<Integer, int[]>();
+		int handouts = 0;
+		boolean joined = false;
+
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			socket.setSoTimeout(this.getReadTimeout());
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != this.fingerprint) {
+				out.writeInt(REJECTED);
+				out.flush();
+				return;
+			}
+			int threads = in.readInt();
+			if (threads < 1 || threads > MAX_WORKER_THREADS) {
+				out.writeInt(REJECTED);
+				out.flush();
+				return;
+			}
+			out.writeInt(ACCEPTED);
+			out.flush();
+			joined = this.join();
+
+			int tilesInFlight = TILES_IN_FLIGHT * threads;
+			while (joined) {
+				int[] next = new int[6];
+				int tile = NO_TILE;
+				if (held.size() < tilesInFlight) {
+					tile = this.nextTile(held.isEmpty(), next);
+				}
+
+				// The results of the held tiles are read before the worker finishes
+				if (tile == CLOSED && held.isEmpty()) {
+					out.writeInt(FINISH);
+					out.flush();
+					return;
+				}
+				if (tile >= 0) {
+					int id = handouts++;
+					held.put(id, next);
+					out.writeInt(TILE);
+					out.writeInt(id);
+					for (int i = 2; i < next.length; i++) {
+						out.writeInt(next[i]);
+					}
+					out.flush();
+					continue;
+				}
+
+				socket.setSoTimeout(this.getReadTimeout());
+				int id = in.readInt();
+				int[] result = held.get(id);
+				if (result == null) {
+					throw new IOException("Worker sent the result of a tile it does not hold");
+				}
+				byte[] pixels = new byte[4 * result[4] * result[5]];
+				in.readFully(pixels);
+				TraceStatistics traceStatistics = readStatistics(in);
+				held.remove(id);
+				this.complete(result, pixels, traceStatistics);
+			}
+		}
+		catch (IOException | InterruptedException e) {
+			// The worker failed or left; its tiles are handed out again
+		}
+		finally {
+			if (joined) {
+				this.leave(held.values());
+			}
+			close(socket);
+			synchronized (this) {
+				this.sockets.remove(socket);
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Gets the time a read from a worker holding tiles may block: twice the
+	 * tile timeout, capped to the range of a socket timeout.
+	 */
+	private int getReadTimeout () {
+		return (int) Math.min(Integer.MAX_VALUE, 2 * this.getTileTimeout());
+	}
+
+	/**
+	 * Adds a worker to the render.
+	 *
+	 * @return    true if the worker was added, false if the coordinator is closed
+	 */
+	private synchronized boolean join () {
+
+		if (this.closed) {
+			return false;
+		}
+		this.account(0);
+		this.workerCount++;
+		this.notifyAll();
+		return true;
+	}
+
+	/**
+	 * Removes a worker from the render, and hands out its tiles again, in the
+	 * order they were handed out.
+	 */
+	private synchronized void leave (Collection<int[]> held) {
+
+		this.account(0);
+		this.workerCount--;
+		if (this.closed) {
+			return;
+		}
+
+		if (this.tiles != null) {
+			this.statistics.failedWorkers++;
+		}
+		Iterator<int[]> iterator = new ArrayDeque<int[]>(held).descendingIterator();
+		while (iterator.hasNext()) {
+			int[] tile = iterator.next();
+			if (tile[0] != this.shotNumber || this.tiles == null) {
+				continue;
+			}
+
+			int index = tile[1];
+			this.holders[index]--;
+			if (!this.doneTiles[index] && this.holders[index] == 0) {
+				this.heldTiles.remove(index);
+				this.pendingTiles.addFirst(index);
+				this.statistics.reassignedTiles++;
+			}
+		}
+		this.notifyAll();
+	}
+
+	/**
+	 * Gets the next tile for a worker: a tile waiting for a worker or, for an
+	 * idle worker, a tile held for longer than the tile timeout.
+	 *
+	 * @param wait    true to wait for a tile (for an idle worker), false to return at once
+	 * @param next    the array filled with the shot number, the index and the bounds of the tile
+	 * @return        the index of the tile, NO_TILE if there is none, or CLOSED
+	 */
+	private synchronized int nextTile (boolean wait, int[] next) throws InterruptedException {
+
+		while (true) {
+			if (this.closed) {
+				return CLOSED;
+			}
+
+			long waitNanos = 0;
+			if (this.tiles != null && this.doneCount < this.tiles.size()) {
+				long now = System.nanoTime();
+				Integer tile = this.pendingTiles.poll();
+
+				if (tile == null && wait && !this.heldTiles.isEmpty()) {
+					Map.Entry<Integer, Long> oldest = this.heldTiles.entrySet().iterator().next();
+					waitNanos = oldest.getValue() + this.tileTimeoutNanos - now;
+					if (waitNanos <= 0) {
+						tile = oldest.getKey();
+						this.statistics.speculativeTiles++;
+					}
+				}
+
+				if (tile != null) {
+					this.heldTiles.remove(tile);
+					this.heldTiles.put(tile, now);
+					this.holders[tile]++;
+					Tile region = this.tiles.get(tile);
+					next[0] = this.shotNumber;
+					next[1] = tile;
+					next[2] = region.getX();
+					next[3] = region.getY();
+					next[4] = region.getWidth();
+					next[5] = region.getHeight();
+					return tile;
+				}
+			}
+
+			if (!wait) {
+				return NO_TILE;
+			}
+			if (waitNanos > 0) {
+				this.wait(Math.max(1, waitNanos / 1000000L));
+			}
+			else {
+				this.wait();
+			}
+		}
+	}
+
+	/**
+	 * Writes the result of a tile into the frame buffer, unless the tile is
+	 * already done, or belongs to an earlier render.
+	 */
+	private synchronized void complete (int[] tile, byte[] pixels, TraceStatistics traceStatistics) {
+
+		if (tile[0] != this.shotNumber || this.tiles == null) {
+			return;
+		}
+
+		int index = tile[1];
+		this.holders[index]--;
+		if (this.doneTiles[index]) {
+			this.statistics.discardedResults++;
+			return;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(pixels);
+		for (int y = tile[3]; y < tile[3] + tile[5]; y++) {
+			for (int x = tile[2]; x < tile[2] + tile[4]; x++) {
+				this.frameBuffer.setRGB(x, y, buffer.getInt());
+			}
+		}
+
+		long pixelCount = (long) tile[4] * tile[5];
+		this.account(pixelCount);
+		this.statistics.tiles++;
+		this.statistics.pixels += pixelCount;
+		this.camera.getTraceStatistics().add(traceStatistics);
+
+		this.doneTiles[index] = true;
+		this.doneCount++;
+		this.heldTiles.remove(index);
+		if (this.doneCount == this.tiles.size()) {
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * Adds the time since the last event, and the given pixels, to the
+	 * throughput of the render at the current number of workers.
+	 */
+	private void account (long pixels) {
+
+		if (this.tiles == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		this.statistics.record(this.workerCount, now - this.lastEvent, pixels);
+		this.lastEvent = now;
+	}
+
+
+	/**
+	 * Closes the given socket.
+	 */
+	private static void close (Socket socket) {
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+			// The worker is gone anyway
+		}
+	}
+
+	/**
+	 * Writes the given statistics to a worker stream.
+	 */
+	static void writeStatistics (DataOutputStream out, TraceStatistics statistics) throws IOException {
+		out.writeLong(statistics.pixels);
+		out.writeLong(statistics.refinedPixels);
+		out.writeLong(statistics.primaryRays);
+		out.writeLong(statistics.secondaryRays);
+		out.writeLong(statistics.depthCutoffs);
+		out.writeLong(statistics.contributionCutoffs);
+		out.writeLong(statistics.rouletteTerminations);
+		out.writeLong(statistics.budgetCutoffs);
+	}
+
+	/**
+	 * Reads statistics from a worker stream.
+	 */
+	static TraceStatistics readStatistics (DataInputStream in) throws IOException {
+		TraceStatistics statistics = new TraceStatistics();
+		statistics.pixels = in.readLong();
+		statistics.refinedPixels = in.readLong();
+		statistics.primaryRays = in.readLong();
+		statistics.secondaryRays = in.readLong();
+		statistics.depthCutoffs = in.readLong();
+		statistics.contributionCutoffs = in.readLong();
+		statistics.rouletteTerminations = in.readLong();
+		statistics.budgetCutoffs = in.readLong();
+		return statistics;
+	}
+}
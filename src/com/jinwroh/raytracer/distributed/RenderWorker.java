@@ -0,0 +1,193 @@
+package com.jinwroh.raytracer.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.RegionRenderer;
+import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.Tile;
+import com.jinwroh.raytracer.graphics.TraceStatistics;
+
+
+/**
+ * The RenderWorker class renders the tiles handed out by a RenderCoordinator,
+ * in a JVM of its own. The worker holds its own copy of the scene and of the
+ * camera, which must match the ones of the coordinator (See
+ * Camera.fingerprint); the scene is compiled and its accelerator is built
+ * once, when the worker connects.
+ *
+ * The tiles are rendered on as many threads as the camera has (See
+ * Camera.setThreadCount), each tile independently of the others (See
+ * RegionRenderer), and sent back with the counts of their rays as soon as
+ * they are done. The worker tells the coordinator its thread count, so it is
+ * handed enough tiles to keep all its threads busy; a machine thus runs a
+ * single worker.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class RenderWorker {
+
+	private final Camera camera;
+	private final Scene scene;
+
+
+	/**
+	 * Constructs a RenderWorker of the given scene, as shot by the given
+	 * camera.
+	 *
+	 * @param camera    the camera of the render
+	 * @param scene     the scene of the render
+	 */
+	public RenderWorker (Camera camera, Scene scene) {
+		this.camera = camera;
+		this.scene = scene;
+	}
+
+
+	/**
+	 * Connects to the coordinator at the given address, and renders the tiles
+	 * it hands out until it is closed.
+	 *
+	 * @param host    the host of the coordinator
+	 * @param port    the port of the coordinator
+	 * @return        the number of tiles rendered
+	 * @throws IOException    if the connection fails, or the coordinator renders another scene or camera
+	 */
+	public int run (String host, int port) throws IOException {
+
+		RegionRenderer renderer = new RegionRenderer(this.camera, this.scene);
+		int threadCount = this.camera.getThreadCount();
+
+		AtomicInteger tileCount = new AtomicInteger();
+		AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		AtomicInteger threadNumber = new AtomicInteger();
+		ExecutorService threads = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "render-worker-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			out.writeInt(RenderCoordinator.MAGIC);
+			out.writeInt(RenderCoordinator.VERSION);
+			out.writeLong(renderer.getFingerprint());
+			out.writeInt(threadCount);
+			out.flush();
+			if (in.readInt() != RenderCoordinator.ACCEPTED) {
+				throw new IOException("The coordinator renders another scene or camera");
+			}
+
+			// The tiles are read on this thread, and rendered and sent back on the
+			// render threads
+			boolean finished = false;
+			try {
+				while (in.readInt() == RenderCoordinator.TILE) {
+					int id = in.readInt();
+					Tile tile = new Tile(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+					threads.execute(() -> {
+						try {
+							send(out, id, tile, renderer);
+							tileCount.incrementAndGet();
+						}
+						catch (IOException | RuntimeException e) {
+							// Closing the socket fails the reads, and the coordinator
+							// hands out the tiles of the worker again
+							failure.compareAndSet(null, e);
+							close(socket);
+						}
+					});
+				}
+				finished = true;
+			}
+			catch (IOException e) {
+				if (failure.get() == null) {
+					throw e;
+				}
+			}
+			finally {
+				if (finished) {
+					threads.shutdown();
+				}
+				else {
+					threads.shutdownNow();
+				}
+				awaitTermination(threads);
+			}
+		}
+
+		Exception e = failure.get();
+		if (e instanceof IOException) {
+			throw (IOException) e;
+		}
+		if (e != null) {
+			throw (RuntimeException) e;
+		}
+		return tileCount.get();
+	}
+
+
+	/**
+	 * Renders the given tile, and sends its result to the coordinator under
+	 * the handout number of the tile. Can be called by several render threads.
+	 */
+	private static void send (DataOutputStream out, int id, Tile tile, RegionRenderer renderer) throws IOException {
+
+		int[] rgb = new int[tile.getWidth() * tile.getHeight()];
+		TraceStatistics statistics = renderer.render(tile, rgb);
+
+		ByteBuffer pixels = ByteBuffer.allocate(4 * rgb.length);
+		pixels.asIntBuffer().put(rgb);
+
+		synchronized (out) {
+			out.writeInt(id);
+			out.write(pixels.array());
+			RenderCoordinator.writeStatistics(out, statistics);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Closes the given socket.
+	 */
+	private static void close (Socket socket) {
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+			// The socket is closed anyway
+		}
+	}
+
+	/**
+	 * Waits until the render threads are done with their tiles.
+	 */
+	private static void awaitTermination (ExecutorService threads) throws InterruptedIOException {
+		try {
+			while (!threads.awaitTermination(1, TimeUnit.SECONDS)) {
+				// The tiles in flight are still rendered
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			threads.shutdownNow();
+			throw new InterruptedIOException("Interrupted while rendering the tiles");
+		}
+	}
+}
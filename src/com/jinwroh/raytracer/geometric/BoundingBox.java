@@ -0,0 +1,96 @@
+package com.jinwroh.raytracer.geometric;
+
+
+/**
+ * The BoundingBox class represents an axis-aligned box in the 3 dimensional
+ * Cartesian coordinate system, given by its minimum and maximum corner points.
+ * Every Shape is enclosed by a bounding box, which lets the acceleration
+ * structures skip whole groups of shapes a ray cannot hit. This is an
+ * immutable class.
+ *
+ * @author	Jin W. Roh
+ * @version	1.0.0
+ */
+public final class BoundingBox {
+
+	/**
+	 * The minimum and the maximum corner points of the box.
+	 */
+	private final Point min;
+	private final Point max;
+
+
+	/**
+	 * Constructs a BoundingBox with the minimum and maximum corner points.
+	 * @param min    the corner with the smallest x, y, z coordinates
+	 * @param max    the corner with the largest x, y, z coordinates
+	 */
+	public BoundingBox (Point min, Point max) {
+		this.min = min;
+		this.max = max;
+	}
+
+
+	/**
+	 * Computes the smallest BoundingBox enclosing both of the given boxes.
+	 * @param a    First box
+	 * @param b    Second box
+	 * @return     the box enclosing both boxes
+	 */
+	public static BoundingBox union (BoundingBox a, BoundingBox b) {
+		Point min = new Point(
+				Math.min(a.min.getX(), b.min.getX()),
+				Math.min(a.min.getY(), b.min.getY()),
+				Math.min(a.min.getZ(), b.min.getZ()));
+		Point max = new Point(
+				Math.max(a.max.getX(), b.max.getX()),
+				Math.max(a.max.getY(), b.max.getY()),
+				Math.max(a.max.getZ(), b.max.getZ()));
+		return new BoundingBox(min, max);
+	}
+
+
+	/**
+	 * Gets the corner with the smallest x, y, z coordinates.
+	 * @return    the minimum corner point
+	 */
+	public Point getMin () {
+		return this.min;
+	}
+
+	/**
+	 * Gets the corner with the largest x, y, z coordinates.
+	 * @return    the maximum corner point
+	 */
+	public Point getMax () {
+		return this.max;
+	}
+
+	/**
+	 * Gets the center point of this box.
+	 * @return    the center point of this box
+	 */
+	public Point getCenter () {
+		return new Point(
+				(this.min.getX() + this.max.getX()) / 2.0,
+				(this.min.getY() + this.max.getY()) / 2.0,
+				(this.min.getZ() + this.max.getZ()) / 2.0);
+	}
+
+	/**
+	 * Gets the surface area of this box.
+	 * @return    the surface area of this box
+	 */
+	public double getSurfaceArea () {
+		double dx = this.max.getX() - this.min.getX();
+		double dy = this.max.getY() - this.min.getY();
+		double dz = this.max.getZ() - this.min.getZ();
+		return 2.0 * (dx * dy + dy * dz + dz * dx);
+	}
+
+
+	@Override
+	public String toString () {
+		return "BoundingBox: \n\tMin: " + this.min + "\n\tMax: " + this.max;
+	}
+}
@@ -0,0 +1,75 @@
+package com.jinwroh.raytracer.geometric;
+
+
+/**
+ * The Intersection class bundles up the Shape hit by a ray, the time of the
+ * hit, and the local calculations at the hit point. It is the result of a 
+ * closest hit query over many shapes, where the caller needs to know which
+ * Shape was hit in order to shade it.
+ *
+ * A closest hit query only compares the hit times of the shapes (See 
+ * Shape.calculateHitTime); the local calculations of the closest Shape are
+ * only computed when materialize() is called.
+ *
+ * An Intersection is meant to be reused by its caller for many queries, so
+ * that a query allocates nothing. Besides the result, it owns the scratch
+ * space of a query: the hit of a SphereBatch, and arrays for the traversal 
+ * state of an accelerator. As a consequence, an Intersection must not be 
+ * shared between threads.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class Intersection {
+	public Shape shape;
+	public double timeHit;
+	public final Shape.LocalCalculations calculations = new Shape.LocalCalculations();
+
+	private final SphereBatch.Hit batchHit = new SphereBatch.Hit();
+	private int[] integerScratch = new int[64];
+	private double[] doubleScratch = new double[64];
+
+
+	/**
+	 * Computes the local calculations of the hit into the calculations of this
+	 * intersection (See Shape.materializeHit).
+	 * @param ray    the ray of the query
+	 */
+	public void materialize (Ray ray) {
+		this.shape.materializeHit(ray, this.timeHit, this.calculations);
+	}
+
+	/**
+	 * Gets the hit to be filled by the SphereBatch queries.
+	 * @return    the batch hit
+	 */
+	public SphereBatch.Hit getBatchHit () {
+		return this.batchHit;
+	}
+
+	/**
+	 * Gets an int array of at least the given length, for the traversal state
+	 * of a query. Its contents are undefined.
+	 * @param length    the minimum length
+	 * @return          the scratch array
+	 */
+	public int[] getIntegerScratch (int length) {
+		if (this.integerScratch.length < length) {
+			this.integerScratch = new int[Math.max(length, 2 * this.integerScratch.length)];
+		}
+		return this.integerScratch;
+	}
+
+	/**
+	 * Gets a double array of at least the given length, for the traversal
+	 * state of a query. Its contents are undefined.
+	 * @param length    the minimum length
+	 * @return          the scratch array
+	 */
+	public double[] getDoubleScratch (int length) {
+		if (this.doubleScratch.length < length) {
+			this.doubleScratch = new double[Math.max(length, 2 * this.doubleScratch.length)];
+		}
+		return this.doubleScratch;
+	}
+}
@@ -3,63 +3,166 @@ package com.jinwroh.raytracer.geometric;
 
 /**
  * The Ray represents the ray to be traced in the raytracing program. The
- * class is composed by a Point - representing the origin of the ray, 
+ * class is composed by a Point - representing the origin of the ray,
  * and a Vector - representing the direction of this ray.
- * 
+ *
+ * The origin and the direction are stored as primitive coordinates, so the
+ * hot path of the raytracer can reuse a single Ray for many rays with set(),
+ * and read the coordinates without allocating. The Point and the Vector are
+ * only created when they are asked for.
+ *
  * @author	Jin W. Roh
  * @version	1.0.0
  */
 public class Ray {
 
+	private double originX;
+	private double originY;
+	private double originZ;
+	private double directionX;
+	private double directionY;
+	private double directionZ;
+
 	private Point origin;
 	private Vector direction;
 
+	/**
+	 * Constructs a Ray from the origin (0, 0, 0) with no direction, meant to
+	 * be set() before it is traced.
+	 */
+	public Ray () {
+	}
+
 	/**
 	 * Constructs a Ray with the origin point and the vector direction.
 	 * @param origin     the point of origin of the ray.
 	 * @param direction	 the direction of the ray.
 	 */
 	public Ray (Point origin, Vector direction) {
-		this.origin = origin;
-		this.direction = direction;
+		this.setOrigin(origin);
+		this.setDirection(direction);
+	}
+
+
+	/**
+	 * Sets the origin and the direction of this ray from their coordinates.
+	 * @param originX       the x-coordinate of the origin
+	 * @param originY       the y-coordinate of the origin
+	 * @param originZ       the z-coordinate of the origin
+	 * @param directionX    the x-coordinate of the direction
+	 * @param directionY    the y-coordinate of the direction
+	 * @param directionZ    the z-coordinate of the direction
+	 */
+	public void set (double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ) {
+		this.originX = originX;
+		this.originY = originY;
+		this.originZ = originZ;
+		this.directionX = directionX;
+		this.directionY = directionY;
+		this.directionZ = directionZ;
+		this.origin = null;
+		this.direction = null;
 	}
-	
-	
+
 	/**
 	 * Gets the origin point of the ray.
 	 * @return	the origin point.
 	 */
 	public Point getOrigin () {
+		if (this.origin == null) {
+			this.origin = new Point(this.originX, this.originY, this.originZ);
+		}
 		return this.origin;
 	}
-	
+
 	/**
 	 * Gets the direction of the ray.
 	 * @return the direction of the ray.
 	 */
 	public Vector getDirection () {
+		if (this.direction == null) {
+			this.direction = new Vector(this.directionX, this.directionY, this.directionZ);
+		}
 		return this.direction;
 	}
-	
+
 	/**
 	 * Sets the origin point of the ray.
 	 * @param origin  the new origin point of this ray.
 	 */
 	public void setOrigin (Point origin) {
 		this.origin = origin;
+		this.originX = origin.getX();
+		this.originY = origin.getY();
+		this.originZ = origin.getZ();
 	}
-	
+
 	/**
-	 * Sets the direction of this ray.
+	 * Sets the direction of this ray. The coordinates of the direction are
+	 * copied, so normalizing the Vector afterwards does not change this ray.
 	 * @param direction  the new direction of this ray.
 	 */
 	public void setDirection (Vector direction) {
 		this.direction = direction;
+		this.directionX = direction.getX();
+		this.directionY = direction.getY();
+		this.directionZ = direction.getZ();
 	}
-	
-	
+
+
+	/* Primitive accessors, for the hot path */
+	/**
+	 * Gets the x-coordinate of the origin of the ray.
+	 * @return	the x-coordinate of the origin
+	 */
+	public double getOriginX () {
+		return this.originX;
+	}
+
+	/**
+	 * Gets the y-coordinate of the origin of the ray.
+	 * @return	the y-coordinate of the origin
+	 */
+	public double getOriginY () {
+		return this.originY;
+	}
+
+	/**
+	 * Gets the z-coordinate of the origin of the ray.
+	 * @return	the z-coordinate of the origin
+	 */
+	public double getOriginZ () {
+		return this.originZ;
+	}
+
+	/**
+	 * Gets the x-coordinate of the direction of the ray.
+	 * @return	the x-coordinate of the direction
+	 */
+	public double getDirectionX () {
+		return this.directionX;
+	}
+
+	/**
+	 * Gets the y-coordinate of the direction of the ray.
+	 * @return	the y-coordinate of the direction
+	 */
+	public double getDirectionY () {
+		return this.directionY;
+	}
+
+	/**
+	 * Gets the z-coordinate of the direction of the ray.
+	 * @return	the z-coordinate of the direction
+	 */
+	public double getDirectionZ () {
+		return this.directionZ;
+	}
+
+
 	@Override
 	public String toString () {
-		return "Ray : \n\tOrigin: " + this.origin + "\n\tDirection: " + this.direction;
+		return "Ray : \n\tOrigin: " + this.getOrigin() + "\n\tDirection: " + this.getDirection();
 	}
 }
@@ -0,0 +1,376 @@
+package com.jinwroh.raytracer.geometric;
+
+
+/**
+ * The RayPacket class bundles up a group of coherent rays, i.e. the primary
+ * rays through a block of neighboring samples, so that an accelerator can
+ * trace them together: a node of the accelerator is tested once for the whole
+ * packet, and a run of spheres is tested against all the rays of the packet
+ * at once (See Accelerator.closestHits).
+ *
+ * The rays are stored as primitive arrays (structure of arrays), along with
+ * the closest hit of each ray: the Shape, and the time of the hit. The packet
+ * also keeps the bounds of its rays - the interval of the origins and of the
+ * inverse directions along each axis - so a whole packet can be culled with
+ * interval arithmetic. The bounds are only meaningful when the packet is
+ * coherent, i.e. when the directions of all the rays have the same signs.
+ *
+ * A RayPacket is meant to be reused by its caller for many packets, so that
+ * tracing a packet allocates nothing. As a consequence, a RayPacket must not
+ * be shared between threads.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class RayPacket {
+
+	/**
+	 * The rays of the packet, and their inverse directions.
+	 */
+	private final double[] originX;
+	private final double[] originY;
+	private final double[] originZ;
+	private final double[] directionX;
+	private final double[] directionY;
+	private final double[] directionZ;
+	private final double[] inverseX;
+	private final double[] inverseY;
+	private final double[] inverseZ;
+	private int size;
+
+	/**
+	 * The closest hit of each ray: the Shape (null if the ray hits nothing),
+	 * and the time of the hit (positive infinity if the ray hits nothing).
+	 */
+	private final Shape[] shapes;
+	private final double[] timeHits;
+
+	/**
+	 * The bounds of the rays, 6 per quantity as (min x, min y, min z, max x,
+	 * max y, max z), and whether they are up to date with the rays.
+	 */
+	private final double[] originBounds = new double[6];
+	private final double[] inverseBounds = new double[6];
+	private boolean coherent;
+	private boolean boundsValid;
+
+	/**
+	 * The ray handed out by getRay, to trace a single ray of the packet.
+	 */
+	private final Ray ray = new Ray();
+
+
+	/**
+	 * Constructs an empty RayPacket that holds up to the given number of rays.
+	 * @param capacity    the maximum number of rays
+	 */
+	public RayPacket (int capacity) {
+		this.originX = new double[capacity];
+		this.originY = new double[capacity];
+		this.originZ = new double[capacity];
+		this.directionX = new double[capacity];
+		this.directionY = new double[capacity];
+		this.directionZ = new double[capacity];
+		this.inverseX = new double[capacity];
+		this.inverseY = new double[capacity];
+		this.inverseZ = new double[capacity];
+		this.shapes = new Shape[capacity];
+		this.timeHits = new double[capacity];
+	}
+
+
+	/**
+	 * Removes all the rays of this packet.
+	 */
+	public void clear () {
+		this.size = 0;
+		this.boundsValid = false;
+	}
+
+	/**
+	 * Adds a ray to this packet from its coordinates. The ray hits nothing
+	 * until the packet is traced.
+	 * @param originX       the x-coordinate of the origin
+	 * @param originY       the y-coordinate of the origin
+	 * @param originZ       the z-coordinate of the origin
+	 * @param directionX    the x-coordinate of the direction
+	 * @param directionY    the y-coordinate of the direction
+	 * @param directionZ    the z-coordinate of the direction
+	 * @return              the index of the ray in this packet
+	 */
+	public int add (double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ) {
+
+		// Guard clause: a packet has a fixed capacity
+		if (this.size == this.capacity()) {
+			throw new IllegalStateException("The packet is full");
+		}
+
+		int index = this.size++;
+		this.originX[index] = originX;
+		this.originY[index] = originY;
+		this.originZ[index] = originZ;
+		this.directionX[index] = directionX;
+		this.directionY[index] = directionY;
+		this.directionZ[index] = directionZ;
+		this.inverseX[index] = 1.0 / directionX;
+		this.inverseY[index] = 1.0 / directionY;
+		this.inverseZ[index] = 1.0 / directionZ;
+		this.shapes[index] = null;
+		this.timeHits[index] = Double.POSITIVE_INFINITY;
+		this.boundsValid = false;
+		return index;
+	}
+
+	/**
+	 * Gets the number of rays in this packet.
+	 * @return    the number of rays
+	 */
+	public int size () {
+		return this.size;
+	}
+
+	/**
+	 * Gets the maximum number of rays in this packet.
+	 * @return    the capacity
+	 */
+	public int capacity () {
+		return this.timeHits.length;
+	}
+
+	/**
+	 * Gets the ray at the given index as a Ray. The same Ray is reused by
+	 * every call, so it is only valid until the next call.
+	 * @param index    the index of the ray
+	 * @return         the ray
+	 */
+	public Ray getRay (int index) {
+		this.ray.set(this.originX[index], this.originY[index], this.originZ[index],
+				this.directionX[index], this.directionY[index], this.directionZ[index]);
+		return this.ray;
+	}
+
+	/**
+	 * Gets the Shape hit by the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         the closest Shape, or null if the ray hits nothing
+	 */
+	public Shape getShape (int index) {
+		return this.shapes[index];
+	}
+
+	/**
+	 * Gets the time at which the ray at the given index hits its Shape.
+	 * @param index    the index of the ray
+	 * @return         the time of the hit, or positive infinity if the ray hits nothing
+	 */
+	public double getTimeHit (int index) {
+		return this.timeHits[index];
+	}
+
+	/**
+	 * Sets the closest hit of the ray at the given index.
+	 * @param index      the index of the ray
+	 * @param shape      the closest Shape, or null if the ray hits nothing
+	 * @param timeHit    the time of the hit, or positive infinity if the ray hits nothing
+	 */
+	public void setHit (int index, Shape shape, double timeHit) {
+		this.shapes[index] = shape;
+		this.timeHits[index] = timeHit;
+	}
+
+	/**
+	 * Checks if the directions of all the rays of this packet have the same
+	 * signs, none of them zero. Only then do the bounds of the packet bound
+	 * the slab times of its rays, and do all of its rays visit the children
+	 * of a node in the same order.
+	 * @return    true if the packet is coherent, false otherwise
+	 */
+	public boolean isCoherent () {
+		this.updateBounds();
+		return this.coherent;
+	}
+
+	/**
+	 * Gets a bound of the origins of the rays of this packet.
+	 * @param index    0, 1, 2 for the min x, y, z, and 3, 4, 5 for the max x, y, z
+	 * @return         the bound
+	 */
+	public double getOriginBound (int index) {
+		this.updateBounds();
+		return this.originBounds[index];
+	}
+
+	/**
+	 * Gets a bound of the inverse directions of the rays of this packet.
+	 * @param index    0, 1, 2 for the min x, y, z, and 3, 4, 5 for the max x, y, z
+	 * @return         the bound
+	 */
+	public double getInverseBound (int index) {
+		this.updateBounds();
+		return this.inverseBounds[index];
+	}
+
+
+	/**
+	 * Gets the x-coordinate of the origin of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         the x-coordinate
+	 */
+	public double getOriginX (int index) {
+		return this.originX[index];
+	}
+
+	/**
+	 * Gets the y-coordinate of the origin of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         the y-coordinate
+	 */
+	public double getOriginY (int index) {
+		return this.originY[index];
+	}
+
+	/**
+	 * Gets the z-coordinate of the origin of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         the z-coordinate
+	 */
+	public double getOriginZ (int index) {
+		return this.originZ[index];
+	}
+
+	/**
+	 * Gets the x-coordinate of the direction of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         the x-coordinate
+	 */
+	public double getDirectionX (int index) {
+		return this.directionX[index];
+	}
+
+	/**
+	 * Gets the y-coordinate of the direction of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         the y-coordinate
+	 */
+	public double getDirectionY (int index) {
+		return this.directionY[index];
+	}
+
+	/**
+	 * Gets the z-coordinate of the direction of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         the z-coordinate
+	 */
+	public double getDirectionZ (int index) {
+		return this.directionZ[index];
+	}
+
+	/**
+	 * Gets the inverse of the x-coordinate of the direction of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         1 / the x-coordinate
+	 */
+	public double getInverseX (int index) {
+		return this.inverseX[index];
+	}
+
+	/**
+	 * Gets the inverse of the y-coordinate of the direction of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         1 / the y-coordinate
+	 */
+	public double getInverseY (int index) {
+		return this.inverseY[index];
+	}
+
+	/**
+	 * Gets the inverse of the z-coordinate of the direction of the ray at the given index.
+	 * @param index    the index of the ray
+	 * @return         1 / the z-coordinate
+	 */
+	public double getInverseZ (int index) {
+		return this.inverseZ[index];
+	}
+
+
+	/* Package-private accessors for the sphere kernels */
+	double[] getOriginX () {
+		return this.originX;
+	}
+
+	double[] getOriginY () {
+		return this.originY;
+	}
+
+	double[] getOriginZ () {
+		return this.originZ;
+	}
+
+	double[] getDirectionX () {
+		return this.directionX;
+	}
+
+	double[] getDirectionY () {
+		return this.directionY;
+	}
+
+	double[] getDirectionZ () {
+		return this.directionZ;
+	}
+
+	double[] getTimeHits () {
+		return this.timeHits;
+	}
+
+	Shape[] getShapes () {
+		return this.shapes;
+	}
+
+
+	/**
+	 * Recomputes the bounds and the coherence of the rays, if a ray was added
+	 * since they were last computed.
+	 */
+	private void updateBounds () {
+
+		if (this.boundsValid) {
+			return;
+		}
+
+		this.coherent = this.size > 0;
+		for (int axis = 0; axis < 3; axis++) {
+			double[] origins = (axis == 0) ? this.originX : (axis == 1) ? this.originY : this.originZ;
+			double[] inverses = (axis == 0) ? this.inverseX : (axis == 1) ? this.inverseY : this.inverseZ;
+			double[] directions = (axis == 0) ? this.directionX : (axis == 1) ? this.directionY : this.directionZ;
+
+			double originMin = Double.POSITIVE_INFINITY;
+			double originMax = Double.NEGATIVE_INFINITY;
+			double inverseMin = Double.POSITIVE_INFINITY;
+			double inverseMax = Double.NEGATIVE_INFINITY;
+			int negatives = 0;
+			int positives = 0;
+
+			for (int i = 0; i < this.size; i++) {
+				originMin = Math.min(originMin, origins[i]);
+				originMax = Math.max(originMax, origins[i]);
+				inverseMin = Math.min(inverseMin, inverses[i]);
+				inverseMax = Math.max(inverseMax, inverses[i]);
+				if (directions[i] < 0) {
+					negatives++;
+				}
+				else if (directions[i] > 0) {
+					positives++;
+				}
+			}
+
+			this.originBounds[axis] = originMin;
+			this.originBounds[axis + 3] = originMax;
+			this.inverseBounds[axis] = inverseMin;
+			this.inverseBounds[axis + 3] = inverseMax;
+			this.coherent &= (negatives == this.size || positives == this.size);
+		}
+
+		this.boundsValid = true;
+	}
+}
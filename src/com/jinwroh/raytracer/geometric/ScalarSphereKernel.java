@@ -0,0 +1,154 @@
+package com.jinwroh.raytracer.geometric;
+
+
+/**
+ * The ScalarSphereKernel class tests the spheres of a batch one at a time. It
+ * is the fallback when the Vector API is not available.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class ScalarSphereKernel implements SphereKernel {
+
+	@Override
+	public boolean closestHit (SphereBatch batch, int start, int end,
+			double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ,
+			double maxTime, SphereBatch.Hit hit) {
+
+		double[] centerX = batch.getCenterX();
+		double[] centerY = batch.getCenterY();
+		double[] centerZ = batch.getCenterZ();
+		double[] radiusSquared = batch.getRadiusSquared();
+
+		// Same quadratic as Sphere.calculateHitTime, with e - c expanded
+		double valueA = directionX * directionX + directionY * directionY + directionZ * directionZ;
+		double bestTimeHit = maxTime;
+		int bestIndex = -1;
+
+		for (int i = start; i < end; i++) {
+			double ecX = originX - centerX[i];
+			double ecY = originY - centerY[i];
+			double ecZ = originZ - centerZ[i];
+
+			double valueB = directionX * ecX + directionY * ecY + directionZ * ecZ;
+			double valueC = (ecX * ecX + ecY * ecY + ecZ * ecZ) - radiusSquared[i];
+			double discriminant = valueB * valueB - valueA * valueC;
+			if (discriminant < 0) {
+				continue;
+			}
+
+			double root = Math.sqrt(discriminant);
+			double timeOne = (-valueB + root) / valueA;
+			double timeTwo = (-valueB - root) / valueA;
+			double nearTime = Math.min(timeOne, timeTwo);
+			double farTime = Math.max(timeOne, timeTwo);
+			double time = (nearTime > 0) ? nearTime : farTime;
+
+			if (time > 0 && time < bestTimeHit) {
+				bestTimeHit = time;
+				bestIndex = i;
+			}
+		}
+
+		if (bestIndex < 0) {
+			return false;
+		}
+		hit.index = bestIndex;
+		hit.timeHit = bestTimeHit;
+		return true;
+	}
+
+	@Override
+	public boolean anyHit (SphereBatch batch, int start, int end,
+			double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ,
+			double minTime, double maxTime) {
+
+		double[] centerX = batch.getCenterX();
+		double[] centerY = batch.getCenterY();
+		double[] centerZ = batch.getCenterZ();
+		double[] radiusSquared = batch.getRadiusSquared();
+
+		double valueA = directionX * directionX + directionY * directionY + directionZ * directionZ;
+
+		for (int i = start; i < end; i++) {
+			double ecX = originX - centerX[i];
+			double ecY = originY - centerY[i];
+			double ecZ = originZ - centerZ[i];
+
+			double valueB = directionX * ecX + directionY * ecY + directionZ * ecZ;
+			double valueC = (ecX * ecX + ecY * ecY + ecZ * ecZ) - radiusSquared[i];
+			double discriminant = valueB * valueB - valueA * valueC;
+			if (discriminant < 0) {
+				continue;
+			}
+
+			double root = Math.sqrt(discriminant);
+			double timeOne = (-valueB + root) / valueA;
+			double timeTwo = (-valueB - root) / valueA;
+
+			if ((timeOne > minTime && timeOne < maxTime) || (timeTwo > minTime && timeTwo < maxTime)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void closestHits (SphereBatch batch, int start, int end, RayPacket packet, int first) {
+		this.closestHits(batch, start, end, packet, first, packet.size());
+	}
+
+	/**
+	 * Updates the hits of the rays [first, last) of the packet; the rays left
+	 * over by the vectorized kernel are tested with this.
+	 */
+	void closestHits (SphereBatch batch, int start, int end, RayPacket packet, int first, int last) {
+
+		double[] centerX = batch.getCenterX();
+		double[] centerY = batch.getCenterY();
+		double[] centerZ = batch.getCenterZ();
+		double[] radiusSquared = batch.getRadiusSquared();
+
+		double[] originX = packet.getOriginX();
+		double[] originY = packet.getOriginY();
+		double[] originZ = packet.getOriginZ();
+		double[] directionX = packet.getDirectionX();
+		double[] directionY = packet.getDirectionY();
+		double[] directionZ = packet.getDirectionZ();
+		double[] timeHits = packet.getTimeHits();
+		Shape[] shapes = packet.getShapes();
+
+		// The sphere is the outer loop, so each sphere is loaded once for the
+		// whole packet. Each ray still sees the spheres in order, so ties are
+		// won by the first sphere of the run, as in closestHit.
+		for (int i = start; i < end; i++) {
+			for (int r = first; r < last; r++) {
+				double ecX = originX[r] - centerX[i];
+				double ecY = originY[r] - centerY[i];
+				double ecZ = originZ[r] - centerZ[i];
+
+				double valueA = directionX[r] * directionX[r] + directionY[r] * directionY[r] + directionZ[r] * directionZ[r];
+				double valueB = directionX[r] * ecX + directionY[r] * ecY + directionZ[r] * ecZ;
+				double valueC = (ecX * ecX + ecY * ecY + ecZ * ecZ) - radiusSquared[i];
+				double discriminant = valueB * valueB - valueA * valueC;
+				if (discriminant < 0) {
+					continue;
+				}
+
+				double root = Math.sqrt(discriminant);
+				double timeOne = (-valueB + root) / valueA;
+				double timeTwo = (-valueB - root) / valueA;
+				double nearTime = Math.min(timeOne, timeTwo);
+				double farTime = Math.max(timeOne, timeTwo);
+				double time = (nearTime > 0) ? nearTime : farTime;
+
+				if (time > 0 && time < timeHits[r]) {
+					timeHits[r] = time;
+					shapes[r] = batch.getSphere(i);
+				}
+			}
+		}
+	}
+}
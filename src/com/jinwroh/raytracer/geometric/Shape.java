@@ -1,7 +1,9 @@
 package com.jinwroh.raytracer.geometric;
 
 import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.graphics.Fingerprint;
 import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.Tracer;
 import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
 
 
@@ -41,7 +43,122 @@ public abstract class Shape {
 	 * @param ray    the ray towards the object
 	 * @return       the data object containing relevant calculation information
 	 */
-	public abstract Shape.LocalCalculations calculateIntersection (Ray ray);
+	public Shape.LocalCalculations calculateIntersection (Ray ray) {
+		Shape.LocalCalculations calculations = new Shape.LocalCalculations();
+		this.calculateIntersection(ray, calculations);
+		return calculations;
+	}
+	
+	/**
+	 * Calculates the intersection with the given ray with this Shape, into the
+	 * given data object. This allows the caller to reuse a single data object
+	 * for many rays, so the calculation allocates nothing.
+	 * 
+	 * This runs both phases of the intersection at once: calculateHitTime,
+	 * then materializeHit if the ray hits this Shape.
+	 * 
+	 * @param ray             the ray towards the object
+	 * @param calculations    the data object to be filled with the calculation information
+	 */
+	public void calculateIntersection (Ray ray, Shape.LocalCalculations calculations) {
+		double timeHit = this.calculateHitTime(ray);
+		if (timeHit == Double.POSITIVE_INFINITY) {
+			calculations.hits = false;
+			return;
+		}
+		this.materializeHit(ray, timeHit, calculations);
+	}
+	
+	/**
+	 * Calculates the time at which the given ray first hits this Shape, in front
+	 * of the ray origin. This is the cheap first phase of an intersection: only
+	 * the distance is computed, which is all a closest hit search needs to 
+	 * compare the shapes along a ray.
+	 * 
+	 * @param ray    the ray towards the object
+	 * @return       the time of the hit, or Double.POSITIVE_INFINITY if the ray misses this Shape
+	 */
+	public abstract double calculateHitTime (Ray ray);
+	
+	/**
+	 * Computes the calculation information of the hit at the given time, into
+	 * the given data object: the hit point, the surface normal and the 
+	 * reflected direction. This is the second phase of an intersection, meant 
+	 * to run once, for the closest Shape hit by the ray.
+	 * 
+	 * @param ray             the ray towards the object
+	 * @param timeHit         the time of the hit, as computed by calculateHitTime
+	 * @param calculations    the data object to be filled with the calculation information
+	 */
+	public abstract void materializeHit (Ray ray, double timeHit, Shape.LocalCalculations calculations);
+	
+	/**
+	 * Checks if the given ray hits this Shape at any time in the open interval
+	 * (minTime, maxTime). This is an occlusion query: it answers as soon as a
+	 * hit is found, without computing the calculation information of the hit.
+	 * 
+	 * @param ray        the ray towards the object
+	 * @param minTime    the start of the interval, exclusive
+	 * @param maxTime    the end of the interval, exclusive
+	 * @return           true if the ray hits this Shape within the interval, false otherwise
+	 */
+	public abstract boolean anyHit (Ray ray, double minTime, double maxTime);
+	
+	/**
+	 * Gets the axis-aligned BoundingBox that encloses this Shape.
+	 * 
+	 * @return       the bounding box of this Shape
+	 */
+	public abstract BoundingBox getBoundingBox ();
+	
+	/**
+	 * Adds the content of this Shape to the given fingerprint: its class, its
+	 * shading strategy, its Properties and its geometry, so that two shapes
+	 * with the same fingerprint render the same.
+	 * 
+	 * @param fingerprint    the fingerprint the content is added to
+	 */
+	public void fingerprint (Fingerprint fingerprint) {
+		this.fingerprint(fingerprint, this.properties, this.shadingStrategy);
+	}
+	
+	/**
+	 * Adds the content of this Shape to the given fingerprint, made of the 
+	 * given Properties and shading strategy instead of its own, i.e. of the
+	 * copies a CompiledScene renders it with. Subclasses must add their 
+	 * geometry after calling this method.
+	 * 
+	 * @param fingerprint        the fingerprint the content is added to
+	 * @param properties         the Properties the Shape is added with
+	 * @param shadingStrategy    the shading strategy the Shape is added with
+	 */
+	public void fingerprint (Fingerprint fingerprint, Shape.Properties properties, ShadingStrategy shadingStrategy) {
+		this.fingerprint(fingerprint, this.getClass(), properties, shadingStrategy);
+	}
+	
+	/**
+	 * Adds the content of this Shape to the given fingerprint, as a Shape of
+	 * the given class. A view of a shape stored elsewhere adds the class of the
+	 * shape it stands for, so it has the fingerprint of that shape.
+	 * 
+	 * @param fingerprint        the fingerprint the content is added to
+	 * @param type               the class the Shape is added as
+	 * @param properties         the Properties the Shape is added with
+	 * @param shadingStrategy    the shading strategy the Shape is added with
+	 */
+	protected void fingerprint (Fingerprint fingerprint, Class<? extends Shape> type,
+			Shape.Properties properties, ShadingStrategy shadingStrategy) {
+		fingerprint.add(type.getName());
+		fingerprint.add(shadingStrategy.getClass().getName());
+		
+		fingerprint.add(properties.ambientColorProperty);
+		fingerprint.add(properties.diffuseColorProperty);
+		fingerprint.add(properties.specularColorProperty);
+		fingerprint.add(properties.specularCoefficient);
+		fingerprint.add(properties.reflectionCoefficient);
+		fingerprint.add(properties.refractionCoefficient);
+		fingerprint.add(properties.refractiveIndex);
+	}
 	
 	
 	/**
@@ -51,10 +168,27 @@ public abstract class Shape {
 	 * @param localCalculations   the calculation information data object
 	 * @param scene               the raytracing scene
 	 * @return                    the computed color at the point specified in the calculation object
+	 * @deprecated see ShadingStrategy.shade(Ray, Shape.LocalCalculations,
+	 *             Shape.Properties, Scene); use shade(Ray,
+	 *             Shape.LocalCalculations, Tracer, double[]) instead
 	 */
+	@Deprecated
 	public Color shade (Ray viewRay, Shape.LocalCalculations localCalculations, Scene scene) {
 		return this.shadingStrategy.shade(viewRay, localCalculations, this.properties, scene);
 	}
+	
+	/**
+	 * Computes the coloring algorithm with respect to the object's shading strategy,
+	 * into the given r, g, b array.
+	 * 
+	 * @param viewRay             the ray towards the object
+	 * @param localCalculations   the calculation information data object
+	 * @param tracer              the tracer of the raytracing scene
+	 * @param color               the array to be filled with the r, g, b values
+	 */
+	public void shade (Ray viewRay, Shape.LocalCalculations localCalculations, Tracer tracer, double[] color) {
+		this.shadingStrategy.shade(viewRay, localCalculations, this.properties, tracer, color);
+	}
 
 	/**
 	 * Gets the Shape's shading strategy.
@@ -94,18 +228,79 @@ public abstract class Shape {
 	 * LocalCalculation encapsulate all the necessary calculation information
 	 * at a local point of a Shape. The class contains variables that denote:
 	 * if the ray is hit at the point (hits),  the single Point of the shape 
-	 * in consideration (point), the time that took the ray to hit the point (timeHit),
-	 * the surface normal vector (normal), and the reflected ray (reflectedRay).
+	 * in consideration (pointX, pointY, pointZ), the time that took the ray to 
+	 * hit the point (timeHit), the surface normal vector (normalX, normalY, normalZ),
+	 * which is not necessarily of unit length, and the unit direction of the ray
+	 * reflected at the point (reflectionX, reflectionY, reflectionZ).
+	 * 
+	 * The vectors are kept as primitive coordinates, so a single data object 
+	 * can be reused for many rays; getPoint(), getNormal() and getReflection()
+	 * create the respective objects.
 	 * 
 	 * @author Jin W. Roh
 	 * @version 1.0.0
 	 */
 	public static class LocalCalculations {
 		public boolean hits;
-		public Point point;
 		public double timeHit;
-		public Vector normal;
-		public Vector reflectedRay;
+		public double pointX;
+		public double pointY;
+		public double pointZ;
+		public double normalX;
+		public double normalY;
+		public double normalZ;
+		public double reflectionX;
+		public double reflectionY;
+		public double reflectionZ;
+		
+		/**
+		 * Computes the reflected direction from the direction of the given ray
+		 * and the normal: r = d - 2 (d . n) n, with d and n of unit length.
+		 * The shapes call this once the hit point and the normal are set.
+		 * @param ray    the ray that hit the point
+		 */
+		public void reflect (Ray ray) {
+			double dx = ray.getDirectionX();
+			double dy = ray.getDirectionY();
+			double dz = ray.getDirectionZ();
+			double dMagnitude = Vector.magnitude(dx, dy, dz);
+			double nMagnitude = Vector.magnitude(this.normalX, this.normalY, this.normalZ);
+			dx /= dMagnitude;
+			dy /= dMagnitude;
+			dz /= dMagnitude;
+			double nx = this.normalX / nMagnitude;
+			double ny = this.normalY / nMagnitude;
+			double nz = this.normalZ / nMagnitude;
+			
+			double scale = (dx*nx + dy*ny + dz*nz) * 2.0;
+			this.reflectionX = dx - nx*scale;
+			this.reflectionY = dy - ny*scale;
+			this.reflectionZ = dz - nz*scale;
+		}
+		
+		/**
+		 * Gets the hit point as a new Point.
+		 * @return    the hit point
+		 */
+		public Point getPoint () {
+			return new Point(this.pointX, this.pointY, this.pointZ);
+		}
+		
+		/**
+		 * Gets the surface normal as a new Vector.
+		 * @return    the surface normal
+		 */
+		public Vector getNormal () {
+			return new Vector(this.normalX, this.normalY, this.normalZ);
+		}
+		
+		/**
+		 * Gets the reflected direction as a new Vector.
+		 * @return    the reflected direction
+		 */
+		public Vector getReflection () {
+			return new Vector(this.reflectionX, this.reflectionY, this.reflectionZ);
+		}
 	}
 	
 	
@@ -113,6 +308,11 @@ public abstract class Shape {
 	 * Properties inner class bundles up relevant properties for a Shape class,
 	 * necessary to compute shading / coloring information.
 	 * 
+	 * The reflection and refraction coefficients are the fractions (from 0.0 
+	 * to 1.0) of the light reflected and refracted at the surface, which the 
+	 * Tracer adds to the shaded color. The refractive index is the index of
+	 * the inside of the shape, relative to the outside.
+	 * 
 	 * @author Jin W. Roh
 	 * @version 1.0.0
 	 */
@@ -121,7 +321,32 @@ public abstract class Shape {
 		public Color diffuseColorProperty;
 		public Color specularColorProperty;
 		public int specularCoefficient;
-		public int reflectionCoefficient;
-		public int refractionCoefficient;
+		public double reflectionCoefficient;
+		public double refractionCoefficient;
+		public double refractiveIndex = 1.0;
+		
+		
+		/**
+		 * Constructs Properties with no colors, no reflection or refraction,
+		 * and a refractive index of 1.
+		 */
+		public Properties () {
+		}
+		
+		/**
+		 * Constructs a copy of the given Properties. The colors are immutable,
+		 * so they are shared.
+		 * 
+		 * @param properties    the Properties to be copied
+		 */
+		public Properties (Properties properties) {
+			this.ambientColorProperty = properties.ambientColorProperty;
+			this.diffuseColorProperty = properties.diffuseColorProperty;
+			this.specularColorProperty = properties.specularColorProperty;
+			this.specularCoefficient = properties.specularCoefficient;
+			this.reflectionCoefficient = properties.reflectionCoefficient;
+			this.refractionCoefficient = properties.refractionCoefficient;
+			this.refractiveIndex = properties.refractiveIndex;
+		}
 	}
 }
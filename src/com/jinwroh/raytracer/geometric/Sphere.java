@@ -1,5 +1,6 @@
 package com.jinwroh.raytracer.geometric;
 
+import com.jinwroh.raytracer.graphics.Fingerprint;
 import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
 
 
@@ -15,6 +16,15 @@ public class Sphere extends Shape {
 	private Point center;
 	private double radius;
 	
+	/**
+	 * The coordinates of the center and the squared radius, kept as primitives
+	 * for the intersection calculation.
+	 */
+	private double centerX;
+	private double centerY;
+	private double centerZ;
+	private double radiusSquared;
+	
 	
 	/**
 	 * Constructs a Sphere with the specified center and radius, and the given
@@ -31,47 +41,188 @@ public class Sphere extends Shape {
 		
 		this.center = center;
 		this.radius = radius;
+		
+		this.centerX = center.getX();
+		this.centerY = center.getY();
+		this.centerZ = center.getZ();
+		this.radiusSquared = Math.pow(radius, 2);
+	}
+	
+	/**
+	 * Constructs a Sphere whose geometry is kept by the subclass, i.e. a view
+	 * of a sphere stored elsewhere (See MappedScene). The subclass overrides
+	 * all the methods that read the geometry, with the static calculations of
+	 * this class.
+	 * @param properties          the shape properties of the sphere
+	 * @param shadingStrategy     the shading strategy of the sphere
+	 */
+	protected Sphere (Shape.Properties properties, ShadingStrategy shadingStrategy) {
+		super(properties, shadingStrategy);
+	}
+	
+	@Override
+	public double calculateHitTime (Ray ray) {
+		return calculateHitTime(ray, this.centerX, this.centerY, this.centerZ, this.radiusSquared);
+	}
+	
+	@Override
+	public void materializeHit (Ray ray, double timeHit, Shape.LocalCalculations calculations) {
+		materializeHit(ray, timeHit, this.centerX, this.centerY, this.centerZ, calculations);
 	}
 	
 	@Override
-	public Shape.LocalCalculations calculateIntersection (Ray ray) {
+	public boolean anyHit (Ray ray, double minTime, double maxTime) {
+		return anyHit(ray, minTime, maxTime, this.centerX, this.centerY, this.centerZ, this.radiusSquared);
+	}
+	
+	/**
+	 * Calculates the time at which the given ray first hits the sphere of the
+	 * given center and squared radius (See calculateHitTime(Ray)).
+	 * 
+	 * @param ray              the ray towards the sphere
+	 * @param centerX          the x coordinate of the center
+	 * @param centerY          the y coordinate of the center
+	 * @param centerZ          the z coordinate of the center
+	 * @param radiusSquared    the squared radius
+	 * @return                 the time of the hit, or Double.POSITIVE_INFINITY if the ray misses the sphere
+	 */
+	protected static double calculateHitTime (Ray ray, double centerX, double centerY, double centerZ, double radiusSquared) {
 		
 		// Vector mathematics, parametric surfaces, and linear algebra
 		// We are trying to see if the given ray hits this Sphere.
 		// See: http://en.wikipedia.org/wiki/Line%E2%80%93sphere_intersection
 		// for detailed information.
+		// The vectors d (direction), e (origin) and c (center) are expanded
+		// into their coordinates, so no Vector is allocated.
 		
-		Shape.LocalCalculations calculations = new Shape.LocalCalculations();
+		double dx = ray.getDirectionX();
+		double dy = ray.getDirectionY();
+		double dz = ray.getDirectionZ();
 		
-		Vector d = ray.getDirection();
-		Vector e = new Vector(ray.getOrigin());
-		Vector c = new Vector(this.center);
+		// e - c
+		double ecX = ray.getOriginX() - centerX;
+		double ecY = ray.getOriginY() - centerY;
+		double ecZ = ray.getOriginZ() - centerZ;
 
 		// Say hello to the quadratic formula! ( b +- sqrt(b^2 - 4ac) ) / 2a
-		double valueA = Vector.dotProduct(d, d);
-		double valueB = Vector.dotProduct(d, Vector.subtract(e, c));
-		double valueC = Vector.dotProduct(Vector.subtract(e, c), Vector.subtract(e, c)) - Math.pow(this.radius, 2);
+		double valueA = dx*dx + dy*dy + dz*dz;
+		double valueB = dx*ecX + dy*ecY + dz*ecZ;
+		double valueC = (ecX*ecX + ecY*ecY + ecZ*ecZ) - radiusSquared;
 		
-		double discriminant = Math.pow(valueB, 2) - (valueA * valueC);
+		double discriminant = valueB*valueB - (valueA * valueC);
 		
 		// If the discriminant is zero, the ray misses the sphere.
 		if (discriminant < 0) {
-			calculations.hits = false;
+			return Double.POSITIVE_INFINITY;
 		}
-		else {
-			double timeOne = ( (-1 * valueB) + Math.sqrt(discriminant) ) / (valueA);
-			double timeTwo = ( (-1 * valueB) - Math.sqrt(discriminant) ) / (valueA);
-			double time = (timeOne < timeTwo) ? timeOne : timeTwo;
-			
-			Vector position = Vector.add(e, Vector.multiply(d, time));
-			
-			calculations.point = new Point(position.getX(), position.getY(), position.getZ());
-			calculations.normal = Vector.multiply(Vector.subtract(position, c), 2);
-			calculations.hits = true;
-			calculations.timeHit = time;
+		
+		double timeOne = ( (-1 * valueB) + Math.sqrt(discriminant) ) / (valueA);
+		double timeTwo = ( (-1 * valueB) - Math.sqrt(discriminant) ) / (valueA);
+		
+		// Only the points in front of the ray origin are hit. Take the nearest 
+		// one; the farther one is only hit when the origin is inside the sphere.
+		double nearTime = Math.min(timeOne, timeTwo);
+		double farTime = Math.max(timeOne, timeTwo);
+		double time = (nearTime > 0) ? nearTime : farTime;
+		
+		return (time > 0) ? time : Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Computes the calculation information of the hit at the given time on the
+	 * sphere of the given center (See materializeHit(Ray, double, LocalCalculations)).
+	 * 
+	 * @param ray             the ray towards the sphere
+	 * @param timeHit         the time of the hit
+	 * @param centerX         the x coordinate of the center
+	 * @param centerY         the y coordinate of the center
+	 * @param centerZ         the z coordinate of the center
+	 * @param calculations    the data object to be filled with the calculation information
+	 */
+	protected static void materializeHit (Ray ray, double timeHit, double centerX, double centerY, double centerZ,
+			Shape.LocalCalculations calculations) {
+		
+		// position = e + d * time, normal = (position - c) * 2
+		calculations.pointX = ray.getOriginX() + ray.getDirectionX() * timeHit;
+		calculations.pointY = ray.getOriginY() + ray.getDirectionY() * timeHit;
+		calculations.pointZ = ray.getOriginZ() + ray.getDirectionZ() * timeHit;
+		calculations.normalX = (calculations.pointX - centerX) * 2;
+		calculations.normalY = (calculations.pointY - centerY) * 2;
+		calculations.normalZ = (calculations.pointZ - centerZ) * 2;
+		calculations.hits = true;
+		calculations.timeHit = timeHit;
+		calculations.reflect(ray);
+	}
+	
+	/**
+	 * Checks if the given ray hits the sphere of the given center and squared
+	 * radius within the open interval (minTime, maxTime) (See anyHit(Ray, double, double)).
+	 * 
+	 * @param ray              the ray towards the sphere
+	 * @param minTime          the start of the interval, exclusive
+	 * @param maxTime          the end of the interval, exclusive
+	 * @param centerX          the x coordinate of the center
+	 * @param centerY          the y coordinate of the center
+	 * @param centerZ          the z coordinate of the center
+	 * @param radiusSquared    the squared radius
+	 * @return                 true if the ray hits the sphere within the interval, false otherwise
+	 */
+	protected static boolean anyHit (Ray ray, double minTime, double maxTime,
+			double centerX, double centerY, double centerZ, double radiusSquared) {
+		
+		// Same quadratic as calculateIntersection, but either root in the
+		// interval is a hit, and no hit point is computed.
+		double dx = ray.getDirectionX();
+		double dy = ray.getDirectionY();
+		double dz = ray.getDirectionZ();
+		double ecX = ray.getOriginX() - centerX;
+		double ecY = ray.getOriginY() - centerY;
+		double ecZ = ray.getOriginZ() - centerZ;
+		
+		double valueA = dx*dx + dy*dy + dz*dz;
+		double valueB = dx*ecX + dy*ecY + dz*ecZ;
+		double valueC = (ecX*ecX + ecY*ecY + ecZ*ecZ) - radiusSquared;
+		
+		double discriminant = valueB*valueB - (valueA * valueC);
+		if (discriminant < 0) {
+			return false;
 		}
 		
-		return calculations;
+		double timeOne = ( (-1 * valueB) + Math.sqrt(discriminant) ) / (valueA);
+		double timeTwo = ( (-1 * valueB) - Math.sqrt(discriminant) ) / (valueA);
+		
+		return (timeOne > minTime && timeOne < maxTime) || 
+				(timeTwo > minTime && timeTwo < maxTime);
 	}
 	
+	@Override
+	public BoundingBox getBoundingBox () {
+		Point min = new Point(this.center.getX() - this.radius, 
+				this.center.getY() - this.radius, this.center.getZ() - this.radius);
+		Point max = new Point(this.center.getX() + this.radius, 
+				this.center.getY() + this.radius, this.center.getZ() + this.radius);
+		return new BoundingBox(min, max);
+	}
+	
+	@Override
+	public void fingerprint (Fingerprint fingerprint, Shape.Properties properties, ShadingStrategy shadingStrategy) {
+		super.fingerprint(fingerprint, properties, shadingStrategy);
+		fingerprint.add(this.center).add(this.radius);
+	}
+	
+	/**
+	 * Gets the center Point of this Sphere.
+	 * @return    the center of this Sphere
+	 */
+	public Point getCenter () {
+		return this.center;
+	}
+	
+	/**
+	 * Gets the radius of this Sphere.
+	 * @return    the radius of this Sphere
+	 */
+	public double getRadius () {
+		return this.radius;
+	}
 }
@@ -0,0 +1,204 @@
+package com.jinwroh.raytracer.geometric;
+
+import java.util.List;
+
+
+/**
+ * The SphereBatch class packs a list of spheres into parallel primitive arrays
+ * (structure of arrays): the x, y, z coordinates of the centers, and the
+ * squared radii. A ray is tested against a whole run of the batch at once by
+ * a kernel that only reads those arrays, which lets it test several spheres
+ * per instruction with the JDK Vector API.
+ *
+ * The Vector API is an incubator module of the JDK, which has to be enabled
+ * with --add-modules jdk.incubator.vector. Without it, the batch falls back
+ * to a scalar kernel over the same arrays. Both kernels compute the same
+ * times as Sphere.calculateHitTime, in the same order of operations.
+ *
+ * The batch is meant as the leaf primitive of an accelerator: the accelerator
+ * orders its spheres so that every leaf is a contiguous run of the batch.
+ * This is an immutable class.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public final class SphereBatch {
+
+	/**
+	 * The kernel used by all batches: the vectorized one if the Vector API is
+	 * available at runtime, the scalar one otherwise.
+	 */
+	private static final SphereKernel KERNEL = loadKernel();
+
+	/**
+	 * The packed centers and squared radii, and the spheres they came from.
+	 */
+	private final double[] centerX;
+	private final double[] centerY;
+	private final double[] centerZ;
+	private final double[] radiusSquared;
+	private final Sphere[] spheres;
+
+
+	/**
+	 * Constructs a SphereBatch over the given spheres, in the given order.
+	 * @param spheres    the spheres to be packed
+	 */
+	public SphereBatch (List<Sphere> spheres) {
+
+		int size = spheres.size();
+		this.spheres = spheres.toArray(new Sphere[size]);
+		this.centerX = new double[size];
+		this.centerY = new double[size];
+		this.centerZ = new double[size];
+		this.radiusSquared = new double[size];
+
+		for (int i = 0; i < size; i++) {
+			Sphere sphere = this.spheres[i];
+			this.centerX[i] = sphere.getCenter().getX();
+			this.centerY[i] = sphere.getCenter().getY();
+			this.centerZ[i] = sphere.getCenter().getZ();
+			this.radiusSquared[i] = Math.pow(sphere.getRadius(), 2);
+		}
+	}
+
+
+	/**
+	 * Checks if all of the given shapes are spheres, and can be packed into a batch.
+	 * @param shapes    the shapes to be checked
+	 * @return          true if every shape is a Sphere, false otherwise
+	 */
+	public static boolean accepts (List<? extends Shape> shapes) {
+		for (Shape shape : shapes) {
+			if (!(shape instanceof Sphere)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the batches use the vectorized kernel.
+	 * @return    true if the Vector API is available, false otherwise
+	 */
+	public static boolean isVectorized () {
+		return !(KERNEL instanceof ScalarSphereKernel);
+	}
+
+	/**
+	 * Finds the closest sphere in the run [start, end) of this batch hit by the
+	 * given ray, in front of the ray origin and closer than the given time.
+	 * Ties are won by the first sphere of the run.
+	 *
+	 * @param ray        the ray to be traced
+	 * @param start      the index of the first sphere of the run
+	 * @param end        the index after the last sphere of the run
+	 * @param maxTime    the time of the closest hit found so far
+	 * @param hit        the hit to be filled with the closest sphere
+	 * @return           true if a sphere closer than maxTime is hit, false otherwise
+	 */
+	public boolean closestHit (Ray ray, int start, int end, double maxTime, SphereBatch.Hit hit) {
+
+		return KERNEL.closestHit(this, start, end,
+				ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+				ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), maxTime, hit);
+	}
+
+	/**
+	 * Finds the closest sphere in the run [start, end) of this batch hit by each
+	 * of the rays [first, size) of the given packet, and updates the hit of the
+	 * ray if the sphere is closer than it. The rays are tested together, so the
+	 * spheres of the run are only loaded once for the whole packet.
+	 *
+	 * @param packet    the packet of rays to be traced
+	 * @param first     the index of the first ray of the packet to be tested
+	 * @param start     the index of the first sphere of the run
+	 * @param end       the index after the last sphere of the run
+	 */
+	public void closestHits (RayPacket packet, int first, int start, int end) {
+		KERNEL.closestHits(this, start, end, packet, first);
+	}
+
+	/**
+	 * Checks if any sphere in the run [start, end) of this batch is hit by the
+	 * given ray within the open interval (minTime, maxTime), and returns at the
+	 * first one found.
+	 *
+	 * @param ray        the ray to be traced
+	 * @param start      the index of the first sphere of the run
+	 * @param end        the index after the last sphere of the run
+	 * @param minTime    the start of the interval, exclusive
+	 * @param maxTime    the end of the interval, exclusive
+	 * @return           true if a sphere is hit within the interval, false otherwise
+	 */
+	public boolean anyHit (Ray ray, int start, int end, double minTime, double maxTime) {
+
+		return KERNEL.anyHit(this, start, end,
+				ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+				ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), minTime, maxTime);
+	}
+
+	/**
+	 * Gets the number of spheres in this batch.
+	 * @return    the number of spheres
+	 */
+	public int size () {
+		return this.spheres.length;
+	}
+
+	/**
+	 * Gets the sphere at the given index of this batch.
+	 * @param index    the index of the sphere
+	 * @return         the sphere at the index
+	 */
+	public Sphere getSphere (int index) {
+		return this.spheres[index];
+	}
+
+
+	/* Package-private accessors for the kernels */
+	double[] getCenterX () {
+		return this.centerX;
+	}
+
+	double[] getCenterY () {
+		return this.centerY;
+	}
+
+	double[] getCenterZ () {
+		return this.centerZ;
+	}
+
+	double[] getRadiusSquared () {
+		return this.radiusSquared;
+	}
+
+
+	/**
+	 * Loads the vectorized kernel if the Vector API can be linked, and the
+	 * scalar kernel otherwise.
+	 */
+	private static SphereKernel loadKernel () {
+		try {
+			Class<?> kernel = Class.forName("com.jinwroh.raytracer.geometric.VectorSphereKernel");
+			return (SphereKernel) kernel.getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+			return new ScalarSphereKernel();
+		}
+	}
+
+
+	/**
+	 * Hit inner class bundles up the result of a batch query: the index of the
+	 * closest sphere in the batch, and the time at which it is hit. A single
+	 * Hit is meant to be reused by the caller for many queries.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	public static class Hit {
+		public int index;
+		public double timeHit;
+	}
+}
@@ -0,0 +1,42 @@
+package com.jinwroh.raytracer.geometric;
+
+
+/**
+ * The SphereKernel interface encapsulates the ray intersection test over a
+ * run of a SphereBatch. See SphereBatch.closestHit for the contract.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+interface SphereKernel {
+
+	/**
+	 * Finds the closest sphere in the run [start, end) of the batch hit by the
+	 * ray, in front of the ray origin and closer than the given time.
+	 *
+	 * @return    true if a sphere closer than maxTime is hit, false otherwise
+	 */
+	boolean closestHit (SphereBatch batch, int start, int end,
+			double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ,
+			double maxTime, SphereBatch.Hit hit);
+
+	/**
+	 * Checks if any sphere in the run [start, end) of the batch is hit by the
+	 * ray within the open interval (minTime, maxTime).
+	 *
+	 * @return    true at the first sphere hit within the interval, false otherwise
+	 */
+	boolean anyHit (SphereBatch batch, int start, int end,
+			double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ,
+			double minTime, double maxTime);
+
+	/**
+	 * Updates the hit of each ray [first, size) of the packet with the closest
+	 * sphere in the run [start, end) of the batch that the ray hits, in front
+	 * of its origin and closer than its current hit.
+	 */
+	void closestHits (SphereBatch batch, int start, int end, RayPacket packet, int first);
+
+}
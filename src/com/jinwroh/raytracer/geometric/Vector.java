@@ -14,12 +14,13 @@ package com.jinwroh.raytracer.geometric;
 public class Vector {
 
 	/**
-	 * x, y, z represents the vector's direction.
+	 * x, y, z represents the vector's direction. The magnitude is only computed
+	 * when it is first needed; a negative magnitude means it is not computed yet.
 	 */
 	private double x;
 	private double y;
 	private double z;
-	private double magnitude;
+	private double magnitude = -1.0;
 	
 	
 	/**
@@ -60,7 +61,6 @@ public class Vector {
 		this.x = x;
 		this.y = y;
 		this.z = z;
-		this.magnitude = Math.sqrt(Math.pow(this.x, 2) + Math.pow(this.y, 2) + Math.pow(this.z, 2));
 	}
 	
 	
@@ -93,6 +93,9 @@ public class Vector {
 	 * @return	the magnitude of the Vector
 	 */
 	public double getMagnitude () {
+		if (this.magnitude < 0) {
+			this.magnitude = magnitude(this.x, this.y, this.z);
+		}
 		return this.magnitude;
 	}
 	
@@ -101,13 +104,27 @@ public class Vector {
 	 * Mutates the vector into a unit vector (normalization).
 	 */
 	public void normalize () {
-		this.x /= this.magnitude;
-		this.y /= this.magnitude;
-		this.z /= this.magnitude;
+		double magnitude = this.getMagnitude();
+		this.x /= magnitude;
+		this.y /= magnitude;
+		this.z /= magnitude;
 		this.magnitude = 1.0;
 	}
 	
 	
+	/**
+	 * Computes the magnitude of the vector with the given x, y, z coordinates,
+	 * without constructing a Vector.
+	 * @param x	the x-coordinate of the direction
+	 * @param y	the y-coordinate of the direction
+	 * @param z	the z-coordinate of the direction
+	 * @return	the magnitude of the vector
+	 */
+	public static double magnitude (double x, double y, double z) {
+		return Math.sqrt(x*x + y*y + z*z);
+	}
+	
+	
 	/**
 	 * Computes the dot product (inner product) of two given vectors.
 	 * @param a	First vector
@@ -162,7 +179,7 @@ public class Vector {
 	@Override
 	public String toString () {
 		String output = "Vector: (" + this.x + ", " + this.y + ", " + this.z + ")";
-		output += "\tMagnitude: " + this.magnitude;
+		output += "\tMagnitude: " + this.getMagnitude();
 		return output;
 	}
 }
@@ -0,0 +1,229 @@
+package com.jinwroh.raytracer.geometric;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * The VectorSphereKernel class tests as many spheres of a batch at once as
+ * the preferred vector shape of the CPU holds doubles (i.e. 4 with AVX2, 8
+ * with AVX-512), with the JDK Vector API. The spheres left over at the end
+ * of a run are tested one at a time.
+ *
+ * This class is only loaded when the jdk.incubator.vector module is enabled
+ * (See SphereBatch).
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class VectorSphereKernel implements SphereKernel {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private final ScalarSphereKernel tail = new ScalarSphereKernel();
+
+
+	@Override
+	public boolean closestHit (SphereBatch batch, int start, int end,
+			double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ,
+			double maxTime, SphereBatch.Hit hit) {
+
+		double[] centerX = batch.getCenterX();
+		double[] centerY = batch.getCenterY();
+		double[] centerZ = batch.getCenterZ();
+		double[] radiusSquared = batch.getRadiusSquared();
+
+		double valueA = directionX * directionX + directionY * directionY + directionZ * directionZ;
+		double bestTimeHit = maxTime;
+		int bestIndex = -1;
+
+		int lanes = SPECIES.length();
+		int i = start;
+
+		for (; i + lanes <= end; i += lanes) {
+
+			// Same quadratic as Sphere.calculateHitTime, one sphere per lane
+			DoubleVector ecX = DoubleVector.broadcast(SPECIES, originX).sub(DoubleVector.fromArray(SPECIES, centerX, i));
+			DoubleVector ecY = DoubleVector.broadcast(SPECIES, originY).sub(DoubleVector.fromArray(SPECIES, centerY, i));
+			DoubleVector ecZ = DoubleVector.broadcast(SPECIES, originZ).sub(DoubleVector.fromArray(SPECIES, centerZ, i));
+
+			DoubleVector valueB = ecX.mul(directionX).add(ecY.mul(directionY)).add(ecZ.mul(directionZ));
+			DoubleVector valueC = ecX.mul(ecX).add(ecY.mul(ecY)).add(ecZ.mul(ecZ))
+					.sub(DoubleVector.fromArray(SPECIES, radiusSquared, i));
+			DoubleVector discriminant = valueB.mul(valueB).sub(valueC.mul(valueA));
+
+			VectorMask<Double> hits = discriminant.compare(VectorOperators.GE, 0.0);
+			if (!hits.anyTrue()) {
+				continue;
+			}
+
+			DoubleVector root = discriminant.lanewise(VectorOperators.SQRT);
+			DoubleVector negativeB = valueB.neg();
+			DoubleVector timeOne = negativeB.add(root).div(valueA);
+			DoubleVector timeTwo = negativeB.sub(root).div(valueA);
+			DoubleVector nearTime = timeOne.min(timeTwo);
+			DoubleVector farTime = timeOne.max(timeTwo);
+			DoubleVector time = farTime.blend(nearTime, nearTime.compare(VectorOperators.GT, 0.0));
+
+			hits = hits.and(time.compare(VectorOperators.GT, 0.0))
+					.and(time.compare(VectorOperators.LT, bestTimeHit));
+			if (!hits.anyTrue()) {
+				continue;
+			}
+
+			// The closest lane; the first lane wins a tie, like the scalar loop
+			double laneBest = time.blend(Double.POSITIVE_INFINITY, hits.not()).reduceLanes(VectorOperators.MIN);
+			int lane = time.compare(VectorOperators.EQ, laneBest).and(hits).firstTrue();
+			bestTimeHit = laneBest;
+			bestIndex = i + lane;
+		}
+
+		if (this.tail.closestHit(batch, i, end, originX, originY, originZ,
+				directionX, directionY, directionZ, bestTimeHit, hit)) {
+			return true;
+		}
+
+		if (bestIndex < 0) {
+			return false;
+		}
+		hit.index = bestIndex;
+		hit.timeHit = bestTimeHit;
+		return true;
+	}
+
+	@Override
+	public boolean anyHit (SphereBatch batch, int start, int end,
+			double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ,
+			double minTime, double maxTime) {
+
+		double[] centerX = batch.getCenterX();
+		double[] centerY = batch.getCenterY();
+		double[] centerZ = batch.getCenterZ();
+		double[] radiusSquared = batch.getRadiusSquared();
+
+		double valueA = directionX * directionX + directionY * directionY + directionZ * directionZ;
+
+		int lanes = SPECIES.length();
+		int i = start;
+
+		for (; i + lanes <= end; i += lanes) {
+
+			DoubleVector ecX = DoubleVector.broadcast(SPECIES, originX).sub(DoubleVector.fromArray(SPECIES, centerX, i));
+			DoubleVector ecY = DoubleVector.broadcast(SPECIES, originY).sub(DoubleVector.fromArray(SPECIES, centerY, i));
+			DoubleVector ecZ = DoubleVector.broadcast(SPECIES, originZ).sub(DoubleVector.fromArray(SPECIES, centerZ, i));
+
+			DoubleVector valueB = ecX.mul(directionX).add(ecY.mul(directionY)).add(ecZ.mul(directionZ));
+			DoubleVector valueC = ecX.mul(ecX).add(ecY.mul(ecY)).add(ecZ.mul(ecZ))
+					.sub(DoubleVector.fromArray(SPECIES, radiusSquared, i));
+			DoubleVector discriminant = valueB.mul(valueB).sub(valueC.mul(valueA));
+
+			VectorMask<Double> hits = discriminant.compare(VectorOperators.GE, 0.0);
+			if (!hits.anyTrue()) {
+				continue;
+			}
+
+			DoubleVector root = discriminant.lanewise(VectorOperators.SQRT);
+			DoubleVector negativeB = valueB.neg();
+			DoubleVector timeOne = negativeB.add(root).div(valueA);
+			DoubleVector timeTwo = negativeB.sub(root).div(valueA);
+
+			// Either root within the interval is a hit
+			VectorMask<Double> oneInside = timeOne.compare(VectorOperators.GT, minTime)
+					.and(timeOne.compare(VectorOperators.LT, maxTime));
+			VectorMask<Double> twoInside = timeTwo.compare(VectorOperators.GT, minTime)
+					.and(timeTwo.compare(VectorOperators.LT, maxTime));
+			if (hits.and(oneInside.or(twoInside)).anyTrue()) {
+				return true;
+			}
+		}
+
+		return this.tail.anyHit(batch, i, end, originX, originY, originZ,
+				directionX, directionY, directionZ, minTime, maxTime);
+	}
+
+	@Override
+	public void closestHits (SphereBatch batch, int start, int end, RayPacket packet, int first) {
+
+		double[] centerX = batch.getCenterX();
+		double[] centerY = batch.getCenterY();
+		double[] centerZ = batch.getCenterZ();
+		double[] radiusSquared = batch.getRadiusSquared();
+
+		double[] timeHits = packet.getTimeHits();
+		Shape[] shapes = packet.getShapes();
+
+		int lanes = SPECIES.length();
+		int last = packet.size();
+		int r = first;
+
+		// One ray per lane: the rays are loaded once, and every sphere of the
+		// run is broadcast to all of them.
+		for (; r + lanes <= last; r += lanes) {
+
+			DoubleVector originX = DoubleVector.fromArray(SPECIES, packet.getOriginX(), r);
+			DoubleVector originY = DoubleVector.fromArray(SPECIES, packet.getOriginY(), r);
+			DoubleVector originZ = DoubleVector.fromArray(SPECIES, packet.getOriginZ(), r);
+			DoubleVector directionX = DoubleVector.fromArray(SPECIES, packet.getDirectionX(), r);
+			DoubleVector directionY = DoubleVector.fromArray(SPECIES, packet.getDirectionY(), r);
+			DoubleVector directionZ = DoubleVector.fromArray(SPECIES, packet.getDirectionZ(), r);
+			DoubleVector valueA = directionX.mul(directionX).add(directionY.mul(directionY)).add(directionZ.mul(directionZ));
+
+			DoubleVector bestTimeHit = DoubleVector.fromArray(SPECIES, timeHits, r);
+			DoubleVector bestIndex = DoubleVector.broadcast(SPECIES, -1.0);
+			boolean improved = false;
+
+			for (int i = start; i < end; i++) {
+
+				// Same quadratic as Sphere.calculateHitTime, one ray per lane
+				DoubleVector ecX = originX.sub(centerX[i]);
+				DoubleVector ecY = originY.sub(centerY[i]);
+				DoubleVector ecZ = originZ.sub(centerZ[i]);
+
+				DoubleVector valueB = directionX.mul(ecX).add(directionY.mul(ecY)).add(directionZ.mul(ecZ));
+				DoubleVector valueC = ecX.mul(ecX).add(ecY.mul(ecY)).add(ecZ.mul(ecZ)).sub(radiusSquared[i]);
+				DoubleVector discriminant = valueB.mul(valueB).sub(valueA.mul(valueC));
+
+				VectorMask<Double> hits = discriminant.compare(VectorOperators.GE, 0.0);
+				if (!hits.anyTrue()) {
+					continue;
+				}
+
+				DoubleVector root = discriminant.lanewise(VectorOperators.SQRT);
+				DoubleVector negativeB = valueB.neg();
+				DoubleVector timeOne = negativeB.add(root).div(valueA);
+				DoubleVector timeTwo = negativeB.sub(root).div(valueA);
+				DoubleVector nearTime = timeOne.min(timeTwo);
+				DoubleVector farTime = timeOne.max(timeTwo);
+				DoubleVector time = farTime.blend(nearTime, nearTime.compare(VectorOperators.GT, 0.0));
+
+				hits = hits.and(time.compare(VectorOperators.GT, 0.0))
+						.and(time.compare(VectorOperators.LT, bestTimeHit));
+				if (!hits.anyTrue()) {
+					continue;
+				}
+
+				bestTimeHit = bestTimeHit.blend(time, hits);
+				bestIndex = bestIndex.blend((double) i, hits);
+				improved = true;
+			}
+
+			if (!improved) {
+				continue;
+			}
+
+			bestTimeHit.intoArray(timeHits, r);
+			for (int lane = 0; lane < lanes; lane++) {
+				int index = (int) bestIndex.lane(lane);
+				if (index >= 0) {
+					shapes[r + lane] = batch.getSphere(index);
+				}
+			}
+		}
+
+		this.tail.closestHits(batch, start, end, packet, r, last);
+	}
+}
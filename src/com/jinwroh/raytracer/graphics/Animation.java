@@ -0,0 +1,355 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.SphereBatch;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+import com.jinwroh.raytracer.strategy.acceleration.BoundingVolumeHierarchy;
+
+
+/**
+ * The Animation class renders a sequence of frames of a Scene with a Camera,
+ * in a single run, instead of a render from scratch per frame. Before each
+ * frame, a Script updates the scene for that frame: it moves spheres (See
+ * moveSphere), turns the lights (Light.setDirection) or flicks them
+ * (Light.flick), and the finished frame is handed to a Listener.
+ *
+ * The frames are pipelined: while the camera traces a frame, the next frame
+ * is set up on a thread of its own, i.e. its script is run, the scene is
+ * compiled, and its accelerator is made. The frame being traced only reads its
+ * compiled snapshot (See Scene.compile), so the script is free to edit the
+ * scene meanwhile. For the same reason, a sphere is moved by replacing it
+ * (See Scene.setShape), never by editing it, and the properties of a shape
+ * are replaced rather than edited.
+ *
+ * Only a bounding volume hierarchy can be refit, so an animation builds one,
+ * unless the camera requests another type of accelerator. When the next frame
+ * has the same number of shapes, the hierarchy is refit over the moved shapes
+ * instead of rebuilt (See BoundingVolumeHierarchy.refit), which
+ * takes time linear in the shapes. A refit tree gets worse as the shapes move
+ * away from where it was built, so the hierarchy is rebuilt once its cost grows
+ * past the rebuild threshold times the cost of the last build (See
+ * BoundingVolumeHierarchy.getCost), or once shapes are added or removed. The
+ * other accelerators are rebuilt every frame, and the accelerator cache of the
+ * camera is not used, since the shapes move. The selection report of the
+ * camera tells a refit from a build.
+ *
+ * The settings of the camera must not be changed during a render.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class Animation {
+
+	private final Camera camera;
+	private final Scene scene;
+
+	/**
+	 * The cost ratio above which the hierarchy is rebuilt rather than refit.
+	 */
+	private double rebuildThreshold = 1.5;
+
+	/**
+	 * The hierarchy the next frame is refit from, or null to build the next
+	 * accelerator, and the cost of the hierarchy when it was last built.
+	 */
+	private BoundingVolumeHierarchy hierarchy;
+	private double builtCost;
+
+	/**
+	 * The counts of the last render: the frames, the accelerators refit and
+	 * built, and the time spent setting up the frames, tracing them, and in
+	 * total.
+	 */
+	private int frameCount;
+	private int refitCount;
+	private int buildCount;
+	private long setupTime;
+	private long traceTime;
+	private long totalTime;
+
+
+	/**
+	 * Script interface updates the scene of an animation for a frame.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	public interface Script {
+
+		/**
+		 * Updates the scene for the given frame, before the frame is set up.
+		 * The script is called for the frames in order, on the thread that
+		 * sets them up.
+		 *
+		 * @param animation    the animation, whose scene is to be updated
+		 * @param frame        the index of the frame, from zero
+		 */
+		public void update (Animation animation, int frame);
+	}
+
+	/**
+	 * Listener interface receives the frames of an animation as they are
+	 * finished.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	public interface Listener {
+
+		/**
+		 * Receives a finished frame, on the thread that called render. The
+		 * next frame is traced into a new frame buffer, so the frame buffer
+		 * may be kept.
+		 *
+		 * @param frameBuffer    the pixels of the frame
+		 * @param frame          the index of the frame, from zero
+		 * @param frameCount     the number of frames of the render
+		 */
+		public void frameFinished (FrameBuffer frameBuffer, int frame, int frameCount);
+	}
+
+
+	/**
+	 * Constructs an Animation of the given scene, rendered with the given
+	 * camera.
+	 *
+	 * @param camera    the camera the frames are shot with
+	 * @param scene     the scene updated by the script
+	 */
+	public Animation (Camera camera, Scene scene) {
+		this.camera = camera;
+		this.scene = scene;
+	}
+
+
+	/**
+	 * Renders the given number of frames: each frame is updated by the script,
+	 * shot by the camera, and handed to the listener. The setup of a frame
+	 * overlaps the trace of the frame before it.
+	 *
+	 * @param frameCount    the number of frames
+	 * @param script        the script updating the scene before each frame
+	 * @param listener      the listener of the finished frames
+	 */
+	public void render (int frameCount, Script script, Listener listener) {
+
+		if (frameCount < 0) {
+			throw new IllegalArgumentException("Frame count must not be negative");
+		}
+
+		this.hierarchy = null;
+		this.frameCount = 0;
+		this.refitCount = 0;
+		this.buildCount = 0;
+		this.setupTime = 0;
+		this.traceTime = 0;
+		long start = System.nanoTime();
+
+		ExecutorService setupThread = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "animation-setup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			Future<Shot> next = (frameCount > 0) ? setupThread.submit(() -> this.setUp(script, 0)) : null;
+
+			for (int frame = 0; frame < frameCount; frame++) {
+				Shot shot = await(next);
+				int nextFrame = frame + 1;
+				next = (nextFrame < frameCount) ? setupThread.submit(() -> this.setUp(script, nextFrame)) : null;
+
+				long traceStart = System.nanoTime();
+				this.camera.shoot(shot);
+				this.traceTime += System.nanoTime() - traceStart;
+				this.frameCount++;
+
+				listener.frameFinished(this.camera.getFrameBuffer(), frame, frameCount);
+			}
+		}
+		finally {
+			setupThread.shutdownNow();
+			this.hierarchy = null;
+			this.totalTime = System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Moves the sphere of the given ID to the given center, by replacing it
+	 * with a sphere of the same radius, properties and shading strategy (See
+	 * Scene.setShape). Meant to be called by the script.
+	 *
+	 * @param shapeId    the unique shape id of the sphere
+	 * @param center     the new center of the sphere
+	 * @throws IllegalArgumentException    if the scene has no sphere of the given id
+	 */
+	public void moveSphere (int shapeId, Point center) {
+		Shape shape = this.scene.getShape(shapeId);
+		if (!(shape instanceof Sphere)) {
+			throw new IllegalArgumentException("No sphere of id " + shapeId);
+		}
+		Sphere sphere = (Sphere) shape;
+		this.scene.setShape(shapeId, new Sphere(center, sphere.getRadius(), sphere.getProperties(), sphere.getShadingStrategy()));
+	}
+
+	/**
+	 * Gets the scene of the animation.
+	 * @return    the scene
+	 */
+	public Scene getScene () {
+		return this.scene;
+	}
+
+	/**
+	 * Gets the camera the frames are shot with.
+	 * @return    the camera
+	 */
+	public Camera getCamera () {
+		return this.camera;
+	}
+
+	/**
+	 * Gets the cost ratio above which the hierarchy is rebuilt rather than refit.
+	 * @return    the rebuild threshold
+	 */
+	public double getRebuildThreshold () {
+		return this.rebuildThreshold;
+	}
+
+	/**
+	 * Sets the cost ratio above which the hierarchy is rebuilt rather than refit:
+	 * a refit hierarchy is kept while its cost is at most the threshold times
+	 * the cost of the last built one. A threshold of zero rebuilds every frame.
+	 * @param rebuildThreshold    the rebuild threshold
+	 */
+	public void setRebuildThreshold (double rebuildThreshold) {
+		if (rebuildThreshold < 0) {
+			throw new IllegalArgumentException("Rebuild threshold must not be negative");
+		}
+		this.rebuildThreshold = rebuildThreshold;
+	}
+
+	/**
+	 * Gets the number of frames finished by the last render.
+	 * @return    the number of frames
+	 */
+	public int getFrameCount () {
+		return this.frameCount;
+	}
+
+	/**
+	 * Gets the number of accelerators refit by the last render.
+	 * @return    the number of refits
+	 */
+	public int getRefitCount () {
+		return this.refitCount;
+	}
+
+	/**
+	 * Gets the number of accelerators built by the last render.
+	 * @return    the number of builds
+	 */
+	public int getBuildCount () {
+		return this.buildCount;
+	}
+
+	@Override
+	public String toString () {
+		return String.format("Animation: %d frames in %.2f ms, %d accelerators built, %d refit"
+				+ "\n\tSetup: %.2f ms, trace: %.2f ms, overlapped: %.2f ms",
+				this.frameCount, this.totalTime / 1e6, this.buildCount, this.refitCount,
+				this.setupTime / 1e6, this.traceTime / 1e6,
+				Math.max(0, this.setupTime + this.traceTime - this.totalTime) / 1e6);
+	}
+
+
+	/**
+	 * Sets up the given frame: runs the script, compiles the scene, and refits
+	 * or builds the accelerator. Runs on the setup thread.
+	 */
+	private Shot setUp (Script script, int frame) {
+
+		long start = System.nanoTime();
+		script.update(this, frame);
+		CompiledScene compiled = this.scene.compile();
+		Shot shot = this.camera.createShot(compiled, this.selectAccelerator(compiled.getShapes()));
+		this.setupTime += System.nanoTime() - start;
+		return shot;
+	}
+
+	/**
+	 * Refits the hierarchy of the last frame over the given shapes, or builds
+	 * a new accelerator if there is no hierarchy to refit, if the shapes cannot
+	 * be refit, or if the refit hierarchy costs too much.
+	 */
+	private AcceleratorSelector.Selection selectAccelerator (List<Shape> shapes) {
+
+		long start = System.nanoTime();
+		BoundingVolumeHierarchy last = this.hierarchy;
+		if (last != null && last.getShapeCount() == shapes.size()
+				&& (!last.isPacked() || SphereBatch.accepts(shapes))) {
+
+			BoundingVolumeHierarchy refit = last.refit(shapes);
+			double ratio = (this.builtCost > 0) ? refit.getCost() / this.builtCost : 1.0;
+
+			if (ratio <= this.rebuildThreshold) {
+				AcceleratorSelector.Selection selection = new AcceleratorSelector.Selection();
+				selection.accelerator = refit;
+				selection.type = AcceleratorSelector.Type.BOUNDING_VOLUME_HIERARCHY;
+				selection.reason = String.format("refit, %.2fx the cost of the last build", ratio);
+				selection.buildTime = System.nanoTime() - start;
+				selection.shapeCount = shapes.size();
+				this.hierarchy = refit;
+				this.refitCount++;
+				return selection;
+			}
+		}
+
+		AcceleratorSelector.Type type = this.camera.getAcceleratorType();
+		boolean automatic = (type == AcceleratorSelector.Type.AUTOMATIC);
+		AcceleratorSelector.Selection selection = AcceleratorSelector.select(
+				automatic ? AcceleratorSelector.Type.BOUNDING_VOLUME_HIERARCHY : type, shapes);
+		if (automatic) {
+			selection.reason = "animation, can be refit";
+		}
+		if (selection.accelerator instanceof BoundingVolumeHierarchy) {
+			this.hierarchy = (BoundingVolumeHierarchy) selection.accelerator;
+			this.builtCost = this.hierarchy.getCost();
+		}
+		else {
+			this.hierarchy = null;
+		}
+		this.buildCount++;
+		return selection;
+	}
+
+	/**
+	 * Waits for the setup of a frame, and throws what the setup threw.
+	 */
+	private static Shot await (Future<Shot> setup) {
+		try {
+			return setup.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while setting up a frame", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.jinwroh.raytracer.graphics;
+
+
+/**
+ * The ArrayFrameBuffer class is a concrete implementation of the FrameBuffer
+ * interface, backed by a single flat primitive int array on the heap. The
+ * pixels are stored row by row: the pixel x, y is at index y * width + x.
+ *
+ * Memory footprint: each pixel takes 4 bytes. A list of Pixel objects takes
+ * about 68 bytes per pixel on a 64 bit JVM with compressed references (a
+ * 24 byte Pixel, a 40 byte Color and a 4 byte list slot, plus the list's
+ * growth slack). Measured at 3840 x 2160, that is about 33 MB against 567 MB.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class ArrayFrameBuffer implements FrameBuffer {
+
+	/**
+	 * The dimensions of the frame buffer, and the packed RGB values.
+	 */
+	private final int width;
+	private final int height;
+	private final int[] pixels;
+
+
+	/**
+	 * Constructs a black ArrayFrameBuffer with the given dimensions.
+	 * @param width     the width of the frame buffer, in pixels
+	 * @param height    the height of the frame buffer, in pixels
+	 */
+	public ArrayFrameBuffer (int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.pixels = new int[width * height];
+	}
+
+
+	@Override
+	public int getWidth () {
+		return this.width;
+	}
+
+	@Override
+	public int getHeight () {
+		return this.height;
+	}
+
+	@Override
+	public int getRGB (int x, int y) {
+		return this.pixels[y * this.width + x];
+	}
+
+	@Override
+	public void setRGB (int x, int y, int rgb) {
+		this.pixels[y * this.width + x] = rgb;
+	}
+
+	@Override
+	public void getRow (int y, int[] rgb, int offset) {
+		System.arraycopy(this.pixels, y * this.width, rgb, offset, this.width);
+	}
+}
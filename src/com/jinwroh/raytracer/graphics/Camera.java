@@ -1,17 +1,17 @@
 package com.jinwroh.raytracer.graphics;
 
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
-import javax.imageio.ImageIO;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
 
 import com.jinwroh.raytracer.geometric.Point;
-import com.jinwroh.raytracer.geometric.Ray;
-import com.jinwroh.raytracer.geometric.Shape;
-import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorCache;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
 
 
 /**
@@ -32,13 +32,84 @@ public class Camera {
 	 * The window is related to the actual output of the camera - it contains
 	 * information for the sample size.
 	 * 
-	 * The pixels list serve as a buffer for all the computed pixels.
+	 * The frame buffer holds all the computed pixels, indexed by x, y.
 	 */
 	private Point eye;
 	private Viewport viewport;
 	private Window window;
 	
-	private ArrayList<Pixel> pixels = new ArrayList<Pixel>();
+	private FrameBuffer frameBuffer;
+	
+	/**
+	 * The file the frame buffer is mapped from (See MappedFrameBuffer), or null
+	 * to hold the frame buffer on the heap.
+	 */
+	private File frameBufferFile;
+	
+	/**
+	 * The number of threads used to render the scene, and the pixel size of
+	 * the square tiles the Window is split into when rendering in parallel.
+	 * A single thread renders the scene serially, sample by sample.
+	 */
+	private int threadCount = 1;
+	private int tileSize = 32;
+	
+	/**
+	 * The pool the tiles are rendered on, shared with other cameras, or null
+	 * for a pool of threadCount threads of the camera's own.
+	 */
+	private ForkJoinPool renderPool;
+	
+	/**
+	 * The pixel size of the square blocks of samples traced together as a ray
+	 * packet (See Tracer.trace). A packet size of one traces every ray alone.
+	 */
+	private int packetSize = 1;
+	
+	/**
+	 * The type of accelerator built over the shapes of the scene, the cache
+	 * the accelerator is loaded from, or null to always build it, and the 
+	 * selection report of the last shot scene.
+	 */
+	private AcceleratorSelector.Type acceleratorType = AcceleratorSelector.Type.AUTOMATIC;
+	private AcceleratorCache acceleratorCache;
+	private AcceleratorSelector.Selection acceleratorSelection;
+	
+	/**
+	 * The limits on the secondary rays traced by the render, and the counts of
+	 * the rays traced by the last shot scene.
+	 */
+	private TraceLimits traceLimits = new TraceLimits();
+	private TraceStatistics traceStatistics;
+	
+	/**
+	 * The adaptive supersampling of the render: the maximum number of samples
+	 * of a pixel, and the color difference above which two samples contrast
+	 * (See PixelRefiner). A max of one sample turns the supersampling off.
+	 */
+	private int maxSamples = 1;
+	private double contrastThreshold = 0.1;
+	
+	/**
+	 * The listener of the passes of a progressive render, or null to render
+	 * in a single pass.
+	 */
+	private ProgressListener progressListener;
+	
+	/**
+	 * The file the finished tiles of the render are kept in, so the render
+	 * can be resumed after a crash (See Checkpoint), or null for no checkpoint,
+	 * and the number of tiles of the last shot restored from the file.
+	 */
+	private File checkpointFile;
+	private int restoredTileCount;
+	
+	/**
+	 * Whether the shots keep what the first sample of each pixel hit, and the
+	 * geometry buffer of the last shot that kept it, or null (See relight).
+	 */
+	private boolean geometryBufferEnabled;
+	private GeometryBuffer geometryBuffer;
 	
 	
 	/**
@@ -56,85 +127,716 @@ public class Camera {
 	
 	/**
 	 * Generates rays directed towards the raytracing scene. The computed
-	 * pixels are stored in the pixels buffer list.
+	 * pixels are written into a new frame buffer of the Window size.
+	 * The scene is compiled once, and only the compiled snapshot is rendered,
+	 * so editing the scene during the shot does not affect it (See Scene.compile).
+	 * An accelerator is built over the shapes of the scene once, and is used
+	 * by all the rays (See AcceleratorSelector). The trace limits are copied
+	 * for the shot as well.
+	 * 
+	 * With a progress listener, the scene is rendered progressively, in passes
+	 * from coarse to fine, and each pass is handed to the listener as soon as
+	 * it is done (See setProgressListener). With more than one sample per pixel
+	 * (See setMaxSamples), the pixels are refined in a last pass, once the first
+	 * samples of all the pixels are known.
+	 * 
+	 * With a checkpoint file, the tiles of the final pass are appended to the
+	 * file as they are finished, and the tiles already in the file are not
+	 * rendered again (See setCheckpointFile).
 	 * 
 	 * @param scene    the scene to which all rays are directed.
 	 */
 	public void shoot (Scene scene) {
+		this.shoot(scene, (PngWriter) null);
+	}
+	
+	/**
+	 * Generates rays directed towards the raytracing scene, like shoot does,
+	 * and streams the image to the given stream as a PNG while it is rendered:
+	 * the rows of tiles are encoded as soon as all their tiles are final (See
+	 * PngWriter), on as many threads as the render. The stream is not closed.
+	 * 
+	 * @param scene    the scene to which all rays are directed.
+	 * @param out      the stream the PNG is written to
+	 * @throws IOException    if the stream cannot be written
+	 */
+	public void shoot (Scene scene, OutputStream out) throws IOException {
 		
-		Sampler sampler = new Sampler(this.viewport, this.window.getWidth(), this.window.getHeight());
+		try (PngWriter writer = new PngWriter(out, this.window.getWidth(), this.window.getHeight(), this.threadCount)) {
+			this.shoot(scene, writer);
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Shoots the scene, and streams the final rows of the image to the given
+	 * writer, if any.
+	 * 
+	 * @param scene     the scene to which all rays are directed.
+	 * @param writer    the writer of the rows of the image, or null
+	 */
+	private void shoot (Scene scene, PngWriter writer) {
+		this.render(this.prepareShot(scene), writer);
+	}
+	
+	/**
+	 * Shoots a shot made by createShot, like shoot does (See Animation).
+	 * 
+	 * @param shot    the render inputs of the shot
+	 */
+	void shoot (Shot shot) {
+		this.beginShot(shot);
+		this.render(shot, null);
+	}
+	
+	/**
+	 * Renders the given shot into the frame buffer (See ShotRenderer), and
+	 * streams the final rows of the image to the given writer, if any. The shot
+	 * must have begun (See beginShot).
+	 * 
+	 * @param shot      the render inputs of the shot
+	 * @param writer    the writer of the rows of the image, or null
+	 */
+	private void render (Shot shot, PngWriter writer) {
+		
+		this.restoredTileCount = 0;
+		ShotRenderer renderer = new ShotRenderer(this, shot);
+		renderer.render(writer);
+		this.restoredTileCount = renderer.getRestoredTileCount();
+		
+		// The tiles restored from a checkpoint are not in the geometry buffer
+		GeometryBuffer geometry = shot.getGeometry();
+		if (geometry != null && !shot.isRelight() && this.restoredTileCount == 0) {
+			geometry.setSource(shot.getScene().getShapes(), shot.getSelection(), this.viewFingerprint());
+			this.geometryBuffer = geometry;
+		}
+	}
+	
+	/**
+	 * Shoots the scene again after its lights or the materials of its shapes
+	 * were edited, like shoot does, but shades the hits kept in the geometry
+	 * buffer of the last shot instead of tracing the primary rays again (See
+	 * setGeometryBufferEnabled). The hits are shaded tile by tile, in parallel
+	 * like a render, with the accelerator of the last shot: the shadow rays
+	 * and the reflected and refracted rays of the hits are traced as usual,
+	 * and with supersampling, the pixels whose first samples contrast are
+	 * refined as usual. The image is the same as shoot would render.
+	 * 
+	 * The hits are only kept for the shapes they were found in: if a shape
+	 * was added, removed or replaced since, if the eye, the viewport or the
+	 * window of the camera changed, or if there is no geometry buffer, the
+	 * scene is shot from scratch instead. The Properties and the shading
+	 * strategies of the shapes, the lights, the trace limits and the sampling
+	 * may all change.
+	 * 
+	 * @param scene    the scene to which all rays are directed.
+	 * @return         true if the hits of the geometry buffer were shaded, false if the scene was shot from scratch
+	 */
+	public boolean relight (Scene scene) {
+		
+		CompiledScene compiled = scene.compile();
+		GeometryBuffer geometry = this.geometryBuffer;
+		boolean valid = geometry != null && geometry.isValidFor(compiled.getShapes(), this.viewFingerprint());
+		
+		Shot shot;
+		if (valid) {
+			shot = this.createShot(compiled, geometry.getSelection(), geometry, true);
+		}
+		else {
+			shot = this.createShot(compiled, this.selectAccelerator(compiled));
+		}
+		this.beginShot(shot);
+		this.render(shot, null);
+		return valid;
+	}
+	
+	/**
+	 * Prepares a shot of the scene: compiles the scene, builds the accelerator
+	 * over the shapes (or loads it from the cache), and begins the shot.
+	 * 
+	 * @param scene    the scene to which all rays are directed.
+	 * @return         the render inputs of the shot
+	 */
+	Shot prepareShot (Scene scene) {
 		
-		// for each sampled point in the viewport, we will generate rays and trace it
-		for (Sample sample : sampler) {
-			
-			Vector direction = new Vector(this.eye, sample.getPoint());
-			Ray ray = new Ray(this.eye, direction);
-			Color color = this.trace(ray, scene);
-			Pixel pixel = new Pixel(sample.getXOrdering(), sample.getYOrdering(), color);
-			
-			pixels.add(pixel);
+		CompiledScene compiled = scene.compile();
+		Shot shot = this.createShot(compiled, this.selectAccelerator(compiled));
+		this.beginShot(shot);
+		return shot;
+	}
+	
+	/**
+	 * Builds the accelerator of the camera over the shapes of the given scene,
+	 * or loads it from the cache if there is one.
+	 * 
+	 * @param compiled    the compiled scene to which all rays are directed
+	 * @return            the selection of the accelerator
+	 */
+	AcceleratorSelector.Selection selectAccelerator (CompiledScene compiled) {
+		
+		if (this.acceleratorCache != null) {
+			return this.acceleratorCache.select(this.acceleratorType, compiled.getShapes());
 		}
+		return AcceleratorSelector.select(this.acceleratorType, compiled.getShapes());
 	}
 	
+	/**
+	 * Creates a shot of the given compiled scene, with the given accelerator,
+	 * and the settings of the camera. The state of the camera is left as is,
+	 * so the next shot can be created while the camera shoots the current one
+	 * (See Animation).
+	 * 
+	 * @param compiled     the compiled scene to which all rays are directed
+	 * @param selection    the selection of the accelerator over the shapes of the scene
+	 * @return             the render inputs of the shot
+	 */
+	Shot createShot (CompiledScene compiled, AcceleratorSelector.Selection selection) {
+		
+		GeometryBuffer geometry = this.geometryBufferEnabled ? new GeometryBuffer(this.window.getWidth(), this.window.getHeight()) : null;
+		return this.createShot(compiled, selection, geometry, false);
+	}
 	
 	/**
-	 * Traces an individual ray directed towards a given scene. If the ray hits an object,
-	 * an appropriate color is returned. If not, the default color, black, is returned.
+	 * Creates a shot of the given compiled scene, like createShot does, with
+	 * the given geometry buffer.
 	 * 
-	 * @param ray      the ray to be traced
-	 * @param scene    the scene to which the ray is directed
-	 * @return         the computed color, resulting from the traced ray.
+	 * @param compiled     the compiled scene to which all rays are directed
+	 * @param selection    the selection of the accelerator over the shapes of the scene
+	 * @param geometry     the geometry buffer to be filled, or shaded if the shot relights, or null
+	 * @param relight      true to shade the hits of the geometry buffer instead of tracing the primary rays
+	 * @return             the render inputs of the shot
 	 */
-	private Color trace (Ray ray, Scene scene) {
+	private Shot createShot (CompiledScene compiled, AcceleratorSelector.Selection selection,
+			GeometryBuffer geometry, boolean relight) {
 		
-		// We should only consider the first object that the ray hits, since
-		// that first object is the object seen through the viewport.
-		// We will thus have to iterate through all the shapes in the raytracing
-		// scene and find the first hit point, and take the color from that point.
+		TraceLimits limits = new TraceLimits(this.traceLimits);
+		Sampler sampler = new Sampler(this.viewport, this.window.getWidth(), this.window.getHeight());
+		return new Shot(compiled, selection, limits, sampler, this.eye, this.packetSize,
+				this.maxSamples, this.contrastThreshold, geometry, relight);
+	}
+	
+	/**
+	 * Begins the given shot: starts a new frame buffer and new statistics, and
+	 * reports the selection of its accelerator.
+	 * 
+	 * @param shot    the render inputs of the shot
+	 */
+	void beginShot (Shot shot) {
+		this.acceleratorSelection = shot.getSelection();
+		this.resetFrameBuffer();
+	}
+	
+	/**
+	 * Begins the given shot over the frame buffer of the last shot, whose
+	 * pixels are kept (See IncrementalRenderer): starts new statistics, and
+	 * reports the selection of its accelerator.
+	 * 
+	 * @param shot    the render inputs of the shot
+	 */
+	void resumeShot (Shot shot) {
+		this.acceleratorSelection = shot.getSelection();
+		this.traceStatistics = new TraceStatistics();
+	}
+	
+	/**
+	 * Starts a new, black frame buffer of the Window size, and new statistics,
+	 * i.e. for a render whose pixels are written from elsewhere (See
+	 * RenderCoordinator).
+	 */
+	public void resetFrameBuffer () {
+		this.frameBuffer = this.createFrameBuffer();
+		this.traceStatistics = new TraceStatistics();
+	}
+	
+	
+	/**
+	 * Computes the fingerprint of the view of this camera, i.e. of everything
+	 * the primary rays depend on: the eye, the viewport and the window.
+	 * 
+	 * @return    the fingerprint of the view
+	 */
+	private long viewFingerprint () {
 		
-		List<Shape> shapes = scene.getShapes();
+		Fingerprint fingerprint = new Fingerprint();
+		fingerprint.add(this.eye);
+		fingerprint.add(this.viewport.getUpperLeft()).add(this.viewport.getUpperRight());
+		fingerprint.add(this.viewport.getLowerLeft()).add(this.viewport.getLowerRight());
+		fingerprint.add(this.window.getWidth()).add(this.window.getHeight());
+		return fingerprint.getValue();
+	}
+	
+	/**
+	 * Computes the fingerprint of a render of the given scene by this camera,
+	 * i.e. to check that two JVMs render the same image (See
+	 * RenderCoordinator).
+	 * 
+	 * @param scene    the scene to be rendered
+	 * @return         the fingerprint of the render
+	 */
+	public long fingerprint (Scene scene) {
+		return this.fingerprint(scene.compile());
+	}
+	
+	/**
+	 * Computes the fingerprint of a render of the given compiled scene by this
+	 * camera: the hash of everything the final image depends on, which is the scene,
+	 * the view, the tile size and the sampling. The thread count, the packet
+	 * size and the progressive passes do not change the final image, so they
+	 * are left out.
+	 * 
+	 * @param scene    the compiled scene to be rendered
+	 * @return         the fingerprint of the render
+	 */
+	long fingerprint (CompiledScene scene) {
 		
-		double bestTimeHit = Double.MAX_VALUE;
-		Shape bestShape = null;	// is in your twenties
-		Shape.LocalCalculations bestCalculation = null;
-		Ray bestRay = null;
+		Fingerprint fingerprint = new Fingerprint();
+		scene.fingerprint(fingerprint);
+		fingerprint.add(this.eye);
+		fingerprint.add(this.viewport.getUpperLeft()).add(this.viewport.getUpperRight());
+		fingerprint.add(this.viewport.getLowerLeft()).add(this.viewport.getLowerRight());
+		fingerprint.add(this.window.getWidth()).add(this.window.getHeight()).add(this.tileSize);
+		fingerprint.add(this.maxSamples).add(this.contrastThreshold);
+		fingerprint.add(this.traceLimits.getMaxDepth()).add(this.traceLimits.getContributionThreshold());
+		fingerprint.add(this.traceLimits.getRouletteDepth()).add(this.traceLimits.getRayBudget());
+		return fingerprint.getValue();
+	}
+	
+	/**
+	 * Opens the pool the tiles of a shot are rendered on: the render pool if
+	 * one is set, a new pool of threadCount threads, or null for a single
+	 * thread (See closeRenderPool).
+	 * 
+	 * @return    the pool of render threads, or null
+	 */
+	ForkJoinPool openRenderPool () {
 		
-		for (Shape shape : shapes) {
-			Shape.LocalCalculations calculation = shape.calculateIntersection(ray);
-			if ((calculation.hits) && (bestTimeHit > calculation.timeHit)) {
-				bestRay = ray;
-				bestShape = shape;
-				bestCalculation = calculation;
-			}
+		if (this.renderPool == null && this.threadCount > 1) {
+			return new ForkJoinPool(this.threadCount);
 		}
+		return this.renderPool;
+	}
+	
+	/**
+	 * Closes the given pool opened by openRenderPool: the pool is shut down,
+	 * unless it is the render pool.
+	 * 
+	 * @param pool    the pool of render threads, or null
+	 */
+	void closeRenderPool (ForkJoinPool pool) {
 		
-		return (bestShape == null) ? 
-				new Color() : 
-				bestShape.shade(bestRay, bestCalculation, scene);
+		if (pool != null && pool != this.renderPool) {
+			pool.shutdown();
+		}
+	}
+
+
+	/**
+	 * Gets the eyepoint of the camera.
+	 * @return    the eye
+	 */
+	public Point getEye () {
+		return this.eye;
 	}
 	
+	/**
+	 * Gets the viewport of the camera, i.e. the image plane.
+	 * @return    the viewport
+	 */
+	public Viewport getViewport () {
+		return this.viewport;
+	}
 	
 	/**
-	 * Prints the pixels appropriately. Refactor out later on.
+	 * Gets the window of the camera, i.e. the size of the image in pixels.
+	 * @return    the window
 	 */
-	public void print() {
-		try {
+	public Window getWindow () {
+		return this.window;
+	}
+	
+	/**
+	 * Gets the frame buffer of the last shot scene.
+	 * @return    the frame buffer, or null if no scene has been shot yet
+	 */
+	public FrameBuffer getFrameBuffer () {
+		return this.frameBuffer;
+	}
+	
+	/**
+	 * Gets the accelerator selection report of the last shot scene: which
+	 * accelerator was built, why, and how long it took.
+	 * @return    the selection, or null if no scene has been shot yet
+	 */
+	public AcceleratorSelector.Selection getAcceleratorSelection () {
+		return this.acceleratorSelection;
+	}
+	
+	/**
+	 * Gets the counts of the rays traced by the last shot scene, and of the
+	 * secondary rays saved by the trace limits.
+	 * @return    the statistics, or null if no scene has been shot yet
+	 */
+	public TraceStatistics getTraceStatistics () {
+		return this.traceStatistics;
+	}
+	
+	/**
+	 * Gets the limits on the secondary rays (reflected and refracted) traced
+	 * by the render. The limits are copied when a scene is shot.
+	 * @return    the trace limits
+	 */
+	public TraceLimits getTraceLimits () {
+		return this.traceLimits;
+	}
+	
+	/**
+	 * Sets the limits on the secondary rays traced by the render.
+	 * @param traceLimits    the trace limits
+	 */
+	public void setTraceLimits (TraceLimits traceLimits) {
+		this.traceLimits = traceLimits;
+	}
+	
+	/**
+	 * Gets the type of accelerator built over the shapes of the scene.
+	 * @return    the accelerator type
+	 */
+	public AcceleratorSelector.Type getAcceleratorType () {
+		return this.acceleratorType;
+	}
+	
+	/**
+	 * Sets the type of accelerator built over the shapes of the scene. 
+	 * AUTOMATIC picks one from the statistics of the shapes.
+	 * @param acceleratorType    the accelerator type
+	 */
+	public void setAcceleratorType (AcceleratorSelector.Type acceleratorType) {
+		this.acceleratorType = acceleratorType;
+	}
+	
+	/**
+	 * Gets the cache the accelerator is loaded from.
+	 * @return    the accelerator cache, or null if the accelerator is always built
+	 */
+	public AcceleratorCache getAcceleratorCache () {
+		return this.acceleratorCache;
+	}
+	
+	/**
+	 * Sets the cache the accelerator is loaded from. A scene whose shapes were
+	 * shot before, with the same accelerator type, loads its accelerator from
+	 * the cache instead of building it, whatever the camera or the lights; the
+	 * selection report tells a hit from a miss (See AcceleratorCache).
+	 * @param acceleratorCache    the accelerator cache, or null to always build the accelerator
+	 */
+	public void setAcceleratorCache (AcceleratorCache acceleratorCache) {
+		this.acceleratorCache = acceleratorCache;
+	}
+	
+	/**
+	 * Gets the number of threads used to render the scene.
+	 * @return    the number of render threads
+	 */
+	public int getThreadCount () {
+		return this.threadCount;
+	}
+	
+	/**
+	 * Sets the number of threads used to render the scene. One thread renders 
+	 * the scene serially, more than one thread renders the scene tile by tile.
+	 * @param threadCount    the number of render threads
+	 */
+	public void setThreadCount (int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count must be at least 1");
+		}
+		this.threadCount = threadCount;
+	}
+	
+	/**
+	 * Gets the pool the tiles are rendered on.
+	 * @return    the render pool, or null if the camera uses a pool of its own
+	 */
+	public ForkJoinPool getRenderPool () {
+		return this.renderPool;
+	}
+	
+	/**
+	 * Sets the pool the tiles are rendered on, instead of a pool of threadCount
+	 * threads created for every shot. Cameras that share a pool share its
+	 * threads: their tiles are rendered side by side, and no thread is started
+	 * per shot. The pool is not shut down by the camera. The thread count
+	 * still sets the threads that compress the streamed PNG.
+	 * @param renderPool    the render pool, or null for a pool of the camera's own
+	 */
+	public void setRenderPool (ForkJoinPool renderPool) {
+		this.renderPool = renderPool;
+	}
+	
+	/**
+	 * Gets the pixel size of the square tiles used when rendering in parallel.
+	 * @return    the tile size, in pixels
+	 */
+	public int getTileSize () {
+		return this.tileSize;
+	}
+	
+	/**
+	 * Sets the pixel size of the square tiles used when rendering in parallel.
+	 * @param tileSize    the tile size, in pixels
+	 */
+	public void setTileSize (int tileSize) {
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("Tile size must be at least 1");
+		}
+		this.tileSize = tileSize;
+	}
+	
+	/**
+	 * Gets the pixel size of the square blocks of samples traced as a packet.
+	 * @return    the packet size, in pixels
+	 */
+	public int getPacketSize () {
+		return this.packetSize;
+	}
+	
+	/**
+	 * Sets the pixel size of the square blocks of samples traced as a packet
+	 * (i.e. 4 or 8). One traces every ray alone.
+	 * @param packetSize    the packet size, in pixels
+	 */
+	public void setPacketSize (int packetSize) {
+		if (packetSize < 1) {
+			throw new IllegalArgumentException("Packet size must be at least 1");
+		}
+		this.packetSize = packetSize;
+	}
+	
+	/**
+	 * Gets the maximum number of samples of a pixel.
+	 * @return    the max samples per pixel
+	 */
+	public int getMaxSamples () {
+		return this.maxSamples;
+	}
+	
+	/**
+	 * Sets the maximum number of samples of a pixel. One takes a single sample
+	 * per pixel. More than one renders a first sample per pixel, then refines
+	 * the pixels that contrast with a neighbor, 3 samples at a time (i.e. 4 
+	 * samples for one level, 16 for two), so only the edges pay for them. The
+	 * samples actually spent are reported by the trace statistics.
+	 * @param maxSamples    the max samples per pixel
+	 */
+	public void setMaxSamples (int maxSamples) {
+		if (maxSamples < 1) {
+			throw new IllegalArgumentException("Max samples must be at least 1");
+		}
+		this.maxSamples = maxSamples;
+	}
+	
+	/**
+	 * Gets the color difference above which two samples contrast.
+	 * @return    the contrast threshold
+	 */
+	public double getContrastThreshold () {
+		return this.contrastThreshold;
+	}
+	
+	/**
+	 * Sets the color difference above which two samples contrast, in any of
+	 * their channels. Samples that hit different shapes always contrast.
+	 * Lower thresholds refine more pixels.
+	 * @param contrastThreshold    the contrast threshold, in [0, 1]
+	 */
+	public void setContrastThreshold (double contrastThreshold) {
+		if (!(contrastThreshold >= 0 && contrastThreshold <= 1)) {
+			throw new IllegalArgumentException("Contrast threshold must be in [0, 1]");
+		}
+		this.contrastThreshold = contrastThreshold;
+	}
+	
+	/**
+	 * Checks if the shots keep a geometry buffer.
+	 * @return    true if the shots keep a geometry buffer, false otherwise
+	 */
+	public boolean isGeometryBufferEnabled () {
+		return this.geometryBufferEnabled;
+	}
+	
+	/**
+	 * Sets whether the shots keep what the first sample of each pixel hit in a
+	 * geometry buffer, so the scene can be shaded again from the buffer once
+	 * its lights or materials are edited, without tracing the primary rays
+	 * (See relight). The buffer takes about 60 bytes per pixel. Turning it off
+	 * drops the buffer of the last shot.
+	 * @param geometryBufferEnabled    true to keep a geometry buffer, false otherwise
+	 */
+	public void setGeometryBufferEnabled (boolean geometryBufferEnabled) {
+		this.geometryBufferEnabled = geometryBufferEnabled;
+		if (!geometryBufferEnabled) {
+			this.geometryBuffer = null;
+		}
+	}
+	
+	/**
+	 * Gets the geometry buffer of the last shot that kept one.
+	 * @return    the geometry buffer, or null if none was kept
+	 */
+	public GeometryBuffer getGeometryBuffer () {
+		return this.geometryBuffer;
+	}
+	
+	/**
+	 * Gets the file the frame buffer is mapped from.
+	 * @return    the frame buffer file, or null if the frame buffer is on the heap
+	 */
+	public File getFrameBufferFile () {
+		return this.frameBufferFile;
+	}
+	
+	/**
+	 * Sets the file the frame buffer is mapped from. With a file, the pixels
+	 * are kept in the file instead of the heap (See MappedFrameBuffer), in
+	 * tiles of the tile size, so images larger than the heap can be rendered
+	 * and printed. The per-pixel state of adaptive supersampling is still kept
+	 * on the heap, so gigapixel renders should use a single sample per pixel.
+	 * @param frameBufferFile    the frame buffer file, or null to keep the frame buffer on the heap
+	 */
+	public void setFrameBufferFile (File frameBufferFile) {
+		this.frameBufferFile = frameBufferFile;
+	}
+	
+	/**
+	 * Gets the checkpoint file of the render.
+	 * @return    the checkpoint file, or null if the render is not checkpointed
+	 */
+	public File getCheckpointFile () {
+		return this.checkpointFile;
+	}
+	
+	/**
+	 * Sets the checkpoint file of the render. With a file, every tile of the
+	 * final pass is appended to the file once it is finished (See Checkpoint),
+	 * and the file is forced to the disk in batches of tiles. If the JVM dies,
+	 * shooting the same scene with the same camera again restores the tiles
+	 * from the file, and only renders the missing ones; a file of any other
+	 * render is started over. The file is kept once the shot is done, so
+	 * shooting again restores the whole image; delete it to render anew.
+	 * The resumed image is the same as an uninterrupted render, with adaptive
+	 * supersampling too.
+	 * @param checkpointFile    the checkpoint file, or null for no checkpoint
+	 */
+	public void setCheckpointFile (File checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+	
+	/**
+	 * Gets the number of tiles of the last shot restored from its checkpoint
+	 * file, instead of being rendered.
+	 * @return    the number of restored tiles
+	 */
+	public int getRestoredTileCount () {
+		return this.restoredTileCount;
+	}
+	
+	/**
+	 * Gets the listener of the passes of a progressive render.
+	 * @return    the progress listener, or null if the render is not progressive
+	 */
+	public ProgressListener getProgressListener () {
+		return this.progressListener;
+	}
+	
+	/**
+	 * Sets the listener of the passes of a progressive render. With a listener,
+	 * the scene is rendered in 3 passes: a sample every 4 pixels, then every 2
+	 * pixels, then every pixel. Each pass only traces the pixels the previous
+	 * passes did not, so the passes add up to a single full render. The final
+	 * image is the same as the one of a render that is not progressive.
+	 * @param progressListener    the progress listener, or null to render in a single pass
+	 */
+	public void setProgressListener (ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+	
+	
+	/**
+	 * Creates the frame buffer of a new shot: on the heap, or mapped from the
+	 * frame buffer file. The frame buffer of the previous shot is closed, if it
+	 * was mapped.
+	 */
+	private FrameBuffer createFrameBuffer () {
 		
-			BufferedImage bi = new BufferedImage(this.window.getWidth(), 
-					this.window.getHeight(), BufferedImage.TYPE_INT_RGB);
-		  
-			for (Pixel p : pixels) {
-				int r = (int) (p.getColor().getR() * 255);
-				int g = (int) (p.getColor().getG() * 255);
-				int b = (int) (p.getColor().getB() * 255);
-				int col = (r << 16) | (g << 8) | b;
-				bi.setRGB(p.getX(), p.getY(), col);
+		try {
+			if (this.frameBuffer instanceof Closeable) {
+				((Closeable) this.frameBuffer).close();
 			}
+			if (this.frameBufferFile != null) {
+				return new MappedFrameBuffer(this.frameBufferFile, this.window.getWidth(), this.window.getHeight(), this.tileSize);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new ArrayFrameBuffer(this.window.getWidth(), this.window.getHeight());
+	}
+	
+	
+	/**
+	 * Prints the pixels appropriately: writes the image of the last shot scene
+	 * into output.png, in the working directory (See print(File)). Refactor out
+	 * later on.
+	 */
+	public void print() {
 		
-			ImageIO.write(bi, "png", new File("output.png"));
-		} 
+		try {
+			this.print(new File("output.png"));
+		}
 		catch (IOException ie) {
 			ie.printStackTrace();
 		}
 	}
+	
+	/**
+	 * Writes the image of the last shot scene into the given file, as a PNG.
+	 * 
+	 * @param file    the file to be written
+	 * @throws IOException    if the file cannot be written
+	 */
+	public void print (File file) throws IOException {
+		
+		// Guard clause: nothing to print before the scene is shot.
+		if (this.frameBuffer == null) {
+			throw new IllegalStateException("No scene has been shot yet");
+		}
+		
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			this.print(out);
+		}
+	}
+	
+	/**
+	 * Writes the image of the last shot scene to the given stream, as a PNG.
+	 * The image is encoded row by row from the frame buffer, on as many
+	 * threads as the render (See PngWriter), so no copy of the image is made.
+	 * The stream is not closed.
+	 * 
+	 * @param out    the stream the PNG is written to
+	 * @throws IOException    if the stream cannot be written
+	 */
+	public void print (OutputStream out) throws IOException {
+		
+		// Guard clause: nothing to print before the scene is shot.
+		if (this.frameBuffer == null) {
+			throw new IllegalStateException("No scene has been shot yet");
+		}
+		
+		try (PngWriter writer = new PngWriter(out, this.frameBuffer.getWidth(), this.frameBuffer.getHeight(), this.threadCount)) {
+			writer.writeRows(this.frameBuffer, 0, this.frameBuffer.getHeight());
+		}
+	}
+	
 }
@@ -0,0 +1,276 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+
+/**
+ * The Checkpoint class keeps the finished tiles of a render in a file, so a
+ * render whose JVM dies can be resumed where it stopped (See
+ * Camera.setCheckpointFile).
+ *
+ * The file starts with a header: a magic number, the version of the format,
+ * the fingerprint of the render (See Fingerprint) and the dimensions of the
+ * image. The tiles follow, appended in the order they are finished, each one
+ * as a small index record (its position and dimensions, and the CRC-32 of the
+ * record) followed by its packed RGB values, row by row.
+ *
+ * The tiles are forced to the disk in batches, every SYNC_TILES tiles or
+ * every SYNC_NANOS, whichever comes first, so a crash loses at most the last
+ * batch. A tile cut short by a crash fails its CRC-32 when the file is read
+ * back, and is dropped with whatever follows it.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class Checkpoint implements Closeable {
+
+	private static final int MAGIC = 0x52544350;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 24;
+	private static final int RECORD_BYTES = 20;
+
+	private static final int SYNC_TILES = 64;
+	private static final long SYNC_NANOS = 1_000_000_000L;
+
+	private final FileChannel channel;
+	private final int tileSize;
+	private final Set<Long> restoredTiles = new HashSet<Long>();
+
+	/**
+	 * The end of the valid records of the file, the tiles appended since the
+	 * last sync, and the time of the last sync.
+	 */
+	private long end;
+	private int pendingTiles;
+	private long lastSync;
+
+
+	/**
+	 * Opens the checkpoint of a render in the given file. If the file holds a
+	 * checkpoint of the same render (same fingerprint and dimensions), its
+	 * valid tiles are restored into the given frame buffer. Otherwise, the
+	 * file is started over.
+	 *
+	 * @param file           the checkpoint file
+	 * @param fingerprint    the fingerprint of the render
+	 * @param frameBuffer    the frame buffer of the render
+	 * @param tileSize       the size of the square tiles of the render, in pixels
+	 * @throws IOException    if the file cannot be read or written
+	 */
+	Checkpoint (File file, long fingerprint, FrameBuffer frameBuffer, int tileSize) throws IOException {
+
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.tileSize = tileSize;
+
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(VERSION).putLong(fingerprint);
+			header.putInt(frameBuffer.getWidth()).putInt(frameBuffer.getHeight());
+			header.flip();
+
+			if (this.matches(header)) {
+				this.end = this.restore(frameBuffer);
+				this.channel.truncate(this.end);
+			}
+			else {
+				this.channel.truncate(0);
+				this.write(header, 0);
+				this.channel.force(true);
+				this.end = HEADER_BYTES;
+			}
+		}
+		catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+		this.lastSync = System.nanoTime();
+	}
+
+
+	/**
+	 * Checks if the given tile was restored from the file, i.e. if it was
+	 * finished by a previous run of the render.
+	 *
+	 * @param tile    the tile of the render
+	 * @return        true if the tile was restored, false otherwise
+	 */
+	boolean isRestored (Tile tile) {
+		return this.restoredTiles.contains(key(tile.getX(), tile.getY()));
+	}
+
+	/**
+	 * Gets the number of tiles restored from the file.
+	 * @return    the number of restored tiles
+	 */
+	int getRestoredTileCount () {
+		return this.restoredTiles.size();
+	}
+
+	/**
+	 * Appends a finished tile to the file, with its pixels read from the given
+	 * frame buffer. The file is forced to the disk once a batch of tiles is
+	 * appended. Can be called by several render threads.
+	 *
+	 * @param tile           the finished tile
+	 * @param frameBuffer    the frame buffer of the render
+	 * @throws IOException    if the file cannot be written
+	 */
+	synchronized void append (Tile tile, FrameBuffer frameBuffer) throws IOException {
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES + 4 * tile.getWidth() * tile.getHeight());
+		record.putInt(tile.getX()).putInt(tile.getY()).putInt(tile.getWidth()).putInt(tile.getHeight()).putInt(0);
+		for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+			for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+				record.putInt(frameBuffer.getRGB(x, y));
+			}
+		}
+		record.putInt(16, checksum(record));
+		record.flip();
+
+		this.write(record, this.end);
+		this.end += record.capacity();
+		this.pendingTiles++;
+
+		if (this.pendingTiles >= SYNC_TILES || System.nanoTime() - this.lastSync >= SYNC_NANOS) {
+			this.sync();
+		}
+	}
+
+	/**
+	 * Forces the appended tiles to the disk, and closes the file. The file is
+	 * kept: it holds the whole image once the render is done.
+	 *
+	 * @throws IOException    if the file cannot be written
+	 */
+	@Override
+	public synchronized void close () throws IOException {
+		try {
+			this.sync();
+		}
+		finally {
+			this.channel.close();
+		}
+	}
+
+
+	/**
+	 * Checks if the file starts with the given header.
+	 */
+	private boolean matches (ByteBuffer header) throws IOException {
+
+		if (this.channel.size() < HEADER_BYTES) {
+			return false;
+		}
+
+		ByteBuffer existing = ByteBuffer.allocate(HEADER_BYTES);
+		this.read(existing, 0);
+		existing.flip();
+		return existing.equals(header);
+	}
+
+	/**
+	 * Reads the tiles of the file into the given frame buffer, up to the first
+	 * record that is cut short, fails its CRC-32, or is not a tile of the
+	 * render.
+	 *
+	 * @return    the end of the last valid record
+	 */
+	private long restore (FrameBuffer frameBuffer) throws IOException {
+
+		long position = HEADER_BYTES;
+		long size = this.channel.size();
+		ByteBuffer index = ByteBuffer.allocate(RECORD_BYTES);
+
+		while (position + RECORD_BYTES <= size) {
+			index.clear();
+			this.read(index, position);
+			int x = index.getInt(0);
+			int y = index.getInt(4);
+			int width = index.getInt(8);
+			int height = index.getInt(12);
+
+			if (!this.isTile(x, y, width, height, frameBuffer)
+					|| position + RECORD_BYTES + 4L * width * height > size) {
+				break;
+			}
+
+			ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES + 4 * width * height);
+			this.read(record, position);
+			if (record.getInt(16) != checksum(record)) {
+				break;
+			}
+
+			record.position(RECORD_BYTES);
+			for (int row = y; row < y + height; row++) {
+				for (int column = x; column < x + width; column++) {
+					frameBuffer.setRGB(column, row, record.getInt());
+				}
+			}
+			this.restoredTiles.add(key(x, y));
+			position += record.capacity();
+		}
+		return position;
+	}
+
+	/**
+	 * Checks if the given rectangle is a tile of the render, that is not
+	 * restored yet.
+	 */
+	private boolean isTile (int x, int y, int width, int height, FrameBuffer frameBuffer) {
+		return x >= 0 && y >= 0 && x < frameBuffer.getWidth() && y < frameBuffer.getHeight()
+				&& x % this.tileSize == 0 && y % this.tileSize == 0
+				&& width == Math.min(this.tileSize, frameBuffer.getWidth() - x)
+				&& height == Math.min(this.tileSize, frameBuffer.getHeight() - y)
+				&& !this.restoredTiles.contains(key(x, y));
+	}
+
+	/**
+	 * Forces the tiles appended since the last sync to the disk.
+	 */
+	private void sync () throws IOException {
+		if (this.pendingTiles > 0) {
+			this.channel.force(false);
+			this.pendingTiles = 0;
+		}
+		this.lastSync = System.nanoTime();
+	}
+
+	private void write (ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += this.channel.write(buffer, position);
+		}
+	}
+
+	private void read (ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int count = this.channel.read(buffer, position);
+			if (count < 0) {
+				throw new IOException("Checkpoint file ends within a record");
+			}
+			position += count;
+		}
+	}
+
+	/**
+	 * Computes the CRC-32 of a whole record, but for its CRC-32 field.
+	 */
+	private static int checksum (ByteBuffer record) {
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 0, 16);
+		crc.update(record.array(), RECORD_BYTES, record.capacity() - RECORD_BYTES);
+		return (int) crc.getValue();
+	}
+
+	private static long key (int x, int y) {
+		return ((long) x << 32) | y;
+	}
+}
@@ -68,6 +68,39 @@ public final class Color {
 		return this.b;
 	}
 	
+	/**
+	 * Packs this Color into a single 24 bit integer RGB value, 8 bits per 
+	 * primary color, in the layout used by image outputs (0xRRGGBB).
+	 * @return    the packed RGB value of this Color
+	 */
+	public int toRGB () {
+		return toRGB(this.r, this.g, this.b);
+	}
+	
+	/**
+	 * Packs the given RGB values into a single 24 bit integer RGB value, in the 
+	 * same layout as toRGB(), without constructing a Color.
+	 * @param r    the red value
+	 * @param g    the green value
+	 * @param b    the blue value
+	 * @return     the packed RGB value
+	 */
+	public static int toRGB (double r, double g, double b) {
+		int red = (int) (r * 255);
+		int green = (int) (g * 255);
+		int blue = (int) (b * 255);
+		return (red << 16) | (green << 8) | blue;
+	}
+	
+	/**
+	 * Unpacks a 24 bit integer RGB value (0xRRGGBB) into a Color.
+	 * @param rgb    the packed RGB value
+	 * @return       the Color of the packed RGB value
+	 */
+	public static Color fromRGB (int rgb) {
+		return new Color(((rgb >> 16) & 0xFF) / 255.0, ((rgb >> 8) & 0xFF) / 255.0, (rgb & 0xFF) / 255.0);
+	}
+	
 	@Override
 	public String toString() {
 		return "Color: (R:" + this.r + ", G:" + this.g + ", B:" + this.b + ")";
@@ -0,0 +1,273 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
+
+
+/**
+ * The CompiledScene class is an immutable snapshot of a Scene, frozen for
+ * rendering (See Scene.compile). The shapes are kept in an array, and the
+ * lights that are on are copied into primitive arrays: their directions,
+ * normalized, and their colors. Rendering only reads the snapshot, so it does
+ * not copy the scene per ray, and editing the Scene (or its lights) after it
+ * is compiled does not affect a render in progress.
+ *
+ * The shapes themselves are shared with the Scene, not copied; their geometry
+ * is immutable. What they look like is not: their Properties (edited in place
+ * or replaced) and their shading strategy are copied into a Material per
+ * shape, which the Tracer shades with instead of the shape (See getMaterial).
+ * The shapes that share Properties and a shading strategy, i.e. the spheres
+ * of a material of a MappedScene, share a single Material.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public final class CompiledScene {
+
+	private final Shape[] shapes;
+	private final List<Shape> shapeList;
+	private final Map<Shape, Material> materials;
+
+	/**
+	 * The lights, 3 values per light: the unit direction of the light TOWARDS a
+	 * given point (x, y, z), and the color of the light (r, g, b).
+	 */
+	private final int lightCount;
+	private final double[] lightDirections;
+	private final double[] lightColors;
+
+
+	/**
+	 * Constructs a CompiledScene from the given shapes and lights. The lights
+	 * that are off are left out.
+	 *
+	 * @param shapes    the shapes of the scene
+	 * @param lights    the lights of the scene
+	 */
+	CompiledScene (List<Shape> shapes, List<Light> lights) {
+
+		this.shapes = shapes.toArray(new Shape[shapes.size()]);
+		this.shapeList = Collections.unmodifiableList(Arrays.asList(this.shapes));
+
+		this.materials = new IdentityHashMap<Shape, Material>(this.shapes.length);
+		Map<Shape.Properties, Material> copies = new IdentityHashMap<Shape.Properties, Material>();
+		for (Shape shape : this.shapes) {
+			Shape.Properties properties = shape.getProperties();
+			ShadingStrategy shadingStrategy = shape.getShadingStrategy();
+			Material material = copies.get(properties);
+			if (material == null || material.getShadingStrategy() != shadingStrategy) {
+				material = new Material(new Shape.Properties(properties), shadingStrategy);
+				copies.put(properties, material);
+			}
+			this.materials.put(shape, material);
+		}
+
+		double[] directions = new double[3 * lights.size()];
+		double[] colors = new double[3 * lights.size()];
+		int count = 0;
+
+		for (Light light : lights) {
+			if (!light.isOn()) {
+				continue;
+			}
+
+			Vector direction = light.getDirection();
+			double magnitude = Vector.magnitude(direction.getX(), direction.getY(), direction.getZ());
+			directions[3 * count] = direction.getX() / magnitude;
+			directions[3 * count + 1] = direction.getY() / magnitude;
+			directions[3 * count + 2] = direction.getZ() / magnitude;
+
+			Color color = light.getColor();
+			colors[3 * count] = color.getR();
+			colors[3 * count + 1] = color.getG();
+			colors[3 * count + 2] = color.getB();
+			count++;
+		}
+
+		this.lightCount = count;
+		this.lightDirections = Arrays.copyOf(directions, 3 * count);
+		this.lightColors = Arrays.copyOf(colors, 3 * count);
+	}
+
+
+	/**
+	 * Gets the number of shapes in the scene.
+	 * @return    the number of shapes
+	 */
+	public int getShapeCount () {
+		return this.shapes.length;
+	}
+
+	/**
+	 * Gets the shape at the given index.
+	 * @param index    the index of the shape
+	 * @return         the shape
+	 */
+	public Shape getShape (int index) {
+		return this.shapes[index];
+	}
+
+	/**
+	 * Gets the shapes of the scene, as an unmodifiable list.
+	 * @return    the shapes
+	 */
+	public List<Shape> getShapes () {
+		return this.shapeList;
+	}
+
+	/**
+	 * Gets what the given shape of the scene looked like when the scene was
+	 * compiled.
+	 * @param shape    a shape of the scene
+	 * @return         the material of the shape
+	 */
+	Material getMaterial (Shape shape) {
+		return this.materials.get(shape);
+	}
+
+	/**
+	 * Adds the content of the given shape of the scene to the given
+	 * fingerprint, with the material it is rendered with, i.e. as it was when
+	 * the scene was compiled (See Shape.fingerprint).
+	 *
+	 * @param shape          a shape of the scene
+	 * @param fingerprint    the fingerprint the content is added to
+	 */
+	void fingerprint (Shape shape, Fingerprint fingerprint) {
+		Material material = this.materials.get(shape);
+		shape.fingerprint(fingerprint, material.getProperties(), material.getShadingStrategy());
+	}
+
+	/**
+	 * Gets the number of lights that are on in the scene.
+	 * @return    the number of lights
+	 */
+	public int getLightCount () {
+		return this.lightCount;
+	}
+
+	/**
+	 * Gets the x-coordinate of the unit direction of the light at the given index.
+	 * @param index    the index of the light
+	 * @return         the x-coordinate of the direction
+	 */
+	public double getLightDirectionX (int index) {
+		return this.lightDirections[3 * index];
+	}
+
+	/**
+	 * Gets the y-coordinate of the unit direction of the light at the given index.
+	 * @param index    the index of the light
+	 * @return         the y-coordinate of the direction
+	 */
+	public double getLightDirectionY (int index) {
+		return this.lightDirections[3 * index + 1];
+	}
+
+	/**
+	 * Gets the z-coordinate of the unit direction of the light at the given index.
+	 * @param index    the index of the light
+	 * @return         the z-coordinate of the direction
+	 */
+	public double getLightDirectionZ (int index) {
+		return this.lightDirections[3 * index + 2];
+	}
+
+	/**
+	 * Gets the red value of the color of the light at the given index.
+	 * @param index    the index of the light
+	 * @return         the red value
+	 */
+	public double getLightR (int index) {
+		return this.lightColors[3 * index];
+	}
+
+	/**
+	 * Gets the green value of the color of the light at the given index.
+	 * @param index    the index of the light
+	 * @return         the green value
+	 */
+	public double getLightG (int index) {
+		return this.lightColors[3 * index + 1];
+	}
+
+	/**
+	 * Gets the blue value of the color of the light at the given index.
+	 * @param index    the index of the light
+	 * @return         the blue value
+	 */
+	public double getLightB (int index) {
+		return this.lightColors[3 * index + 2];
+	}
+
+	/**
+	 * Adds the content of the scene to the given fingerprint: its shapes, in
+	 * order, with their materials as compiled (See fingerprint(Shape,
+	 * Fingerprint)), and its lights that are on.
+	 *
+	 * @param fingerprint    the fingerprint the content is added to
+	 */
+	public void fingerprint (Fingerprint fingerprint) {
+
+		fingerprint.add(this.shapes.length);
+		for (Shape shape : this.shapes) {
+			this.fingerprint(shape, fingerprint);
+		}
+
+		fingerprint.add(this.lightCount);
+		for (int i = 0; i < 3 * this.lightCount; i++) {
+			fingerprint.add(this.lightDirections[i]).add(this.lightColors[i]);
+		}
+	}
+
+
+	/**
+	 * The Material is a static inner class within the CompiledScene class. It
+	 * is the copy of the Properties and the shading strategy of a shape made
+	 * when the scene was compiled. The copied Properties must not be edited.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	static final class Material {
+
+		private final Shape.Properties properties;
+		private final ShadingStrategy shadingStrategy;
+
+
+		/**
+		 * Constructs a Material of the given copied Properties and shading
+		 * strategy.
+		 *
+		 * @param properties         the copied Properties of the shape
+		 * @param shadingStrategy    the shading strategy of the shape
+		 */
+		Material (Shape.Properties properties, ShadingStrategy shadingStrategy) {
+			this.properties = properties;
+			this.shadingStrategy = shadingStrategy;
+		}
+
+		/**
+		 * Gets the copied Properties of the shape.
+		 * @return    the Properties
+		 */
+		Shape.Properties getProperties () {
+			return this.properties;
+		}
+
+		/**
+		 * Gets the shading strategy of the shape.
+		 * @return    the shading strategy
+		 */
+		ShadingStrategy getShadingStrategy () {
+			return this.shadingStrategy;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.jinwroh.raytracer.graphics;
+
+import com.jinwroh.raytracer.geometric.Point;
+
+
+/**
+ * The Fingerprint class hashes the content of a scene (and whatever else the
+ * result of a render depends on) into a 64 bit value, value by value, so that
+ * files derived from a render (i.e. a checkpoint) can be matched against the
+ * render that reads them back, across runs of the JVM. The hash depends only
+ * on the values added, and on their order, never on the identity of objects.
+ *
+ * The hash is not cryptographic: it guards against stale files, not forged
+ * ones.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public final class Fingerprint {
+
+	private static final long SEED = 0x6A09E667F3BCC908L;
+	private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private long hash = SEED;
+	private long count;
+
+
+	/**
+	 * Adds a long value to the fingerprint.
+	 * @param value    the value to be added
+	 * @return         this fingerprint
+	 */
+	public Fingerprint add (long value) {
+		this.hash = Long.rotateLeft(this.hash ^ mix(value), 29) * MULTIPLIER;
+		this.count++;
+		return this;
+	}
+
+	/**
+	 * Adds an int value to the fingerprint.
+	 * @param value    the value to be added
+	 * @return         this fingerprint
+	 */
+	public Fingerprint add (int value) {
+		return this.add((long) value);
+	}
+
+	/**
+	 * Adds a double value to the fingerprint, by its bits.
+	 * @param value    the value to be added
+	 * @return         this fingerprint
+	 */
+	public Fingerprint add (double value) {
+		return this.add(Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Adds a boolean value to the fingerprint.
+	 * @param value    the value to be added
+	 * @return         this fingerprint
+	 */
+	public Fingerprint add (boolean value) {
+		return this.add(value ? 1L : 0L);
+	}
+
+	/**
+	 * Adds a String to the fingerprint, with its length.
+	 * @param value    the value to be added
+	 * @return         this fingerprint
+	 */
+	public Fingerprint add (String value) {
+		this.add(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			this.add((long) value.charAt(i));
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the coordinates of a Point to the fingerprint.
+	 * @param point    the point to be added
+	 * @return         this fingerprint
+	 */
+	public Fingerprint add (Point point) {
+		return this.add(point.getX()).add(point.getY()).add(point.getZ());
+	}
+
+	/**
+	 * Adds the components of a Color to the fingerprint. A null color is added
+	 * as a color of its own.
+	 * @param color    the color to be added, or null
+	 * @return         this fingerprint
+	 */
+	public Fingerprint add (Color color) {
+		if (color == null) {
+			return this.add(false);
+		}
+		return this.add(true).add(color.getR()).add(color.getG()).add(color.getB());
+	}
+
+	/**
+	 * Gets the value of the fingerprint, i.e. the hash of all the values added
+	 * so far.
+	 * @return    the 64 bit hash
+	 */
+	public long getValue () {
+		return mix(this.hash ^ this.count);
+	}
+
+
+	/**
+	 * Mixes the bits of the given value, so that every bit of the input
+	 * affects every bit of the output (the finalizer of SplitMix64).
+	 */
+	private static long mix (long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+}
@@ -0,0 +1,61 @@
+package com.jinwroh.raytracer.graphics;
+
+
+/**
+ * The FrameBuffer interface represents the computed image of the raytracer,
+ * indexed by the x, y position of each pixel. The Camera writes the traced
+ * colors directly into the frame buffer, and the outputs read from it.
+ * Colors are stored as packed 24 bit RGB values (0xRRGGBB), the same values
+ * written to the output image (See Color.toRGB()).
+ *
+ * Writes to different pixels are independent, so different threads may write
+ * different regions (i.e. tiles) of the same frame buffer concurrently.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public interface FrameBuffer {
+
+	/**
+	 * Gets the width of the frame buffer, in pixels.
+	 * @return    the width of the frame buffer
+	 */
+	public int getWidth ();
+
+	/**
+	 * Gets the height of the frame buffer, in pixels.
+	 * @return    the height of the frame buffer
+	 */
+	public int getHeight ();
+
+	/**
+	 * Gets the packed RGB value at the given pixel.
+	 * @param x    the x-coordinate of the pixel
+	 * @param y    the y-coordinate of the pixel
+	 * @return     the packed RGB value of the pixel
+	 */
+	public int getRGB (int x, int y);
+
+	/**
+	 * Sets the packed RGB value at the given pixel.
+	 * @param x      the x-coordinate of the pixel
+	 * @param y      the y-coordinate of the pixel
+	 * @param rgb    the packed RGB value of the pixel
+	 */
+	public void setRGB (int x, int y, int rgb);
+
+	/**
+	 * Gets the packed RGB values of a whole row into the given array, i.e. for
+	 * an encoder to stream the image row by row. Implementations may copy the
+	 * row in bulk.
+	 * @param y         the y-coordinate of the row
+	 * @param rgb       the array to be filled with the packed RGB values
+	 * @param offset    the index of the first pixel of the row in the array
+	 */
+	public default void getRow (int y, int[] rgb, int offset) {
+		for (int x = 0; x < this.getWidth(); x++) {
+			rgb[offset + x] = this.getRGB(x, y);
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.List;
+
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+
+
+/**
+ * The GeometryBuffer class keeps what the first sample of each pixel of a
+ * shot hit: the Shape, the distance along the primary ray (i.e. its hit
+ * time), and the hit point and the surface normal there. It is filled while
+ * the Camera shoots a scene (See Camera.setGeometryBufferEnabled), and lets
+ * the camera shade the same hits again once the lights or the materials of
+ * the shapes are edited, without tracing the primary rays (See Camera.relight).
+ *
+ * The buffer is kept in flat primitive arrays indexed by y * width + x, the
+ * points and the normals 3 values per pixel: about 60 bytes per pixel on a 64
+ * bit JVM with compressed references, and no object per pixel. The values
+ * are kept at full precision, so a pixel shaded from the buffer is the same
+ * as a pixel traced again.
+ *
+ * The buffer also keeps what its hits are only valid for: the shapes of the
+ * scene, the accelerator over them, and the view of the camera.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public final class GeometryBuffer {
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * The Shape hit by each pixel (null for a miss), the time of the hit, and
+	 * the hit point and the normal, 3 values per pixel.
+	 */
+	private final Shape[] shapes;
+	private final double[] distances;
+	private final double[] points;
+	private final double[] normals;
+
+	/**
+	 * The shapes of the scene the buffer was filled from, the selection of the
+	 * accelerator over them, and the fingerprint of the view of the camera.
+	 */
+	private List<Shape> sceneShapes;
+	private AcceleratorSelector.Selection selection;
+	private long view;
+
+
+	/**
+	 * Constructs an empty GeometryBuffer with the given dimensions.
+	 * @param width     the width of the buffer, in pixels
+	 * @param height    the height of the buffer, in pixels
+	 */
+	GeometryBuffer (int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.shapes = new Shape[width * height];
+		this.distances = new double[width * height];
+		this.points = new double[3 * width * height];
+		this.normals = new double[3 * width * height];
+	}
+
+
+	/**
+	 * Gets the width of the buffer.
+	 * @return    the width, in pixels
+	 */
+	public int getWidth () {
+		return this.width;
+	}
+
+	/**
+	 * Gets the height of the buffer.
+	 * @return    the height, in pixels
+	 */
+	public int getHeight () {
+		return this.height;
+	}
+
+	/**
+	 * Gets the Shape hit by the first sample of the given pixel.
+	 * @param x    the x-coordinate of the pixel
+	 * @param y    the y-coordinate of the pixel
+	 * @return     the Shape, or null if the sample hit nothing
+	 */
+	public Shape getShape (int x, int y) {
+		return this.shapes[y * this.width + x];
+	}
+
+	/**
+	 * Gets the distance of the hit of the given pixel along its primary ray,
+	 * in units of the direction of the ray (i.e. the hit time).
+	 * @param x    the x-coordinate of the pixel
+	 * @param y    the y-coordinate of the pixel
+	 * @return     the distance, undefined if the sample hit nothing
+	 */
+	public double getDistance (int x, int y) {
+		return this.distances[y * this.width + x];
+	}
+
+	/**
+	 * Gets the given coordinate of the hit point of the given pixel.
+	 * @param x       the x-coordinate of the pixel
+	 * @param y       the y-coordinate of the pixel
+	 * @param axis    0, 1 or 2 for the x, y or z coordinate
+	 * @return        the coordinate, undefined if the sample hit nothing
+	 */
+	public double getPoint (int x, int y, int axis) {
+		return this.points[3 * (y * this.width + x) + axis];
+	}
+
+	/**
+	 * Gets the given coordinate of the surface normal at the hit of the given
+	 * pixel, which is not necessarily of unit length.
+	 * @param x       the x-coordinate of the pixel
+	 * @param y       the y-coordinate of the pixel
+	 * @param axis    0, 1 or 2 for the x, y or z coordinate
+	 * @return        the coordinate, undefined if the sample hit nothing
+	 */
+	public double getNormal (int x, int y, int axis) {
+		return this.normals[3 * (y * this.width + x) + axis];
+	}
+
+
+	/**
+	 * Sets the hit of the given pixel: the hit point and the normal are
+	 * computed into the given scratch calculations, then kept.
+	 *
+	 * @param index           the index of the pixel, y * width + x
+	 * @param ray             the primary ray of the pixel
+	 * @param shape           the Shape hit, or null if the ray hit nothing
+	 * @param timeHit         the time of the hit
+	 * @param calculations    the scratch calculations, of the calling thread
+	 */
+	void set (int index, Ray ray, Shape shape, double timeHit, Shape.LocalCalculations calculations) {
+
+		this.shapes[index] = shape;
+		if (shape == null) {
+			return;
+		}
+
+		shape.materializeHit(ray, timeHit, calculations);
+		this.distances[index] = timeHit;
+		this.points[3 * index] = calculations.pointX;
+		this.points[3 * index + 1] = calculations.pointY;
+		this.points[3 * index + 2] = calculations.pointZ;
+		this.normals[3 * index] = calculations.normalX;
+		this.normals[3 * index + 1] = calculations.normalY;
+		this.normals[3 * index + 2] = calculations.normalZ;
+	}
+
+	/**
+	 * Gets the Shape hit by the given pixel.
+	 * @param index    the index of the pixel, y * width + x
+	 * @return         the Shape, or null if the pixel hit nothing
+	 */
+	Shape getShape (int index) {
+		return this.shapes[index];
+	}
+
+	/**
+	 * Loads the hit of the given pixel into the given calculations, as
+	 * Shape.materializeHit computed them for the given primary ray.
+	 *
+	 * @param index           the index of the pixel, y * width + x
+	 * @param ray             the primary ray of the pixel
+	 * @param calculations    the calculations to be filled
+	 */
+	void load (int index, Ray ray, Shape.LocalCalculations calculations) {
+		calculations.hits = true;
+		calculations.timeHit = this.distances[index];
+		calculations.pointX = this.points[3 * index];
+		calculations.pointY = this.points[3 * index + 1];
+		calculations.pointZ = this.points[3 * index + 2];
+		calculations.normalX = this.normals[3 * index];
+		calculations.normalY = this.normals[3 * index + 1];
+		calculations.normalZ = this.normals[3 * index + 2];
+		calculations.reflect(ray);
+	}
+
+	/**
+	 * Keeps what the hits of the buffer are valid for.
+	 *
+	 * @param sceneShapes    the shapes of the scene the buffer was filled from
+	 * @param selection      the selection of the accelerator over the shapes
+	 * @param view           the fingerprint of the view of the camera
+	 */
+	void setSource (List<Shape> sceneShapes, AcceleratorSelector.Selection selection, long view) {
+		this.sceneShapes = sceneShapes;
+		this.selection = selection;
+		this.view = view;
+	}
+
+	/**
+	 * Gets the selection of the accelerator over the shapes of the buffer.
+	 * @return    the selection
+	 */
+	AcceleratorSelector.Selection getSelection () {
+		return this.selection;
+	}
+
+	/**
+	 * Checks if the hits of the buffer are valid for the given shapes, seen
+	 * with the given view: the shapes must be the very shapes the buffer was
+	 * filled from, in the same order. Their Properties and shading strategies
+	 * may have changed, since the geometry of a shape is immutable.
+	 *
+	 * @param shapes    the shapes of the scene
+	 * @param view      the fingerprint of the view of the camera
+	 * @return          true if the hits are valid, false otherwise
+	 */
+	boolean isValidFor (List<Shape> shapes, long view) {
+
+		if (this.sceneShapes == null || view != this.view || shapes.size() != this.sceneShapes.size()) {
+			return false;
+		}
+		for (int i = 0; i < shapes.size(); i++) {
+			if (shapes.get(i) != this.sceneShapes.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,399 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import com.jinwroh.raytracer.geometric.BoundingBox;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+
+
+/**
+ * The IncrementalRenderer class renders a Scene with a Camera again and again
+ * while the scene is edited, i.e. by an artist, and only traces the tiles of
+ * the Window that an edit may have changed. The other tiles keep the pixels
+ * of the last render, in the frame buffer of the camera, so every render is
+ * the same image as a full render of the scene as it is.
+ *
+ * While a tile is traced, its rays are recorded in its footprint (See
+ * TileFootprint): the IDs of the shapes they hit (See Scene.addShape), and
+ * their bounds. Before the next render, the shapes of the scene are matched
+ * to the shapes of the last render by ID, and compared by fingerprint (See
+ * Shape.fingerprint), which catches a shape replaced (Scene.setShape), as well
+ * as Properties edited in place. A tile is traced again if:
+ *
+ * - a shape removed or edited was hit by one of its rays;
+ * - a shape removed may have occluded one of its shadow rays;
+ * - a shape added may cross one of its rays before the ray ends.
+ *
+ * A shape replaced by another shape counts as removed and added, and a shape
+ * whose Properties or shading strategy were edited only counts as edited.
+ * When the shapes were only edited, the accelerator of the last render is
+ * kept, since it only depends on their geometry.
+ * With supersampling, whether a pixel is refined also depends on the first
+ * samples of its neighbors (See Camera.setMaxSamples), so the tiles next to a
+ * tile traced again are traced again as well.
+ *
+ * Any other change renders the whole Window again: the first render, a change
+ * of the lights or of the settings of the camera that changes the image (See
+ * Camera.fingerprint), or another render into the frame buffer of the camera
+ * in between. The progress listener, the checkpoint file and the streaming of
+ * the camera are not used.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class IncrementalRenderer {
+
+	private final Camera camera;
+	private final Scene scene;
+
+	/**
+	 * The footprints of the tiles of the Window, in the order of Tile.split,
+	 * or null before the first render.
+	 */
+	private List<TileFootprint> footprints;
+
+	/**
+	 * The state of the last render: the IDs of its shapes, in order, the
+	 * shapes and their fingerprints, the IDs by shape, the accelerator over
+	 * the shapes, the fingerprint of the camera and the lights, the frame
+	 * buffer it was rendered into, and, with supersampling, the first samples
+	 * of the pixels and the Shape seen by each pixel.
+	 */
+	private int[] shapeIds;
+	private List<Shape> shapes;
+	private long[] shapeFingerprints;
+	private Map<Shape, Integer> shapeIdMap;
+	private AcceleratorSelector.Selection selection;
+	private long settings;
+	private FrameBuffer frameBuffer;
+	private FrameBuffer samples;
+	private Shape[] hitShapes;
+
+	/**
+	 * The report of the last render: why the whole Window was rendered (null
+	 * if it was not), the shapes removed, added and edited since the render
+	 * before it, the tiles traced, and the time spent comparing the scenes
+	 * and in total.
+	 */
+	private String fullRenderReason;
+	private int removedCount;
+	private int addedCount;
+	private int editedCount;
+	private int tracedTileCount;
+	private long diffTime;
+	private long totalTime;
+
+
+	/**
+	 * Constructs an IncrementalRenderer of the given scene, rendered with the
+	 * given camera.
+	 *
+	 * @param camera    the camera the scene is rendered with
+	 * @param scene     the scene to be edited and rendered
+	 */
+	public IncrementalRenderer (Camera camera, Scene scene) {
+		this.camera = camera;
+		this.scene = scene;
+	}
+
+
+	/**
+	 * Renders the scene into the frame buffer of the camera: the whole Window
+	 * the first time, and only the tiles an edit may have changed afterwards.
+	 */
+	public void render () {
+
+		long start = System.nanoTime();
+		Window window = this.camera.getWindow();
+		CompiledScene compiled = this.scene.compile();
+		int[] ids = this.scene.getShapeIds();
+		List<Shape> shapes = compiled.getShapes();
+		long[] fingerprints = new long[shapes.size()];
+		Arrays.parallelSetAll(fingerprints, i -> fingerprint(compiled, shapes.get(i)));
+		long settings = this.camera.fingerprint(new CompiledScene(Collections.<Shape>emptyList(), this.scene.getLights()));
+
+		this.removedCount = 0;
+		this.addedCount = 0;
+		this.editedCount = 0;
+		this.fullRenderReason = null;
+		if (this.footprints == null) {
+			this.fullRenderReason = "first render";
+		}
+		else if (settings != this.settings) {
+			this.fullRenderReason = "camera or lights changed";
+		}
+		else if (this.camera.getFrameBuffer() != this.frameBuffer) {
+			this.fullRenderReason = "frame buffer replaced";
+		}
+
+		List<Tile> tiles = Tile.split(window, this.camera.getTileSize(), this.camera.getTileSize());
+		boolean[] dirty = new boolean[tiles.size()];
+		Map<Shape, Shape> replacements = new IdentityHashMap<Shape, Shape>();
+		if (this.fullRenderReason != null) {
+			Arrays.fill(dirty, true);
+		}
+		else {
+			this.markDirtyTiles(ids, shapes, fingerprints, dirty, replacements);
+		}
+		this.diffTime = System.nanoTime() - start;
+
+		boolean sameShapes = this.fullRenderReason == null && this.removedCount == 0 && this.addedCount == 0
+				&& replacements.isEmpty();
+		if (!sameShapes) {
+			this.selection = this.camera.selectAccelerator(compiled);
+			this.shapeIdMap = null;
+		}
+		Shot shot = this.camera.createShot(compiled, this.selection);
+		if (this.fullRenderReason != null) {
+			this.camera.beginShot(shot);
+			this.footprints = new ArrayList<TileFootprint>(Collections.<TileFootprint>nCopies(tiles.size(), null));
+			this.samples = null;
+		}
+		else {
+			this.camera.resumeShot(shot);
+		}
+
+		// The pixels outside the traced tiles keep the Shape they saw, as the
+		// Shape of the scene with the same ID
+		Shape[] hitShapes = shot.getHitShapes();
+		if (hitShapes != null) {
+			if (this.samples == null) {
+				this.samples = new ArrayFrameBuffer(window.getWidth(), window.getHeight());
+			}
+			else {
+				for (int i = 0; i < hitShapes.length; i++) {
+					Shape shape = this.hitShapes[i];
+					Shape replacement = (shape != null) ? replacements.get(shape) : null;
+					hitShapes[i] = (replacement != null) ? replacement : shape;
+				}
+			}
+		}
+
+		List<TileFootprint> traced = new ArrayList<TileFootprint>();
+		for (int i = 0; i < tiles.size(); i++) {
+			if (dirty[i]) {
+				TileFootprint footprint = new TileFootprint(tiles.get(i));
+				this.footprints.set(i, footprint);
+				traced.add(footprint);
+			}
+		}
+		this.renderTiles(shot, traced);
+
+		if (!traced.isEmpty() && this.shapeIdMap == null) {
+			this.shapeIdMap = new IdentityHashMap<Shape, Integer>(2 * shapes.size());
+			for (int i = 0; i < ids.length; i++) {
+				this.shapeIdMap.put(shapes.get(i), ids[i]);
+			}
+		}
+		for (TileFootprint footprint : traced) {
+			footprint.finish(this.shapeIdMap);
+		}
+
+		this.shapeIds = ids;
+		this.shapes = shapes;
+		this.shapeFingerprints = fingerprints;
+		this.settings = settings;
+		this.frameBuffer = this.camera.getFrameBuffer();
+		this.hitShapes = hitShapes;
+		this.tracedTileCount = traced.size();
+		this.totalTime = System.nanoTime() - start;
+	}
+
+	/**
+	 * Gets the scene of the renderer.
+	 * @return    the scene
+	 */
+	public Scene getScene () {
+		return this.scene;
+	}
+
+	/**
+	 * Gets the camera the scene is rendered with.
+	 * @return    the camera
+	 */
+	public Camera getCamera () {
+		return this.camera;
+	}
+
+	/**
+	 * Gets the number of tiles of the Window.
+	 * @return    the number of tiles, or zero before the first render
+	 */
+	public int getTileCount () {
+		return (this.footprints != null) ? this.footprints.size() : 0;
+	}
+
+	/**
+	 * Gets the number of tiles traced by the last render.
+	 * @return    the number of tiles traced
+	 */
+	public int getTracedTileCount () {
+		return this.tracedTileCount;
+	}
+
+	@Override
+	public String toString () {
+		String cause = (this.fullRenderReason != null) ? "full render, " + this.fullRenderReason
+				: String.format("%d shapes removed, %d added, %d edited", this.removedCount, this.addedCount, this.editedCount);
+		return String.format("Incremental render: %d of %d tiles traced in %.2f ms (%s), scene compared in %.2f ms",
+				this.tracedTileCount, this.getTileCount(), this.totalTime / 1e6, cause, this.diffTime / 1e6);
+	}
+
+
+	/**
+	 * Matches the given shapes to the shapes of the last render by ID, and
+	 * marks the tiles that their differences may have changed. The shapes of
+	 * the last render that stand for the same shape as a new one (i.e. the
+	 * views of a MappedScene) are mapped to it in the given replacements.
+	 */
+	private void markDirtyTiles (int[] ids, List<Shape> shapes, long[] fingerprints,
+			boolean[] dirty, Map<Shape, Shape> replacements) {
+
+		List<Integer> hitIds = new ArrayList<Integer>();
+		List<BoundingBox> removedBoxes = new ArrayList<BoundingBox>();
+		List<BoundingBox> addedBoxes = new ArrayList<BoundingBox>();
+
+		// The IDs of both renders are increasing, so they are matched in a
+		// single merge
+		int i = 0;
+		int j = 0;
+		while (i < this.shapeIds.length || j < ids.length) {
+			if (j == ids.length || (i < this.shapeIds.length && this.shapeIds[i] < ids[j])) {
+				hitIds.add(this.shapeIds[i]);
+				removedBoxes.add(this.shapes.get(i).getBoundingBox());
+				this.removedCount++;
+				i++;
+			}
+			else if (i == this.shapeIds.length || ids[j] < this.shapeIds[i]) {
+				addedBoxes.add(shapes.get(j).getBoundingBox());
+				this.addedCount++;
+				j++;
+			}
+			else {
+				Shape last = this.shapes.get(i);
+				Shape shape = shapes.get(j);
+				if (fingerprints[j] == this.shapeFingerprints[i]) {
+					if (shape != last) {
+						replacements.put(last, shape);
+					}
+				}
+				else if (shape == last) {
+					// The geometry of a shape is immutable, so only what it
+					// looks like changed
+					hitIds.add(ids[j]);
+					this.editedCount++;
+				}
+				else {
+					hitIds.add(ids[j]);
+					removedBoxes.add(last.getBoundingBox());
+					addedBoxes.add(shape.getBoundingBox());
+					this.removedCount++;
+					this.addedCount++;
+				}
+				i++;
+				j++;
+			}
+		}
+
+		for (int tile = 0; tile < dirty.length; tile++) {
+			dirty[tile] = isDirty(this.footprints.get(tile), hitIds, removedBoxes, addedBoxes);
+		}
+
+		if (this.camera.getMaxSamples() > 1) {
+			Window window = this.camera.getWindow();
+			int columns = (window.getWidth() + this.camera.getTileSize() - 1) / this.camera.getTileSize();
+			boolean[] marked = dirty.clone();
+			for (int tile = 0; tile < dirty.length; tile++) {
+				int column = tile % columns;
+				dirty[tile] = marked[tile]
+						|| (column > 0 && marked[tile - 1])
+						|| (column < columns - 1 && tile + 1 < dirty.length && marked[tile + 1])
+						|| (tile >= columns && marked[tile - columns])
+						|| (tile + columns < dirty.length && marked[tile + columns]);
+			}
+		}
+	}
+
+	/**
+	 * Renders the final pixels of the tiles of the given footprints into the
+	 * frame buffer of the camera, in parallel like Camera.shoot does, and
+	 * records the rays of each tile into its footprint. The other pixels of the
+	 * frame buffer are kept. With supersampling, the first samples of the tiles
+	 * are copied into the first samples of the Window, whose other pixels are
+	 * the first samples of the last render, and the pixels are marked for
+	 * refinement over the whole Window.
+	 */
+	private void renderTiles (Shot shot, List<TileFootprint> footprints) {
+
+		List<Tile> tiles = new ArrayList<Tile>(footprints.size());
+		for (TileFootprint footprint : footprints) {
+			tiles.add(footprint.getTile());
+		}
+		FrameBuffer frameBuffer = this.camera.getFrameBuffer();
+		TileRenderer renderer = new TileRenderer(shot, frameBuffer, 0, 0, shot.getHitShapes(),
+				this.camera.getTraceStatistics());
+
+		ForkJoinPool pool = this.camera.openRenderPool();
+		try {
+			renderer.renderTiles(pool, false, tiles, footprints);
+			if (shot.getHitShapes() == null) {
+				return;
+			}
+
+			for (Tile tile : tiles) {
+				for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+					for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+						this.samples.setRGB(x, y, frameBuffer.getRGB(x, y));
+					}
+				}
+			}
+			renderer.markRefinements(this.samples);
+			renderer.renderTiles(pool, true, tiles, footprints);
+		}
+		finally {
+			this.camera.closeRenderPool(pool);
+		}
+	}
+
+	/**
+	 * Checks if the given differences of the scene may change the tile of the
+	 * given footprint.
+	 */
+	private static boolean isDirty (TileFootprint footprint, List<Integer> hitIds,
+			List<BoundingBox> removedBoxes, List<BoundingBox> addedBoxes) {
+
+		for (int shapeId : hitIds) {
+			if (footprint.hits(shapeId)) {
+				return true;
+			}
+		}
+		for (BoundingBox box : removedBoxes) {
+			if (footprint.mayBeOccludedWithin(box)) {
+				return true;
+			}
+		}
+		for (BoundingBox box : addedBoxes) {
+			if (footprint.mayReach(box)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Computes the fingerprint of the given shape of the compiled scene, with
+	 * the material it is rendered with.
+	 */
+	private static long fingerprint (CompiledScene compiled, Shape shape) {
+		Fingerprint fingerprint = new Fingerprint();
+		compiled.fingerprint(shape, fingerprint);
+		return fingerprint.getValue();
+	}
+}
@@ -0,0 +1,192 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * The MappedFrameBuffer class is a concrete implementation of the FrameBuffer
+ * interface, backed by a memory-mapped file instead of the heap, for images
+ * too large to fit in it (i.e. gigapixel panoramas). The operating system
+ * pages the pixels in and out of the file as they are used, so the heap usage
+ * does not grow with the resolution.
+ *
+ * The pixels are stored tile by tile: the Window is split into square tiles of
+ * tileSize pixels (the edge tiles are padded to full tiles), each tile is
+ * stored row by row, and the tiles are stored row by row. When the tiles match
+ * the tiles of the render (See Camera.setTileSize), a render thread writes its
+ * whole tile into a contiguous run of pages.
+ *
+ * A mapping is limited to 2 GB, so the file is mapped in segments of whole
+ * tiles. The mapped memory is released when the frame buffer is garbage
+ * collected; closing the frame buffer writes the pixels out, and closes the
+ * file.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class MappedFrameBuffer implements FrameBuffer, Closeable {
+
+	/**
+	 * The max number of bytes mapped by a segment.
+	 */
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	/**
+	 * The dimensions of the frame buffer, and of its tiles.
+	 */
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final int tileColumns;
+	private final int tilePixels;
+	private final int tilesPerSegment;
+
+	/**
+	 * The mapped file, and its segments, viewed as packed RGB values.
+	 */
+	private final RandomAccessFile file;
+	private final MappedByteBuffer[] mappings;
+	private final IntBuffer[] segments;
+
+
+	/**
+	 * Constructs a black MappedFrameBuffer with the given dimensions, over the
+	 * given file. The file is created if it does not exist, and its previous
+	 * contents are discarded.
+	 *
+	 * @param file        the file the pixels are mapped from
+	 * @param width       the width of the frame buffer, in pixels
+	 * @param height      the height of the frame buffer, in pixels
+	 * @param tileSize    the size of the square tiles of the layout, in pixels
+	 * @throws IOException    if the file cannot be created or mapped
+	 */
+	public MappedFrameBuffer (File file, int width, int height, int tileSize) throws IOException {
+
+		if (width < 1 || height < 1 || tileSize < 1) {
+			throw new IllegalArgumentException("Frame buffer and tile dimensions must be positive");
+		}
+
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.tileColumns = (width + tileSize - 1) / tileSize;
+		this.tilePixels = tileSize * tileSize;
+
+		long tileBytes = 4L * this.tilePixels;
+		if (tileBytes > SEGMENT_BYTES) {
+			throw new IllegalArgumentException("Tile size is too large to be mapped");
+		}
+		this.tilesPerSegment = (int) (SEGMENT_BYTES / tileBytes);
+
+		long tileCount = (long) this.tileColumns * ((height + tileSize - 1) / tileSize);
+		int segmentCount = (int) ((tileCount + this.tilesPerSegment - 1) / this.tilesPerSegment);
+
+		// Truncating the file first discards the previous pixels; the extended
+		// file reads as zeros (black), without being written.
+		this.file = new RandomAccessFile(file, "rw");
+		this.mappings = new MappedByteBuffer[segmentCount];
+		this.segments = new IntBuffer[segmentCount];
+		try {
+			this.file.setLength(0);
+			this.file.setLength(tileCount * tileBytes);
+
+			FileChannel channel = this.file.getChannel();
+			for (int segment = 0; segment < segmentCount; segment++) {
+				long position = (long) segment * this.tilesPerSegment * tileBytes;
+				long size = Math.min(this.tilesPerSegment * tileBytes, tileCount * tileBytes - position);
+				this.mappings[segment] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+				this.segments[segment] = this.mappings[segment].order(ByteOrder.nativeOrder()).asIntBuffer();
+			}
+		}
+		catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+
+	@Override
+	public int getWidth () {
+		return this.width;
+	}
+
+	@Override
+	public int getHeight () {
+		return this.height;
+	}
+
+	@Override
+	public int getRGB (int x, int y) {
+		long tile = this.tileOf(x, y);
+		return this.segments[(int) (tile / this.tilesPerSegment)].get(this.indexOf(tile, x, y));
+	}
+
+	@Override
+	public void setRGB (int x, int y, int rgb) {
+		long tile = this.tileOf(x, y);
+		this.segments[(int) (tile / this.tilesPerSegment)].put(this.indexOf(tile, x, y), rgb);
+	}
+
+	@Override
+	public void getRow (int y, int[] rgb, int offset) {
+
+		// The row is copied in bulk, one tile at a time
+		for (int x = 0; x < this.width; x += this.tileSize) {
+			long tile = this.tileOf(x, y);
+			int length = Math.min(this.tileSize, this.width - x);
+			this.segments[(int) (tile / this.tilesPerSegment)].get(this.indexOf(tile, x, y), rgb, offset + x, length);
+		}
+	}
+
+	/**
+	 * Gets the size of the square tiles of the layout.
+	 * @return    the tile size, in pixels
+	 */
+	public int getTileSize () {
+		return this.tileSize;
+	}
+
+	/**
+	 * Writes the pixels changed so far out to the file.
+	 */
+	public void flush () {
+		for (MappedByteBuffer mapping : this.mappings) {
+			mapping.force();
+		}
+	}
+
+	/**
+	 * Writes the pixels out to the file, and closes it. The frame buffer must
+	 * not be used afterwards.
+	 *
+	 * @throws IOException    if the file cannot be closed
+	 */
+	@Override
+	public void close () throws IOException {
+		this.flush();
+		this.file.close();
+	}
+
+
+	/**
+	 * Gets the index of the tile holding the given pixel. There may be more
+	 * tiles than an int can count (i.e. small tiles of a huge image).
+	 */
+	private long tileOf (int x, int y) {
+		return (long) (y / this.tileSize) * this.tileColumns + (x / this.tileSize);
+	}
+
+	/**
+	 * Gets the index of the given pixel of the given tile, in its segment.
+	 */
+	private int indexOf (long tile, int x, int y) {
+		return (int) (tile % this.tilesPerSegment) * this.tilePixels + (y % this.tileSize) * this.tileSize + (x % this.tileSize);
+	}
+}
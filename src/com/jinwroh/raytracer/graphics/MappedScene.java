@@ -0,0 +1,403 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
+
+
+/**
+ * The MappedScene class is a Scene loaded from a binary scene file, which is
+ * memory-mapped instead of read: opening a scene only reads its header, its
+ * materials and its lights, so it takes about the same time for a hundred
+ * spheres or for fifty million, and the operating system pages the spheres in
+ * as the render reads them.
+ *
+ * The spheres are never deserialized: getShapes returns a list of flyweight
+ * views, each one a Sphere that reads its center and radius from the mapping,
+ * and shares the properties and the shading strategy of its material with all
+ * the spheres of the material. The views are created as the list is read, and
+ * are not kept. The shapes of a mapped scene are read-only; its lights can be
+ * edited as the ones of any Scene.
+ *
+ * The file is little-endian, in four parts:
+ * - the header (HEADER_BYTES): a magic number, the version of the format, the
+ *   number of spheres, materials and lights, the offsets of the material and
+ *   light tables, and the camera (a flag, the window, the eye, and the four
+ *   corners of the viewport)
+ * - the spheres (SPHERE_BYTES each): the center x, y, z and the radius, as
+ *   doubles, and the index of the material
+ * - the materials (MATERIAL_BYTES each): the colors of the Shape.Properties
+ *   (with a flag per color, as a color can be null), the other properties, and
+ *   the name of the shading strategy (See SceneFile.createShadingStrategy)
+ * - the lights (LIGHT_BYTES each): the direction, the color, and whether the
+ *   light is on
+ *
+ * The spheres come first, so a converter streams them straight to the file
+ * (See convert), and writes the tables and the header once they are all
+ * written. A file cut short has no header, and is rejected.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class MappedScene extends Scene {
+
+	static final int MAGIC = 0x52545342;
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 192;
+	static final int SPHERE_BYTES = 40;
+	static final int MATERIAL_BYTES = 128;
+	static final int LIGHT_BYTES = 56;
+	static final int SHADING_NAME_BYTES = 24;
+
+	/**
+	 * The number of spheres mapped by a segment, as a mapping is limited to
+	 * 2 GB.
+	 */
+	private static final int SEGMENT_SPHERES = 1 << 24;
+
+	private final ByteBuffer[] segments;
+	private final int sphereCount;
+	private final Shape.Properties[] properties;
+	private final ShadingStrategy[] shadingStrategies;
+	private final List<Shape> shapes = new Spheres();
+
+	/**
+	 * The camera of the file, or null if the file has none.
+	 */
+	private final Point eye;
+	private final Viewport viewport;
+	private final Window window;
+
+
+	/**
+	 * Opens a binary scene file, and maps its spheres.
+	 *
+	 * @param file    the binary scene file
+	 * @throws IOException    if the file cannot be read, or is not a valid binary scene file
+	 */
+	public MappedScene (File file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = read(channel, 0, HEADER_BYTES);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException(file + " is not a binary scene file");
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(file + " has version " + header.getInt(4) + " of the binary scene format, not " + VERSION);
+			}
+
+			long sphereCount = header.getLong(8);
+			int materialCount = header.getInt(16);
+			int lightCount = header.getInt(20);
+			long materialOffset = header.getLong(24);
+			long lightOffset = header.getLong(32);
+			if (sphereCount < 0 || sphereCount > Integer.MAX_VALUE || materialCount < 0 || lightCount < 0
+					|| materialOffset != HEADER_BYTES + sphereCount * SPHERE_BYTES
+					|| lightOffset != materialOffset + (long) materialCount * MATERIAL_BYTES
+					|| channel.size() < lightOffset + (long) lightCount * LIGHT_BYTES) {
+				throw new IOException(file + " is a corrupt binary scene file");
+			}
+			this.sphereCount = (int) sphereCount;
+
+			if (header.getInt(40) != 0) {
+				this.window = new Window(header.getInt(44), header.getInt(48));
+				this.eye = new Point(header.getDouble(56), header.getDouble(64), header.getDouble(72));
+				Point[] corners = new Point[4];
+				for (int i = 0; i < 4; i++) {
+					corners[i] = new Point(header.getDouble(80 + 24 * i), header.getDouble(88 + 24 * i), header.getDouble(96 + 24 * i));
+				}
+				this.viewport = new Viewport(corners[0], corners[1], corners[2], corners[3]);
+			}
+			else {
+				this.window = null;
+				this.eye = null;
+				this.viewport = null;
+			}
+
+			ByteBuffer materials = read(channel, materialOffset, materialCount * MATERIAL_BYTES);
+			this.properties = new Shape.Properties[materialCount];
+			this.shadingStrategies = new ShadingStrategy[materialCount];
+			for (int i = 0; i < materialCount; i++) {
+				this.readMaterial(materials, i * MATERIAL_BYTES, i, file);
+			}
+
+			ByteBuffer lights = read(channel, lightOffset, lightCount * LIGHT_BYTES);
+			for (int i = 0; i < lightCount; i++) {
+				int offset = i * LIGHT_BYTES;
+				Vector direction = new Vector(lights.getDouble(offset), lights.getDouble(offset + 8), lights.getDouble(offset + 16));
+				Color color = new Color(lights.getDouble(offset + 24), lights.getDouble(offset + 32), lights.getDouble(offset + 40));
+				Light light = new Light(direction, color);
+				if (lights.getInt(offset + 48) == 0) {
+					light.turnOff();
+				}
+				super.addLight(light);
+			}
+
+			int segmentCount = (this.sphereCount + SEGMENT_SPHERES - 1) / SEGMENT_SPHERES;
+			this.segments = new ByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				long first = (long) i * SEGMENT_SPHERES;
+				long count = Math.min(SEGMENT_SPHERES, this.sphereCount - first);
+				this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * SPHERE_BYTES, count * SPHERE_BYTES)
+						.order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+	}
+
+
+	/**
+	 * Checks if the given file is a binary scene file, by its magic number.
+	 *
+	 * @param file    the file to be checked
+	 * @return        true if the file starts as a binary scene file, false otherwise
+	 * @throws IOException    if the file cannot be read
+	 */
+	public static boolean accepts (File file) throws IOException {
+		try (FileInputStream in = new FileInputStream(file)) {
+			byte[] magic = in.readNBytes(4);
+			return magic.length == 4 && ByteBuffer.wrap(magic).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Writes a scene, and the eye, viewport and window of the given camera,
+	 * into a binary scene file. The spheres of the same material and shading
+	 * strategy share a material of the file.
+	 *
+	 * @param file      the binary scene file
+	 * @param camera    the camera of the scene, or null to write no camera
+	 * @param scene     the scene
+	 * @throws IOException    if the file cannot be written
+	 * @throws IllegalArgumentException    if the scene holds a shape other than a Sphere, or an unnamed shading strategy
+	 */
+	public static void write (File file, Camera camera, Scene scene) throws IOException {
+		try (MappedSceneWriter writer = new MappedSceneWriter(file)) {
+			SceneFile.emit(camera, scene, writer);
+			writer.finish();
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Converts a text scene file (See SceneFile) into a binary scene file. The
+	 * text file is streamed into the binary one, so the conversion builds no
+	 * Scene, and takes constant memory for any number of spheres.
+	 *
+	 * @param sceneFile    the text scene file
+	 * @param file         the binary scene file
+	 * @throws IOException    if a file cannot be read or written, or the text file is invalid
+	 */
+	public static void convert (File sceneFile, File file) throws IOException {
+		try (SceneReader reader = new SceneReader(new FileInputStream(sceneFile));
+				MappedSceneWriter writer = new MappedSceneWriter(file)) {
+			reader.read(writer);
+			writer.finish();
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+
+	/**
+	 * Gets the number of spheres of the scene.
+	 * @return    the number of spheres
+	 */
+	public int getSphereCount () {
+		return this.sphereCount;
+	}
+
+	/**
+	 * Retrieves the spheres of the scene, as an unmodifiable list of views of
+	 * the mapping, in the order of the file.
+	 * @return    a list of the spheres of the scene
+	 */
+	@Override
+	public List<Shape> getShapes () {
+		return this.shapes;
+	}
+
+	/**
+	 * Retrieves a view of the sphere of the given ID. The spheres have the IDs
+	 * 1 to getSphereCount, in the order of the file, as they would have once
+	 * added to a Scene in that order.
+	 * @param shapeId    the unique shape id
+	 * @return           the sphere, or null if the scene has no sphere of the given id
+	 */
+	@Override
+	public Shape getShape (int shapeId) {
+		return (shapeId >= 1 && shapeId <= this.sphereCount) ? this.shapes.get(shapeId - 1) : null;
+	}
+
+	/**
+	 * Retrieves the IDs of the spheres of the scene: 1 to getSphereCount.
+	 * @return    the unique IDs of the spheres, in the order of the file
+	 */
+	@Override
+	public int[] getShapeIds () {
+		int[] output = new int[this.sphereCount];
+		for (int i = 0; i < this.sphereCount; i++) {
+			output[i] = i + 1;
+		}
+		return output;
+	}
+
+	/**
+	 * The shapes of a mapped scene are read-only.
+	 * @throws UnsupportedOperationException    always
+	 */
+	@Override
+	public void setShape (int shapeId, Shape shape) {
+		throw new UnsupportedOperationException("The shapes of a mapped scene are read-only");
+	}
+
+	/**
+	 * The shapes of a mapped scene are read-only.
+	 * @throws UnsupportedOperationException    always
+	 */
+	@Override
+	public int addShape (Shape shape) {
+		throw new UnsupportedOperationException("The shapes of a mapped scene are read-only");
+	}
+
+	/**
+	 * The shapes of a mapped scene are read-only.
+	 * @throws UnsupportedOperationException    always
+	 */
+	@Override
+	public void removeShape (int shapeId) {
+		throw new UnsupportedOperationException("The shapes of a mapped scene are read-only");
+	}
+
+	/**
+	 * Checks if the file holds a camera.
+	 * @return    true if the file holds a camera, false otherwise
+	 */
+	public boolean hasCamera () {
+		return this.window != null;
+	}
+
+	/**
+	 * Creates a camera with the eye, viewport and window of the file, or the
+	 * camera of the Driver if the file holds none.
+	 * @return    a new camera
+	 */
+	public Camera createCamera () {
+		if (!this.hasCamera()) {
+			return new Camera(new Point(0.0, 0.0, 0.0), new Viewport(2, 2, new Point(0, 0, 2)), new Window(500, 500));
+		}
+		return new Camera(this.eye, this.viewport, new Window(this.window.getWidth(), this.window.getHeight()));
+	}
+
+
+	/* Package-private accessors for the views of the spheres */
+	double getCenterX (int index) {
+		return this.segments[index / SEGMENT_SPHERES].getDouble((index % SEGMENT_SPHERES) * SPHERE_BYTES);
+	}
+
+	double getCenterY (int index) {
+		return this.segments[index / SEGMENT_SPHERES].getDouble((index % SEGMENT_SPHERES) * SPHERE_BYTES + 8);
+	}
+
+	double getCenterZ (int index) {
+		return this.segments[index / SEGMENT_SPHERES].getDouble((index % SEGMENT_SPHERES) * SPHERE_BYTES + 16);
+	}
+
+	double getRadius (int index) {
+		return this.segments[index / SEGMENT_SPHERES].getDouble((index % SEGMENT_SPHERES) * SPHERE_BYTES + 24);
+	}
+
+
+	/**
+	 * Reads the material at the given offset of the material table.
+	 */
+	private void readMaterial (ByteBuffer materials, int offset, int index, File file) throws IOException {
+
+		int flags = materials.getInt(offset);
+		Shape.Properties properties = new Shape.Properties();
+		properties.specularCoefficient = materials.getInt(offset + 4);
+		properties.ambientColorProperty = ((flags & 1) != 0) ? readColor(materials, offset + 8) : null;
+		properties.diffuseColorProperty = ((flags & 2) != 0) ? readColor(materials, offset + 32) : null;
+		properties.specularColorProperty = ((flags & 4) != 0) ? readColor(materials, offset + 56) : null;
+		properties.reflectionCoefficient = materials.getDouble(offset + 80);
+		properties.refractionCoefficient = materials.getDouble(offset + 88);
+		properties.refractiveIndex = materials.getDouble(offset + 96);
+
+		byte[] name = new byte[SHADING_NAME_BYTES];
+		materials.get(offset + 104, name);
+		int length = 0;
+		while (length < name.length && name[length] != 0) {
+			length++;
+		}
+
+		try {
+			this.shadingStrategies[index] = SceneFile.createShadingStrategy(new String(name, 0, length, StandardCharsets.ISO_8859_1));
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException(file + ": " + e.getMessage());
+		}
+		this.properties[index] = properties;
+	}
+
+	private static Color readColor (ByteBuffer buffer, int offset) {
+		return new Color(buffer.getDouble(offset), buffer.getDouble(offset + 8), buffer.getDouble(offset + 16));
+	}
+
+	private static ByteBuffer read (FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Binary scene file ends within its header or its tables");
+			}
+		}
+		return buffer;
+	}
+
+
+
+	/**
+	 * The Spheres class is the list of the spheres of a mapped scene: a view
+	 * of the sphere at an index is created when the index is read.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private final class Spheres extends AbstractList<Shape> implements RandomAccess {
+
+		@Override
+		public Shape get (int index) {
+			MappedScene scene = MappedScene.this;
+			if (index < 0 || index >= scene.sphereCount) {
+				throw new IndexOutOfBoundsException("Sphere " + index + " of " + scene.sphereCount);
+			}
+
+			ByteBuffer segment = scene.segments[index / SEGMENT_SPHERES];
+			int material = segment.getInt((index % SEGMENT_SPHERES) * SPHERE_BYTES + 32);
+			if (material < 0 || material >= scene.properties.length) {
+				throw new IllegalStateException("Sphere " + index + " has no material " + material);
+			}
+			return new MappedSphere(scene, index, scene.properties[material], scene.shadingStrategies[material]);
+		}
+
+		@Override
+		public int size () {
+			return MappedScene.this.sphereCount;
+		}
+	}
+}
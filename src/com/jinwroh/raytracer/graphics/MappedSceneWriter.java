@@ -0,0 +1,216 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
+
+
+/**
+ * The MappedSceneWriter class writes the statements of a scene into a binary
+ * scene file (See MappedScene for the format). The spheres are streamed to the
+ * file through a fixed buffer as they come; the materials and the lights, which
+ * are few, are kept until finish writes them after the spheres, with the
+ * header. The I/O errors are thrown as UncheckedIOException, as the handler
+ * methods throw no IOException.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class MappedSceneWriter implements SceneReader.Handler, Closeable {
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer spheres = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	private long position = MappedScene.HEADER_BYTES;
+	private long sphereCount;
+
+	private ByteBuffer materials = ByteBuffer.allocate(4 * MappedScene.MATERIAL_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	private ByteBuffer lights = ByteBuffer.allocate(4 * MappedScene.LIGHT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	private int materialCount;
+	private int lightCount;
+
+	private Point eye = new Point(0.0, 0.0, 0.0);
+	private Viewport viewport = new Viewport(2, 2, new Point(0, 0, 2));
+	private Window window;
+
+
+	/**
+	 * Creates the given binary scene file, and starts writing it. The file is
+	 * not valid until finish is called.
+	 *
+	 * @param file    the binary scene file
+	 * @throws IOException    if the file cannot be created
+	 */
+	MappedSceneWriter (File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+
+	@Override
+	public void eye (Point eye) {
+		this.eye = eye;
+		this.defaultWindow();
+	}
+
+	@Override
+	public void viewport (Viewport viewport) {
+		this.viewport = viewport;
+		this.defaultWindow();
+	}
+
+	@Override
+	public void window (Window window) {
+		this.window = new Window(window.getWidth(), window.getHeight());
+	}
+
+	@Override
+	public void material (int material, String name, Shape.Properties properties, ShadingStrategy shadingStrategy) {
+
+		if (material != this.materialCount) {
+			throw new IllegalArgumentException("Materials must be indexed in order");
+		}
+		this.materials = ensureCapacity(this.materials, MappedScene.MATERIAL_BYTES);
+
+		ByteBuffer buffer = this.materials;
+		int flags = ((properties.ambientColorProperty != null) ? 1 : 0)
+				| ((properties.diffuseColorProperty != null) ? 2 : 0)
+				| ((properties.specularColorProperty != null) ? 4 : 0);
+		buffer.putInt(flags).putInt(properties.specularCoefficient);
+		putColor(buffer, properties.ambientColorProperty);
+		putColor(buffer, properties.diffuseColorProperty);
+		putColor(buffer, properties.specularColorProperty);
+		buffer.putDouble(properties.reflectionCoefficient);
+		buffer.putDouble(properties.refractionCoefficient);
+		buffer.putDouble(properties.refractiveIndex);
+
+		byte[] shading = SceneFile.getShadingStrategyName(shadingStrategy).getBytes(StandardCharsets.ISO_8859_1);
+		if (shading.length > MappedScene.SHADING_NAME_BYTES) {
+			throw new IllegalArgumentException("Shading strategy name is too long");
+		}
+		buffer.put(shading).put(new byte[MappedScene.SHADING_NAME_BYTES - shading.length]);
+		this.materialCount++;
+	}
+
+	@Override
+	public void light (Light light) {
+		this.lights = ensureCapacity(this.lights, MappedScene.LIGHT_BYTES);
+		Vector direction = light.getDirection();
+		this.lights.putDouble(direction.getX()).putDouble(direction.getY()).putDouble(direction.getZ());
+		putColor(this.lights, light.getColor());
+		this.lights.putInt(light.isOn() ? 1 : 0).putInt(0);
+		this.lightCount++;
+	}
+
+	@Override
+	public void sphere (double x, double y, double z, double radius, int material) {
+		if (material < 0 || material >= this.materialCount) {
+			throw new IllegalArgumentException("Sphere of an unknown material " + material);
+		}
+		if (this.spheres.remaining() < MappedScene.SPHERE_BYTES) {
+			this.flushSpheres();
+		}
+		this.spheres.putDouble(x).putDouble(y).putDouble(z).putDouble(radius).putInt(material).putInt(0);
+		this.sphereCount++;
+	}
+
+	/**
+	 * Writes the rest of the spheres, the materials, the lights and the header,
+	 * which makes the file valid.
+	 *
+	 * @throws IOException    if the file cannot be written
+	 */
+	void finish () throws IOException {
+
+		this.flushSpheres();
+		long materialOffset = this.position;
+		this.write(this.materials.flip(), materialOffset);
+		long lightOffset = materialOffset + (long) this.materialCount * MappedScene.MATERIAL_BYTES;
+		this.write(this.lights.flip(), lightOffset);
+
+		ByteBuffer header = ByteBuffer.allocate(MappedScene.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MappedScene.MAGIC).putInt(MappedScene.VERSION).putLong(this.sphereCount);
+		header.putInt(this.materialCount).putInt(this.lightCount).putLong(materialOffset).putLong(lightOffset);
+		if (this.window != null) {
+			header.putInt(1).putInt(this.window.getWidth()).putInt(this.window.getHeight()).putInt(0);
+			putPoint(header, this.eye);
+			putPoint(header, this.viewport.getUpperLeft());
+			putPoint(header, this.viewport.getUpperRight());
+			putPoint(header, this.viewport.getLowerLeft());
+			putPoint(header, this.viewport.getLowerRight());
+		}
+		header.clear();
+		this.write(header, 0);
+	}
+
+	/**
+	 * Closes the file, valid or not.
+	 * @throws IOException    if the file cannot be closed
+	 */
+	@Override
+	public void close () throws IOException {
+		this.channel.close();
+	}
+
+
+	/**
+	 * An eye or a viewport without a window gets the window of the Driver, so
+	 * the file holds a camera.
+	 */
+	private void defaultWindow () {
+		if (this.window == null) {
+			this.window = new Window(500, 500);
+		}
+	}
+
+	private void flushSpheres () {
+		this.spheres.flip();
+		try {
+			this.write(this.spheres, this.position);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.position += this.spheres.limit();
+		this.spheres.clear();
+	}
+
+	private void write (ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += this.channel.write(buffer, position);
+		}
+	}
+
+	private static ByteBuffer ensureCapacity (ByteBuffer buffer, int bytes) {
+		if (buffer.remaining() >= bytes) {
+			return buffer;
+		}
+		ByteBuffer grown = ByteBuffer.allocate(2 * buffer.capacity() + bytes).order(ByteOrder.LITTLE_ENDIAN);
+		return grown.put(buffer.flip());
+	}
+
+	private static void putColor (ByteBuffer buffer, Color color) {
+		if (color == null) {
+			buffer.putDouble(0.0).putDouble(0.0).putDouble(0.0);
+		}
+		else {
+			buffer.putDouble(color.getR()).putDouble(color.getG()).putDouble(color.getB());
+		}
+	}
+
+	private static void putPoint (ByteBuffer buffer, Point point) {
+		buffer.putDouble(point.getX()).putDouble(point.getY()).putDouble(point.getZ());
+	}
+}
@@ -0,0 +1,86 @@
+package com.jinwroh.raytracer.graphics;
+
+import com.jinwroh.raytracer.geometric.BoundingBox;
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
+
+
+/**
+ * The MappedSphere class is a flyweight view of a sphere of a MappedScene: it
+ * holds only the scene and the index of the sphere, and reads the center and
+ * the radius from the mapping whenever they are used. It renders, and has the
+ * fingerprint of, the Sphere it stands for.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class MappedSphere extends Sphere {
+
+	private final MappedScene scene;
+	private final int index;
+
+
+	/**
+	 * Constructs a view of the sphere at the given index of a mapped scene.
+	 *
+	 * @param scene              the mapped scene
+	 * @param index              the index of the sphere
+	 * @param properties         the properties of the material of the sphere
+	 * @param shadingStrategy    the shading strategy of the material of the sphere
+	 */
+	MappedSphere (MappedScene scene, int index, Shape.Properties properties, ShadingStrategy shadingStrategy) {
+		super(properties, shadingStrategy);
+		this.scene = scene;
+		this.index = index;
+	}
+
+
+	@Override
+	public double calculateHitTime (Ray ray) {
+		double radius = this.scene.getRadius(this.index);
+		return calculateHitTime(ray, this.scene.getCenterX(this.index), this.scene.getCenterY(this.index),
+				this.scene.getCenterZ(this.index), Math.pow(radius, 2));
+	}
+
+	@Override
+	public void materializeHit (Ray ray, double timeHit, Shape.LocalCalculations calculations) {
+		materializeHit(ray, timeHit, this.scene.getCenterX(this.index), this.scene.getCenterY(this.index),
+				this.scene.getCenterZ(this.index), calculations);
+	}
+
+	@Override
+	public boolean anyHit (Ray ray, double minTime, double maxTime) {
+		double radius = this.scene.getRadius(this.index);
+		return anyHit(ray, minTime, maxTime, this.scene.getCenterX(this.index), this.scene.getCenterY(this.index),
+				this.scene.getCenterZ(this.index), Math.pow(radius, 2));
+	}
+
+	@Override
+	public BoundingBox getBoundingBox () {
+		double x = this.scene.getCenterX(this.index);
+		double y = this.scene.getCenterY(this.index);
+		double z = this.scene.getCenterZ(this.index);
+		double radius = this.scene.getRadius(this.index);
+		return new BoundingBox(new Point(x - radius, y - radius, z - radius), new Point(x + radius, y + radius, z + radius));
+	}
+
+	@Override
+	public void fingerprint (Fingerprint fingerprint, Shape.Properties properties, ShadingStrategy shadingStrategy) {
+		this.fingerprint(fingerprint, Sphere.class, properties, shadingStrategy);
+		fingerprint.add(this.scene.getCenterX(this.index)).add(this.scene.getCenterY(this.index))
+				.add(this.scene.getCenterZ(this.index)).add(this.scene.getRadius(this.index));
+	}
+
+	@Override
+	public Point getCenter () {
+		return new Point(this.scene.getCenterX(this.index), this.scene.getCenterY(this.index), this.scene.getCenterZ(this.index));
+	}
+
+	@Override
+	public double getRadius () {
+		return this.scene.getRadius(this.index);
+	}
+}
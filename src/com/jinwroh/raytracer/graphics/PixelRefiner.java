@@ -0,0 +1,266 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.Arrays;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * The PixelRefiner class supersamples the pixels of a render adaptively. A
+ * pixel starts with its single regular sample, at its upper left corner (See
+ * Sampler.getSample). Refining the pixel splits it into 2 x 2 cells: the first
+ * cell keeps the sample of the pixel, and the 3 others are sampled at their own
+ * upper left corners. A cell whose samples still contrast is split again the
+ * same way, breadth first, until the samples of the pixel would exceed the max.
+ * The color of the pixel is then the average of its cells, weighted by area.
+ * The new samples share what the first sample left of the ray budget of the
+ * pixel (See TraceLimits.setRayBudget).
+ *
+ * Two samples contrast when they hit different shapes, or when one of their
+ * color channels differs by more than the contrast threshold.
+ *
+ * A PixelRefiner owns the reusable cells of a pixel, so refining a pixel
+ * allocates nothing. As a consequence, it must not be shared between threads;
+ * the TileRenderer creates one per tile.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class PixelRefiner {
+
+	private final Tracer tracer;
+	private final Sampler sampler;
+	private final double eyeX;
+	private final double eyeY;
+	private final double eyeZ;
+	private final int maxSamples;
+	private final double contrastThreshold;
+
+	/**
+	 * The cells of the pixel being refined: the offset of the upper left corner
+	 * and the size, in fractions of a pixel, the color and the Shape of the
+	 * sample at the corner, and whether the cell is to be split. A split cell
+	 * is replaced by its 4 children, so its size is set to zero.
+	 */
+	private final double[] cellX;
+	private final double[] cellY;
+	private final double[] cellSize;
+	private final double[] cellColors;
+	private final Shape[] cellShapes;
+	private final boolean[] cellContrasts;
+
+	private final Ray ray = new Ray();
+	private final double[] color = new double[3];
+
+
+	/**
+	 * Constructs a PixelRefiner that traces its samples with the given tracer.
+	 *
+	 * @param tracer               the tracer of the samples
+	 * @param sampler              the sampler of the whole Window
+	 * @param eye                  the eyepoint of the camera
+	 * @param maxSamples           the maximum number of samples of a pixel
+	 * @param contrastThreshold    the color difference above which samples contrast
+	 */
+	PixelRefiner (Tracer tracer, Sampler sampler, Point eye, int maxSamples, double contrastThreshold) {
+		this.tracer = tracer;
+		this.sampler = sampler;
+		this.eyeX = eye.getX();
+		this.eyeY = eye.getY();
+		this.eyeZ = eye.getZ();
+		this.maxSamples = maxSamples;
+		this.contrastThreshold = contrastThreshold;
+
+		// Every split adds 3 samples and 4 cells
+		int capacity = 1 + 4 * Math.max(0, (maxSamples - 1) / 3);
+		this.cellX = new double[capacity];
+		this.cellY = new double[capacity];
+		this.cellSize = new double[capacity];
+		this.cellColors = new double[3 * capacity];
+		this.cellShapes = new Shape[capacity];
+		this.cellContrasts = new boolean[capacity];
+	}
+
+
+	/**
+	 * Checks if the given packed RGB values (0xRRGGBB) of two samples contrast,
+	 * i.e. if one of their channels differs by more than the given threshold.
+	 *
+	 * @param rgb          the packed RGB value of a sample
+	 * @param otherRGB     the packed RGB value of the other sample
+	 * @param threshold    the contrast threshold, in [0, 1]
+	 * @return             true if the samples contrast, false otherwise
+	 */
+	static boolean contrasts (int rgb, int otherRGB, double threshold) {
+		double limit = threshold * 255;
+		return Math.abs(((rgb >> 16) & 0xFF) - ((otherRGB >> 16) & 0xFF)) > limit
+				|| Math.abs(((rgb >> 8) & 0xFF) - ((otherRGB >> 8) & 0xFF)) > limit
+				|| Math.abs((rgb & 0xFF) - (otherRGB & 0xFF)) > limit;
+	}
+
+	/**
+	 * Marks the pixels of a region to be refined, from their first samples: the
+	 * pixels whose first sample contrasts with the first sample of a neighbor
+	 * in the region, to the right or below. Both pixels of a contrasting pair
+	 * are marked. The marks of the other pixels are cleared.
+	 *
+	 * @param samples      the frame buffer holding the first samples of the region
+	 * @param hitShapes    the Shape seen by the first sample of each pixel, indexed by y * width + x
+	 * @param threshold    the contrast threshold, in [0, 1]
+	 * @param marks        the array to be filled with the marks, indexed by y * width + x
+	 */
+	static void mark (FrameBuffer samples, Shape[] hitShapes, double threshold, boolean[] marks) {
+
+		int width = samples.getWidth();
+		int height = samples.getHeight();
+		Arrays.fill(marks, 0, width * height, false);
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int index = y * width + x;
+				int rgb = samples.getRGB(x, y);
+
+				if (x + 1 < width && (hitShapes[index] != hitShapes[index + 1]
+						|| contrasts(rgb, samples.getRGB(x + 1, y), threshold))) {
+					marks[index] = true;
+					marks[index + 1] = true;
+				}
+				if (y + 1 < height && (hitShapes[index] != hitShapes[index + width]
+						|| contrasts(rgb, samples.getRGB(x, y + 1), threshold))) {
+					marks[index] = true;
+					marks[index + width] = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Refines the pixel at the given position, from its single sample. The
+	 * sample is only known through its packed RGB value, so its color is taken
+	 * at the middle of its 8 bit channels.
+	 *
+	 * @param x           the x ordering of the pixel
+	 * @param y           the y ordering of the pixel
+	 * @param rgb         the packed RGB value of the sample of the pixel
+	 * @param shape       the Shape hit by the sample of the pixel, or null
+	 * @param budget      the secondary rays the sample of the pixel left (See Tracer.getRemainingBudget)
+	 * @param color       the array to be filled with the r, g, b values of the pixel
+	 */
+	void refine (int x, int y, int rgb, Shape shape, int budget, double[] color) {
+
+		this.tracer.getStatistics().refinedPixels++;
+		this.tracer.setRemainingBudget(budget);
+
+		this.cellX[0] = 0.0;
+		this.cellY[0] = 0.0;
+		this.cellSize[0] = 1.0;
+		this.cellColors[0] = (((rgb >> 16) & 0xFF) + 0.5) / 255;
+		this.cellColors[1] = (((rgb >> 8) & 0xFF) + 0.5) / 255;
+		this.cellColors[2] = ((rgb & 0xFF) + 0.5) / 255;
+		this.cellShapes[0] = shape;
+		this.cellContrasts[0] = true;
+
+		int cells = 1;
+		int samples = 1;
+
+		// Breadth first, so the coarse cells are all split before the fine ones
+		for (int cell = 0; cell < cells && samples + 3 <= this.maxSamples; cell++) {
+			if (!this.cellContrasts[cell]) {
+				continue;
+			}
+
+			double half = this.cellSize[cell] / 2;
+			double cornerX = this.cellX[cell];
+			double cornerY = this.cellY[cell];
+			int first = cells;
+
+			// The first child keeps the sample of the cell
+			this.setCell(cells++, cornerX, cornerY, half, this.cellColors[3 * cell],
+					this.cellColors[3 * cell + 1], this.cellColors[3 * cell + 2], this.cellShapes[cell]);
+			this.sampleCell(cells++, x, y, cornerX + half, cornerY, half);
+			this.sampleCell(cells++, x, y, cornerX, cornerY + half, half);
+			this.sampleCell(cells++, x, y, cornerX + half, cornerY + half, half);
+			samples += 3;
+			this.cellSize[cell] = 0.0;
+
+			boolean contrast = this.contrasts(first, cells);
+			for (int child = first; child < cells; child++) {
+				this.cellContrasts[child] = contrast;
+			}
+		}
+
+		double r = 0.0;
+		double g = 0.0;
+		double b = 0.0;
+		for (int cell = 0; cell < cells; cell++) {
+			double area = this.cellSize[cell] * this.cellSize[cell];
+			r += area * this.cellColors[3 * cell];
+			g += area * this.cellColors[3 * cell + 1];
+			b += area * this.cellColors[3 * cell + 2];
+		}
+
+		color[0] = Math.min(1.0, r);
+		color[1] = Math.min(1.0, g);
+		color[2] = Math.min(1.0, b);
+	}
+
+
+	/**
+	 * Traces the sample at the given offset inside the pixel into the cell.
+	 */
+	private void sampleCell (int cell, int x, int y, double offsetX, double offsetY, double size) {
+
+		this.ray.set(this.eyeX, this.eyeY, this.eyeZ,
+				this.sampler.getSampleX(x, offsetX) - this.eyeX,
+				this.sampler.getSampleY(y, offsetY) - this.eyeY,
+				this.sampler.getSampleZ() - this.eyeZ);
+		this.tracer.traceSample(this.ray, this.color);
+
+		this.setCell(cell, offsetX, offsetY, size, this.color[0], this.color[1], this.color[2],
+				this.tracer.getPrimaryShape());
+	}
+
+	/**
+	 * Sets the cell at the given index.
+	 */
+	private void setCell (int cell, double offsetX, double offsetY, double size,
+			double r, double g, double b, Shape shape) {
+
+		this.cellX[cell] = offsetX;
+		this.cellY[cell] = offsetY;
+		this.cellSize[cell] = size;
+		this.cellColors[3 * cell] = r;
+		this.cellColors[3 * cell + 1] = g;
+		this.cellColors[3 * cell + 2] = b;
+		this.cellShapes[cell] = shape;
+	}
+
+	/**
+	 * Checks if the samples of the cells in [start, end) contrast: if they hit
+	 * different shapes, or if the range of one of their channels is above the
+	 * contrast threshold.
+	 */
+	private boolean contrasts (int start, int end) {
+
+		for (int channel = 0; channel < 3; channel++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int cell = start; cell < end; cell++) {
+				min = Math.min(min, this.cellColors[3 * cell + channel]);
+				max = Math.max(max, this.cellColors[3 * cell + channel]);
+			}
+			if (max - min > this.contrastThreshold) {
+				return true;
+			}
+		}
+
+		for (int cell = start + 1; cell < end; cell++) {
+			if (this.cellShapes[cell] != this.cellShapes[start]) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
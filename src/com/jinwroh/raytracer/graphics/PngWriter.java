@@ -0,0 +1,588 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * The PngWriter class encodes an image into a PNG stream (8 bit RGB) row by
+ * row, as the rows are written, so the whole image is never held in memory:
+ * only the strips of rows being compressed are. The rows must be written in
+ * order, from the top of the image.
+ *
+ * The rows are grouped into strips of about STRIP_BYTES bytes. Each row of a
+ * strip is filtered with the PNG filter that minimizes the sum of its bytes
+ * (the usual heuristic), and each strip is deflated on its own, ending on a
+ * byte boundary, so the strips concatenate into a single zlib stream. With
+ * more than one thread, the strips are filtered and deflated in parallel, and
+ * written out in order. The strips do not share a dictionary, which costs a
+ * little compression at the start of each strip.
+ *
+ * The PngWriter does not close the stream it writes to.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class PngWriter implements Closeable {
+
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+	/**
+	 * The approximate size of the raw bytes of a strip, and the max size of the
+	 * data of an IDAT chunk.
+	 */
+	private static final int STRIP_BYTES = 1 << 20;
+	private static final int CHUNK_BYTES = 1 << 16;
+
+	private static final int BYTES_PER_PIXEL = 3;
+
+	private final OutputStream out;
+	private final int width;
+	private final int height;
+	private final int rowBytes;
+	private final int rowsPerStrip;
+
+	/**
+	 * The strip being filled: the raw bytes of its rows, after the raw bytes of
+	 * the row before the strip (zeros for the first strip), which the filters
+	 * of its first row refer to.
+	 */
+	private byte[] strip;
+	private int stripRows;
+	private int rowsWritten;
+
+	/**
+	 * The packed RGB values of the row read from a frame buffer.
+	 */
+	private int[] rowPixels;
+
+	/**
+	 * The strips being compressed, in order, and the threads compressing them
+	 * (null to compress them on the writing thread).
+	 */
+	private final ExecutorService executor;
+	private final int maxPendingStrips;
+	private final Deque<Future<CompressedStrip>> pendingStrips = new ArrayDeque<Future<CompressedStrip>>();
+
+	/**
+	 * The checksum of the zlib stream so far, and the data of the IDAT chunk
+	 * being filled.
+	 */
+	private int adler = 1;
+	private final byte[] chunk = new byte[CHUNK_BYTES];
+	private int chunkSize;
+	private boolean closed;
+
+
+	/**
+	 * Constructs a PngWriter of an image of the given dimensions, which
+	 * compresses the rows on the writing thread. The PNG header is written
+	 * right away.
+	 *
+	 * @param out       the stream the PNG is written to
+	 * @param width     the width of the image, in pixels
+	 * @param height    the height of the image, in pixels
+	 * @throws IOException    if the stream cannot be written
+	 */
+	public PngWriter (OutputStream out, int width, int height) throws IOException {
+		this(out, width, height, 1);
+	}
+
+	/**
+	 * Constructs a PngWriter of an image of the given dimensions, which
+	 * compresses the rows on the given number of threads. The PNG header is
+	 * written right away.
+	 *
+	 * @param out            the stream the PNG is written to
+	 * @param width          the width of the image, in pixels
+	 * @param height         the height of the image, in pixels
+	 * @param threadCount    the number of compression threads
+	 * @throws IOException    if the stream cannot be written
+	 */
+	public PngWriter (OutputStream out, int width, int height, int threadCount) throws IOException {
+
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("Image dimensions must be positive");
+		}
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count must be at least 1");
+		}
+
+		this.out = out;
+		this.width = width;
+		this.height = height;
+		this.rowBytes = BYTES_PER_PIXEL * width;
+		this.rowsPerStrip = Math.max(1, STRIP_BYTES / this.rowBytes);
+		this.strip = new byte[(this.rowsPerStrip + 1) * this.rowBytes];
+		this.maxPendingStrips = 2 * threadCount;
+
+		byte[] header = new byte[13];
+		writeInt(header, 0, width);
+		writeInt(header, 4, height);
+		header[8] = 8;	// bit depth
+		header[9] = 2;	// color type: RGB
+		header[10] = 0;	// compression: deflate
+		header[11] = 0;	// filter method: adaptive
+		header[12] = 0;	// interlace: none
+
+		this.out.write(SIGNATURE);
+		this.writeChunk("IHDR", header, 13);
+
+		// The zlib header: deflate with a 32K window, default compression
+		this.appendData(new byte[] {0x78, (byte) 0x9C}, 2);
+
+		this.executor = (threadCount > 1) ? Executors.newFixedThreadPool(threadCount) : null;
+	}
+
+
+	/**
+	 * Writes the next row of the image, from packed RGB values (0xRRGGBB).
+	 *
+	 * @param rgb       the packed RGB values
+	 * @param offset    the index of the first pixel of the row in the array
+	 * @throws IOException    if the stream cannot be written
+	 */
+	public void writeRow (int[] rgb, int offset) throws IOException {
+
+		int position = this.beginRow();
+		for (int x = 0; x < this.width; x++) {
+			position = putPixel(this.strip, position, rgb[offset + x]);
+		}
+		this.endRow();
+	}
+
+	/**
+	 * Writes the given rows of the frame buffer, which must be the next rows
+	 * of the image.
+	 *
+	 * @param frameBuffer    the frame buffer, of the width of the image
+	 * @param y              the y-coordinate of the first row
+	 * @param count          the number of rows
+	 * @throws IOException    if the stream cannot be written
+	 */
+	public void writeRows (FrameBuffer frameBuffer, int y, int count) throws IOException {
+
+		if (y != this.rowsWritten) {
+			throw new IllegalStateException("Expected row " + this.rowsWritten + ", got row " + y);
+		}
+
+		if (this.rowPixels == null) {
+			this.rowPixels = new int[this.width];
+		}
+		for (int row = y; row < y + count; row++) {
+			frameBuffer.getRow(row, this.rowPixels, 0);
+			this.writeRow(this.rowPixels, 0);
+		}
+	}
+
+	/**
+	 * Gets the number of rows written so far.
+	 * @return    the number of rows
+	 */
+	public int getRowsWritten () {
+		return this.rowsWritten;
+	}
+
+	/**
+	 * Finishes the PNG stream, once all the rows are written, and stops the
+	 * compression threads. The stream itself is flushed, but not closed.
+	 *
+	 * @throws IOException    if the stream cannot be written
+	 * @throws IllegalStateException    if rows of the image are missing
+	 */
+	@Override
+	public void close () throws IOException {
+
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+
+		try {
+			if (this.rowsWritten != this.height) {
+				throw new IllegalStateException("Only " + this.rowsWritten + " of " + this.height + " rows were written");
+			}
+
+			while (!this.pendingStrips.isEmpty()) {
+				this.writeStrip(this.pendingStrips.poll());
+			}
+
+			byte[] checksum = new byte[4];
+			writeInt(checksum, 0, this.adler);
+			this.appendData(checksum, 4);
+			this.flushChunk();
+			this.writeChunk("IEND", new byte[0], 0);
+			this.out.flush();
+		}
+		finally {
+			if (this.executor != null) {
+				this.executor.shutdownNow();
+			}
+		}
+	}
+
+
+	/**
+	 * Starts the next row in the strip being filled.
+	 *
+	 * @return    the position of the row in the strip
+	 */
+	private int beginRow () {
+
+		if (this.closed) {
+			throw new IllegalStateException("The writer is closed");
+		}
+		if (this.rowsWritten == this.height) {
+			throw new IllegalStateException("All " + this.height + " rows are already written");
+		}
+		return (this.stripRows + 1) * this.rowBytes;
+	}
+
+	/**
+	 * Ends the row written into the strip being filled, and hands the strip
+	 * over to compression if it is full, or if it holds the last row.
+	 */
+	private void endRow () throws IOException {
+
+		this.stripRows++;
+		this.rowsWritten++;
+
+		boolean last = (this.rowsWritten == this.height);
+		if (this.stripRows < this.rowsPerStrip && !last) {
+			return;
+		}
+
+		// The next strip starts after the last row of this one
+		byte[] next = new byte[this.strip.length];
+		System.arraycopy(this.strip, this.stripRows * this.rowBytes, next, 0, this.rowBytes);
+
+		StripTask task = new StripTask(this.strip, this.stripRows, this.rowBytes, last);
+		this.strip = next;
+		this.stripRows = 0;
+
+		if (this.executor == null) {
+			this.writeStrip(task.call());
+			return;
+		}
+
+		if (this.pendingStrips.size() == this.maxPendingStrips) {
+			this.writeStrip(this.pendingStrips.poll());
+		}
+		this.pendingStrips.add(this.executor.submit(task));
+	}
+
+	/**
+	 * Waits for the compressed strip, and writes it.
+	 */
+	private void writeStrip (Future<CompressedStrip> future) throws IOException {
+
+		try {
+			this.writeStrip(future.get());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing the image", e);
+		}
+		catch (ExecutionException e) {
+			throw new IOException("Failed to compress the image", e.getCause());
+		}
+	}
+
+	/**
+	 * Writes the compressed strip, and adds its checksum to the checksum of
+	 * the stream.
+	 */
+	private void writeStrip (CompressedStrip strip) throws IOException {
+		this.appendData(strip.data, strip.size);
+		this.adler = combineAdler32(this.adler, strip.adler, strip.length);
+	}
+
+	/**
+	 * Appends the given bytes of the zlib stream to the IDAT chunks.
+	 */
+	private void appendData (byte[] data, int length) throws IOException {
+
+		int position = 0;
+		while (position < length) {
+			int count = Math.min(length - position, CHUNK_BYTES - this.chunkSize);
+			System.arraycopy(data, position, this.chunk, this.chunkSize, count);
+			this.chunkSize += count;
+			position += count;
+
+			if (this.chunkSize == CHUNK_BYTES) {
+				this.flushChunk();
+			}
+		}
+	}
+
+	/**
+	 * Writes the IDAT chunk being filled, if it is not empty.
+	 */
+	private void flushChunk () throws IOException {
+
+		if (this.chunkSize > 0) {
+			this.writeChunk("IDAT", this.chunk, this.chunkSize);
+			this.chunkSize = 0;
+		}
+	}
+
+	/**
+	 * Writes a chunk of the given type and data: its length, its type, its
+	 * data, and the CRC of its type and data.
+	 */
+	private void writeChunk (String type, byte[] data, int length) throws IOException {
+
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		byte[] word = new byte[4];
+
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		writeInt(word, 0, length);
+		this.out.write(word);
+		this.out.write(typeBytes);
+		this.out.write(data, 0, length);
+		writeInt(word, 0, (int) crc.getValue());
+		this.out.write(word);
+	}
+
+
+	/**
+	 * Puts the bytes of a packed RGB value at the given position, and returns
+	 * the position after them.
+	 */
+	private static int putPixel (byte[] bytes, int position, int rgb) {
+		bytes[position] = (byte) (rgb >> 16);
+		bytes[position + 1] = (byte) (rgb >> 8);
+		bytes[position + 2] = (byte) rgb;
+		return position + 3;
+	}
+
+	/**
+	 * Writes the given value at the given position, big-endian.
+	 */
+	private static void writeInt (byte[] bytes, int position, int value) {
+		bytes[position] = (byte) (value >>> 24);
+		bytes[position + 1] = (byte) (value >>> 16);
+		bytes[position + 2] = (byte) (value >>> 8);
+		bytes[position + 3] = (byte) value;
+	}
+
+	/**
+	 * Combines the Adler-32 checksums of two consecutive sequences of bytes
+	 * into the checksum of their concatenation, as zlib's adler32_combine does.
+	 *
+	 * @param adler1     the checksum of the first sequence
+	 * @param adler2     the checksum of the second sequence
+	 * @param length2    the length of the second sequence
+	 * @return           the checksum of the concatenation
+	 */
+	static int combineAdler32 (int adler1, int adler2, long length2) {
+
+		final long base = 65521;
+		long remainder = length2 % base;
+		long sum1 = adler1 & 0xFFFF;
+		long sum2 = (remainder * sum1) % base;
+		sum1 += (adler2 & 0xFFFF) + base - 1;
+		sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + base - remainder;
+
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum2 >= (base << 1)) {
+			sum2 -= (base << 1);
+		}
+		if (sum2 >= base) {
+			sum2 -= base;
+		}
+		return (int) (sum1 | (sum2 << 16));
+	}
+
+
+	/**
+	 * The CompressedStrip is a private static inner class within the PngWriter
+	 * class. It holds the deflated bytes of a strip, and the Adler-32 checksum
+	 * and the length of its filtered bytes.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class CompressedStrip {
+
+		private final byte[] data;
+		private final int size;
+		private final int adler;
+		private final long length;
+
+
+		public CompressedStrip (byte[] data, int size, int adler, long length) {
+			this.data = data;
+			this.size = size;
+			this.adler = adler;
+			this.length = length;
+		}
+	}
+
+
+	/**
+	 * The StripTask is a private static inner class within the PngWriter
+	 * class. It filters the rows of a strip, and deflates them. A strip that
+	 * is not the last ends with a sync flush, so its deflated bytes end on a
+	 * byte boundary and the next strip can follow them; the last strip
+	 * finishes the deflate stream.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class StripTask implements Callable<CompressedStrip> {
+
+		private final byte[] raw;
+		private final int rows;
+		private final int rowBytes;
+		private final boolean last;
+
+
+		/**
+		 * Constructs a StripTask over the given raw bytes.
+		 *
+		 * @param raw         the row before the strip, then the rows of the strip
+		 * @param rows        the number of rows of the strip
+		 * @param rowBytes    the number of bytes of a row
+		 * @param last        true if the strip holds the last row of the image
+		 */
+		public StripTask (byte[] raw, int rows, int rowBytes, boolean last) {
+			this.raw = raw;
+			this.rows = rows;
+			this.rowBytes = rowBytes;
+			this.last = last;
+		}
+
+		@Override
+		public CompressedStrip call () {
+
+			byte[] filtered = new byte[this.rows * (this.rowBytes + 1)];
+			byte[][] scratch = new byte[5][this.rowBytes];
+			for (int row = 0; row < this.rows; row++) {
+				filterRow(this.raw, (row + 1) * this.rowBytes, row * this.rowBytes, this.rowBytes,
+						filtered, row * (this.rowBytes + 1), scratch);
+			}
+
+			Adler32 adler = new Adler32();
+			adler.update(filtered, 0, filtered.length);
+
+			ByteArrayOutputStream deflated = new ByteArrayOutputStream(filtered.length / 4 + 64);
+			byte[] buffer = new byte[CHUNK_BYTES];
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			try {
+				deflater.setInput(filtered);
+				if (this.last) {
+					deflater.finish();
+					while (!deflater.finished()) {
+						int count = deflater.deflate(buffer);
+						deflated.write(buffer, 0, count);
+					}
+				}
+				else {
+					// A sync flush is complete when it leaves room in the buffer
+					int count;
+					do {
+						count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+						deflated.write(buffer, 0, count);
+					} while (count == buffer.length);
+				}
+			}
+			finally {
+				deflater.end();
+			}
+
+			byte[] data = deflated.toByteArray();
+			return new CompressedStrip(data, data.length, (int) adler.getValue(), filtered.length);
+		}
+	}
+
+
+	/**
+	 * Filters a row with the PNG filter (None, Sub, Up, Average or Paeth) whose
+	 * filtered bytes have the smallest sum of absolute values, as signed bytes.
+	 * The filter type is written first, then the filtered bytes.
+	 *
+	 * @param raw         the raw bytes
+	 * @param row         the position of the row in the raw bytes
+	 * @param prior       the position of the row above it in the raw bytes
+	 * @param rowBytes    the number of bytes of a row
+	 * @param out         the filtered bytes
+	 * @param position    the position of the filtered row in the filtered bytes
+	 * @param scratch     the filtered bytes of the row for each filter, one array per filter
+	 */
+	private static void filterRow (byte[] raw, int row, int prior, int rowBytes,
+			byte[] out, int position, byte[][] scratch) {
+
+		byte[] sub = scratch[1];
+		byte[] up = scratch[2];
+		byte[] average = scratch[3];
+		byte[] paeth = scratch[4];
+		long noneSum = 0;
+		long subSum = 0;
+		long upSum = 0;
+		long averageSum = 0;
+		long paethSum = 0;
+
+		for (int i = 0; i < rowBytes; i++) {
+			int x = raw[row + i] & 0xFF;
+			int a = (i >= BYTES_PER_PIXEL) ? raw[row + i - BYTES_PER_PIXEL] & 0xFF : 0;
+			int b = raw[prior + i] & 0xFF;
+			int c = (i >= BYTES_PER_PIXEL) ? raw[prior + i - BYTES_PER_PIXEL] & 0xFF : 0;
+
+			int p = a + b - c;
+			int pa = Math.abs(p - a);
+			int pb = Math.abs(p - b);
+			int pc = Math.abs(p - c);
+			int predictor = (pa <= pb && pa <= pc) ? a : (pb <= pc) ? b : c;
+
+			sub[i] = (byte) (x - a);
+			up[i] = (byte) (x - b);
+			average[i] = (byte) (x - ((a + b) >>> 1));
+			paeth[i] = (byte) (x - predictor);
+
+			noneSum += Math.abs((byte) x);
+			subSum += Math.abs(sub[i]);
+			upSum += Math.abs(up[i]);
+			averageSum += Math.abs(average[i]);
+			paethSum += Math.abs(paeth[i]);
+		}
+
+		int bestFilter = 0;
+		long bestSum = noneSum;
+		long[] sums = {noneSum, subSum, upSum, averageSum, paethSum};
+		for (int filter = 1; filter < sums.length; filter++) {
+			if (sums[filter] < bestSum) {
+				bestSum = sums[filter];
+				bestFilter = filter;
+			}
+		}
+
+		out[position] = (byte) bestFilter;
+		if (bestFilter == 0) {
+			System.arraycopy(raw, row, out, position + 1, rowBytes);
+		}
+		else {
+			System.arraycopy(scratch[bestFilter], 0, out, position + 1, rowBytes);
+		}
+	}
+}
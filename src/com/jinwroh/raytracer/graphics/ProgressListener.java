@@ -0,0 +1,31 @@
+package com.jinwroh.raytracer.graphics;
+
+
+/**
+ * The ProgressListener interface receives the passes of a progressive render
+ * (See Camera.setProgressListener), from coarse to fine, as soon as each pass
+ * is done. The first pass samples 1/16 of the pixels, so a preview of the
+ * whole image is available long before the render is over.
+ *
+ * The listener is called on the thread that shoots the scene, between the
+ * passes, so the render waits for it: a slow listener (i.e. one that writes
+ * an image) delays the next pass by as long as it takes.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public interface ProgressListener {
+
+	/**
+	 * Called when a pass of the render is done. The frame buffer holds the
+	 * whole image at the resolution of the pass: every sample of a coarse pass
+	 * is read as the block of pixels it stands for. The frame buffer is written
+	 * by the next pass, so it must be read (or copied) before the method
+	 * returns. It is read-only.
+	 *
+	 * @param frameBuffer    the frame buffer of the render
+	 * @param pass           the index of the pass, from 0
+	 * @param passCount      the number of passes of the render; the last pass is the final image
+	 */
+	public void passFinished (FrameBuffer frameBuffer, int pass, int passCount);
+}
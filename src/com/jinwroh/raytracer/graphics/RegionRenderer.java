@@ -0,0 +1,90 @@
+package com.jinwroh.raytracer.graphics;
+
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * The RegionRenderer class renders the final pixels of single tiles of a shot
+ * of a scene, independently of the other tiles (See RenderWorker). With
+ * supersampling, the first samples are rendered over the tile grown by a
+ * pixel on every side, so the pixels of the tile are marked for refinement
+ * exactly as in a render of the whole Window; only the tile is refined.
+ *
+ * Every tile is rendered into a canvas of its own, so the tiles of a shot can
+ * be rendered on any number of threads at once.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public final class RegionRenderer {
+
+	private final Shot shot;
+	private final long fingerprint;
+
+
+	/**
+	 * Constructs a RegionRenderer of the given scene, as shot by the given
+	 * camera. The scene is compiled, and the accelerator of the camera is
+	 * built (or loaded from its cache) once, for all the tiles.
+	 *
+	 * @param camera    the camera of the render
+	 * @param scene     the scene of the render
+	 */
+	public RegionRenderer (Camera camera, Scene scene) {
+		CompiledScene compiled = scene.compile();
+		this.shot = camera.createShot(compiled, camera.selectAccelerator(compiled));
+		this.fingerprint = camera.fingerprint(compiled);
+	}
+
+
+	/**
+	 * Gets the fingerprint of the render of the tiles (See Camera.fingerprint).
+	 * @return    the fingerprint of the render
+	 */
+	public long getFingerprint () {
+		return this.fingerprint;
+	}
+
+
+	/**
+	 * Renders the final pixels of the given tile.
+	 *
+	 * @param tile      the tile to be rendered
+	 * @param pixels    the array to be filled with the packed RGB values of the tile, row by row
+	 * @return          the counts of the rays of the tile
+	 */
+	public TraceStatistics render (Tile tile, int[] pixels) {
+
+		TraceStatistics statistics = new TraceStatistics();
+		Tile region = tile;
+		boolean refine = this.shot.getMaxSamples() > 1;
+		if (refine) {
+			int x = Math.max(tile.getX() - 1, 0);
+			int y = Math.max(tile.getY() - 1, 0);
+			int width = Math.min(tile.getX() + tile.getWidth() + 1, this.shot.getWidth()) - x;
+			int height = Math.min(tile.getY() + tile.getHeight() + 1, this.shot.getHeight()) - y;
+			region = new Tile(x, y, width, height);
+		}
+
+		FrameBuffer canvas = new ArrayFrameBuffer(region.getWidth(), region.getHeight());
+		Shape[] hitShapes = refine ? new Shape[region.getWidth() * region.getHeight()] : null;
+		TileRenderer renderer = new TileRenderer(this.shot, canvas, region.getX(), region.getY(), hitShapes, statistics);
+		renderer.renderTile(region, null);
+
+		if (refine) {
+			renderer.markRefinements(canvas);
+			renderer.refineTile(tile, null);
+
+			// The samples of the border count as the cost of the tile
+			statistics.pixels = (long) tile.getWidth() * tile.getHeight();
+		}
+
+		int i = 0;
+		for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+			for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+				pixels[i++] = canvas.getRGB(x - region.getX(), y - region.getY());
+			}
+		}
+		return statistics;
+	}
+}
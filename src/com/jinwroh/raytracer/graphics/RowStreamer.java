@@ -0,0 +1,82 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+
+/**
+ * The RowStreamer class streams the rows of the final pass of a render to a
+ * PngWriter while the pass is rendered (See Camera.shoot(Scene, OutputStream)).
+ * The tiles of the pass are counted per row of tiles, and a row of tiles is
+ * streamed once all of its tiles are done, in order, by the thread that
+ * finishes the last tile of the row or of a row above it.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class RowStreamer {
+
+	private final PngWriter writer;
+	private final FrameBuffer frameBuffer;
+
+	/**
+	 * The height of the rows of tiles, the tiles of each row of tiles left in
+	 * the pass, and the next row of tiles to be streamed.
+	 */
+	private final int tileHeight;
+	private final int[] remainingTiles;
+	private int nextTileRow;
+
+
+	/**
+	 * Constructs a RowStreamer of the given pass, and streams the rows of tiles
+	 * that have no tile in the pass, i.e. the rows restored from a checkpoint,
+	 * up to the first row left.
+	 *
+	 * @param writer         the writer of the rows of the image
+	 * @param frameBuffer    the frame buffer of the render
+	 * @param tileHeight     the height of the rows of tiles, in pixels
+	 * @param tiles          the tiles of the pass
+	 */
+	RowStreamer (PngWriter writer, FrameBuffer frameBuffer, int tileHeight, List<Tile> tiles) {
+		this.writer = writer;
+		this.frameBuffer = frameBuffer;
+		this.tileHeight = tileHeight;
+		this.remainingTiles = new int[(frameBuffer.getHeight() + tileHeight - 1) / tileHeight];
+		for (Tile tile : tiles) {
+			this.remainingTiles[tile.getY() / tileHeight]++;
+		}
+		this.streamRows();
+	}
+
+
+	/**
+	 * Ends the pass over the given tile, and streams the rows of tiles that are
+	 * done, in order.
+	 *
+	 * @param tile    the tile that is done
+	 */
+	synchronized void tileFinished (Tile tile) {
+		this.remainingTiles[tile.getY() / this.tileHeight]--;
+		this.streamRows();
+	}
+
+	/**
+	 * Streams the rows of tiles that are done to the writer, in order, from
+	 * the next row of tiles to be streamed.
+	 */
+	private void streamRows () {
+
+		try {
+			while (this.nextTileRow < this.remainingTiles.length && this.remainingTiles[this.nextTileRow] == 0) {
+				int y = this.nextTileRow * this.tileHeight;
+				this.writer.writeRows(this.frameBuffer, y, Math.min(this.tileHeight, this.frameBuffer.getHeight() - y));
+				this.nextTileRow++;
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
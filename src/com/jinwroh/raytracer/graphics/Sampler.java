@@ -92,6 +92,98 @@ public class Sampler implements Iterable<Sample> {
 		return this.heightSampleDelta;
 	}
 	
+	/**
+	 * Gets the Sample at the given x, y ordering. The Sample is identical to the
+	 * one produced by the iterator for the same ordering, which allows the caller
+	 * to sample an arbitrary region (i.e. a tile) of the Viewport.
+	 * 
+	 * @param xOrdering    the x ordering of the sample
+	 * @param yOrdering    the y ordering of the sample
+	 * @return             the Sample at the given ordering
+	 */
+	public Sample getSample (int xOrdering, int yOrdering) {
+		
+		// Find the point of reference, or the 'starting point' of the Sampler
+		double xOrigin = this.viewport.getUpperLeft().getX();
+		double yOrigin = this.viewport.getUpperLeft().getY();
+		double zOrigin = this.viewport.getUpperLeft().getZ();
+		
+		// For the current sampling point, lets find the offset from the starting point
+		// Note that since the viewport is perpendicular to the x-y plane, the z-offset
+		// will be zero
+		double xOffset = (this.widthSampleDelta * xOrdering);
+		double yOffset = (this.heightSampleDelta * yOrdering);
+		double zOffset = 0.0;
+				
+		// We are starting from the upper left corner - moving to the right and down-
+		// ward direction
+		double xCoordinate = xOrigin + xOffset;
+		double yCoordinate = yOrigin - yOffset;
+		double zCoordinate = zOrigin + zOffset;
+		
+		// Create the Sample object with the point calculated
+		Point point = new Point(xCoordinate, yCoordinate, zCoordinate);
+		return new Sample(point, xOrdering, yOrdering);
+	}
+	
+	/**
+	 * Gets the x-coordinate of the sample point at the given x ordering, without
+	 * creating the Sample. The coordinate is identical to the one of getSample.
+	 * 
+	 * @param xOrdering    the x ordering of the sample
+	 * @return             the x-coordinate of the sample point
+	 */
+	public double getSampleX (int xOrdering) {
+		return this.viewport.getUpperLeft().getX() + (this.widthSampleDelta * xOrdering);
+	}
+	
+	/**
+	 * Gets the y-coordinate of the sample point at the given y ordering, without
+	 * creating the Sample. The coordinate is identical to the one of getSample.
+	 * 
+	 * @param yOrdering    the y ordering of the sample
+	 * @return             the y-coordinate of the sample point
+	 */
+	public double getSampleY (int yOrdering) {
+		return this.viewport.getUpperLeft().getY() - (this.heightSampleDelta * yOrdering);
+	}
+	
+	/**
+	 * Gets the x-coordinate of a point inside the pixel at the given x ordering,
+	 * the given fraction of a sample delta to the right of the sample point.
+	 * A zero offset gives the coordinate of getSampleX.
+	 *
+	 * @param xOrdering    the x ordering of the sample
+	 * @param offset       the offset inside the pixel, in [0, 1)
+	 * @return             the x-coordinate of the point
+	 */
+	public double getSampleX (int xOrdering, double offset) {
+		return this.viewport.getUpperLeft().getX() + (this.widthSampleDelta * (xOrdering + offset));
+	}
+
+	/**
+	 * Gets the y-coordinate of a point inside the pixel at the given y ordering,
+	 * the given fraction of a sample delta below the sample point. A zero offset
+	 * gives the coordinate of getSampleY.
+	 *
+	 * @param yOrdering    the y ordering of the sample
+	 * @param offset       the offset inside the pixel, in [0, 1)
+	 * @return             the y-coordinate of the point
+	 */
+	public double getSampleY (int yOrdering, double offset) {
+		return this.viewport.getUpperLeft().getY() - (this.heightSampleDelta * (yOrdering + offset));
+	}
+
+	/**
+	 * Gets the z-coordinate of the sample points, which is the same for all the
+	 * samples since the viewport is perpendicular to the x-y plane.
+	 * 
+	 * @return    the z-coordinate of the sample points
+	 */
+	public double getSampleZ () {
+		return this.viewport.getUpperLeft().getZ() + 0.0;
+	}
+	
 	
 	/**
 	 * The SamplerIterator is a private static inner class within the Sampler class.
@@ -137,27 +229,7 @@ public class Sampler implements Iterable<Sample> {
 				throw new IllegalStateException();
 			}
 			
-			// Find the point of reference, or the 'starting point' of the Sampler
-			double xOrigin = this.sampler.getViewport().getUpperLeft().getX();
-			double yOrigin = this.sampler.getViewport().getUpperLeft().getY();
-			double zOrigin = this.sampler.getViewport().getUpperLeft().getZ();
-			
-			// For the current sampling point, lets find the offset from the starting point
-			// Note that since the viewport is perpendicular to the x-y plane, the z-offset
-			// will be zero
-			double xOffset = (this.sampler.getWidthSampleDelta() * this.widthSampleCounter);
-			double yOffset = (this.sampler.getHeightSampleDelta() * this.heightSampleCounter);
-			double zOffset = 0.0;
-					
-			// We are starting from the upper left corner - moving to the right and down-
-			// ward direction
-			double xCoordinate = xOrigin + xOffset;
-			double yCoordinate = yOrigin - yOffset;
-			double zCoordinate = zOrigin + zOffset;
-			
-			// Create the Sample object with the point calculated
-			Point point = new Point(xCoordinate, yCoordinate, zCoordinate);
-			Sample sample = new Sample(point, widthSampleCounter, heightSampleCounter);
+			Sample sample = this.sampler.getSample(this.widthSampleCounter, this.heightSampleCounter);
 			
 			// Increment the width sample counter, but we should reset it to 0
 			// if it goes over the maximum size allowed.
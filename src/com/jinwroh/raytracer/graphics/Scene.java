@@ -1,7 +1,7 @@
 package com.jinwroh.raytracer.graphics;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -22,7 +22,9 @@ public class Scene {
 	 * The data structures that contain the shapes and the lights.
 	 * The integers act as unique Ids, or keys, that map to a single light or shape.
 	 * Using the Ids, the caller will be able to delete or mutate the 
-	 * respective shape or light.
+	 * respective shape or light. The maps keep the order the shapes and the
+	 * lights were added in, so a scene written to a file reads back in the
+	 * same order (See SceneFile).
 	 */
 	private Map<Integer, Shape> shapes;
 	private Map<Integer, Light> lights;;
@@ -40,8 +42,8 @@ public class Scene {
 	 * every time a light or a shape is added to the scene.
 	 */
 	public Scene () { 
-		this.shapes = new HashMap<Integer, Shape>();
-		this.lights = new HashMap<Integer, Light>();
+		this.shapes = new LinkedHashMap<Integer, Shape>();
+		this.lights = new LinkedHashMap<Integer, Light>();
 		
 		this.shapeId = 0;
 		this.lightId = 0;
@@ -77,6 +79,30 @@ public class Scene {
 		this.shapes.remove(shapeId);
 	}
 	
+	/**
+	 * Replaces the shape that correspond to the shape ID specified, keeping its
+	 * ID and its place in the order of the shapes (i.e. to move a sphere from
+	 * a frame to the next, See Animation).
+	 * @param shapeId    the unique shape id
+	 * @param shape      the shape replacing it
+	 * @throws IllegalArgumentException    if the scene has no shape of the given id
+	 */
+	public void setShape (int shapeId, Shape shape) {
+		if (!this.shapes.containsKey(shapeId)) {
+			throw new IllegalArgumentException("No shape of id " + shapeId);
+		}
+		this.shapes.put(shapeId, shape);
+	}
+	
+	/**
+	 * Retrieves the shape that correspond to the shape ID specified.
+	 * @param shapeId    the unique shape id
+	 * @return           the shape, or null if the scene has no shape of the given id
+	 */
+	public Shape getShape (int shapeId) {
+		return this.shapes.get(shapeId);
+	}
+	
 	/**
 	 * Removes a light that correspond to the light ID specified.
 	 * @param lightId    the unique light id
@@ -86,7 +112,7 @@ public class Scene {
 	}
 	
 	/**
-	 * Retrieves all the shapes in the scene.
+	 * Retrieves all the shapes in the scene, in the order they were added.
 	 * @return    a list of shapes in the scene
 	 */
 	public List<Shape> getShapes () {
@@ -98,7 +124,21 @@ public class Scene {
 	}
 	
 	/**
-	 * Retrieves all the lights in the scene
+	 * Retrieves the IDs of all the shapes in the scene, in the order of the
+	 * shapes (See getShapes), which is also increasing.
+	 * @return    the unique IDs of the shapes in the scene
+	 */
+	public int[] getShapeIds () {
+		int[] output = new int[this.shapes.size()];
+		int i = 0;
+		for (Integer shapeId : this.shapes.keySet()) {
+			output[i++] = shapeId;
+		}
+		return output;
+	}
+	
+	/**
+	 * Retrieves all the lights in the scene, in the order they were added.
 	 * @return    a list of the lights in the scene.
 	 */
 	public List<Light> getLights () {
@@ -108,4 +148,14 @@ public class Scene {
 		}
 		return output;
 	}
+	
+	/**
+	 * Compiles the scene into an immutable snapshot for rendering: the shapes,
+	 * and the lights that are on, with their directions normalized. Editing the
+	 * scene afterwards does not affect the snapshot.
+	 * @return    the compiled scene
+	 */
+	public CompiledScene compile () {
+		return new CompiledScene(this.getShapes(), this.getLights());
+	}
 }
@@ -0,0 +1,432 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
+
+
+/**
+ * The SceneFile class loads a Scene, and the eye, viewport and window of its
+ * camera, from a text scene file, and writes them back. A scene file holds a
+ * statement per line; # starts a comment, up to the end of the line:
+ *
+ *     eye 0 0 0                  # x y z
+ *     viewport 2 2 0 0 2         # width height, and the center x y z
+ *     window 500 500             # width height, in pixels
+ *     material red ambient 0.1 0.1 0.1 diffuse 1 0 0 specular 1 1 1 shininess 500
+ *     light 0.57735027 -0.57735027 0.57735027 1 1 1
+ *     sphere 0 0 20 3 red        # x y z radius material
+ *
+ * - eye, viewport, window: the camera; each one is optional, and defaults to
+ *   the one of the Driver. The viewport can also be given by its four corners
+ *   (upper left, upper right, lower left, lower right: 12 numbers).
+ * - material name [ambient r g b] [diffuse r g b] [specular r g b]
+ *   [shininess n] [reflection k] [refraction k] [index n] [shading name]:
+ *   the Shape.Properties of the spheres made of it, and their shading strategy
+ *   by name (See createShadingStrategy). A material is defined before its
+ *   spheres, and they all share its properties.
+ * - light dx dy dz r g b [off]: a light, with its direction and its color.
+ * - sphere x y z radius material: a sphere.
+ *
+ * The file is parsed by a SceneReader, which streams it; see SceneReader to
+ * handle the statements of a file without building a Scene.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public final class SceneFile {
+
+	/**
+	 * The name of the shading strategy of a material that names none.
+	 */
+	static final String DEFAULT_SHADING = "blinn-phong";
+
+	private final Scene scene = new Scene();
+	private Point eye = new Point(0.0, 0.0, 0.0);
+	private Viewport viewport = new Viewport(2, 2, new Point(0, 0, 2));
+	private Window window = new Window(500, 500);
+
+
+	private SceneFile () {
+	}
+
+
+	/**
+	 * Loads a scene file.
+	 *
+	 * @param file    the scene file
+	 * @return        the loaded scene file
+	 * @throws IOException    if the file cannot be read, or a statement is invalid
+	 */
+	public static SceneFile read (File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return read(in);
+		}
+	}
+
+	/**
+	 * Loads a scene file from the given stream, which is left open.
+	 *
+	 * @param in    the stream of the scene file
+	 * @return      the loaded scene file
+	 * @throws IOException    if the stream cannot be read, or a statement is invalid
+	 */
+	public static SceneFile read (InputStream in) throws IOException {
+		return read(in, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Loads a scene file of at most the given number of spheres from the given
+	 * stream, which is left open. The file is rejected as soon as it holds one
+	 * sphere too many, so a huge file does not fill the heap.
+	 *
+	 * @param in            the stream of the scene file
+	 * @param maxSpheres    the maximum number of spheres of the scene
+	 * @return              the loaded scene file
+	 * @throws IOException    if the stream cannot be read, or a statement is invalid
+	 * @throws IllegalArgumentException    if the scene holds more than maxSpheres spheres
+	 */
+	public static SceneFile read (InputStream in, int maxSpheres) throws IOException {
+		SceneFile sceneFile = new SceneFile();
+		new SceneReader(in).read(sceneFile.new Loader(maxSpheres));
+		return sceneFile;
+	}
+
+	/**
+	 * Writes a scene, and the eye, viewport and window of the given camera,
+	 * into a scene file. The spheres of the same material and shading strategy
+	 * share a material of the file.
+	 *
+	 * @param file      the scene file
+	 * @param camera    the camera of the scene, or null to write no camera
+	 * @param scene     the scene
+	 * @throws IOException    if the file cannot be written
+	 * @throws IllegalArgumentException    if the scene holds a shape other than a Sphere, or an unnamed shading strategy
+	 */
+	public static void write (File file, Camera camera, Scene scene) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			write(out, camera, scene);
+		}
+	}
+
+	/**
+	 * Writes a scene, and the eye, viewport and window of the given camera,
+	 * into the given stream, which is left open (See write(File, Camera, Scene)).
+	 *
+	 * @param out       the stream of the scene file
+	 * @param camera    the camera of the scene, or null to write no camera
+	 * @param scene     the scene
+	 * @throws IOException    if the stream cannot be written
+	 */
+	public static void write (OutputStream out, Camera camera, Scene scene) throws IOException {
+		TextWriter writer = new TextWriter(out);
+		try {
+			emit(camera, scene, writer);
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Feeds a scene, and the eye, viewport and window of the given camera, to
+	 * the given handler, as the statements of a scene file: the camera, the
+	 * lights, then the spheres, each material before its first sphere. The
+	 * spheres of the same material and shading strategy share a material.
+	 *
+	 * @param camera     the camera of the scene, or null to feed no camera
+	 * @param scene      the scene
+	 * @param handler    the handler of the statements
+	 * @throws IllegalArgumentException    if the scene holds a shape other than a Sphere, or an unnamed shading strategy
+	 */
+	static void emit (Camera camera, Scene scene, SceneReader.Handler handler) {
+
+		if (camera != null) {
+			handler.eye(camera.getEye());
+			handler.viewport(camera.getViewport());
+			handler.window(camera.getWindow());
+		}
+		for (Light light : scene.getLights()) {
+			handler.light(light);
+		}
+
+		// The materials by their definition, and the last one, as the shapes of a material tend to share its objects
+		Map<String, Integer> materials = new HashMap<String, Integer>();
+		Shape.Properties lastProperties = null;
+		ShadingStrategy lastShadingStrategy = null;
+		int lastMaterial = -1;
+
+		for (Shape shape : scene.getShapes()) {
+			if (!(shape instanceof Sphere)) {
+				throw new IllegalArgumentException("Scene files hold spheres only, not " + shape.getClass().getSimpleName());
+			}
+			if (shape.getProperties() != lastProperties || shape.getShadingStrategy() != lastShadingStrategy) {
+				String definition = material(shape.getProperties(), shape.getShadingStrategy());
+				Integer material = materials.get(definition);
+				if (material == null) {
+					material = materials.size();
+					materials.put(definition, material);
+					handler.material(material, "m" + material, shape.getProperties(), shape.getShadingStrategy());
+				}
+				lastMaterial = material;
+				lastProperties = shape.getProperties();
+				lastShadingStrategy = shape.getShadingStrategy();
+			}
+
+			Sphere sphere = (Sphere) shape;
+			Point center = sphere.getCenter();
+			handler.sphere(center.getX(), center.getY(), center.getZ(), sphere.getRadius(), lastMaterial);
+		}
+	}
+
+	/**
+	 * Creates the shading strategy of the given name: "blinn-phong" for a
+	 * BlinnPhongShadingStrategy.
+	 *
+	 * @param name    the name of the shading strategy
+	 * @return        a new shading strategy
+	 * @throws IllegalArgumentException    if no shading strategy has the name
+	 */
+	public static ShadingStrategy createShadingStrategy (String name) {
+		switch (name) {
+		case "blinn-phong":
+			return new BlinnPhongShadingStrategy();
+		default:
+			throw new IllegalArgumentException("Unknown shading strategy '" + name + "'");
+		}
+	}
+
+	/**
+	 * Gets the name of the given shading strategy (See createShadingStrategy).
+	 *
+	 * @param shadingStrategy    the shading strategy
+	 * @return                   the name of the shading strategy
+	 * @throws IllegalArgumentException    if the shading strategy has no name
+	 */
+	public static String getShadingStrategyName (ShadingStrategy shadingStrategy) {
+		if (shadingStrategy.getClass() == BlinnPhongShadingStrategy.class) {
+			return "blinn-phong";
+		}
+		throw new IllegalArgumentException("Shading strategy " + shadingStrategy.getClass().getSimpleName() + " has no name");
+	}
+
+
+	/**
+	 * Gets the loaded scene.
+	 * @return    the scene
+	 */
+	public Scene getScene () {
+		return this.scene;
+	}
+
+	/**
+	 * Gets the eyepoint of the camera of the file.
+	 * @return    the eye
+	 */
+	public Point getEye () {
+		return this.eye;
+	}
+
+	/**
+	 * Gets the viewport of the camera of the file.
+	 * @return    the viewport
+	 */
+	public Viewport getViewport () {
+		return this.viewport;
+	}
+
+	/**
+	 * Gets the window of the camera of the file.
+	 * @return    the window
+	 */
+	public Window getWindow () {
+		return this.window;
+	}
+
+	/**
+	 * Creates a camera with the eye, viewport and window of the file.
+	 * @return    a new camera
+	 */
+	public Camera createCamera () {
+		return new Camera(this.eye, this.viewport, new Window(this.window.getWidth(), this.window.getHeight()));
+	}
+
+
+	private static String point (Point point) {
+		return point.getX() + " " + point.getY() + " " + point.getZ();
+	}
+
+	private static String color (Color color) {
+		return color.getR() + " " + color.getG() + " " + color.getB();
+	}
+
+	/**
+	 * Writes the properties and the shading strategy of a material statement.
+	 */
+	private static String material (Shape.Properties properties, ShadingStrategy shadingStrategy) {
+		StringBuilder builder = new StringBuilder();
+		if (properties.ambientColorProperty != null) {
+			builder.append(" ambient ").append(color(properties.ambientColorProperty));
+		}
+		if (properties.diffuseColorProperty != null) {
+			builder.append(" diffuse ").append(color(properties.diffuseColorProperty));
+		}
+		if (properties.specularColorProperty != null) {
+			builder.append(" specular ").append(color(properties.specularColorProperty));
+		}
+		builder.append(" shininess ").append(properties.specularCoefficient);
+		builder.append(" reflection ").append(properties.reflectionCoefficient);
+		builder.append(" refraction ").append(properties.refractionCoefficient);
+		builder.append(" index ").append(properties.refractiveIndex);
+		builder.append(" shading ").append(getShadingStrategyName(shadingStrategy));
+		return builder.toString();
+	}
+
+
+
+	/**
+	 * The TextWriter class writes the statements it receives as the lines of a
+	 * scene file. The I/O errors are thrown as UncheckedIOException, as the
+	 * handler methods throw no IOException.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class TextWriter implements SceneReader.Handler {
+
+		private final Writer writer;
+		private final List<String> materialNames = new ArrayList<String>();
+
+		TextWriter (OutputStream out) {
+			this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1), 1 << 16);
+		}
+
+		@Override
+		public void eye (Point eye) {
+			this.write("eye " + point(eye));
+		}
+
+		@Override
+		public void viewport (Viewport viewport) {
+			this.write("viewport " + point(viewport.getUpperLeft()) + " " + point(viewport.getUpperRight())
+					+ " " + point(viewport.getLowerLeft()) + " " + point(viewport.getLowerRight()));
+		}
+
+		@Override
+		public void window (Window window) {
+			this.write("window " + window.getWidth() + " " + window.getHeight());
+		}
+
+		@Override
+		public void material (int material, String name, Shape.Properties properties, ShadingStrategy shadingStrategy) {
+			this.materialNames.add(name);
+			this.write("material " + name + SceneFile.material(properties, shadingStrategy));
+		}
+
+		@Override
+		public void light (Light light) {
+			Vector direction = light.getDirection();
+			this.write("light " + direction.getX() + " " + direction.getY() + " " + direction.getZ()
+					+ " " + color(light.getColor()) + (light.isOn() ? "" : " off"));
+		}
+
+		@Override
+		public void sphere (double x, double y, double z, double radius, int material) {
+			this.write("sphere " + x + " " + y + " " + z + " " + radius + " " + this.materialNames.get(material));
+		}
+
+		void flush () throws IOException {
+			this.writer.flush();
+		}
+
+		private void write (String line) {
+			try {
+				this.writer.write(line);
+				this.writer.write('\n');
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * The Loader class builds the scene of the file from its statements. The
+	 * spheres of a material share its properties and its shading strategy.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private final class Loader implements SceneReader.Handler {
+
+		private final List<Shape.Properties> properties = new ArrayList<Shape.Properties>();
+		private final List<ShadingStrategy> shadingStrategies = new ArrayList<ShadingStrategy>();
+		private final int maxSpheres;
+		private int sphereCount;
+
+
+		/**
+		 * Constructs a Loader of at most the given number of spheres.
+		 * @param maxSpheres    the maximum number of spheres of the scene
+		 */
+		Loader (int maxSpheres) {
+			this.maxSpheres = maxSpheres;
+		}
+
+
+		@Override
+		public void eye (Point eye) {
+			SceneFile.this.eye = eye;
+		}
+
+		@Override
+		public void viewport (Viewport viewport) {
+			SceneFile.this.viewport = viewport;
+		}
+
+		@Override
+		public void window (Window window) {
+			SceneFile.this.window = window;
+		}
+
+		@Override
+		public void material (int material, String name, Shape.Properties properties, ShadingStrategy shadingStrategy) {
+			this.properties.add(properties);
+			this.shadingStrategies.add(shadingStrategy);
+		}
+
+		@Override
+		public void light (Light light) {
+			SceneFile.this.scene.addLight(light);
+		}
+
+		@Override
+		public void sphere (double x, double y, double z, double radius, int material) {
+			if (++this.sphereCount > this.maxSpheres) {
+				throw new IllegalArgumentException("The scene holds more than " + this.maxSpheres + " spheres");
+			}
+			Sphere sphere = new Sphere(new Point(x, y, z), radius, this.properties.get(material), this.shadingStrategies.get(material));
+			SceneFile.this.scene.addShape(sphere);
+		}
+	}
+}
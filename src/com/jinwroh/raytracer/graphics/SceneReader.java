@@ -0,0 +1,565 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.shading.ShadingStrategy;
+
+
+/**
+ * The SceneReader class parses a scene file (See SceneFile for the format),
+ * statement by statement, into a Handler. The file is never held whole: it is
+ * read through a fixed buffer, and the numbers are parsed straight from the
+ * bytes of the buffer, so the memory of the reader is constant, however many
+ * shapes the file holds, and a sphere costs no object at all until the handler
+ * creates one.
+ *
+ * The numbers are parsed exactly as Double.parseDouble does: the common ones,
+ * of up to 15 significant digits and a small exponent, by a single exact
+ * multiplication or division, and the others by Double.parseDouble itself.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class SceneReader implements Closeable {
+
+	private static final int BUFFER_BYTES = 1 << 16;
+	private static final int MAX_TOKEN_BYTES = 64;
+
+	private static final byte[] SPHERE = keyword("sphere");
+	private static final byte[] LIGHT = keyword("light");
+	private static final byte[] MATERIAL = keyword("material");
+	private static final byte[] EYE = keyword("eye");
+	private static final byte[] VIEWPORT = keyword("viewport");
+	private static final byte[] WINDOW = keyword("window");
+	private static final byte[] OFF = keyword("off");
+
+	/**
+	 * The powers of ten that are exact doubles, for the fast path of the
+	 * number parser.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_BYTES];
+	private int position;
+	private int limit;
+	private long byteCount;
+	private long lineCount = 1;
+
+	/**
+	 * The last token read, copied out of the buffer.
+	 */
+	private final byte[] token = new byte[MAX_TOKEN_BYTES];
+	private int tokenLength;
+
+	/**
+	 * The names of the materials, by index, and the last material referred to
+	 * by a sphere, which is checked first: the spheres of a material tend to
+	 * follow each other.
+	 */
+	private final List<byte[]> materialNames = new ArrayList<byte[]>();
+	private final Map<String, Integer> materials = new HashMap<String, Integer>();
+	private int lastMaterial = -1;
+
+	private long sphereCount;
+	private long lightCount;
+
+
+	/**
+	 * Constructs a SceneReader of the given stream. The stream is read through
+	 * a buffer of the reader, so it needs no buffer of its own.
+	 * @param in    the stream of the scene file
+	 */
+	public SceneReader (InputStream in) {
+		this.in = in;
+	}
+
+
+	/**
+	 * Parses the whole stream into the given handler, statement by statement.
+	 *
+	 * @param handler    the handler of the statements
+	 * @throws IOException    if the stream cannot be read, or a statement is invalid
+	 */
+	public void read (Handler handler) throws IOException {
+
+		while (true) {
+			if (this.readToken() == 0) {
+				if (this.peek() < 0) {
+					return;
+				}
+				this.nextLine();
+				continue;
+			}
+
+			if (this.isToken(SPHERE)) {
+				this.readSphere(handler);
+			}
+			else if (this.isToken(LIGHT)) {
+				this.readLight(handler);
+			}
+			else if (this.isToken(MATERIAL)) {
+				this.readMaterial(handler);
+			}
+			else if (this.isToken(EYE)) {
+				handler.eye(this.readPoint());
+			}
+			else if (this.isToken(VIEWPORT)) {
+				this.readViewport(handler);
+			}
+			else if (this.isToken(WINDOW)) {
+				handler.window(new Window(this.readPositiveInt(), this.readPositiveInt()));
+			}
+			else {
+				throw this.error("Unknown statement '" + this.tokenString() + "'");
+			}
+
+			if (this.readToken() != 0) {
+				throw this.error("Unexpected '" + this.tokenString() + "'");
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of bytes read so far.
+	 * @return    the bytes read
+	 */
+	public long getByteCount () {
+		return this.byteCount - (this.limit - this.position);
+	}
+
+	/**
+	 * Gets the number of spheres read so far.
+	 * @return    the spheres read
+	 */
+	public long getSphereCount () {
+		return this.sphereCount;
+	}
+
+	/**
+	 * Gets the number of lights read so far.
+	 * @return    the lights read
+	 */
+	public long getLightCount () {
+		return this.lightCount;
+	}
+
+	/**
+	 * Closes the stream of the reader.
+	 * @throws IOException    if the stream cannot be closed
+	 */
+	@Override
+	public void close () throws IOException {
+		this.in.close();
+	}
+
+
+	/**
+	 * sphere x y z radius material
+	 */
+	private void readSphere (Handler handler) throws IOException {
+		double x = this.readDouble();
+		double y = this.readDouble();
+		double z = this.readDouble();
+		double radius = this.readDouble();
+		if (!(radius > 0.0) || radius == Double.POSITIVE_INFINITY) {
+			throw this.error("Radius must be positive");
+		}
+		if (this.readToken() == 0) {
+			throw this.error("Missing material");
+		}
+		handler.sphere(x, y, z, radius, this.findMaterial());
+		this.sphereCount++;
+	}
+
+	/**
+	 * light dx dy dz r g b [off]
+	 */
+	private void readLight (Handler handler) throws IOException {
+		Vector direction = new Vector(this.readDouble(), this.readDouble(), this.readDouble());
+		Light light = new Light(direction, this.readColor());
+		if (this.readToken() != 0) {
+			if (!this.isToken(OFF)) {
+				throw this.error("Unexpected '" + this.tokenString() + "'");
+			}
+			light.turnOff();
+		}
+		handler.light(light);
+		this.lightCount++;
+	}
+
+	/**
+	 * material name [ambient r g b] [diffuse r g b] [specular r g b]
+	 * [shininess n] [reflection k] [refraction k] [index n] [shading name]
+	 */
+	private void readMaterial (Handler handler) throws IOException {
+
+		if (this.readToken() == 0) {
+			throw this.error("Missing material name");
+		}
+		String name = this.tokenString();
+		if (this.materials.containsKey(name)) {
+			throw this.error("Material '" + name + "' is already defined");
+		}
+
+		Shape.Properties properties = new Shape.Properties();
+		String shading = SceneFile.DEFAULT_SHADING;
+		while (this.readToken() != 0) {
+			String key = this.tokenString();
+			switch (key) {
+			case "ambient":
+				properties.ambientColorProperty = this.readColor();
+				break;
+			case "diffuse":
+				properties.diffuseColorProperty = this.readColor();
+				break;
+			case "specular":
+				properties.specularColorProperty = this.readColor();
+				break;
+			case "shininess":
+				properties.specularCoefficient = this.readInt();
+				break;
+			case "reflection":
+				properties.reflectionCoefficient = this.readDouble();
+				break;
+			case "refraction":
+				properties.refractionCoefficient = this.readDouble();
+				break;
+			case "index":
+				properties.refractiveIndex = this.readDouble();
+				break;
+			case "shading":
+				if (this.readToken() == 0) {
+					throw this.error("Missing shading strategy name");
+				}
+				shading = this.tokenString();
+				break;
+			default:
+				throw this.error("Unknown material property '" + key + "'");
+			}
+		}
+
+		ShadingStrategy shadingStrategy;
+		try {
+			shadingStrategy = SceneFile.createShadingStrategy(shading);
+		}
+		catch (IllegalArgumentException e) {
+			throw this.error(e.getMessage());
+		}
+
+		int material = this.materialNames.size();
+		this.materialNames.add(name.getBytes(StandardCharsets.ISO_8859_1));
+		this.materials.put(name, material);
+		handler.material(material, name, properties, shadingStrategy);
+	}
+
+	/**
+	 * viewport width height cx cy cz, or viewport and the four corners:
+	 * upper left, upper right, lower left, lower right.
+	 */
+	private void readViewport (Handler handler) throws IOException {
+		double[] values = new double[12];
+		int count = 0;
+		while (count < values.length && this.readToken() != 0) {
+			values[count++] = this.parseDouble();
+		}
+
+		if (count == 5) {
+			handler.viewport(new Viewport(values[0], values[1], new Point(values[2], values[3], values[4])));
+		}
+		else if (count == 12) {
+			handler.viewport(new Viewport(new Point(values[0], values[1], values[2]), new Point(values[3], values[4], values[5]),
+					new Point(values[6], values[7], values[8]), new Point(values[9], values[10], values[11])));
+		}
+		else {
+			throw this.error("Viewport needs 5 or 12 numbers");
+		}
+	}
+
+	private Point readPoint () throws IOException {
+		return new Point(this.readDouble(), this.readDouble(), this.readDouble());
+	}
+
+	private Color readColor () throws IOException {
+		return new Color(this.readDouble(), this.readDouble(), this.readDouble());
+	}
+
+	/**
+	 * Finds the material named by the last token.
+	 */
+	private int findMaterial () throws IOException {
+		if (this.lastMaterial >= 0 && this.isToken(this.materialNames.get(this.lastMaterial))) {
+			return this.lastMaterial;
+		}
+
+		Integer material = this.materials.get(this.tokenString());
+		if (material == null) {
+			throw this.error("Unknown material '" + this.tokenString() + "'");
+		}
+		this.lastMaterial = material;
+		return material;
+	}
+
+
+	/**
+	 * Reads the next token of the statement into the token buffer. A token
+	 * ends at a space, a tab, a line break or a comment, which runs from a #
+	 * to the end of its line.
+	 *
+	 * @return    the length of the token, or zero at the end of the statement
+	 */
+	private int readToken () throws IOException {
+
+		int c = this.peek();
+		while (c == ' ' || c == '\t' || c == '\r' || c == '#') {
+			if (c == '#') {
+				do {
+					this.position++;
+					c = this.peek();
+				} while (c >= 0 && c != '\n');
+			}
+			else {
+				this.position++;
+				c = this.peek();
+			}
+		}
+
+		int length = 0;
+		while (c > ' ' && c != '#') {
+			if (length == MAX_TOKEN_BYTES) {
+				throw this.error("Token is too long");
+			}
+			this.token[length++] = (byte) c;
+			this.position++;
+			c = this.peek();
+		}
+		this.tokenLength = length;
+		return length;
+	}
+
+	/**
+	 * Skips the line break at the end of a statement.
+	 */
+	private void nextLine () throws IOException {
+		if (this.peek() == '\n') {
+			this.position++;
+			this.lineCount++;
+		}
+		else {
+			throw this.error("Unexpected character " + this.peek());
+		}
+	}
+
+	/**
+	 * Gets the next byte of the stream, without consuming it.
+	 * @return    the next byte, or -1 at the end of the stream
+	 */
+	private int peek () throws IOException {
+		if (this.position == this.limit) {
+			int count = this.in.read(this.buffer);
+			if (count <= 0) {
+				return -1;
+			}
+			this.position = 0;
+			this.limit = count;
+			this.byteCount += count;
+		}
+		return this.buffer[this.position] & 0xFF;
+	}
+
+	private boolean isToken (byte[] bytes) {
+		return Arrays.equals(this.token, 0, this.tokenLength, bytes, 0, bytes.length);
+	}
+
+	private String tokenString () {
+		return new String(this.token, 0, this.tokenLength, StandardCharsets.ISO_8859_1);
+	}
+
+	private double readDouble () throws IOException {
+		if (this.readToken() == 0) {
+			throw this.error("Missing number");
+		}
+		return this.parseDouble();
+	}
+
+	private int readInt () throws IOException {
+		double value = this.readDouble();
+		if (value != Math.rint(value) || Math.abs(value) > Integer.MAX_VALUE) {
+			throw this.error("Expected an integer, got '" + this.tokenString() + "'");
+		}
+		return (int) value;
+	}
+
+	private int readPositiveInt () throws IOException {
+		int value = this.readInt();
+		if (value <= 0) {
+			throw this.error("Expected a positive integer, got '" + this.tokenString() + "'");
+		}
+		return value;
+	}
+
+	/**
+	 * Parses the token as a decimal number: an optional sign, digits with an
+	 * optional fraction, and an optional exponent.
+	 */
+	private double parseDouble () throws IOException {
+
+		byte[] bytes = this.token;
+		int length = this.tokenLength;
+		int i = 0;
+		boolean negative = false;
+		if (bytes[0] == '-' || bytes[0] == '+') {
+			negative = bytes[0] == '-';
+			i++;
+		}
+
+		// The significant digits, up to 18 of them, and the power of ten they are scaled by
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean exact = true;
+		boolean anyDigit = false;
+
+		while (i < length && bytes[i] >= '0' && bytes[i] <= '9') {
+			anyDigit = true;
+			if (digits < 18) {
+				mantissa = mantissa * 10 + (bytes[i] - '0');
+				digits += (mantissa != 0) ? 1 : 0;
+			}
+			else {
+				exact &= bytes[i] == '0';
+				exponent++;
+			}
+			i++;
+		}
+		if (i < length && bytes[i] == '.') {
+			i++;
+			while (i < length && bytes[i] >= '0' && bytes[i] <= '9') {
+				anyDigit = true;
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (bytes[i] - '0');
+					digits += (mantissa != 0) ? 1 : 0;
+					exponent--;
+				}
+				else {
+					exact &= bytes[i] == '0';
+				}
+				i++;
+			}
+		}
+		if (!anyDigit) {
+			throw this.error("Expected a number, got '" + this.tokenString() + "'");
+		}
+
+		if (i < length && (bytes[i] == 'e' || bytes[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < length && (bytes[i] == '-' || bytes[i] == '+')) {
+				negativeExponent = bytes[i] == '-';
+				i++;
+			}
+			int value = 0;
+			int start = i;
+			while (i < length && bytes[i] >= '0' && bytes[i] <= '9') {
+				value = Math.min(value * 10 + (bytes[i] - '0'), 100000);
+				i++;
+			}
+			if (i == start) {
+				throw this.error("Expected a number, got '" + this.tokenString() + "'");
+			}
+			exponent += negativeExponent ? -value : value;
+		}
+		if (i != length) {
+			throw this.error("Expected a number, got '" + this.tokenString() + "'");
+		}
+
+		// Both the mantissa and the power of ten are exact doubles, so a single operation rounds correctly
+		if (exact && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+			double value = (exponent < 0) ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+		return Double.parseDouble(this.tokenString());
+	}
+
+	private IOException error (String message) {
+		return new IOException("Scene file line " + this.lineCount + ": " + message);
+	}
+
+	private static byte[] keyword (String keyword) {
+		return keyword.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+
+
+	/**
+	 * The Handler interface receives the statements of a scene file, in the
+	 * order of the file. The spheres come as plain numbers and the index of
+	 * their material, so a handler that does not keep them (i.e. a converter
+	 * to another format) creates no object per sphere.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	public interface Handler {
+
+		/**
+		 * Receives the eyepoint of the camera.
+		 * @param eye    the eyepoint
+		 */
+		void eye (Point eye);
+
+		/**
+		 * Receives the viewport of the camera.
+		 * @param viewport    the viewport
+		 */
+		void viewport (Viewport viewport);
+
+		/**
+		 * Receives the window of the camera.
+		 * @param window    the window
+		 */
+		void window (Window window);
+
+		/**
+		 * Receives a material. The materials are indexed from zero, in the
+		 * order of the file, and are defined before the spheres made of them.
+		 *
+		 * @param material           the index of the material
+		 * @param name               the name of the material
+		 * @param properties         the properties of the material
+		 * @param shadingStrategy    the shading strategy of the material
+		 */
+		void material (int material, String name, Shape.Properties properties, ShadingStrategy shadingStrategy);
+
+		/**
+		 * Receives a light.
+		 * @param light    the light
+		 */
+		void light (Light light);
+
+		/**
+		 * Receives a sphere.
+		 *
+		 * @param x           the x coordinate of the center
+		 * @param y           the y coordinate of the center
+		 * @param z           the z coordinate of the center
+		 * @param radius      the radius, positive
+		 * @param material    the index of the material of the sphere
+		 */
+		void sphere (double x, double y, double z, double radius, int material);
+	}
+}
@@ -0,0 +1,186 @@
+package com.jinwroh.raytracer.graphics;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.strategy.acceleration.Accelerator;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+
+
+/**
+ * The Shot class bundles up the inputs of a render, which all the tiles share:
+ * the compiled scene, the accelerator over its shapes, the limits on the
+ * secondary rays, the sampler of the whole Window, the eye, the packet size,
+ * and the adaptive supersampling settings. A Shot is made by the Camera (See
+ * Camera.createShot), from a snapshot of its settings, so the camera may be
+ * changed while the shot is rendered.
+ *
+ * With supersampling, the Shot also holds the Shape seen by the first sample
+ * of each pixel of the Window, indexed by y * width + x, and with a geometry
+ * buffer, what the first samples hit (See Camera.relight).
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class Shot {
+
+	private final CompiledScene scene;
+	private final AcceleratorSelector.Selection selection;
+	private final TraceLimits limits;
+	private final Sampler sampler;
+	private final Point eye;
+	private final int packetSize;
+	private final int maxSamples;
+	private final double contrastThreshold;
+	private final Shape[] hitShapes;
+
+	/**
+	 * The geometry buffer the hits of the first samples are kept in, or null,
+	 * and whether the shot shades the hits of the buffer instead.
+	 */
+	private final GeometryBuffer geometry;
+	private final boolean relight;
+
+
+	/**
+	 * Constructs a Shot with the given render inputs.
+	 *
+	 * @param scene                the compiled scene to which all rays are directed
+	 * @param selection            the selection of the accelerator over the shapes of the scene
+	 * @param limits               the limits on the secondary rays
+	 * @param sampler              the sampler of the whole Window
+	 * @param eye                  the eyepoint of the camera
+	 * @param packetSize           the pixel size of the square blocks of samples traced as a packet
+	 * @param maxSamples           the maximum number of samples of a pixel
+	 * @param contrastThreshold    the color difference above which samples contrast
+	 * @param geometry             the geometry buffer to be filled, or shaded if the shot relights, or null
+	 * @param relight              true to shade the hits of the geometry buffer instead of tracing the primary rays
+	 */
+	Shot (CompiledScene scene, AcceleratorSelector.Selection selection, TraceLimits limits, Sampler sampler,
+			Point eye, int packetSize, int maxSamples, double contrastThreshold, GeometryBuffer geometry, boolean relight) {
+		this.scene = scene;
+		this.selection = selection;
+		this.limits = limits;
+		this.sampler = sampler;
+		this.eye = eye;
+		this.packetSize = packetSize;
+		this.maxSamples = maxSamples;
+		this.contrastThreshold = contrastThreshold;
+		this.hitShapes = (maxSamples > 1) ? new Shape[sampler.getWidthSampleSize() * sampler.getHeightSampleSize()] : null;
+		this.geometry = geometry;
+		this.relight = relight;
+	}
+
+
+	/**
+	 * Gets the compiled scene of the shot.
+	 * @return    the compiled scene
+	 */
+	CompiledScene getScene () {
+		return this.scene;
+	}
+
+	/**
+	 * Gets the selection report of the accelerator of the shot.
+	 * @return    the selection
+	 */
+	AcceleratorSelector.Selection getSelection () {
+		return this.selection;
+	}
+
+	/**
+	 * Gets the accelerator over the shapes of the scene.
+	 * @return    the accelerator
+	 */
+	Accelerator getAccelerator () {
+		return this.selection.accelerator;
+	}
+
+	/**
+	 * Gets the limits on the secondary rays of the shot.
+	 * @return    the trace limits
+	 */
+	TraceLimits getLimits () {
+		return this.limits;
+	}
+
+	/**
+	 * Gets the sampler of the whole Window.
+	 * @return    the sampler
+	 */
+	Sampler getSampler () {
+		return this.sampler;
+	}
+
+	/**
+	 * Gets the width of the Window, in pixels.
+	 * @return    the width
+	 */
+	int getWidth () {
+		return this.sampler.getWidthSampleSize();
+	}
+
+	/**
+	 * Gets the height of the Window, in pixels.
+	 * @return    the height
+	 */
+	int getHeight () {
+		return this.sampler.getHeightSampleSize();
+	}
+
+	/**
+	 * Gets the eyepoint of the camera.
+	 * @return    the eye
+	 */
+	Point getEye () {
+		return this.eye;
+	}
+
+	/**
+	 * Gets the pixel size of the square blocks of samples traced as a packet.
+	 * @return    the packet size, in pixels
+	 */
+	int getPacketSize () {
+		return this.packetSize;
+	}
+
+	/**
+	 * Gets the maximum number of samples of a pixel.
+	 * @return    the max samples per pixel
+	 */
+	int getMaxSamples () {
+		return this.maxSamples;
+	}
+
+	/**
+	 * Gets the color difference above which two samples contrast.
+	 * @return    the contrast threshold
+	 */
+	double getContrastThreshold () {
+		return this.contrastThreshold;
+	}
+
+	/**
+	 * Gets the Shape seen by the first sample of each pixel.
+	 * @return    the shapes, indexed by y * width + x, or null without supersampling
+	 */
+	Shape[] getHitShapes () {
+		return this.hitShapes;
+	}
+
+	/**
+	 * Gets the geometry buffer of the shot.
+	 * @return    the geometry buffer, or null if the shot keeps none
+	 */
+	GeometryBuffer getGeometry () {
+		return this.geometry;
+	}
+
+	/**
+	 * Checks if the shot shades the hits of its geometry buffer instead of
+	 * tracing the primary rays.
+	 * @return    true if the shot relights, false otherwise
+	 */
+	boolean isRelight () {
+		return this.relight;
+	}
+}
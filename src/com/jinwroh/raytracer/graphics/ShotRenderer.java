@@ -0,0 +1,345 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * The ShotRenderer class renders a Shot into the frame buffer of the Camera
+ * that made it (See Camera.shoot). The Window is split into tiles, which are
+ * rendered by a TileRenderer in one or more passes:
+ *
+ * - with a progress listener, the passes go from coarse to fine, and each is
+ *   handed to the listener as soon as it is done (See Camera.setProgressListener);
+ * - with supersampling, the pixels are refined in a last pass, once the first
+ *   samples of all the pixels are known (See Camera.setMaxSamples).
+ *
+ * The tiles of the final pass are appended to the checkpoint file of the
+ * camera, if any, and the tiles already in the file are not rendered again
+ * (See Camera.setCheckpointFile). With supersampling, the borders of the
+ * restored tiles are traced again, so the missing tiles are refined as in an
+ * uninterrupted render (See traceBorders). The rows of the final pass may be
+ * streamed to a PngWriter as well (See RowStreamer).
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class ShotRenderer implements TileRenderer.TileListener {
+
+	/**
+	 * The pixel steps of the passes of a progressive render: a sample every 4
+	 * pixels (1/16 of the pixels), then every 2 pixels (1/4), then every pixel.
+	 * A render that is not progressive has a single pass.
+	 */
+	private static final int[] PROGRESSIVE_STEPS = {4, 2, 1};
+	private static final int[] SINGLE_STEP = {1};
+
+	private final Camera camera;
+	private final Shot shot;
+	private final FrameBuffer frameBuffer;
+	private final TileRenderer renderer;
+
+	/**
+	 * The checkpoint the tiles of the final pass are appended to, or null, and
+	 * the number of tiles restored from it.
+	 */
+	private Checkpoint checkpoint;
+	private int restoredTileCount;
+
+	/**
+	 * The streamer of the rows of the final pass, or null.
+	 */
+	private RowStreamer streamer;
+
+
+	/**
+	 * Constructs a ShotRenderer of the given shot, into the frame buffer and
+	 * the statistics of the given camera. The shot must have begun (See
+	 * Camera.beginShot).
+	 *
+	 * @param camera    the camera that made the shot
+	 * @param shot      the render inputs of the shot
+	 */
+	ShotRenderer (Camera camera, Shot shot) {
+		this.camera = camera;
+		this.shot = shot;
+		this.frameBuffer = camera.getFrameBuffer();
+		this.renderer = new TileRenderer(shot, this.frameBuffer, 0, 0, shot.getHitShapes(), camera.getTraceStatistics());
+		this.renderer.setGeometry(shot.getGeometry(), shot.isRelight());
+	}
+
+
+	/**
+	 * Renders the shot, and streams the final rows of the image to the given
+	 * writer, if any.
+	 *
+	 * @param writer    the writer of the rows of the image, or null
+	 */
+	void render (PngWriter writer) {
+
+		ProgressListener listener = this.camera.getProgressListener();
+		boolean refine = this.shot.getHitShapes() != null;
+		Window window = this.camera.getWindow();
+		int tileSize = this.camera.getTileSize();
+
+		int[] steps = (listener != null) ? PROGRESSIVE_STEPS : SINGLE_STEP;
+		int passCount = steps.length + (refine ? 1 : 0);
+
+		// With a single thread, the Window is rendered in rows of tiles as wide as
+		// the Window, in the same order as the Sampler. Otherwise, the tiles are
+		// rendered on a work-stealing pool of threadCount threads, or on the
+		// render pool if one is set. Every tile writes its pixels directly into
+		// its own region of the frame buffer, so the threads never share a pixel.
+		// A checkpoint keeps square tiles even with a single thread, so it can be
+		// resumed with any number of threads.
+		File checkpointFile = this.camera.getCheckpointFile();
+		List<Tile> tiles;
+		if (this.camera.getRenderPool() == null && this.camera.getThreadCount() == 1 && checkpointFile == null) {
+			tiles = Tile.split(window, window.getWidth(), tileSize);
+		}
+		else {
+			tiles = Tile.split(window, tileSize, tileSize);
+		}
+
+		if (checkpointFile != null) {
+			this.checkpoint = this.openCheckpoint(checkpointFile);
+			this.restoredTileCount = this.checkpoint.getRestoredTileCount();
+
+			List<Tile> missingTiles = new ArrayList<Tile>();
+			for (Tile tile : tiles) {
+				if (!this.checkpoint.isRestored(tile)) {
+					missingTiles.add(tile);
+				}
+			}
+			tiles = missingTiles;
+		}
+
+		ForkJoinPool pool = this.camera.openRenderPool();
+		try {
+			for (int pass = 0; pass < steps.length; pass++) {
+				this.renderer.setPass(steps[pass], (pass > 0) ? steps[pass - 1] : 0);
+				this.beginPass(writer, tiles, !refine && pass == steps.length - 1);
+				this.renderer.renderTiles(pool, false, tiles, null);
+
+				if (listener != null) {
+					FrameBuffer preview = (steps[pass] == 1) ? this.frameBuffer : new PassFrameBuffer(this.frameBuffer, steps[pass]);
+					listener.passFinished(preview, pass, passCount);
+				}
+			}
+
+			if (refine) {
+				FrameBuffer samples = (this.restoredTileCount > 0) ? this.traceBorders(pool, tiles) : this.frameBuffer;
+				this.renderer.markRefinements(samples);
+				this.beginPass(writer, tiles, true);
+				this.renderer.renderTiles(pool, true, tiles, null);
+
+				if (listener != null) {
+					listener.passFinished(this.frameBuffer, passCount - 1, passCount);
+				}
+			}
+		}
+		finally {
+			this.camera.closeRenderPool(pool);
+			if (this.checkpoint != null) {
+				this.closeCheckpoint();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of tiles of the shot restored from its checkpoint file,
+	 * instead of being rendered.
+	 * @return    the number of restored tiles
+	 */
+	int getRestoredTileCount () {
+		return this.restoredTileCount;
+	}
+
+	/**
+	 * Ends the final pass over the given tile: appends the tile to the
+	 * checkpoint, and streams the rows of tiles that are done, if any.
+	 *
+	 * @param tile    the tile that is done
+	 */
+	@Override
+	public void tileFinished (Tile tile) {
+
+		if (this.checkpoint != null) {
+			try {
+				this.checkpoint.append(tile, this.frameBuffer);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		if (this.streamer != null) {
+			this.streamer.tileFinished(tile);
+		}
+	}
+
+	/**
+	 * Starts a pass over the given tiles. The tiles of the final pass are
+	 * handed to tileFinished, and its rows are streamed to the writer, if any.
+	 *
+	 * @param writer    the writer of the rows of the image, or null
+	 * @param tiles     the tiles of the pass
+	 * @param last      true if the pass is the final pass of the shot
+	 */
+	private void beginPass (PngWriter writer, List<Tile> tiles, boolean last) {
+
+		this.renderer.setTileListener(last ? this : null);
+		if (last && writer != null) {
+			this.streamer = new RowStreamer(writer, this.frameBuffer, this.camera.getTileSize(), tiles);
+		}
+	}
+
+	/**
+	 * Gets the first samples of the missing tiles of a resumed shot, and of the
+	 * pixels of the restored tiles along their borders. The checkpoint only
+	 * keeps the final pixels of the restored tiles, so the row or column of
+	 * pixels of a restored tile next to a missing tile is traced again, with
+	 * the Shapes its first samples see. The pixels of the missing tiles are
+	 * thus marked for refinement exactly as in an uninterrupted render.
+	 *
+	 * @param pool     the pool of render threads, or null
+	 * @param tiles    the missing tiles, whose first samples are rendered
+	 * @return         the frame buffer holding the first samples of the missing tiles and of their borders
+	 */
+	private FrameBuffer traceBorders (ForkJoinPool pool, List<Tile> tiles) {
+
+		Window window = this.camera.getWindow();
+		int tileSize = this.camera.getTileSize();
+		FrameBuffer samples = new ArrayFrameBuffer(window.getWidth(), window.getHeight());
+		for (Tile tile : tiles) {
+			for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+				for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+					samples.setRGB(x, y, this.frameBuffer.getRGB(x, y));
+				}
+			}
+		}
+
+		// The tiles of a checkpoint are square, so a tile is found by its position
+		int columns = (window.getWidth() + tileSize - 1) / tileSize;
+		int rows = (window.getHeight() + tileSize - 1) / tileSize;
+		boolean[] missing = new boolean[columns * rows];
+		for (Tile tile : tiles) {
+			missing[(tile.getY() / tileSize) * columns + tile.getX() / tileSize] = true;
+		}
+
+		List<Tile> borders = new ArrayList<Tile>();
+		for (Tile tile : tiles) {
+			int column = tile.getX() / tileSize;
+			int row = tile.getY() / tileSize;
+			int index = row * columns + column;
+			if (column > 0 && !missing[index - 1]) {
+				borders.add(new Tile(tile.getX() - 1, tile.getY(), 1, tile.getHeight()));
+			}
+			if (column + 1 < columns && !missing[index + 1]) {
+				borders.add(new Tile(tile.getX() + tile.getWidth(), tile.getY(), 1, tile.getHeight()));
+			}
+			if (row > 0 && !missing[index - columns]) {
+				borders.add(new Tile(tile.getX(), tile.getY() - 1, tile.getWidth(), 1));
+			}
+			if (row + 1 < rows && !missing[index + columns]) {
+				borders.add(new Tile(tile.getX(), tile.getY() + tile.getHeight(), tile.getWidth(), 1));
+			}
+		}
+
+		TraceStatistics statistics = new TraceStatistics();
+		TileRenderer renderer = new TileRenderer(this.shot, samples, 0, 0, this.shot.getHitShapes(), statistics);
+		renderer.renderTiles(pool, false, borders, null);
+
+		// The samples of the borders count as the cost of the missing tiles
+		statistics.pixels = 0;
+		TraceStatistics total = this.camera.getTraceStatistics();
+		synchronized (total) {
+			total.add(statistics);
+		}
+		return samples;
+	}
+
+	/**
+	 * Opens the checkpoint of the shot in the given file. The checkpoint is
+	 * matched to the shot by its fingerprint (See Camera.fingerprint).
+	 *
+	 * @param file    the checkpoint file
+	 * @return        the checkpoint, with its tiles restored into the frame buffer
+	 */
+	private Checkpoint openCheckpoint (File file) {
+
+		try {
+			return new Checkpoint(file, this.camera.fingerprint(this.shot.getScene()), this.frameBuffer,
+					this.camera.getTileSize());
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Closes the checkpoint of the shot.
+	 */
+	private void closeCheckpoint () {
+
+		try {
+			this.checkpoint.close();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+	/**
+	 * The PassFrameBuffer is a private static inner class within the
+	 * ShotRenderer class. It is a read-only view of the frame buffer of a
+	 * progressive render after a coarse pass: every pixel reads the sample of
+	 * the pass that stands for it, i.e. the closest sampled pixel above it and
+	 * to its left. The coarse samples are thus shown as blocks, without being
+	 * copied.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class PassFrameBuffer implements FrameBuffer {
+
+		private final FrameBuffer frameBuffer;
+		private final int step;
+
+
+		/**
+		 * Constructs a PassFrameBuffer over the given frame buffer.
+		 *
+		 * @param frameBuffer    the frame buffer of the render
+		 * @param step           the pixel step of the pass
+		 */
+		public PassFrameBuffer (FrameBuffer frameBuffer, int step) {
+			this.frameBuffer = frameBuffer;
+			this.step = step;
+		}
+
+		@Override
+		public int getWidth () {
+			return this.frameBuffer.getWidth();
+		}
+
+		@Override
+		public int getHeight () {
+			return this.frameBuffer.getHeight();
+		}
+
+		@Override
+		public int getRGB (int x, int y) {
+			return this.frameBuffer.getRGB(x - x % this.step, y - y % this.step);
+		}
+
+		@Override
+		public void setRGB (int x, int y, int rgb) {
+			throw new UnsupportedOperationException("The pass of a progressive render is read-only");
+		}
+	}
+}
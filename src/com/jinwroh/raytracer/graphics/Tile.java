@@ -0,0 +1,108 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The Tile class represents a rectangular region of the Window, given in
+ * pixels. Splitting the Window into tiles allows the raytracer to render
+ * independent regions of the final image separately (i.e. in parallel).
+ * The x, y position is the upper left pixel of the tile, using the same
+ * ordering as the Sampler: x:0 y:0 starting from the upper left corner.
+ * This is an immutable class.
+ *
+ * @author	Jin W. Roh
+ * @version	1.0.0
+ */
+public final class Tile {
+
+	/**
+	 * The upper left pixel position, and the pixel dimensions of this tile.
+	 */
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+
+
+	/**
+	 * Constructs a Tile with the upper left pixel position and the dimensions.
+	 * @param x         the x-coordinate of the upper left pixel
+	 * @param y         the y-coordinate of the upper left pixel
+	 * @param width     the width of the tile, in pixels
+	 * @param height    the height of the tile, in pixels
+	 */
+	public Tile (int x, int y, int width, int height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+
+	/**
+	 * Splits the given Window into tiles of the given size, row by row starting
+	 * from the upper left corner. The tiles on the right and the bottom edges
+	 * are clipped to the Window.
+	 *
+	 * @param window        the window to be split
+	 * @param tileWidth     the width of a tile, in pixels
+	 * @param tileHeight    the height of a tile, in pixels
+	 * @return              the list of tiles covering the whole window
+	 */
+	public static List<Tile> split (Window window, int tileWidth, int tileHeight) {
+
+		if (tileWidth <= 0 || tileHeight <= 0) {
+			throw new IllegalArgumentException("Tile dimensions must be positive");
+		}
+
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (int y = 0; y < window.getHeight(); y += tileHeight) {
+			for (int x = 0; x < window.getWidth(); x += tileWidth) {
+				int width = Math.min(tileWidth, window.getWidth() - x);
+				int height = Math.min(tileHeight, window.getHeight() - y);
+				tiles.add(new Tile(x, y, width, height));
+			}
+		}
+		return tiles;
+	}
+
+
+	/**
+	 * Gets the x-coordinate of the upper left pixel of this tile.
+	 * @return    the x-coordinate of the upper left pixel
+	 */
+	public int getX () {
+		return this.x;
+	}
+
+	/**
+	 * Gets the y-coordinate of the upper left pixel of this tile.
+	 * @return    the y-coordinate of the upper left pixel
+	 */
+	public int getY () {
+		return this.y;
+	}
+
+	/**
+	 * Gets the width of this tile, in pixels.
+	 * @return    the width of this tile
+	 */
+	public int getWidth () {
+		return this.width;
+	}
+
+	/**
+	 * Gets the height of this tile, in pixels.
+	 * @return    the height of this tile
+	 */
+	public int getHeight () {
+		return this.height;
+	}
+
+	@Override
+	public String toString () {
+		return "Tile: (" + this.x + ", " + this.y + ") " + this.width + "x" + this.height;
+	}
+}
@@ -0,0 +1,335 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.jinwroh.raytracer.geometric.BoundingBox;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * The TileFootprint class records what the pixels of a tile depend on in the
+ * scene, while the tile is traced (See Tracer.setFootprint): the IDs of the
+ * shapes hit by its rays, and the bounds of its rays. A pixel is a function of
+ * the rays traced for it, so an edit of the scene changes the tile only if it
+ * changes the result of one of those rays:
+ *
+ * - a closest hit changes if its shape is removed or edited, or if a shape is
+ *   added in front of it;
+ * - a shadow ray that is lit changes if a shape is added across it;
+ * - a shadow ray that is occluded changes if its occluder is removed. The
+ *   occluder is not known (See Accelerator.anyHit), so any shape removed
+ *   across the ray counts.
+ *
+ * The rays are bounded per kind, as a box of origins, a box of directions
+ * and a maximum time: every ray o + t d of the kind, for 0 <= t <= maxTime,
+ * stays within the points reachable from those boxes. Shadow rays are
+ * bounded per direction, i.e. per light, so their direction boxes stay
+ * points. The bounds are conservative, so a tile may be found dirty when it
+ * is not, but never the other way around (See IncrementalRenderer).
+ *
+ * A TileFootprint is recorded by one thread at a time.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class TileFootprint {
+
+	/**
+	 * The number of directions the shadow rays are bounded by, each for its
+	 * lit and its occluded rays. The rays of more directions share the last.
+	 */
+	private static final int MAX_SHADOW_DIRECTIONS = 8;
+
+	/**
+	 * The relative margin of the bounds, which covers the rounding of the hits.
+	 */
+	private static final double MARGIN = 1e-9;
+
+	private final Tile tile;
+
+	/**
+	 * The shapes hit while the tile is traced, and the last one of them, which
+	 * the next ray of a coherent tile most likely hits again. Once the tile is
+	 * finished, the sorted IDs of the shapes instead.
+	 */
+	private Set<Shape> hitShapes = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+	private Shape lastHitShape;
+	private int[] hitIds;
+
+	/**
+	 * The bounds of the primary rays, of the reflected and refracted rays, and
+	 * of the shadow rays per direction, lit and occluded.
+	 */
+	private final RayBounds primaryRays = new RayBounds();
+	private final RayBounds secondaryRays = new RayBounds();
+	private final RayBounds[] litShadowRays = new RayBounds[MAX_SHADOW_DIRECTIONS];
+	private final RayBounds[] occludedShadowRays = new RayBounds[MAX_SHADOW_DIRECTIONS];
+	private int shadowDirectionCount;
+
+
+	/**
+	 * Constructs an empty TileFootprint of the given tile.
+	 *
+	 * @param tile    the tile whose rays are recorded
+	 */
+	TileFootprint (Tile tile) {
+		this.tile = tile;
+	}
+
+
+	/**
+	 * Gets the tile whose rays are recorded.
+	 * @return    the tile
+	 */
+	Tile getTile () {
+		return this.tile;
+	}
+
+	/**
+	 * Records a ray traced to its closest hit.
+	 *
+	 * @param ray        the ray
+	 * @param depth      the depth of the ray, zero for a primary ray
+	 * @param shape      the Shape hit, or null if the ray hit nothing
+	 * @param timeHit    the time of the hit
+	 */
+	void addClosestHit (Ray ray, int depth, Shape shape, double timeHit) {
+
+		RayBounds bounds = (depth == 0) ? this.primaryRays : this.secondaryRays;
+		if (shape == null) {
+			bounds.add(ray, Double.POSITIVE_INFINITY);
+			return;
+		}
+
+		bounds.add(ray, timeHit);
+		if (shape != this.lastHitShape) {
+			this.hitShapes.add(shape);
+			this.lastHitShape = shape;
+		}
+	}
+
+	/**
+	 * Records a shadow ray, i.e. an occlusion query.
+	 *
+	 * @param ray         the ray
+	 * @param maxTime     the end of the interval of the query
+	 * @param occluded    true if the ray is occluded, false otherwise
+	 */
+	void addShadowRay (Ray ray, double maxTime, boolean occluded) {
+
+		double directionX = ray.getDirectionX();
+		double directionY = ray.getDirectionY();
+		double directionZ = ray.getDirectionZ();
+
+		int direction = 0;
+		while (direction < this.shadowDirectionCount
+				&& !this.litShadowRays[direction].hasDirection(directionX, directionY, directionZ)) {
+			direction++;
+		}
+		if (direction == MAX_SHADOW_DIRECTIONS) {
+			direction--;
+		}
+		else if (direction == this.shadowDirectionCount) {
+			this.litShadowRays[direction] = new RayBounds();
+			this.litShadowRays[direction].setDirection(directionX, directionY, directionZ);
+			this.occludedShadowRays[direction] = new RayBounds();
+			this.shadowDirectionCount++;
+		}
+
+		RayBounds[] bounds = occluded ? this.occludedShadowRays : this.litShadowRays;
+		bounds[direction].add(ray, maxTime);
+	}
+
+	/**
+	 * Finishes the recording: the shapes hit are turned into their IDs.
+	 *
+	 * @param shapeIds    the IDs of the shapes of the scene
+	 */
+	void finish (Map<Shape, Integer> shapeIds) {
+
+		int[] ids = new int[this.hitShapes.size()];
+		int count = 0;
+		for (Shape shape : this.hitShapes) {
+			Integer id = shapeIds.get(shape);
+			if (id != null) {
+				ids[count++] = id;
+			}
+		}
+		this.hitIds = Arrays.copyOf(ids, count);
+		Arrays.sort(this.hitIds);
+		this.hitShapes = null;
+		this.lastHitShape = null;
+	}
+
+	/**
+	 * Checks if a ray of the tile hit the shape of the given ID, so the tile
+	 * changes if the shape is removed or edited.
+	 *
+	 * @param shapeId    the unique shape id
+	 * @return           true if the shape was hit, false otherwise
+	 */
+	boolean hits (int shapeId) {
+		return Arrays.binarySearch(this.hitIds, shapeId) >= 0;
+	}
+
+	/**
+	 * Checks if an occluded shadow ray of the tile may cross the given box,
+	 * so the tile may change if a shape within the box is removed.
+	 *
+	 * @param box    the bounding box of the shape
+	 * @return       true if a ray may cross the box, false otherwise
+	 */
+	boolean mayBeOccludedWithin (BoundingBox box) {
+
+		for (int i = 0; i < this.shadowDirectionCount; i++) {
+			if (this.occludedShadowRays[i].reaches(box)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if a ray of the tile that a shape within the given box would cut
+	 * short may cross the box, so the tile may change if such a shape is added.
+	 *
+	 * @param box    the bounding box of the shape
+	 * @return       true if a ray may cross the box, false otherwise
+	 */
+	boolean mayReach (BoundingBox box) {
+
+		if (this.primaryRays.reaches(box) || this.secondaryRays.reaches(box)) {
+			return true;
+		}
+		for (int i = 0; i < this.shadowDirectionCount; i++) {
+			if (this.litShadowRays[i].reaches(box)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * The RayBounds is a private static inner class within the TileFootprint
+	 * class. It bounds a set of rays by a box of their origins, a box of
+	 * their directions, and their maximum time.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class RayBounds {
+
+		private int count;
+		private final double[] originMin = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		private final double[] originMax = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		private final double[] directionMin = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		private final double[] directionMax = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		private double maxTime;
+
+		/**
+		 * The direction the bounds are keyed by, for the lit shadow rays,
+		 * which also key the occluded ones.
+		 */
+		private double keyX;
+		private double keyY;
+		private double keyZ;
+
+
+		/**
+		 * Adds a ray, up to the given time.
+		 *
+		 * @param ray        the ray
+		 * @param maxTime    the time the ray ends at
+		 */
+		void add (Ray ray, double maxTime) {
+			this.add(0, ray.getOriginX(), ray.getDirectionX());
+			this.add(1, ray.getOriginY(), ray.getDirectionY());
+			this.add(2, ray.getOriginZ(), ray.getDirectionZ());
+			this.maxTime = Math.max(this.maxTime, maxTime);
+			this.count++;
+		}
+
+		/**
+		 * Adds the given axis of a ray.
+		 */
+		private void add (int axis, double origin, double direction) {
+			this.originMin[axis] = Math.min(this.originMin[axis], origin);
+			this.originMax[axis] = Math.max(this.originMax[axis], origin);
+			this.directionMin[axis] = Math.min(this.directionMin[axis], direction);
+			this.directionMax[axis] = Math.max(this.directionMax[axis], direction);
+		}
+
+		/**
+		 * Sets the direction the bounds are keyed by.
+		 */
+		void setDirection (double x, double y, double z) {
+			this.keyX = x;
+			this.keyY = y;
+			this.keyZ = z;
+		}
+
+		/**
+		 * Checks if the bounds are keyed by the given direction.
+		 */
+		boolean hasDirection (double x, double y, double z) {
+			return this.keyX == x && this.keyY == y && this.keyZ == z;
+		}
+
+		/**
+		 * Checks if a ray within the bounds may cross the given box, i.e. if
+		 * there is a time t in [0, maxTime] at which, on every axis, the
+		 * points reachable from the bounds overlap the box. On an axis, the
+		 * reachable points at time t are [originMin + t directionMin,
+		 * originMax + t directionMax], so each axis bounds t by two linear
+		 * inequalities.
+		 */
+		boolean reaches (BoundingBox box) {
+
+			if (this.count == 0) {
+				return false;
+			}
+
+			double start = 0.0;
+			double end = this.maxTime * (1 + MARGIN);
+			double[] boxMin = {box.getMin().getX(), box.getMin().getY(), box.getMin().getZ()};
+			double[] boxMax = {box.getMax().getX(), box.getMax().getY(), box.getMax().getZ()};
+
+			for (int axis = 0; axis < 3 && start <= end; axis++) {
+				double margin = MARGIN * (1.0 + Math.max(Math.abs(boxMin[axis]), Math.abs(boxMax[axis])));
+				double min = boxMin[axis] - margin;
+				double max = boxMax[axis] + margin;
+
+				// originMin + t directionMin <= max
+				double lowest = max - this.originMin[axis];
+				if (this.directionMin[axis] > 0) {
+					end = Math.min(end, lowest / this.directionMin[axis]);
+				}
+				else if (this.directionMin[axis] < 0) {
+					start = Math.max(start, lowest / this.directionMin[axis]);
+				}
+				else if (lowest < 0) {
+					return false;
+				}
+
+				// originMax + t directionMax >= min
+				double highest = min - this.originMax[axis];
+				if (this.directionMax[axis] > 0) {
+					start = Math.max(start, highest / this.directionMax[axis]);
+				}
+				else if (this.directionMax[axis] < 0) {
+					end = Math.min(end, highest / this.directionMax[axis]);
+				}
+				else if (highest > 0) {
+					return false;
+				}
+			}
+			return start <= end;
+		}
+	}
+}
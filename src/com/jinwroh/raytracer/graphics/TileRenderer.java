@@ -0,0 +1,522 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.RayPacket;
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * The TileRenderer class renders the tiles of a Shot into a canvas: a frame
+ * buffer covering a region of the Window, i.e. the whole Window for a render
+ * of the Camera, or a tile and its border for a RenderWorker (See
+ * RegionRenderer). The tiles are given in the coordinates of the Window.
+ *
+ * A tile is rendered ray by ray or packet by packet, or shaded from the hits
+ * of a geometry buffer, in the pass set on the renderer (See setPass). With
+ * supersampling, the marked pixels of a tile are then refined (See
+ * markRefinements and PixelRefiner). Every tile is rendered with a tracer of
+ * its own, and only writes its own pixels, so the tiles can be rendered in
+ * parallel; the counts of their rays are added to the statistics of the
+ * renderer.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class TileRenderer {
+
+	/**
+	 * The TileListener interface is notified of every tile the renderer is
+	 * done with, on the thread that rendered it (See setTileListener).
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	interface TileListener {
+
+		/**
+		 * Called once the given tile is rendered or refined.
+		 *
+		 * @param tile    the tile that is done
+		 */
+		void tileFinished (Tile tile);
+	}
+
+	private final Shot shot;
+	private final TraceStatistics statistics;
+
+	/**
+	 * The canvas the pixels are written into, and the position of its upper
+	 * left corner in the Window.
+	 */
+	private final FrameBuffer canvas;
+	private final int originX;
+	private final int originY;
+
+	/**
+	 * With supersampling, the Shape seen by the first sample of each pixel of
+	 * the canvas, the secondary rays the first sample left to the others, and
+	 * the pixels of the canvas to be refined, all indexed by y * width + x
+	 * relative to the canvas; null otherwise.
+	 */
+	private final Shape[] hitShapes;
+	private final int[] remainingBudgets;
+	private boolean[] refinements;
+
+	/**
+	 * The geometry buffer the hits of the first samples are kept in, or null,
+	 * and whether the tiles shade the hits of the buffer instead.
+	 */
+	private GeometryBuffer geometry;
+	private boolean relight;
+
+	/**
+	 * The pixel step of the current pass, and the pixel step of the pass before
+	 * it, whose pixels are already sampled (zero for the first pass).
+	 */
+	private int step = 1;
+	private int coarseStep;
+
+	private TileListener tileListener;
+
+
+	/**
+	 * Constructs a TileRenderer of the given shot into the given canvas.
+	 *
+	 * @param shot          the render inputs of the shot
+	 * @param canvas        the frame buffer the pixels are written into
+	 * @param originX       the x-coordinate of the canvas in the Window
+	 * @param originY       the y-coordinate of the canvas in the Window
+	 * @param hitShapes     the array for the Shape seen by each pixel of the canvas, or null without supersampling
+	 * @param statistics    the statistics the counts of the rays of the tiles are added to
+	 */
+	TileRenderer (Shot shot, FrameBuffer canvas, int originX, int originY, Shape[] hitShapes, TraceStatistics statistics) {
+		this.shot = shot;
+		this.canvas = canvas;
+		this.originX = originX;
+		this.originY = originY;
+		this.hitShapes = hitShapes;
+		this.remainingBudgets = (hitShapes != null) ? new int[canvas.getWidth() * canvas.getHeight()] : null;
+		this.statistics = statistics;
+	}
+
+
+	/**
+	 * Sets the pass of the next tiles to be rendered.
+	 *
+	 * @param step          the pixel step of the pass
+	 * @param coarseStep    the pixel step of the pass before it, or zero for the first pass
+	 */
+	void setPass (int step, int coarseStep) {
+		this.step = step;
+		this.coarseStep = coarseStep;
+	}
+
+	/**
+	 * Sets the geometry buffer of the Window that the hits of the first samples
+	 * are kept in, or shaded from. The canvas must be the whole Window.
+	 *
+	 * @param geometry    the geometry buffer, or null
+	 * @param relight     true to shade the hits of the buffer instead of tracing the primary rays
+	 */
+	void setGeometry (GeometryBuffer geometry, boolean relight) {
+		this.geometry = geometry;
+		this.relight = relight;
+	}
+
+	/**
+	 * Sets the listener of the tiles the renderer is done with.
+	 *
+	 * @param tileListener    the tile listener, or null
+	 */
+	void setTileListener (TileListener tileListener) {
+		this.tileListener = tileListener;
+	}
+
+	/**
+	 * Marks the pixels of the canvas to be refined, from the given first
+	 * samples of the canvas (See PixelRefiner.mark). The marks are computed
+	 * over the whole canvas before any pixel is refined, so they do not depend
+	 * on the order of the tiles.
+	 *
+	 * @param samples    the frame buffer holding the first samples of the canvas, at the same position
+	 */
+	void markRefinements (FrameBuffer samples) {
+
+		if (this.refinements == null) {
+			this.refinements = new boolean[samples.getWidth() * samples.getHeight()];
+		}
+		PixelRefiner.mark(samples, this.hitShapes, this.shot.getContrastThreshold(), this.refinements);
+	}
+
+	/**
+	 * Renders or refines the given tiles, one after the other if there is no
+	 * pool, and in parallel on the pool otherwise.
+	 *
+	 * @param pool          the pool of render threads, or null
+	 * @param refine        true to refine the marked pixels of the tiles, false to render the tiles
+	 * @param tiles         the tiles to be rendered
+	 * @param footprints    the footprints the rays of each tile are recorded into, or null
+	 */
+	void renderTiles (ForkJoinPool pool, boolean refine, List<Tile> tiles, List<TileFootprint> footprints) {
+
+		if (pool != null) {
+			pool.invoke(new TileRenderTask(this, refine, tiles, footprints));
+			return;
+		}
+
+		for (int i = 0; i < tiles.size(); i++) {
+			TileFootprint footprint = (footprints != null) ? footprints.get(i) : null;
+			if (refine) {
+				this.refineTile(tiles.get(i), footprint);
+			}
+			else {
+				this.renderTile(tiles.get(i), footprint);
+			}
+		}
+	}
+
+	/**
+	 * Renders the current pass over a single tile into the canvas, with a
+	 * tracer of its own, ray by ray or packet by packet. The counts of the
+	 * rays of the tile are then added to the statistics of the renderer.
+	 *
+	 * @param tile         the tile to be rendered
+	 * @param footprint    the footprint the rays of the tile are recorded into, or null
+	 */
+	void renderTile (Tile tile, TileFootprint footprint) {
+
+		Tracer tracer = new Tracer(this.shot.getScene(), this.shot.getAccelerator(), this.shot.getLimits());
+		tracer.setFootprint(footprint);
+		if (this.relight) {
+			this.relightTile(tile, tracer);
+		}
+		else if (this.shot.getPacketSize() > 1) {
+			this.renderTilePackets(tile, tracer);
+		}
+		else {
+			this.renderTileRays(tile, tracer);
+		}
+
+		// Every pixel of a pass is a single primary ray
+		tracer.getStatistics().pixels += tracer.getStatistics().primaryRays;
+
+		this.finishTile(tile, tracer);
+	}
+
+	/**
+	 * Refines the marked pixels of a single tile of the canvas, with a tracer
+	 * of its own (See PixelRefiner). The counts of the rays of the tile are
+	 * then added to the statistics of the renderer.
+	 *
+	 * @param tile         the tile to be refined
+	 * @param footprint    the footprint the rays of the tile are recorded into, or null
+	 */
+	void refineTile (Tile tile, TileFootprint footprint) {
+
+		Tracer tracer = new Tracer(this.shot.getScene(), this.shot.getAccelerator(), this.shot.getLimits());
+		tracer.setFootprint(footprint);
+		PixelRefiner refiner = new PixelRefiner(tracer, this.shot.getSampler(), this.shot.getEye(),
+				this.shot.getMaxSamples(), this.shot.getContrastThreshold());
+		double[] color = new double[3];
+		int width = this.canvas.getWidth();
+
+		for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+			int canvasY = y - this.originY;
+			for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+				int canvasX = x - this.originX;
+				int index = canvasY * width + canvasX;
+				if (!this.refinements[index]) {
+					continue;
+				}
+
+				refiner.refine(x, y, this.canvas.getRGB(canvasX, canvasY), this.hitShapes[index],
+						this.remainingBudgets[index], color);
+				this.canvas.setRGB(canvasX, canvasY, Color.toRGB(color[0], color[1], color[2]));
+			}
+		}
+
+		this.finishTile(tile, tracer);
+	}
+
+	/**
+	 * Adds the counts of the rays of the given tile to the statistics of the
+	 * renderer, and notifies the tile listener, if any.
+	 */
+	private void finishTile (Tile tile, Tracer tracer) {
+
+		synchronized (this.statistics) {
+			this.statistics.add(tracer.getStatistics());
+		}
+		if (this.tileListener != null) {
+			this.tileListener.tileFinished(tile);
+		}
+	}
+
+	/**
+	 * Renders the current pass over a single tile into the canvas, ray by ray.
+	 * A single ray and color are reused for all the samples of the tile, so
+	 * tracing a sample allocates nothing.
+	 *
+	 * @param tile      the tile to be rendered
+	 * @param tracer    the tracer of the tile
+	 */
+	private void renderTileRays (Tile tile, Tracer tracer) {
+
+		Ray ray = new Ray();
+		double[] color = new double[3];
+		Shape.LocalCalculations calculations = new Shape.LocalCalculations();
+		Sampler sampler = this.shot.getSampler();
+
+		Point eye = this.shot.getEye();
+		double eyeX = eye.getX();
+		double eyeY = eye.getY();
+		double eyeZ = eye.getZ();
+		double sampleZ = sampler.getSampleZ();
+
+		int width = this.canvas.getWidth();
+		int step = this.step;
+		int tileEndX = tile.getX() + tile.getWidth();
+		int tileEndY = tile.getY() + tile.getHeight();
+
+		for (int y = firstMultiple(tile.getY(), step); y < tileEndY; y += step) {
+			double sampleY = sampler.getSampleY(y);
+
+			for (int x = firstMultiple(tile.getX(), step); x < tileEndX; x += step) {
+				if (!this.isSampled(x, y)) {
+					continue;
+				}
+				double sampleX = sampler.getSampleX(x);
+
+				// The ray goes from the eye through the sample point
+				ray.set(eyeX, eyeY, eyeZ, sampleX - eyeX, sampleY - eyeY, sampleZ - eyeZ);
+				tracer.trace(ray, color);
+
+				int index = (y - this.originY) * width + (x - this.originX);
+				this.canvas.setRGB(x - this.originX, y - this.originY, Color.toRGB(color[0], color[1], color[2]));
+				if (this.hitShapes != null) {
+					this.hitShapes[index] = tracer.getPrimaryShape();
+					this.remainingBudgets[index] = tracer.getRemainingBudget();
+				}
+				if (this.geometry != null) {
+					this.geometry.set(index, ray, tracer.getPrimaryShape(), tracer.getPrimaryTimeHit(), calculations);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Shades the current pass over a single tile into the canvas, from the hits
+	 * of the geometry buffer (See Camera.relight). The primary rays are only
+	 * made again for the shading, and the seeds of the pixels, not traced.
+	 *
+	 * @param tile      the tile to be shaded
+	 * @param tracer    the tracer of the tile
+	 */
+	private void relightTile (Tile tile, Tracer tracer) {
+
+		Ray ray = new Ray();
+		double[] color = new double[3];
+		Sampler sampler = this.shot.getSampler();
+		GeometryBuffer geometry = this.geometry;
+
+		Point eye = this.shot.getEye();
+		double eyeX = eye.getX();
+		double eyeY = eye.getY();
+		double eyeZ = eye.getZ();
+		double sampleZ = sampler.getSampleZ();
+
+		int width = this.canvas.getWidth();
+		int step = this.step;
+		int tileEndX = tile.getX() + tile.getWidth();
+		int tileEndY = tile.getY() + tile.getHeight();
+
+		for (int y = firstMultiple(tile.getY(), step); y < tileEndY; y += step) {
+			double sampleY = sampler.getSampleY(y);
+
+			for (int x = firstMultiple(tile.getX(), step); x < tileEndX; x += step) {
+				if (!this.isSampled(x, y)) {
+					continue;
+				}
+
+				int index = (y - this.originY) * width + (x - this.originX);
+				ray.set(eyeX, eyeY, eyeZ, sampler.getSampleX(x) - eyeX, sampleY - eyeY, sampleZ - eyeZ);
+				tracer.shade(ray, geometry, index, color);
+				tracer.getStatistics().pixels++;
+
+				this.canvas.setRGB(x - this.originX, y - this.originY, Color.toRGB(color[0], color[1], color[2]));
+				if (this.hitShapes != null) {
+					this.hitShapes[index] = geometry.getShape(index);
+					this.remainingBudgets[index] = tracer.getRemainingBudget();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Renders the current pass over a single tile into the canvas, block by
+	 * block: the rays through the samples of a block of packetSize x packetSize
+	 * samples are traced together as a packet. The blocks at the edges of the
+	 * tile are cut to the tile.
+	 *
+	 * @param tile      the tile to be rendered
+	 * @param tracer    the tracer of the tile
+	 */
+	private void renderTilePackets (Tile tile, Tracer tracer) {
+
+		int packetSize = this.shot.getPacketSize();
+		RayPacket packet = new RayPacket(packetSize * packetSize);
+		double[] colors = new double[3 * packet.capacity()];
+		int[] budgets = (this.hitShapes != null) ? new int[packet.capacity()] : null;
+		Shape.LocalCalculations calculations = new Shape.LocalCalculations();
+		Sampler sampler = this.shot.getSampler();
+
+		Point eye = this.shot.getEye();
+		double eyeX = eye.getX();
+		double eyeY = eye.getY();
+		double eyeZ = eye.getZ();
+		double sampleZ = sampler.getSampleZ();
+
+		int width = this.canvas.getWidth();
+		int step = this.step;
+		int blockSize = step * packetSize;
+		int tileEndX = tile.getX() + tile.getWidth();
+		int tileEndY = tile.getY() + tile.getHeight();
+
+		for (int blockY = firstMultiple(tile.getY(), step); blockY < tileEndY; blockY += blockSize) {
+			int blockEndY = Math.min(tileEndY, blockY + blockSize);
+
+			for (int blockX = firstMultiple(tile.getX(), step); blockX < tileEndX; blockX += blockSize) {
+				int blockEndX = Math.min(tileEndX, blockX + blockSize);
+
+				packet.clear();
+				for (int y = blockY; y < blockEndY; y += step) {
+					double sampleY = sampler.getSampleY(y);
+					for (int x = blockX; x < blockEndX; x += step) {
+						if (this.isSampled(x, y)) {
+							packet.add(eyeX, eyeY, eyeZ, sampler.getSampleX(x) - eyeX, sampleY - eyeY, sampleZ - eyeZ);
+						}
+					}
+				}
+
+				tracer.trace(packet, colors, budgets);
+
+				int i = 0;
+				for (int y = blockY; y < blockEndY; y += step) {
+					for (int x = blockX; x < blockEndX; x += step) {
+						if (!this.isSampled(x, y)) {
+							continue;
+						}
+						int index = (y - this.originY) * width + (x - this.originX);
+						this.canvas.setRGB(x - this.originX, y - this.originY,
+								Color.toRGB(colors[3 * i], colors[3 * i + 1], colors[3 * i + 2]));
+						if (this.hitShapes != null) {
+							this.hitShapes[index] = packet.getShape(i);
+							this.remainingBudgets[index] = budgets[i];
+						}
+						if (this.geometry != null) {
+							this.geometry.set(index, packet.getRay(i), packet.getShape(i), packet.getTimeHit(i), calculations);
+						}
+						i++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the pixel at the given position is to be sampled by the current
+	 * pass, i.e. if it was not sampled by the pass before it. The pixel is
+	 * assumed to be on the step of the current pass.
+	 *
+	 * @param x    the x-coordinate of the pixel
+	 * @param y    the y-coordinate of the pixel
+	 * @return     true if the pixel is to be sampled, false otherwise
+	 */
+	private boolean isSampled (int x, int y) {
+		return this.coarseStep == 0 || x % this.coarseStep != 0 || y % this.coarseStep != 0;
+	}
+
+	/**
+	 * Gets the first multiple of the given step at or after the given position.
+	 *
+	 * @param position    the position, in pixels
+	 * @param step        the step, in pixels
+	 * @return            the first multiple of the step
+	 */
+	private static int firstMultiple (int position, int step) {
+		return ((position + step - 1) / step) * step;
+	}
+
+
+	/**
+	 * The TileRenderTask is a private static inner class within the
+	 * TileRenderer class. The task recursively splits its list of tiles in
+	 * halves until a single tile is left, which is then rendered. The halves
+	 * are forked on the pool, so idle threads steal the remaining tiles from
+	 * busy ones.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class TileRenderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The task maintains a reference to the outer class, and whether it
+		 * renders or refines its tiles.
+		 */
+		private final TileRenderer renderer;
+		private final boolean refine;
+		private final List<Tile> tiles;
+		private final List<TileFootprint> footprints;
+
+
+		/**
+		 * Constructs a TileRenderTask over the given tiles.
+		 *
+		 * @param renderer      the outer TileRenderer class reference
+		 * @param refine        true to refine the marked pixels of the tiles, false to render the tiles
+		 * @param tiles         the tiles to be rendered by this task
+		 * @param footprints    the footprints of the tiles, or null
+		 */
+		public TileRenderTask (TileRenderer renderer, boolean refine, List<Tile> tiles, List<TileFootprint> footprints) {
+			this.renderer = renderer;
+			this.refine = refine;
+			this.tiles = tiles;
+			this.footprints = footprints;
+		}
+
+		@Override
+		protected void compute () {
+
+			if (this.tiles.isEmpty()) {
+				return;
+			}
+
+			if (this.tiles.size() == 1) {
+				TileFootprint footprint = (this.footprints != null) ? this.footprints.get(0) : null;
+				if (this.refine) {
+					this.renderer.refineTile(this.tiles.get(0), footprint);
+				}
+				else {
+					this.renderer.renderTile(this.tiles.get(0), footprint);
+				}
+				return;
+			}
+
+			int middle = this.tiles.size() / 2;
+			int size = this.tiles.size();
+			invokeAll(
+					new TileRenderTask(this.renderer, this.refine, this.tiles.subList(0, middle),
+							(this.footprints != null) ? this.footprints.subList(0, middle) : null),
+					new TileRenderTask(this.renderer, this.refine, this.tiles.subList(middle, size),
+							(this.footprints != null) ? this.footprints.subList(middle, size) : null));
+		}
+	}
+}
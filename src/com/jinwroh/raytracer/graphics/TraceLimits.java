@@ -0,0 +1,129 @@
+package com.jinwroh.raytracer.graphics;
+
+
+/**
+ * The TraceLimits class bundles up the controls on the cost of the secondary
+ * rays (reflected and refracted) traced by a Tracer:
+ *
+ * - the max depth: the number of bounces past the primary ray,
+ * - the contribution threshold: a secondary ray is not traced if its weight,
+ *   i.e. the product of the coefficients along its path, is below it,
+ * - the roulette depth: from that depth on, a secondary ray is traced with a
+ *   probability equal to its weight, and its contribution is divided by that
+ *   probability (Russian roulette), so the color is unbiased on average,
+ * - the ray budget: the number of secondary rays traced per pixel, shared by
+ *   all the samples of a supersampled pixel (See Camera.setMaxSamples).
+ *
+ * The defaults keep the recursion shallow enough for interactive renders.
+ * A Tracer copies the limits when it is created, so changing the limits
+ * does not affect a render in progress.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class TraceLimits {
+
+	private int maxDepth = 5;
+	private double contributionThreshold = 0.001;
+	private int rouletteDepth = 3;
+	private int rayBudget = 64;
+
+
+	/**
+	 * Constructs TraceLimits with the default limits.
+	 */
+	public TraceLimits () {
+	}
+
+	/**
+	 * Constructs TraceLimits with the limits of the given ones.
+	 * @param limits    the limits to be copied
+	 */
+	public TraceLimits (TraceLimits limits) {
+		this.maxDepth = limits.maxDepth;
+		this.contributionThreshold = limits.contributionThreshold;
+		this.rouletteDepth = limits.rouletteDepth;
+		this.rayBudget = limits.rayBudget;
+	}
+
+
+	/**
+	 * Gets the max depth of the secondary rays.
+	 * @return    the max depth
+	 */
+	public int getMaxDepth () {
+		return this.maxDepth;
+	}
+
+	/**
+	 * Sets the max depth of the secondary rays. Zero only traces the primary rays.
+	 * @param maxDepth    the max depth
+	 */
+	public void setMaxDepth (int maxDepth) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("Max depth must not be negative");
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Gets the weight below which a secondary ray is not traced.
+	 * @return    the contribution threshold
+	 */
+	public double getContributionThreshold () {
+		return this.contributionThreshold;
+	}
+
+	/**
+	 * Sets the weight below which a secondary ray is not traced. Zero traces
+	 * every secondary ray with a positive weight.
+	 * @param contributionThreshold    the contribution threshold
+	 */
+	public void setContributionThreshold (double contributionThreshold) {
+		if (!(contributionThreshold >= 0)) {
+			throw new IllegalArgumentException("Contribution threshold must not be negative");
+		}
+		this.contributionThreshold = contributionThreshold;
+	}
+
+	/**
+	 * Gets the depth from which the secondary rays play Russian roulette.
+	 * @return    the roulette depth
+	 */
+	public int getRouletteDepth () {
+		return this.rouletteDepth;
+	}
+
+	/**
+	 * Sets the depth from which the secondary rays play Russian roulette.
+	 * Integer.MAX_VALUE turns the roulette off.
+	 * @param rouletteDepth    the roulette depth
+	 */
+	public void setRouletteDepth (int rouletteDepth) {
+		if (rouletteDepth < 1) {
+			throw new IllegalArgumentException("Roulette depth must be at least 1");
+		}
+		this.rouletteDepth = rouletteDepth;
+	}
+
+	/**
+	 * Gets the number of secondary rays traced per pixel.
+	 * @return    the ray budget
+	 */
+	public int getRayBudget () {
+		return this.rayBudget;
+	}
+
+	/**
+	 * Sets the number of secondary rays traced per pixel. Once a pixel has
+	 * spent its budget, its remaining secondary rays are not traced, whichever
+	 * of its samples they belong to.
+	 * @param rayBudget    the ray budget
+	 */
+	public void setRayBudget (int rayBudget) {
+		if (rayBudget < 0) {
+			throw new IllegalArgumentException("Ray budget must not be negative");
+		}
+		this.rayBudget = rayBudget;
+	}
+}
@@ -0,0 +1,68 @@
+package com.jinwroh.raytracer.graphics;
+
+
+/**
+ * The TraceStatistics class counts the rays of a render: the primary rays,
+ * the secondary rays (reflected and refracted) that were traced, and the
+ * secondary rays that each of the TraceLimits saved. A saved ray is counted
+ * once, where it was cut; the rays it would have spawned are not counted.
+ * The shadow rays are not counted. Every sample of a pixel traces a primary
+ * ray, so the primary rays per pixel are the samples spent per pixel.
+ *
+ * Each Tracer counts its own rays; the Camera adds them up for the render.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class TraceStatistics {
+	public long pixels;
+	public long refinedPixels;
+	public long primaryRays;
+	public long secondaryRays;
+	public long depthCutoffs;
+	public long contributionCutoffs;
+	public long rouletteTerminations;
+	public long budgetCutoffs;
+
+
+	/**
+	 * Adds the counts of the given statistics to these.
+	 * @param statistics    the statistics to be added
+	 */
+	public void add (TraceStatistics statistics) {
+		this.pixels += statistics.pixels;
+		this.refinedPixels += statistics.refinedPixels;
+		this.primaryRays += statistics.primaryRays;
+		this.secondaryRays += statistics.secondaryRays;
+		this.depthCutoffs += statistics.depthCutoffs;
+		this.contributionCutoffs += statistics.contributionCutoffs;
+		this.rouletteTerminations += statistics.rouletteTerminations;
+		this.budgetCutoffs += statistics.budgetCutoffs;
+	}
+
+	/**
+	 * Gets the number of secondary rays saved by all the limits.
+	 * @return    the number of saved rays
+	 */
+	public long getSavedRays () {
+		return this.depthCutoffs + this.contributionCutoffs + this.rouletteTerminations + this.budgetCutoffs;
+	}
+
+	/**
+	 * Gets the average number of samples, i.e. primary rays, per pixel.
+	 * @return    the samples per pixel, or zero if no pixel was rendered
+	 */
+	public double getSamplesPerPixel () {
+		return (this.pixels == 0) ? 0.0 : (double) this.primaryRays / this.pixels;
+	}
+
+	@Override
+	public String toString () {
+		return String.format("Rays: %d primary, %d secondary"
+				+ "\n\tSamples: %.3f per pixel, %d of %d pixels refined"
+				+ "\n\tSaved: %d by max depth, %d by contribution threshold, %d by roulette, %d by ray budget",
+				this.primaryRays, this.secondaryRays,
+				this.getSamplesPerPixel(), this.refinedPixels, this.pixels,
+				this.depthCutoffs, this.contributionCutoffs, this.rouletteTerminations, this.budgetCutoffs);
+	}
+}
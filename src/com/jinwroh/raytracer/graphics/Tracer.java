@@ -0,0 +1,581 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.Collections;
+
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.RayPacket;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.acceleration.Accelerator;
+
+
+/**
+ * The Tracer class traces rays through a scene, with an accelerator built over
+ * the shapes of the scene. The Camera traces the primary rays with it, and the
+ * shading strategies trace their secondary rays (i.e. shadow rays) with it.
+ *
+ * A shape with a reflection or a refraction coefficient spawns a reflected or
+ * a refracted ray at its hit point, which is traced recursively, and whose
+ * color is added to the shaded color in proportion to the coefficient. The
+ * cost of the recursion is bounded by the TraceLimits of the Tracer, and the
+ * rays traced and saved are counted in its TraceStatistics.
+ *
+ * A Tracer owns the reusable state of its queries, so tracing a ray allocates
+ * nothing. As a consequence, a Tracer must not be shared between threads; the
+ * TileRenderer creates one per tile.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class Tracer {
+
+	/**
+	 * The secondary rays start this far along their direction from the hit
+	 * point, so the surface of the shape is not hit again because of rounding
+	 * errors.
+	 */
+	private static final double SECONDARY_BIAS = 1e-6;
+
+	/**
+	 * The traced scene and the accelerator over its shapes.
+	 */
+	private final CompiledScene scene;
+	private final Accelerator accelerator;
+
+	/**
+	 * The limits on the secondary rays (See TraceLimits), and the counts of
+	 * the traced and saved rays.
+	 */
+	private final int maxDepth;
+	private final double contributionThreshold;
+	private final int rouletteDepth;
+	private final int rayBudget;
+	private final TraceStatistics statistics = new TraceStatistics();
+
+	/**
+	 * The state of the pixel being traced: the secondary rays it has left, and
+	 * the state of the random numbers of its roulette. The budget is shared by
+	 * all the samples of the pixel (See traceSample). The random numbers are
+	 * seeded from each primary ray, so a pixel renders the same whichever tile
+	 * and thread it is traced on.
+	 */
+	private int remainingBudget;
+	private long randomState;
+
+	/**
+	 * The Shape hit by the last primary ray, or null if it hit nothing, and
+	 * the time of the hit.
+	 */
+	private Shape primaryShape;
+	private double primaryTimeHit;
+
+	/**
+	 * The footprint the rays are recorded into, or null if they are not.
+	 */
+	private TileFootprint footprint;
+
+	/**
+	 * The reusable state: the intersection of the traced rays, the ray and the
+	 * scratch intersection of the occlusion queries, and the color of a single
+	 * ray of a packet. The occlusion queries have their own, since they run
+	 * while the intersection is being shaded. The secondary rays and their
+	 * colors are indexed by depth, since a ray is shaded after its children
+	 * are traced.
+	 */
+	private final Intersection intersection = new Intersection();
+	private final Ray occlusionRay = new Ray();
+	private final Intersection occlusionScratch = new Intersection();
+	private final double[] color = new double[3];
+	private final Ray[] secondaryRays;
+	private final double[][] secondaryColors;
+
+
+	/**
+	 * Constructs a Tracer over the given scene, with the default TraceLimits.
+	 *
+	 * @param scene          the compiled scene to which the rays are directed
+	 * @param accelerator    the accelerator over the shapes of the scene
+	 */
+	public Tracer (CompiledScene scene, Accelerator accelerator) {
+		this(scene, accelerator, new TraceLimits());
+	}
+
+	/**
+	 * Constructs a Tracer over the given scene, with the given limits on the
+	 * secondary rays. The limits are copied.
+	 *
+	 * @param scene          the compiled scene to which the rays are directed
+	 * @param accelerator    the accelerator over the shapes of the scene
+	 * @param limits         the limits on the secondary rays
+	 */
+	public Tracer (CompiledScene scene, Accelerator accelerator, TraceLimits limits) {
+		this.scene = scene;
+		this.accelerator = accelerator;
+		this.maxDepth = limits.getMaxDepth();
+		this.contributionThreshold = limits.getContributionThreshold();
+		this.rouletteDepth = limits.getRouletteDepth();
+		this.rayBudget = limits.getRayBudget();
+
+		this.secondaryRays = new Ray[this.maxDepth + 1];
+		this.secondaryColors = new double[this.maxDepth + 1][3];
+		for (int depth = 1; depth <= this.maxDepth; depth++) {
+			this.secondaryRays[depth] = new Ray();
+		}
+	}
+
+
+	/**
+	 * Creates a Tracer of the lights of the given scene alone: its rays hit no
+	 * shape, so nothing is occluded and nothing is reflected. It costs a copy
+	 * of the lights, not an accelerator over the shapes, so it suits shading a
+	 * single point without shadows (See ShadingStrategy).
+	 *
+	 * @param scene    the scene whose lights the rays are shaded with
+	 * @return         a Tracer of the lights of the scene
+	 */
+	public static Tracer ofLights (Scene scene) {
+		CompiledScene lights = new CompiledScene(Collections.<Shape>emptyList(), scene.getLights());
+		return new Tracer(lights, new NoShapes());
+	}
+
+
+	/**
+	 * Traces an individual ray directed towards the scene. If the ray hits an object,
+	 * its color is computed into the given array. If not, the default color, black, is.
+	 * The ray is traced as the primary ray of a pixel: it gets the whole ray budget.
+	 *
+	 * @param ray      the ray to be traced
+	 * @param color    the array to be filled with the computed r, g, b values
+	 */
+	public void trace (Ray ray, double[] color) {
+
+		// We should only consider the first object that the ray hits, since
+		// that first object is the object seen through the viewport.
+		// The accelerator finds the first hit point without testing every shape
+		// in the raytracing scene, and we take the color from that point.
+		// Only the hit times are compared during the search; the hit point and
+		// the normal are computed once, for the closest shape.
+
+		this.beginPixel(ray);
+		this.trace(ray, 0, 1.0, color);
+	}
+
+	/**
+	 * Traces a packet of coherent rays directed towards the scene, together
+	 * (See Accelerator.closestHits). The color of each ray is computed into
+	 * the given array, 3 values per ray, in the order of the packet. The hits
+	 * are then shaded one ray at a time, like trace does, and each ray is
+	 * traced as the primary ray of a pixel.
+	 *
+	 * @param packet    the packet of rays to be traced
+	 * @param colors    the array to be filled with the computed r, g, b values of each ray
+	 */
+	public void trace (RayPacket packet, double[] colors) {
+		this.trace(packet, colors, null);
+	}
+
+	/**
+	 * Traces a packet of coherent rays directed towards the scene, like
+	 * trace(RayPacket, double[]) does, and keeps the secondary rays each pixel
+	 * has left once its ray is shaded (See getRemainingBudget).
+	 *
+	 * @param packet              the packet of rays to be traced
+	 * @param colors              the array to be filled with the computed r, g, b values of each ray
+	 * @param remainingBudgets    the array to be filled with the budget left by each ray, or null
+	 */
+	void trace (RayPacket packet, double[] colors, int[] remainingBudgets) {
+
+		this.accelerator.closestHits(packet, this.intersection);
+
+		for (int i = 0; i < packet.size(); i++) {
+			Shape shape = packet.getShape(i);
+			Ray ray = packet.getRay(i);
+			this.beginPixel(ray);
+			if (this.footprint != null) {
+				this.footprint.addClosestHit(ray, 0, shape, packet.getTimeHit(i));
+			}
+
+			if (shape != null) {
+				this.intersection.shape = shape;
+				this.intersection.timeHit = packet.getTimeHit(i);
+				this.intersection.materialize(ray);
+				this.shade(ray, shape, 0, 1.0, this.color);
+
+				colors[3 * i] = this.color[0];
+				colors[3 * i + 1] = this.color[1];
+				colors[3 * i + 2] = this.color[2];
+			}
+			else {
+				colors[3 * i] = 0.0;
+				colors[3 * i + 1] = 0.0;
+				colors[3 * i + 2] = 0.0;
+			}
+			if (remainingBudgets != null) {
+				remainingBudgets[i] = this.remainingBudget;
+			}
+		}
+	}
+
+	/**
+	 * Traces another sample of the pixel being refined (See PixelRefiner),
+	 * like trace does, except that its secondary rays spend what is left of
+	 * the ray budget of the pixel instead of a budget of their own (See
+	 * setRemainingBudget).
+	 *
+	 * @param ray      the ray of the sample
+	 * @param color    the array to be filled with the computed r, g, b values
+	 */
+	void traceSample (Ray ray, double[] color) {
+		this.statistics.primaryRays++;
+		this.seedRandom(ray);
+		this.trace(ray, 0, 1.0, color);
+	}
+
+	/**
+	 * Shades the hit of the given primary ray kept in the given geometry
+	 * buffer, like trace does once it found the hit, without tracing the ray
+	 * again (See Camera.relight). The reflected, refracted and shadow rays of
+	 * the hit are traced as usual. The ray does not count as a primary ray.
+	 *
+	 * @param ray         the primary ray of the pixel
+	 * @param geometry    the geometry buffer holding the hit of the pixel
+	 * @param index       the index of the pixel in the buffer, y * width + x
+	 * @param color       the array to be filled with the computed r, g, b values
+	 */
+	void shade (Ray ray, GeometryBuffer geometry, int index, double[] color) {
+
+		this.seedPixel(ray);
+		Shape shape = geometry.getShape(index);
+		if (shape == null) {
+			color[0] = 0.0;
+			color[1] = 0.0;
+			color[2] = 0.0;
+			return;
+		}
+
+		this.intersection.shape = shape;
+		geometry.load(index, ray, this.intersection.calculations);
+		this.shade(ray, shape, 0, 1.0, color);
+	}
+
+	/**
+	 * Checks if anything in the scene occludes the ray with the given origin and
+	 * direction, within the open interval (minTime, maxTime). The query stops at
+	 * the first hit found (See Accelerator.anyHit).
+	 *
+	 * @param originX       the x-coordinate of the origin
+	 * @param originY       the y-coordinate of the origin
+	 * @param originZ       the z-coordinate of the origin
+	 * @param directionX    the x-coordinate of the direction
+	 * @param directionY    the y-coordinate of the direction
+	 * @param directionZ    the z-coordinate of the direction
+	 * @param minTime       the start of the interval, exclusive
+	 * @param maxTime       the end of the interval, exclusive
+	 * @return              true if the ray is occluded, false otherwise
+	 */
+	public boolean isOccluded (double originX, double originY, double originZ,
+			double directionX, double directionY, double directionZ,
+			double minTime, double maxTime) {
+
+		this.occlusionRay.set(originX, originY, originZ, directionX, directionY, directionZ);
+		boolean occluded = this.accelerator.anyHit(this.occlusionRay, minTime, maxTime, this.occlusionScratch);
+		if (this.footprint != null) {
+			this.footprint.addShadowRay(this.occlusionRay, maxTime, occluded);
+		}
+		return occluded;
+	}
+
+	/**
+	 * Gets the compiled scene to which the rays are directed.
+	 * @return    the compiled scene
+	 */
+	public CompiledScene getScene () {
+		return this.scene;
+	}
+
+	/**
+	 * Gets the accelerator over the shapes of the scene.
+	 * @return    the accelerator
+	 */
+	public Accelerator getAccelerator () {
+		return this.accelerator;
+	}
+
+	/**
+	 * Gets the Shape hit by the last primary ray traced alone (See trace), i.e.
+	 * the Shape seen through its sample.
+	 * @return    the Shape, or null if the ray hit nothing
+	 */
+	public Shape getPrimaryShape () {
+		return this.primaryShape;
+	}
+
+	/**
+	 * Gets the secondary rays the pixel being traced has left, i.e. the ray
+	 * budget less the secondary rays of its samples so far.
+	 * @return    the remaining ray budget of the pixel
+	 */
+	int getRemainingBudget () {
+		return this.remainingBudget;
+	}
+
+	/**
+	 * Sets the secondary rays the pixel about to be refined has left after its
+	 * first sample (See traceSample).
+	 * @param remainingBudget    the remaining ray budget of the pixel
+	 */
+	void setRemainingBudget (int remainingBudget) {
+		this.remainingBudget = remainingBudget;
+	}
+
+	/**
+	 * Gets the time of the hit of the last primary ray traced alone.
+	 * @return    the time of the hit, undefined if the ray hit nothing
+	 */
+	double getPrimaryTimeHit () {
+		return this.primaryTimeHit;
+	}
+
+	/**
+	 * Records the rays traced from now on into the given footprint (See
+	 * IncrementalRenderer), or stops recording them.
+	 * @param footprint    the footprint of the tile being traced, or null
+	 */
+	void setFootprint (TileFootprint footprint) {
+		this.footprint = footprint;
+	}
+
+	/**
+	 * Gets the counts of the rays traced by this Tracer so far.
+	 * @return    the statistics
+	 */
+	public TraceStatistics getStatistics () {
+		return this.statistics;
+	}
+
+
+	/**
+	 * Starts a pixel at the given primary ray, and counts the ray.
+	 */
+	private void beginPixel (Ray ray) {
+		this.statistics.primaryRays++;
+		this.seedPixel(ray);
+	}
+
+	/**
+	 * Starts a pixel at the given primary ray: resets the ray budget, and seeds
+	 * the random numbers from the coordinates of the ray.
+	 */
+	private void seedPixel (Ray ray) {
+		this.remainingBudget = this.rayBudget;
+		this.seedRandom(ray);
+	}
+
+	/**
+	 * Seeds the random numbers from the coordinates of the given primary ray.
+	 */
+	private void seedRandom (Ray ray) {
+		this.randomState = Double.doubleToLongBits(ray.getDirectionX())
+				^ Long.rotateLeft(Double.doubleToLongBits(ray.getDirectionY()), 21)
+				^ Long.rotateLeft(Double.doubleToLongBits(ray.getDirectionZ()), 42)
+				^ Double.doubleToLongBits(ray.getOriginX() + ray.getOriginY() + ray.getOriginZ());
+	}
+
+	/**
+	 * Traces a ray at the given depth and weight into the given color.
+	 */
+	private void trace (Ray ray, int depth, double weight, double[] color) {
+
+		boolean hit = this.accelerator.closestHit(ray, this.intersection);
+		if (this.footprint != null) {
+			this.footprint.addClosestHit(ray, depth, hit ? this.intersection.shape : null, this.intersection.timeHit);
+		}
+
+		if (hit) {
+			if (depth == 0) {
+				this.primaryShape = this.intersection.shape;
+				this.primaryTimeHit = this.intersection.timeHit;
+			}
+			this.intersection.materialize(ray);
+			this.shade(ray, this.intersection.shape, depth, weight, color);
+		}
+		else {
+			if (depth == 0) {
+				this.primaryShape = null;
+			}
+			color[0] = 0.0;
+			color[1] = 0.0;
+			color[2] = 0.0;
+		}
+	}
+
+	/**
+	 * Shades the hit of the intersection into the given color, and adds the
+	 * colors of the reflected and refracted rays of the shape to it.
+	 */
+	private void shade (Ray ray, Shape shape, int depth, double weight, double[] color) {
+
+		// The shape is shaded as it was when the scene was compiled
+		Shape.LocalCalculations calculations = this.intersection.calculations;
+		CompiledScene.Material material = this.scene.getMaterial(shape);
+		Shape.Properties properties = material.getProperties();
+		material.getShadingStrategy().shade(ray, calculations, properties, this, color);
+
+		double reflection = properties.reflectionCoefficient;
+		double refraction = properties.refractionCoefficient;
+		if (!(reflection > 0) && !(refraction > 0)) {
+			return;
+		}
+
+		// The children overwrite the intersection, so everything they need is
+		// read from it first.
+		double pointX = calculations.pointX;
+		double pointY = calculations.pointY;
+		double pointZ = calculations.pointZ;
+		double reflectionX = calculations.reflectionX;
+		double reflectionY = calculations.reflectionY;
+		double reflectionZ = calculations.reflectionZ;
+
+		// Snell's law: t = eta d + (eta cos(i) - sqrt(k)) n, with d and n of unit
+		// length, and n facing the incoming ray. A ray leaving the shape goes
+		// from the refractive index of the shape back to 1. If k is negative,
+		// the light is totally reflected.
+		double refractionX = reflectionX;
+		double refractionY = reflectionY;
+		double refractionZ = reflectionZ;
+		if (refraction > 0) {
+			double nMagnitude = Vector.magnitude(calculations.normalX, calculations.normalY, calculations.normalZ);
+			double nx = calculations.normalX / nMagnitude;
+			double ny = calculations.normalY / nMagnitude;
+			double nz = calculations.normalZ / nMagnitude;
+			double dMagnitude = Vector.magnitude(ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ());
+			double dx = ray.getDirectionX() / dMagnitude;
+			double dy = ray.getDirectionY() / dMagnitude;
+			double dz = ray.getDirectionZ() / dMagnitude;
+
+			double cosine = -(dx*nx + dy*ny + dz*nz);
+			double eta = 1.0 / properties.refractiveIndex;
+			if (cosine < 0) {
+				cosine = -cosine;
+				eta = properties.refractiveIndex;
+				nx = -nx;
+				ny = -ny;
+				nz = -nz;
+			}
+
+			double k = 1.0 - eta * eta * (1.0 - cosine * cosine);
+			if (k >= 0) {
+				double scale = eta * cosine - Math.sqrt(k);
+				refractionX = dx*eta + nx*scale;
+				refractionY = dy*eta + ny*scale;
+				refractionZ = dz*eta + nz*scale;
+			}
+		}
+
+		double r = color[0];
+		double g = color[1];
+		double b = color[2];
+		double[] childColor = this.secondaryColors[Math.min(depth + 1, this.maxDepth)];
+
+		if (reflection > 0) {
+			double scale = reflection * this.traceSecondary(pointX, pointY, pointZ,
+					reflectionX, reflectionY, reflectionZ, depth + 1, weight * reflection, childColor);
+			r += scale * childColor[0];
+			g += scale * childColor[1];
+			b += scale * childColor[2];
+		}
+
+		if (refraction > 0) {
+			double scale = refraction * this.traceSecondary(pointX, pointY, pointZ,
+					refractionX, refractionY, refractionZ, depth + 1, weight * refraction, childColor);
+			r += scale * childColor[0];
+			g += scale * childColor[1];
+			b += scale * childColor[2];
+		}
+
+		color[0] = Math.min(1.0, r);
+		color[1] = Math.min(1.0, g);
+		color[2] = Math.min(1.0, b);
+	}
+
+	/**
+	 * Traces a secondary ray from the given point in the given direction into
+	 * the given color, unless one of the limits cuts it.
+	 *
+	 * @return    the factor the color of the ray is to be scaled by: zero if the
+	 *            ray was cut, and the inverse of its survival probability otherwise
+	 */
+	private double traceSecondary (double pointX, double pointY, double pointZ,
+			double directionX, double directionY, double directionZ,
+			int depth, double weight, double[] color) {
+
+		if (depth > this.maxDepth) {
+			this.statistics.depthCutoffs++;
+			return 0.0;
+		}
+		if (weight < this.contributionThreshold) {
+			this.statistics.contributionCutoffs++;
+			return 0.0;
+		}
+		if (this.remainingBudget == 0) {
+			this.statistics.budgetCutoffs++;
+			return 0.0;
+		}
+
+		// Russian roulette: the ray survives with a probability of its weight,
+		// and a surviving ray makes up for the ones that did not.
+		double survival = 1.0;
+		if (depth >= this.rouletteDepth) {
+			survival = Math.min(1.0, weight);
+			if (this.nextRandom() >= survival) {
+				this.statistics.rouletteTerminations++;
+				return 0.0;
+			}
+		}
+
+		this.remainingBudget--;
+		this.statistics.secondaryRays++;
+
+		Ray ray = this.secondaryRays[depth];
+		ray.set(pointX + directionX * SECONDARY_BIAS, pointY + directionY * SECONDARY_BIAS,
+				pointZ + directionZ * SECONDARY_BIAS, directionX, directionY, directionZ);
+		this.trace(ray, depth, weight / survival, color);
+		return 1.0 / survival;
+	}
+
+	/**
+	 * Computes the next random number of the pixel, in [0, 1), with the
+	 * SplitMix64 generator.
+	 */
+	private double nextRandom () {
+		this.randomState += 0x9E3779B97F4A7C15L;
+		long z = this.randomState;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+
+	/**
+	 * The NoShapes class is a private static inner class within the Tracer
+	 * class. It is the Accelerator of a scene without shapes: no ray hits
+	 * anything (See ofLights).
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class NoShapes implements Accelerator {
+
+		@Override
+		public boolean closestHit (Ray ray, Intersection result) {
+			return false;
+		}
+
+		@Override
+		public boolean anyHit (Ray ray, double minTime, double maxTime, Intersection scratch) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package com.jinwroh.raytracer.server;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.jinwroh.raytracer.Driver;
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.graphics.Light;
+import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.SceneFile;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+import com.sun.net.httpserver.HttpExchange;
+
+
+/**
+ * The RenderJob class is a render requested from a RenderServer: the scene,
+ * the size of the image and its sampling, and the priority of the job, parsed
+ * from the query and the body of the request, along with the exchange the
+ * image is streamed back to.
+ *
+ * The body of the request, if not empty, is the scene to be rendered, as a
+ * scene file (See SceneFile); the camera of the job then has the eye,
+ * viewport and window of the file. A scene file that cannot be parsed, or
+ * that is larger than MAX_SCENE_BYTES or holds more than MAX_SPHERES spheres,
+ * is rejected like an invalid query.
+ *
+ * The parameters of the query, all optional, are:
+ * - scene: "driver" for the scene of the Driver (the default), or "cloud" for
+ *   a cloud of small spheres; not allowed with a scene in the body
+ * - spheres, seed: the number of spheres of the cloud (1000), and the seed of
+ *   their positions (42)
+ * - width, height: the size of the image, in pixels (the window of the scene
+ *   file, or 500 x 500)
+ * - samples, threshold: the max samples per pixel (1), and the contrast
+ *   threshold of the supersampling (0.1) - See Camera.setMaxSamples
+ * - priority: the priority of the job (0); jobs of a higher priority are
+ *   rendered first, jobs of the same priority in the order they came in
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+final class RenderJob implements Comparable<RenderJob> {
+
+	private static final int MAX_SIZE = 16384;
+	private static final int MAX_SPHERES = 10000000;
+	private static final long MAX_SCENE_BYTES = 256L << 20;
+
+	private final long id;
+	private final HttpExchange exchange;
+	private final long submitted;
+
+	private final String scene;
+	private final SceneFile sceneFile;
+	private final int sphereCount;
+	private final long seed;
+	private final int width;
+	private final int height;
+	private final int maxSamples;
+	private final double contrastThreshold;
+	private final int priority;
+
+
+	/**
+	 * Constructs a RenderJob from the query and the body of a request.
+	 *
+	 * @param id          the id of the job, in the order the jobs came in
+	 * @param query       the raw query of the request, or null
+	 * @param body        the body of the request, which may be empty
+	 * @param exchange    the exchange the image is streamed back to
+	 * @throws IllegalArgumentException    if a parameter is unknown or out of range, or the scene of the body is invalid
+	 */
+	RenderJob (long id, String query, InputStream body, HttpExchange exchange) {
+
+		this.id = id;
+		this.exchange = exchange;
+		this.submitted = System.nanoTime();
+
+		Map<String, String> parameters = parseQuery(query);
+		this.sceneFile = parseScene(body);
+		if (this.sceneFile != null) {
+			if (parameters.containsKey("scene")) {
+				throw new IllegalArgumentException("Parameter scene is not allowed with a scene in the body");
+			}
+			this.scene = "file";
+		}
+		else {
+			this.scene = parameters.getOrDefault("scene", "driver");
+			if (!this.scene.equals("driver") && !this.scene.equals("cloud")) {
+				throw new IllegalArgumentException("Unknown scene: " + this.scene);
+			}
+		}
+		this.sphereCount = parseInt(parameters, "spheres", 1000, 1, MAX_SPHERES);
+		this.seed = parseInt(parameters, "seed", 42, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		int defaultWidth = (this.sceneFile != null) ? this.sceneFile.getWindow().getWidth() : 500;
+		int defaultHeight = (this.sceneFile != null) ? this.sceneFile.getWindow().getHeight() : 500;
+		this.width = parseInt(parameters, "width", defaultWidth, 1, MAX_SIZE);
+		this.height = parseInt(parameters, "height", defaultHeight, 1, MAX_SIZE);
+		if (this.width > MAX_SIZE || this.height > MAX_SIZE) {
+			throw new IllegalArgumentException("The window of the scene is larger than " + MAX_SIZE + " pixels");
+		}
+		this.maxSamples = parseInt(parameters, "samples", 1, 1, 256);
+		this.priority = parseInt(parameters, "priority", 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		try {
+			this.contrastThreshold = Double.parseDouble(parameters.getOrDefault("threshold", "0.1"));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid threshold: " + parameters.get("threshold"));
+		}
+		if (!(this.contrastThreshold >= 0.0 && this.contrastThreshold <= 1.0)) {
+			throw new IllegalArgumentException("Parameter threshold is out of range: " + this.contrastThreshold);
+		}
+
+		parameters.keySet().removeAll(Arrays.asList("scene", "spheres", "seed", "width", "height", "samples", "threshold", "priority"));
+		if (!parameters.isEmpty()) {
+			throw new IllegalArgumentException("Unknown parameters: " + parameters.keySet());
+		}
+	}
+
+
+	/**
+	 * Creates the camera of the job, rendering on the given pool.
+	 *
+	 * @param pool           the render pool shared by the jobs
+	 * @param threadCount    the threads that compress the image
+	 * @return               the camera
+	 */
+	Camera createCamera (ForkJoinPool pool, int threadCount) {
+		Camera camera = (this.sceneFile != null) ? this.sceneFile.createCamera() : Driver.createCamera();
+		camera.getWindow().setWidth(this.width);
+		camera.getWindow().setHeight(this.height);
+		camera.setMaxSamples(this.maxSamples);
+		camera.setContrastThreshold(this.contrastThreshold);
+		camera.setRenderPool(pool);
+		camera.setThreadCount(threadCount);
+		return camera;
+	}
+
+	/**
+	 * Creates the scene of the job.
+	 * @return    the scene
+	 */
+	Scene createScene () {
+
+		if (this.sceneFile != null) {
+			return this.sceneFile.getScene();
+		}
+		if (this.scene.equals("driver")) {
+			return Driver.createScene();
+		}
+
+		Shape.Properties properties = new Shape.Properties();
+		properties.ambientColorProperty = new Color(0.1, 0.1, 0.1);
+		properties.diffuseColorProperty = new Color(1.0, 0.0, 0.0);
+		properties.specularColorProperty = new Color(1.0, 1.0, 1.0);
+		properties.specularCoefficient = 500;
+		BlinnPhongShadingStrategy shadingStrategy = new BlinnPhongShadingStrategy();
+
+		Scene cloud = new Scene();
+		cloud.addLight(new Light(new Vector(0.57735027, -0.57735027, 0.57735027), new Color(1.0, 1.0, 1.0)));
+		Random random = new Random(this.seed);
+		for (int i = 0; i < this.sphereCount; i++) {
+			Point center = new Point(random.nextDouble() * 60 - 30, random.nextDouble() * 60 - 30, 20 + random.nextDouble() * 60);
+			cloud.addShape(new Sphere(center, 0.05, properties, shadingStrategy));
+		}
+		return cloud;
+	}
+
+	long getId () {
+		return this.id;
+	}
+
+	HttpExchange getExchange () {
+		return this.exchange;
+	}
+
+	long getSubmitted () {
+		return this.submitted;
+	}
+
+	int getPriority () {
+		return this.priority;
+	}
+
+	/**
+	 * Orders the jobs by priority, highest first, then by id.
+	 */
+	@Override
+	public int compareTo (RenderJob other) {
+		if (this.priority != other.priority) {
+			return Integer.compare(other.priority, this.priority);
+		}
+		return Long.compare(this.id, other.id);
+	}
+
+	@Override
+	public String toString () {
+		String description = this.scene.equals("cloud") ? "cloud of " + this.sphereCount
+				: this.scene.equals("file") ? "scene file" : this.scene;
+		return String.format("Job %d: %s, %dx%d, %d samples, priority %d",
+				this.id, description, this.width, this.height, this.maxSamples, this.priority);
+	}
+
+
+	private static Map<String, String> parseQuery (String query) {
+
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (query == null || query.isEmpty()) {
+			return parameters;
+		}
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals < 0) {
+				throw new IllegalArgumentException("Invalid parameter: " + pair);
+			}
+			parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+					URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Parses the scene file of the body of a request.
+	 *
+	 * @param body    the body of the request
+	 * @return        the scene file, or null if the body is empty
+	 * @throws IllegalArgumentException    if the body cannot be read, is not a valid scene file, or is too large
+	 */
+	private static SceneFile parseScene (InputStream body) {
+
+		try {
+			InputStream in = new BufferedInputStream(new BoundedInputStream(body, MAX_SCENE_BYTES));
+			in.mark(1);
+			if (in.read() < 0) {
+				return null;
+			}
+			in.reset();
+			return SceneFile.read(in, MAX_SPHERES);
+		}
+		catch (IOException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid scene: " + e.getMessage());
+		}
+	}
+
+	private static int parseInt (Map<String, String> parameters, String name, int defaultValue, int min, int max) {
+
+		String value = parameters.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int parsed = Integer.parseInt(value);
+			if (parsed < min || parsed > max) {
+				throw new IllegalArgumentException("Parameter " + name + " is out of range: " + value);
+			}
+			return parsed;
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + value);
+		}
+	}
+
+
+	/**
+	 * The BoundedInputStream is a private static inner class within the
+	 * RenderJob class. It reads a stream up to a number of bytes, and fails
+	 * past it, so the scene file of a request cannot be of any size.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class BoundedInputStream extends FilterInputStream {
+
+		private long remaining;
+
+
+		/**
+		 * Constructs a BoundedInputStream of at most the given number of bytes.
+		 *
+		 * @param in          the stream to be read
+		 * @param maxBytes    the maximum number of bytes of the stream
+		 */
+		BoundedInputStream (InputStream in, long maxBytes) {
+			super(in);
+			this.remaining = maxBytes;
+		}
+
+		@Override
+		public int read () throws IOException {
+			byte[] one = new byte[1];
+			return (this.read(one, 0, 1) < 0) ? -1 : (one[0] & 0xff);
+		}
+
+		@Override
+		public int read (byte[] buffer, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			int count = this.in.read(buffer, offset, (int) Math.min(length, this.remaining + 1));
+			if (count > 0) {
+				this.remaining -= count;
+				if (this.remaining < 0) {
+					throw new IOException("The scene is larger than " + MAX_SCENE_BYTES + " bytes");
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public long skip (long n) throws IOException {
+			int length = (int) Math.max(0, Math.min(n, 8192));
+			return Math.max(this.read(new byte[length], 0, length), 0);
+		}
+
+		@Override
+		public boolean markSupported () {
+			return false;
+		}
+	}
+}
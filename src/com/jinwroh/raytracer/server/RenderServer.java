@@ -0,0 +1,286 @@
+package com.jinwroh.raytracer.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Scene;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * The RenderServer class is a resident render daemon: it accepts render jobs
+ * over HTTP on the loopback interface, and streams the images back as PNGs,
+ * so a render does not pay for the start and the JIT warmup of a JVM of its
+ * own. The requests are:
+ * - POST (or GET) /render?query: renders the job of the query, and of the
+ *   scene file in the body, if any (See RenderJob), and streams the PNG back
+ *   as it is rendered (See Camera.shoot(Scene, OutputStream)). Answers 400 for
+ *   an invalid query or scene file, and 503 if the queue is full or the
+ *   server is closed.
+ * - GET /metrics: the latency of the jobs, cold and warm (See ServerMetrics).
+ *
+ * The jobs wait in a queue by priority, and are taken by a fixed number of
+ * dispatcher threads, which render them on a single render pool shared by all
+ * the jobs (See Camera.setRenderPool), so the jobs running side by side share
+ * the processors instead of competing with pools of their own.
+ *
+ * The connections are handled on a cached pool of threads, which mostly wait
+ * on the network. JDK 17 has no virtual threads, so they are platform threads;
+ * a connection thread only parses the request, with its scene file if any,
+ * and queues the job, and the image is streamed by the dispatcher thread that
+ * renders it.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class RenderServer implements Closeable {
+
+	private static final int MAX_QUEUED_JOBS = 64;
+
+	private final HttpServer server;
+	private final ExecutorService connections;
+	private final ForkJoinPool renderPool;
+	private final int threadCount;
+	private final PriorityBlockingQueue<RenderJob> queue = new PriorityBlockingQueue<RenderJob>();
+	private final Thread[] dispatchers;
+	private final AtomicLong nextId = new AtomicLong();
+	private final ServerMetrics metrics;
+
+	/**
+	 * Whether the server is closed. It is set, and checked before a job is
+	 * queued, under the lock of the queue, so no job is queued once close has
+	 * answered the queued jobs.
+	 */
+	private volatile boolean closed;
+
+
+	/**
+	 * Constructs a RenderServer, and starts it on the given port of the
+	 * loopback interface.
+	 *
+	 * @param port              the port of the server, or zero for any free port
+	 * @param threadCount       the threads of the render pool
+	 * @param concurrentJobs    the number of jobs rendered at the same time
+	 * @throws IOException    if the port cannot be bound
+	 */
+	public RenderServer (int port, int threadCount, int concurrentJobs) throws IOException {
+
+		if (threadCount < 1 || concurrentJobs < 1) {
+			throw new IllegalArgumentException("Thread count and concurrent jobs must be at least 1");
+		}
+
+		this.threadCount = threadCount;
+		this.renderPool = new ForkJoinPool(threadCount);
+		this.connections = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "render-server-connection");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.dispatchers = new Thread[concurrentJobs];
+		for (int i = 0; i < concurrentJobs; i++) {
+			this.dispatchers[i] = new Thread(this::dispatch, "render-server-dispatcher-" + i);
+		}
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+		long startupNanos = ManagementFactory.getRuntimeMXBean().getUptime() * 1000000L;
+		this.metrics = new ServerMetrics(startupNanos);
+
+		// Every field is set before the first request or job can reach the
+		// server, and starting a thread publishes them to it
+		this.server.setExecutor(this.connections);
+		this.server.createContext("/render", this::queueJob);
+		this.server.createContext("/metrics", this::sendMetrics);
+		this.server.start();
+		for (Thread dispatcher : this.dispatchers) {
+			dispatcher.start();
+		}
+	}
+
+
+	/**
+	 * Gets the port of the server.
+	 * @return    the port
+	 */
+	public int getPort () {
+		return this.server.getAddress().getPort();
+	}
+
+	/**
+	 * Gets the latency of the jobs of the server.
+	 * @return    the server metrics
+	 */
+	public ServerMetrics getMetrics () {
+		return this.metrics;
+	}
+
+	/**
+	 * Stops the server: the jobs being rendered are abandoned, and the queued
+	 * jobs are answered 503.
+	 */
+	@Override
+	public void close () {
+
+		synchronized (this.queue) {
+			this.closed = true;
+		}
+		this.server.stop(0);
+		for (Thread dispatcher : this.dispatchers) {
+			dispatcher.interrupt();
+		}
+
+		RenderJob job;
+		while ((job = this.queue.poll()) != null) {
+			sendText(job.getExchange(), 503, "The server is closed");
+		}
+		this.renderPool.shutdownNow();
+		this.connections.shutdown();
+	}
+
+
+	/**
+	 * Handles a render request: queues its job, whose image is streamed back
+	 * by the dispatcher that renders it. The request is checked against the
+	 * queue before its scene file, if any, is parsed, so a full queue does not
+	 * cost a parse; it is checked again when the job is queued.
+	 */
+	private void queueJob (HttpExchange exchange) {
+
+		String rejection = this.enqueue(null);
+		if (rejection != null) {
+			sendText(exchange, 503, rejection);
+			return;
+		}
+
+		RenderJob job;
+		try {
+			job = new RenderJob(this.nextId.incrementAndGet(), exchange.getRequestURI().getRawQuery(),
+					exchange.getRequestBody(), exchange);
+		}
+		catch (IllegalArgumentException e) {
+			sendText(exchange, 400, e.getMessage());
+			return;
+		}
+
+		rejection = this.enqueue(job);
+		if (rejection != null) {
+			sendText(exchange, 503, rejection);
+		}
+	}
+
+	/**
+	 * Queues the given job, unless the server is closed or the queue is full.
+	 * The check and the add are made under the lock of the queue, so no job is
+	 * queued after close.
+	 *
+	 * @param job    the job to be queued, or null to only check the queue
+	 * @return       the reason the job is rejected, or null
+	 */
+	private String enqueue (RenderJob job) {
+
+		synchronized (this.queue) {
+			if (this.closed) {
+				return "The server is closed";
+			}
+			if (this.queue.size() >= MAX_QUEUED_JOBS) {
+				return "The render queue is full";
+			}
+			if (job != null) {
+				this.metrics.jobQueued();
+				this.queue.add(job);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Handles a metrics request.
+	 */
+	private void sendMetrics (HttpExchange exchange) {
+		sendText(exchange, 200, this.metrics.toString());
+	}
+
+	/**
+	 * Renders the queued jobs, highest priority first, until the server is
+	 * closed.
+	 */
+	private void dispatch () {
+
+		while (!this.closed) {
+			RenderJob job;
+			try {
+				job = this.queue.take();
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+			this.render(job);
+		}
+	}
+
+	/**
+	 * Renders a job on the render pool, and streams its image back.
+	 */
+	private void render (RenderJob job) {
+
+		long started = System.nanoTime();
+		boolean warm = this.metrics.isWarm();
+		boolean failed = false;
+		boolean responding = false;
+		HttpExchange exchange = job.getExchange();
+
+		try {
+			Camera camera = job.createCamera(this.renderPool, this.threadCount);
+			Scene scene = job.createScene();
+
+			exchange.getResponseHeaders().set("Content-Type", "image/png");
+			exchange.getResponseHeaders().set("X-Render-Job", Long.toString(job.getId()));
+			exchange.sendResponseHeaders(200, 0);
+			responding = true;
+			try (OutputStream out = exchange.getResponseBody()) {
+				camera.shoot(scene, out);
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			failed = true;
+			if (!responding) {
+				sendText(exchange, 500, String.valueOf(e));
+			}
+		}
+		finally {
+			exchange.close();
+			this.metrics.jobFinished(job, started - job.getSubmitted(), System.nanoTime() - started, warm, failed);
+		}
+	}
+
+	/**
+	 * Answers a request with the given status and text.
+	 */
+	private static void sendText (HttpExchange exchange, int status, String text) {
+
+		byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		try (OutputStream out = exchange.getResponseBody()) {
+			exchange.sendResponseHeaders(status, body.length);
+			out.write(body);
+		}
+		catch (IOException e) {
+			// The client is gone
+		}
+		finally {
+			exchange.close();
+		}
+	}
+}
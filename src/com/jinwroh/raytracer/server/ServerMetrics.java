@@ -0,0 +1,121 @@
+package com.jinwroh.raytracer.server;
+
+import java.util.ArrayDeque;
+
+
+/**
+ * The ServerMetrics class records the latency of the jobs of a RenderServer:
+ * the time each job waited in the queue, and the time it took to render and
+ * stream. A job is cold if it started before any job of the server was done,
+ * i.e. while the JIT compiler was still warming up, and warm otherwise; the
+ * cold and warm latencies are reported apart, so the cost of a fresh JVM per
+ * job shows next to the cost of a resident one.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class ServerMetrics {
+
+	private static final int RECENT_JOBS = 20;
+
+	private final long startupNanos;
+
+	private long queuedJobs;
+	private long failedJobs;
+	private long coldJobs;
+	private long coldNanos;
+	private long warmJobs;
+	private long warmNanos;
+	private long warmMaxNanos;
+	private final ArrayDeque<String> recentJobs = new ArrayDeque<String>();
+
+
+	/**
+	 * Constructs the ServerMetrics of a server that became ready after the
+	 * given time from the start of the JVM.
+	 * @param startupNanos    the time from the start of the JVM to the server being ready
+	 */
+	ServerMetrics (long startupNanos) {
+		this.startupNanos = startupNanos;
+	}
+
+
+	/**
+	 * Records a job added to the queue.
+	 */
+	synchronized void jobQueued () {
+		this.queuedJobs++;
+	}
+
+	/**
+	 * Checks if a job starting now is warm, i.e. if a job is done already.
+	 * @return    true if the server is warm, false otherwise
+	 */
+	synchronized boolean isWarm () {
+		return this.coldJobs + this.warmJobs > 0;
+	}
+
+	/**
+	 * Records a job that is done.
+	 *
+	 * @param job            the job
+	 * @param queuedNanos    the time the job waited in the queue
+	 * @param renderNanos    the time the job took to render and stream
+	 * @param warm           true if the job started warm (See isWarm)
+	 * @param failed         true if the job failed
+	 */
+	synchronized void jobFinished (RenderJob job, long queuedNanos, long renderNanos, boolean warm, boolean failed) {
+
+		this.queuedJobs--;
+		long latency = queuedNanos + renderNanos;
+		if (failed) {
+			this.failedJobs++;
+		}
+		else if (warm) {
+			this.warmJobs++;
+			this.warmNanos += latency;
+			this.warmMaxNanos = Math.max(this.warmMaxNanos, latency);
+		}
+		else {
+			this.coldJobs++;
+			this.coldNanos += latency;
+		}
+
+		this.recentJobs.addLast(String.format("%s - queued %.1f ms, rendered %.1f ms, %s",
+				job, queuedNanos / 1e6, renderNanos / 1e6, failed ? "failed" : (warm ? "warm" : "cold")));
+		if (this.recentJobs.size() > RECENT_JOBS) {
+			this.recentJobs.removeFirst();
+		}
+	}
+
+	/**
+	 * Gets the mean latency of the cold jobs, from their request to their end.
+	 * @return    the mean latency, in milliseconds, or zero if no job was cold
+	 */
+	public synchronized double getColdLatency () {
+		return (this.coldJobs == 0) ? 0.0 : this.coldNanos / 1e6 / this.coldJobs;
+	}
+
+	/**
+	 * Gets the mean latency of the warm jobs, from their request to their end.
+	 * @return    the mean latency, in milliseconds, or zero if no job was warm
+	 */
+	public synchronized double getWarmLatency () {
+		return (this.warmJobs == 0) ? 0.0 : this.warmNanos / 1e6 / this.warmJobs;
+	}
+
+	@Override
+	public synchronized String toString () {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("Jobs: %d cold, %d warm, %d failed, %d queued or running"
+				+ "\n\tStartup: %.1f ms from the start of the JVM to the server being ready"
+				+ "\n\tCold: %.1f ms mean latency"
+				+ "\n\tWarm: %.1f ms mean latency, %.1f ms max",
+				this.coldJobs, this.warmJobs, this.failedJobs, this.queuedJobs,
+				this.startupNanos / 1e6, this.getColdLatency(), this.getWarmLatency(), this.warmMaxNanos / 1e6));
+		for (String job : this.recentJobs) {
+			builder.append("\n\t").append(job);
+		}
+		return builder.toString();
+	}
+}
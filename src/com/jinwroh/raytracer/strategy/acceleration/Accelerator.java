@@ -0,0 +1,90 @@
+package com.jinwroh.raytracer.strategy.acceleration;
+
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.RayPacket;
+
+
+/**
+ * The Accelerator interface allows the encapsulation of different spatial
+ * indexes over the shapes of a scene. An accelerator is built once over the
+ * shapes, and answers the ray queries of the Camera without testing every
+ * shape. Different scenes favor different accelerators (See AcceleratorSelector).
+ *
+ * Once built, an accelerator is only read, so it may be queried by many
+ * threads concurrently, as long as each thread has its own Intersection.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public interface Accelerator {
+
+	/**
+	 * Finds the closest Shape hit by the given ray, in front of the ray origin,
+	 * into the given intersection. The intersection also provides the scratch
+	 * space of the query, so the query allocates nothing.
+	 *
+	 * Only the Shape and the time of the hit are found; the local calculations
+	 * are left to the caller (See Intersection.materialize).
+	 *
+	 * @param ray       the ray to be traced
+	 * @param result    the intersection to be filled with the closest hit
+	 * @return          true if the ray hits a shape, false otherwise
+	 */
+	public boolean closestHit (Ray ray, Intersection result);
+
+	/**
+	 * Checks if the given ray hits any Shape within the open interval (minTime,
+	 * maxTime), i.e. if anything occludes the ray. The query returns at the 
+	 * first hit found, without finding the closest one nor computing its local
+	 * calculations, so it is much cheaper than closestHit (i.e. for shadow rays).
+	 *
+	 * @param ray        the ray to be traced
+	 * @param minTime    the start of the interval, exclusive
+	 * @param maxTime    the end of the interval, exclusive
+	 * @param scratch    the intersection providing the scratch space of the query;
+	 *                   its result is left untouched
+	 * @return           true if the ray hits a shape within the interval, false otherwise
+	 */
+	public boolean anyHit (Ray ray, double minTime, double maxTime, Intersection scratch);
+
+	/**
+	 * Finds the closest Shape hit by each ray of the given packet, in front of
+	 * the ray origin, into the hits of the packet. Like closestHit, only the
+	 * Shape and the time of each hit are found.
+	 *
+	 * By default, the rays are traced one at a time. An accelerator that can 
+	 * trace a coherent packet together (i.e. culling a node once for all of 
+	 * its rays) overrides this, and finds the same hits.
+	 *
+	 * @param packet     the packet of rays to be traced
+	 * @param scratch    the intersection providing the scratch space of the query
+	 */
+	public default void closestHits (RayPacket packet, Intersection scratch) {
+		for (int i = 0; i < packet.size(); i++) {
+			if (this.closestHit(packet.getRay(i), scratch)) {
+				packet.setHit(i, scratch.shape, scratch.timeHit);
+			}
+			else {
+				packet.setHit(i, null, Double.POSITIVE_INFINITY);
+			}
+		}
+	}
+
+	/**
+	 * Finds the closest Shape hit by the given ray, in front of the ray origin,
+	 * with its local calculations.
+	 *
+	 * @param ray    the ray to be traced
+	 * @return       the closest intersection, or null if the ray hits nothing
+	 */
+	public default Intersection closestHit (Ray ray) {
+		Intersection intersection = new Intersection();
+		if (!this.closestHit(ray, intersection)) {
+			return null;
+		}
+		intersection.materialize(ray);
+		return intersection;
+	}
+
+}
@@ -0,0 +1,502 @@
+package com.jinwroh.raytracer.strategy.acceleration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import com.jinwroh.raytracer.geometric.BoundingBox;
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.SphereBatch;
+import com.jinwroh.raytracer.graphics.Fingerprint;
+
+
+/**
+ * The AcceleratorCache class keeps the accelerators built by the
+ * AcceleratorSelector in a directory, so that rendering the same shapes again
+ * (i.e. from another camera, or with other lights) loads the accelerator
+ * instead of building it. The cache is keyed by a fingerprint of the shapes:
+ * their number, whether they are all spheres, and the bounding box of every
+ * shape, in order, which is all an accelerator is built from. Editing the materials or the
+ * lights of a scene keeps its key; moving, adding or removing a shape does not.
+ *
+ * An accelerator is stored in a file of its own, named after the key, with a
+ * header followed by the flat arrays of the accelerator, as they are in
+ * memory: little-endian, each array after its length, and aligned on 8 bytes.
+ * The arrays are memory-mapped and copied straight into the arrays of the
+ * loaded accelerator. The shapes are stored by their index in the list, so an
+ * accelerator is loaded over the shapes of the render, never a copy of them.
+ *
+ * The header holds a magic number, the version of the format, the key, the
+ * number of shapes, the type and the statistics of the selection, the time it
+ * took to build, the length of the arrays, and their CRC-32C. A file that does
+ * not match the shapes or fails its CRC-32C is a miss, and is replaced. The
+ * files are written to a temporary file, then moved in place, so a file is
+ * never seen half written.
+ *
+ * Every lookup is reported in the Selection, with the time it took to load
+ * the accelerator or to store it, and counted by the cache.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class AcceleratorCache {
+
+	private static final int MAGIC = 0x52544143;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 128;
+	private static final int REASON_BYTES = 40;
+	private static final String SUFFIX = ".rtac";
+
+	private final File directory;
+
+	/**
+	 * The counts of the lookups of this cache.
+	 */
+	private int hitCount;
+	private int missCount;
+
+
+	/**
+	 * Constructs an AcceleratorCache in the given directory, which is created
+	 * if it does not exist.
+	 *
+	 * @param directory    the directory of the cache files
+	 * @throws IOException    if the directory cannot be created
+	 */
+	public AcceleratorCache (File directory) throws IOException {
+		Files.createDirectories(directory.toPath());
+		this.directory = directory;
+	}
+
+
+	/**
+	 * Loads the accelerator picked automatically for the given shapes from the
+	 * cache, or builds it and stores it in the cache.
+	 *
+	 * @param shapes    the shapes to be indexed
+	 * @return          the selection holding the loaded or built accelerator
+	 */
+	public AcceleratorSelector.Selection select (List<Shape> shapes) {
+		return this.select(AcceleratorSelector.Type.AUTOMATIC, shapes);
+	}
+
+	/**
+	 * Loads the accelerator of the given type for the given shapes from the
+	 * cache, or builds it and stores it in the cache. The cache never fails the
+	 * selection: a file that cannot be read is a miss, and a file that cannot
+	 * be written is reported in the selection.
+	 *
+	 * @param type      the type of accelerator, or AUTOMATIC
+	 * @param shapes    the shapes to be indexed
+	 * @return          the selection holding the loaded or built accelerator
+	 */
+	public AcceleratorSelector.Selection select (AcceleratorSelector.Type type, List<Shape> shapes) {
+
+		long start = System.nanoTime();
+		long key = key(type, shapes);
+		long keyTime = System.nanoTime() - start;
+		File file = this.getFile(key);
+
+		AcceleratorSelector.Selection selection = null;
+		String miss = "miss";
+		if (file.exists()) {
+			try {
+				selection = load(file, key, shapes);
+			}
+			catch (IOException | RuntimeException e) {
+				miss = "miss (" + e.getMessage() + ")";
+			}
+		}
+
+		if (selection != null) {
+			selection.cacheResult = "hit";
+			selection.cacheTime = System.nanoTime() - start;
+			synchronized (this) {
+				this.hitCount++;
+			}
+			return selection;
+		}
+
+		selection = AcceleratorSelector.select(type, shapes);
+		start = System.nanoTime();
+		try {
+			store(file, key, shapes.size(), selection);
+			selection.cacheResult = miss;
+		}
+		catch (IOException | RuntimeException e) {
+			selection.cacheResult = miss + ", not stored (" + e.getMessage() + ")";
+		}
+		selection.cacheTime = keyTime + (System.nanoTime() - start);
+		synchronized (this) {
+			this.missCount++;
+		}
+		return selection;
+	}
+
+	/**
+	 * Gets the directory of the cache files.
+	 * @return    the directory
+	 */
+	public File getDirectory () {
+		return this.directory;
+	}
+
+	/**
+	 * Gets the number of lookups that loaded the accelerator from the cache.
+	 * @return    the number of hits
+	 */
+	public synchronized int getHitCount () {
+		return this.hitCount;
+	}
+
+	/**
+	 * Gets the number of lookups that built the accelerator.
+	 * @return    the number of misses
+	 */
+	public synchronized int getMissCount () {
+		return this.missCount;
+	}
+
+	@Override
+	public synchronized String toString () {
+		return String.format("Accelerator cache: %s, %d hits, %d misses", this.directory, this.hitCount, this.missCount);
+	}
+
+
+	/**
+	 * Computes the key of the accelerator of the given type over the given
+	 * shapes: the fingerprint of the type, of the number of shapes, of whether
+	 * they are all spheres (See SphereBatch), and of the bounding box of every
+	 * shape, in order.
+	 *
+	 * @param type      the type of accelerator, or AUTOMATIC
+	 * @param shapes    the shapes to be indexed
+	 * @return          the key
+	 */
+	static long key (AcceleratorSelector.Type type, List<Shape> shapes) {
+
+		Fingerprint fingerprint = new Fingerprint();
+		fingerprint.add(type.name());
+		fingerprint.add(shapes.size());
+		fingerprint.add(SphereBatch.accepts(shapes));
+
+		for (Shape shape : shapes) {
+			BoundingBox box = shape.getBoundingBox();
+			Point min = box.getMin();
+			Point max = box.getMax();
+			fingerprint.add(min.getX()).add(min.getY()).add(min.getZ());
+			fingerprint.add(max.getX()).add(max.getY()).add(max.getZ());
+		}
+		return fingerprint.getValue();
+	}
+
+	/**
+	 * Gets the file of the accelerator of the given key.
+	 */
+	private File getFile (long key) {
+		return new File(this.directory, String.format("%016x", key) + SUFFIX);
+	}
+
+	/**
+	 * Loads the selection stored in the given file, over the given shapes.
+	 */
+	private static AcceleratorSelector.Selection load (File file, long key, List<Shape> shapes) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					throw new IOException("cut short");
+				}
+			}
+
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException("not a cache file of version " + VERSION);
+			}
+			if (header.getLong(8) != key || header.getInt(16) != shapes.size()) {
+				throw new IOException("stale");
+			}
+			long length = header.getLong(32);
+			if (channel.size() != HEADER_BYTES + length) {
+				throw new IOException("cut short");
+			}
+
+			AcceleratorSelector.Selection selection = new AcceleratorSelector.Selection();
+			selection.type = AcceleratorSelector.Type.values()[header.getInt(20)];
+			selection.buildTime = header.getLong(24);
+			selection.shapeCount = shapes.size();
+			selection.volume = header.getDouble(48);
+			selection.density = header.getDouble(56);
+			selection.occupancy = header.getDouble(64);
+			selection.fill = header.getDouble(72);
+			byte[] reason = new byte[Math.min(header.getInt(80), REASON_BYTES)];
+			header.position(88);
+			header.get(reason);
+			selection.reason = new String(reason, StandardCharsets.UTF_8);
+
+			Input input = new Input(channel, HEADER_BYTES);
+			switch (selection.type) {
+				case UNIFORM_GRID:
+					selection.accelerator = new UniformGrid(shapes, input);
+					break;
+				case KD_TREE:
+					selection.accelerator = new KdTree(shapes, input);
+					break;
+				default:
+					selection.accelerator = new BoundingVolumeHierarchy(shapes, input);
+					break;
+			}
+
+			if (input.position != channel.size() || (int) input.checksum.getValue() != header.getInt(40)) {
+				throw new IOException("corrupt");
+			}
+			return selection;
+		}
+	}
+
+	/**
+	 * Stores the given selection in the given file, through a temporary file
+	 * of the same directory.
+	 */
+	private static void store (File file, long key, int shapeCount, AcceleratorSelector.Selection selection) throws IOException {
+
+		Path temporary = Files.createTempFile(file.getParentFile().toPath(), "accelerator", ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				Output output = new Output(channel, HEADER_BYTES);
+				if (selection.accelerator instanceof UniformGrid) {
+					((UniformGrid) selection.accelerator).write(output);
+				}
+				else if (selection.accelerator instanceof KdTree) {
+					((KdTree) selection.accelerator).write(output);
+				}
+				else {
+					((BoundingVolumeHierarchy) selection.accelerator).write(output);
+				}
+				output.flush();
+
+				byte[] reason = selection.reason.getBytes(StandardCharsets.UTF_8);
+				reason = (reason.length > REASON_BYTES) ? new byte[0] : reason;
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC).putInt(VERSION).putLong(key);
+				header.putInt(shapeCount).putInt(selection.type.ordinal()).putLong(selection.buildTime);
+				header.putLong(output.position - HEADER_BYTES);
+				header.putInt((int) output.checksum.getValue()).putInt(0);
+				header.putDouble(selection.volume).putDouble(selection.density);
+				header.putDouble(selection.occupancy).putDouble(selection.fill);
+				header.putInt(reason.length).putInt(0).put(reason);
+				header.clear();
+				while (header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+			}
+			Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+
+	/**
+	 * Output inner class writes the arrays of an accelerator into a cache
+	 * file, through a fixed buffer, and sums their CRC-32C. Every value is
+	 * written in a slot of 8 bytes, and every array is padded to 8 bytes.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	static final class Output {
+
+		private static final int BUFFER_BYTES = 1 << 16;
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		private final CRC32C checksum = new CRC32C();
+		private long position;
+
+
+		/**
+		 * Constructs an Output writing the given channel from the given position.
+		 *
+		 * @param channel     the channel of the cache file
+		 * @param position    the position of the first array
+		 */
+		Output (FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+
+		/**
+		 * Writes an int value.
+		 * @param value    the value to be written
+		 * @throws IOException    if the file cannot be written
+		 */
+		void writeInt (int value) throws IOException {
+			this.ensureRemaining(8);
+			this.buffer.putInt(value).putInt(0);
+		}
+
+		/**
+		 * Writes an array of ints, after its length.
+		 * @param values    the values to be written
+		 * @throws IOException    if the file cannot be written
+		 */
+		void writeInts (int[] values) throws IOException {
+			this.writeInt(values.length);
+			int offset = 0;
+			while (offset < values.length) {
+				this.ensureRemaining(4);
+				int count = Math.min(this.buffer.remaining() / 4, values.length - offset);
+				this.buffer.asIntBuffer().put(values, offset, count);
+				this.buffer.position(this.buffer.position() + 4 * count);
+				offset += count;
+			}
+			if (values.length % 2 != 0) {
+				this.ensureRemaining(4);
+				this.buffer.putInt(0);
+			}
+		}
+
+		/**
+		 * Writes an array of doubles, after its length.
+		 * @param values    the values to be written
+		 * @throws IOException    if the file cannot be written
+		 */
+		void writeDoubles (double[] values) throws IOException {
+			this.writeInt(values.length);
+			int offset = 0;
+			while (offset < values.length) {
+				this.ensureRemaining(8);
+				int count = Math.min(this.buffer.remaining() / 8, values.length - offset);
+				this.buffer.asDoubleBuffer().put(values, offset, count);
+				this.buffer.position(this.buffer.position() + 8 * count);
+				offset += count;
+			}
+		}
+
+		/**
+		 * Writes the buffered values into the file.
+		 * @throws IOException    if the file cannot be written
+		 */
+		void flush () throws IOException {
+			this.buffer.flip();
+			this.checksum.update(this.buffer.duplicate());
+			while (this.buffer.hasRemaining()) {
+				this.position += this.channel.write(this.buffer, this.position);
+			}
+			this.buffer.clear();
+		}
+
+		/**
+		 * Flushes the buffer if it has less than the given bytes left.
+		 */
+		private void ensureRemaining (int bytes) throws IOException {
+			if (this.buffer.remaining() < bytes) {
+				this.flush();
+			}
+		}
+	}
+
+
+	/**
+	 * Input inner class reads the arrays of an accelerator from a cache file,
+	 * in the order they were written, and sums their CRC-32C. Every array is
+	 * memory-mapped and copied in bulk.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	static final class Input {
+
+		private final FileChannel channel;
+		private final ByteBuffer slot = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		private final CRC32C checksum = new CRC32C();
+		private long position;
+
+
+		/**
+		 * Constructs an Input reading the given channel from the given position.
+		 *
+		 * @param channel     the channel of the cache file
+		 * @param position    the position of the first array
+		 */
+		Input (FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+
+		/**
+		 * Reads an int value.
+		 * @return    the value
+		 * @throws IOException    if the file cannot be read
+		 */
+		int readInt () throws IOException {
+			this.slot.clear();
+			while (this.slot.hasRemaining()) {
+				if (this.channel.read(this.slot, this.position + this.slot.position()) < 0) {
+					throw new IOException("cut short");
+				}
+			}
+			this.slot.flip();
+			this.checksum.update(this.slot.duplicate());
+			this.position += 8;
+			return this.slot.getInt(0);
+		}
+
+		/**
+		 * Reads an array of ints.
+		 * @return    the values
+		 * @throws IOException    if the file cannot be read
+		 */
+		int[] readInts () throws IOException {
+			int length = this.readInt();
+			ByteBuffer mapped = this.map(length, 4);
+			int[] values = new int[length];
+			mapped.asIntBuffer().get(values);
+			return values;
+		}
+
+		/**
+		 * Reads an array of doubles.
+		 * @return    the values
+		 * @throws IOException    if the file cannot be read
+		 */
+		double[] readDoubles () throws IOException {
+			int length = this.readInt();
+			ByteBuffer mapped = this.map(length, 8);
+			double[] values = new double[length];
+			mapped.asDoubleBuffer().get(values);
+			return values;
+		}
+
+		/**
+		 * Maps the given number of values of the given width, padded to 8 bytes,
+		 * and sums their CRC-32C.
+		 */
+		private ByteBuffer map (int length, int width) throws IOException {
+			long bytes = ((long) length * width + 7) & ~7L;
+			if (length < 0 || this.position + bytes > this.channel.size()) {
+				throw new IOException("corrupt");
+			}
+			ByteBuffer mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, bytes)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			this.checksum.update(mapped.duplicate());
+			this.position += bytes;
+			return mapped;
+		}
+	}
+}
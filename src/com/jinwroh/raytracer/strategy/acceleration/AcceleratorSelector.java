@@ -0,0 +1,227 @@
+package com.jinwroh.raytracer.strategy.acceleration;
+
+import java.util.BitSet;
+import java.util.List;
+
+import com.jinwroh.raytracer.geometric.BoundingBox;
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * The AcceleratorSelector class builds the Accelerator for a list of shapes.
+ * The accelerator is either requested by its type, or picked automatically
+ * from statistics of the shapes:
+ *
+ * - Small scenes use a bounding volume hierarchy, which is cheap to build and
+ *   never degrades badly.
+ * - Dense, evenly spread scenes (i.e. particle clouds) use a uniform grid. The
+ *   spread is measured by the occupancy: the fraction of the cells of a coarse
+ *   grid, with about one cell per shape, that contain the center of a shape.
+ * - Sparse scenes of small, separate shapes use a k-d tree. The separation is
+ *   measured by the fill: the total volume of the bounding boxes relative to
+ *   the volume of the scene bounds. A k-d tree lists a shape in every leaf it
+ *   overlaps, so it suffers when the shapes are large or overlap.
+ * - Every other scene uses a bounding volume hierarchy.
+ *
+ * The choice, the statistics it was based on, and the build time are reported
+ * in a Selection.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class AcceleratorSelector {
+
+	/**
+	 * The thresholds of the automatic selection.
+	 */
+	private static final int SMALL_SCENE_SIZE = 64;
+	private static final double DENSE_OCCUPANCY = 0.5;
+	private static final double SPARSE_FILL = 0.1;
+	private static final int MAX_OCCUPANCY_CELLS = 1 << 21;
+
+
+	/**
+	 * The types of accelerators. AUTOMATIC picks one of the others from the
+	 * statistics of the shapes.
+	 */
+	public enum Type {
+		AUTOMATIC,
+		BOUNDING_VOLUME_HIERARCHY,
+		UNIFORM_GRID,
+		KD_TREE
+	}
+
+
+	/**
+	 * Builds the accelerator picked automatically for the given shapes.
+	 *
+	 * @param shapes    the shapes to be indexed
+	 * @return          the selection holding the built accelerator
+	 */
+	public static Selection select (List<Shape> shapes) {
+		return select(Type.AUTOMATIC, shapes);
+	}
+
+	/**
+	 * Builds the accelerator of the given type for the given shapes.
+	 *
+	 * @param type      the type of accelerator, or AUTOMATIC
+	 * @param shapes    the shapes to be indexed
+	 * @return          the selection holding the built accelerator
+	 */
+	public static Selection select (Type type, List<Shape> shapes) {
+
+		Selection selection = new Selection();
+		measure(shapes, selection);
+
+		if (type != Type.AUTOMATIC) {
+			selection.type = type;
+			selection.reason = "requested";
+		}
+		else if (selection.shapeCount < SMALL_SCENE_SIZE) {
+			selection.type = Type.BOUNDING_VOLUME_HIERARCHY;
+			selection.reason = "small scene";
+		}
+		else if (selection.occupancy >= DENSE_OCCUPANCY) {
+			selection.type = Type.UNIFORM_GRID;
+			selection.reason = "dense, evenly spread shapes";
+		}
+		else if (selection.fill < SPARSE_FILL) {
+			selection.type = Type.KD_TREE;
+			selection.reason = "sparse, separate shapes";
+		}
+		else {
+			selection.type = Type.BOUNDING_VOLUME_HIERARCHY;
+			selection.reason = "clustered or overlapping shapes";
+		}
+
+		long start = System.nanoTime();
+		selection.accelerator = build(selection.type, shapes);
+		selection.buildTime = System.nanoTime() - start;
+
+		return selection;
+	}
+
+
+	/**
+	 * Builds an accelerator of the given (non automatic) type.
+	 */
+	private static Accelerator build (Type type, List<Shape> shapes) {
+		switch (type) {
+			case UNIFORM_GRID:
+				return new UniformGrid(shapes);
+			case KD_TREE:
+				return new KdTree(shapes);
+			default:
+				return new BoundingVolumeHierarchy(shapes);
+		}
+	}
+
+	/**
+	 * Measures the statistics of the given shapes into the selection.
+	 */
+	private static void measure (List<Shape> shapes, Selection selection) {
+
+		int size = shapes.size();
+		selection.shapeCount = size;
+		if (size == 0) {
+			return;
+		}
+
+		double[] bounds = {
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		double[] centers = new double[3 * size];
+		double shapeVolume = 0.0;
+
+		for (int i = 0; i < size; i++) {
+			BoundingBox box = shapes.get(i).getBoundingBox();
+			double[] min = { box.getMin().getX(), box.getMin().getY(), box.getMin().getZ() };
+			double[] max = { box.getMax().getX(), box.getMax().getY(), box.getMax().getZ() };
+			for (int axis = 0; axis < 3; axis++) {
+				bounds[axis] = Math.min(bounds[axis], min[axis]);
+				bounds[axis + 3] = Math.max(bounds[axis + 3], max[axis]);
+				centers[3 * i + axis] = (min[axis] + max[axis]) / 2.0;
+			}
+			shapeVolume += (max[0] - min[0]) * (max[1] - min[1]) * (max[2] - min[2]);
+		}
+
+		double[] extent = new double[3];
+		double volume = 1.0;
+		for (int axis = 0; axis < 3; axis++) {
+			extent[axis] = Math.max(bounds[axis + 3] - bounds[axis], 1e-9);
+			volume *= extent[axis];
+		}
+
+		selection.volume = volume;
+		selection.density = size / volume;
+		selection.fill = shapeVolume / volume;
+
+		// Occupancy of a coarse grid of roughly cubic cells, about one per shape
+		int cells = Math.min(size, MAX_OCCUPANCY_CELLS);
+		double cellsPerUnit = Math.cbrt(cells / volume);
+		int[] resolution = new int[3];
+		for (int axis = 0; axis < 3; axis++) {
+			resolution[axis] = Math.max(1, (int) Math.round(extent[axis] * cellsPerUnit));
+		}
+		long cellCount = (long) resolution[0] * resolution[1] * resolution[2];
+		while (cellCount > MAX_OCCUPANCY_CELLS) {
+			for (int axis = 0; axis < 3; axis++) {
+				resolution[axis] = Math.max(1, resolution[axis] / 2);
+			}
+			cellCount = (long) resolution[0] * resolution[1] * resolution[2];
+		}
+
+		BitSet occupied = new BitSet((int) cellCount);
+		for (int i = 0; i < size; i++) {
+			int index = 0;
+			for (int axis = 2; axis >= 0; axis--) {
+				int cell = (int) ((centers[3 * i + axis] - bounds[axis]) / extent[axis] * resolution[axis]);
+				cell = Math.max(0, Math.min(resolution[axis] - 1, cell));
+				index = index * resolution[axis] + cell;
+			}
+			occupied.set(index);
+		}
+		selection.occupancy = occupied.cardinality() / (double) Math.min(cellCount, size);
+	}
+
+
+	/**
+	 * Selection inner class bundles up the built accelerator, its type, why it
+	 * was picked, how long it took to build, and the statistics of the shapes.
+	 * A selection made through an AcceleratorCache also reports the outcome of
+	 * the lookup (i.e. "hit" or "miss"), and the time it took to load the
+	 * accelerator, or to store it.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	public static class Selection {
+		public Accelerator accelerator;
+		public Type type;
+		public String reason;
+		public long buildTime;
+		public int shapeCount;
+		public double volume;
+		public double density;
+		public double occupancy;
+		public double fill;
+		public String cacheResult;
+		public long cacheTime;
+
+		@Override
+		public String toString () {
+			String cache = "";
+			if (this.cacheResult != null && this.cacheResult.equals("hit")) {
+				cache = String.format("\n\tCache: hit, hashed and loaded in %.2f ms, instead of built", this.cacheTime / 1e6);
+			}
+			else if (this.cacheResult != null) {
+				cache = String.format("\n\tCache: %s, hashed and stored in %.2f ms", this.cacheResult, this.cacheTime / 1e6);
+			}
+			return String.format("Accelerator: %s (%s), built in %.2f ms"
+					+ "\n\tShapes: %d, density: %.4g shapes/unit^3, occupancy: %.3f, fill: %.3f%s",
+					this.type, this.reason, this.buildTime / 1e6,
+					this.shapeCount, this.density, this.occupancy, this.fill, cache);
+		}
+	}
+}
@@ -0,0 +1,966 @@
+package com.jinwroh.raytracer.strategy.acceleration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.jinwroh.raytracer.geometric.BoundingBox;
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.RayPacket;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.SphereBatch;
+
+
+/**
+ * The BoundingVolumeHierarchy class is a concrete implementation of the
+ * Accelerator interface. The shapes are grouped into a binary tree of
+ * bounding boxes, so a ray only tests the shapes whose boxes it passes
+ * through, instead of every shape in the scene.
+ *
+ * The tree is built top-down with the binned Surface Area Heuristic (SAH):
+ * each node is split at the bin boundary that minimizes the expected cost of
+ * tracing a ray through its children. Large subtrees are built in parallel
+ * on a fork-join pool.
+ *
+ * Once built, the tree is flattened into primitive arrays in depth-first
+ * order: the first child of a node directly follows it, and the node stores
+ * the index of its second child. The shapes are reordered so that every
+ * leaf references a contiguous run of them.
+ *
+ * If every shape is a Sphere, the reordered spheres are also packed into a
+ * SphereBatch, and each leaf is tested with a single batch query. Leaves of
+ * up to PACKED_LEAF_SIZE spheres are then always kept, since the batch tests
+ * that many spheres about as fast as one.
+ *
+ * The flat arrays are what an AcceleratorCache stores; a hierarchy loaded
+ * from the cache is the same as the one built over the same shapes.
+ *
+ * When the shapes move a little (i.e. from a frame of an animation to the
+ * next), the hierarchy can be refit instead of rebuilt: the tree is kept,
+ * and only the bounds of its nodes are recomputed, bottom-up. The hits stay
+ * exact, but the tree degrades as the shapes move away from where it was
+ * built, which is measured by its cost (See getCost).
+ *
+ * A coherent packet of rays is traced through the tree together: each node
+ * is culled for the whole packet with interval arithmetic over the bounds of
+ * its rays, and each leaf tests its spheres against all the active rays.
+ * See: http://www.pbr-book.org/3ed-2018/Primitives_and_Intersection_Acceleration/Bounding_Volume_Hierarchies.html
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class BoundingVolumeHierarchy implements Accelerator {
+
+	/**
+	 * The build parameters: the number of SAH bins, the largest leaf that is not
+	 * split further when splitting does not pay off, the subtree size above which
+	 * the children are built in parallel, and the cost of visiting a node
+	 * relative to the cost of intersecting a shape.
+	 */
+	private static final int BIN_COUNT = 16;
+	private static final int MAX_LEAF_SIZE = 4;
+	private static final int PARALLEL_THRESHOLD = 4096;
+	private static final double TRAVERSAL_COST = 1.0;
+	private static final int PACKED_LEAF_SIZE = 8;
+
+	/**
+	 * The shapes, reordered so that every leaf covers a contiguous run, their
+	 * indices in the list of shapes the hierarchy is built over, and the same
+	 * spheres packed into a batch if every shape is a Sphere (null otherwise).
+	 */
+	private final Shape[] primitives;
+	private final int[] primitiveIndices;
+	private final SphereBatch batch;
+
+	/**
+	 * The flattened nodes. For node i, the bounds are stored at 6 * i as
+	 * (min x, min y, min z, max x, max y, max z). For a leaf, the offset is the
+	 * index of its first primitive and the count is the number of primitives.
+	 * For an inner node, the offset is the index of its second child, the count
+	 * is zero, and the axis is the axis the node was split along.
+	 */
+	private final double[] nodeBounds;
+	private final int[] nodeOffsets;
+	private final int[] nodeCounts;
+	private final int[] nodeAxes;
+	private final int nodeCount;
+	private final int depth;
+
+
+	/**
+	 * Constructs a BoundingVolumeHierarchy over the given shapes, built on the
+	 * common fork-join pool.
+	 *
+	 * @param shapes    the shapes to be enclosed by the hierarchy
+	 */
+	public BoundingVolumeHierarchy (List<Shape> shapes) {
+		this(shapes, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a BoundingVolumeHierarchy over the given shapes, built on the
+	 * given fork-join pool.
+	 *
+	 * @param shapes    the shapes to be enclosed by the hierarchy
+	 * @param pool      the pool to build the hierarchy on
+	 */
+	public BoundingVolumeHierarchy (List<Shape> shapes, ForkJoinPool pool) {
+
+		int size = shapes.size();
+		double[] boxes = new double[6 * size];
+		double[] centroids = new double[3 * size];
+		int[] indices = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			BoundingBox box = shapes.get(i).getBoundingBox();
+			boxes[6 * i] = box.getMin().getX();
+			boxes[6 * i + 1] = box.getMin().getY();
+			boxes[6 * i + 2] = box.getMin().getZ();
+			boxes[6 * i + 3] = box.getMax().getX();
+			boxes[6 * i + 4] = box.getMax().getY();
+			boxes[6 * i + 5] = box.getMax().getZ();
+
+			centroids[3 * i] = (boxes[6 * i] + boxes[6 * i + 3]) / 2.0;
+			centroids[3 * i + 1] = (boxes[6 * i + 1] + boxes[6 * i + 4]) / 2.0;
+			centroids[3 * i + 2] = (boxes[6 * i + 2] + boxes[6 * i + 5]) / 2.0;
+
+			indices[i] = i;
+		}
+
+		boolean packed = (size > 0) && SphereBatch.accepts(shapes);
+		int maxLeafSize = packed ? PACKED_LEAF_SIZE : MAX_LEAF_SIZE;
+		BuildNode root = (size == 0) ? null : 
+				pool.invoke(new BuildTask(boxes, centroids, indices, 0, size, maxLeafSize, packed));
+
+		this.nodeCount = (root == null) ? 0 : root.size;
+		this.depth = (root == null) ? 0 : root.depth;
+		this.nodeBounds = new double[6 * this.nodeCount];
+		this.nodeOffsets = new int[this.nodeCount];
+		this.nodeCounts = new int[this.nodeCount];
+		this.nodeAxes = new int[this.nodeCount];
+
+		this.primitiveIndices = indices;
+		this.primitives = new Shape[size];
+		for (int i = 0; i < size; i++) {
+			this.primitives[i] = shapes.get(indices[i]);
+		}
+
+		if (root != null) {
+			this.flatten(root, 0);
+		}
+
+		this.batch = packed ? createBatch(this.primitives) : null;
+	}
+
+	/**
+	 * Constructs a BoundingVolumeHierarchy over the given shapes, from the
+	 * arrays of a hierarchy built over the same shapes (See AcceleratorCache).
+	 *
+	 * @param shapes    the shapes enclosed by the hierarchy
+	 * @param input     the arrays of the hierarchy, as written by write
+	 * @throws IOException    if the arrays cannot be read, or do not fit the shapes
+	 */
+	BoundingVolumeHierarchy (List<Shape> shapes, AcceleratorCache.Input input) throws IOException {
+
+		int size = shapes.size();
+		this.depth = input.readInt();
+		this.primitiveIndices = input.readInts();
+		this.nodeBounds = input.readDoubles();
+		this.nodeOffsets = input.readInts();
+		this.nodeCounts = input.readInts();
+		this.nodeAxes = input.readInts();
+		this.nodeCount = this.nodeOffsets.length;
+
+		if (this.primitiveIndices.length != size || this.nodeBounds.length != 6 * this.nodeCount
+				|| this.nodeCounts.length != this.nodeCount || this.nodeAxes.length != this.nodeCount) {
+			throw new IOException("corrupt");
+		}
+
+		this.primitives = new Shape[size];
+		for (int i = 0; i < size; i++) {
+			this.primitives[i] = shapes.get(this.primitiveIndices[i]);
+		}
+		this.batch = (size > 0 && SphereBatch.accepts(shapes)) ? createBatch(this.primitives) : null;
+	}
+
+	/**
+	 * Constructs a BoundingVolumeHierarchy with the tree of the given hierarchy,
+	 * over the given shapes, which replace the shapes of the same index.
+	 */
+	private BoundingVolumeHierarchy (BoundingVolumeHierarchy tree, List<Shape> shapes) {
+
+		int size = shapes.size();
+		this.primitiveIndices = tree.primitiveIndices;
+		this.nodeOffsets = tree.nodeOffsets;
+		this.nodeCounts = tree.nodeCounts;
+		this.nodeAxes = tree.nodeAxes;
+		this.nodeCount = tree.nodeCount;
+		this.depth = tree.depth;
+
+		this.primitives = new Shape[size];
+		for (int i = 0; i < size; i++) {
+			this.primitives[i] = shapes.get(this.primitiveIndices[i]);
+		}
+
+		// The children of a node follow it in the flat arrays, so walking the
+		// nodes backwards visits the children before their parent.
+		this.nodeBounds = new double[6 * this.nodeCount];
+		for (int node = this.nodeCount - 1; node >= 0; node--) {
+			int offset = 6 * node;
+			for (int axis = 0; axis < 3; axis++) {
+				this.nodeBounds[offset + axis] = Double.POSITIVE_INFINITY;
+				this.nodeBounds[offset + axis + 3] = Double.NEGATIVE_INFINITY;
+			}
+
+			int count = this.nodeCounts[node];
+			if (count > 0) {
+				int first = this.nodeOffsets[node];
+				for (int i = first; i < first + count; i++) {
+					BoundingBox box = this.primitives[i].getBoundingBox();
+					this.grow(offset, box.getMin().getX(), box.getMin().getY(), box.getMin().getZ(),
+							box.getMax().getX(), box.getMax().getY(), box.getMax().getZ());
+				}
+			}
+			else {
+				this.grow(offset, this.nodeBounds, 6 * (node + 1));
+				this.grow(offset, this.nodeBounds, 6 * this.nodeOffsets[node]);
+			}
+		}
+
+		this.batch = (tree.batch != null) ? createBatch(this.primitives) : null;
+	}
+
+
+	@Override
+	public boolean closestHit (Ray ray, Intersection result) {
+
+		result.shape = null;
+		if (this.nodeCount == 0) {
+			return false;
+		}
+
+		double originX = ray.getOriginX();
+		double originY = ray.getOriginY();
+		double originZ = ray.getOriginZ();
+		double directionX = ray.getDirectionX();
+		double directionY = ray.getDirectionY();
+		double directionZ = ray.getDirectionZ();
+		double inverseX = 1.0 / directionX;
+		double inverseY = 1.0 / directionY;
+		double inverseZ = 1.0 / directionZ;
+
+		double bestTimeHit = Double.POSITIVE_INFINITY;
+		Shape bestShape = null;
+		SphereBatch.Hit batchHit = result.getBatchHit();
+
+		// Depth-first traversal with an explicit stack of the nodes still to be
+		// visited. The child on the near side of the split is visited first, so
+		// the far child is more likely to be culled by the closest hit so far.
+		int[] stack = result.getIntegerScratch(this.depth + 1);
+		int stackSize = 0;
+		int node = 0;
+
+		while (true) {
+
+			if (this.intersectsNode(node, originX, originY, originZ,
+					inverseX, inverseY, inverseZ, bestTimeHit)) {
+
+				int count = this.nodeCounts[node];
+
+				if (count > 0 && this.batch != null) {
+					int first = this.nodeOffsets[node];
+					if (this.batch.closestHit(ray, first, first + count, bestTimeHit, batchHit)) {
+						bestTimeHit = batchHit.timeHit;
+						bestShape = this.primitives[batchHit.index];
+					}
+				}
+				else if (count > 0) {
+					int first = this.nodeOffsets[node];
+					for (int i = first; i < first + count; i++) {
+						double timeHit = this.primitives[i].calculateHitTime(ray);
+						if (bestTimeHit > timeHit) {
+							bestTimeHit = timeHit;
+							bestShape = this.primitives[i];
+						}
+					}
+				}
+				else {
+					int axis = this.nodeAxes[node];
+					double direction = (axis == 0) ? directionX : (axis == 1) ? directionY : directionZ;
+
+					if (direction < 0) {
+						stack[stackSize++] = node + 1;
+						node = this.nodeOffsets[node];
+					}
+					else {
+						stack[stackSize++] = this.nodeOffsets[node];
+						node = node + 1;
+					}
+					continue;
+				}
+			}
+
+			if (stackSize == 0) {
+				break;
+			}
+			node = stack[--stackSize];
+		}
+
+		result.shape = bestShape;
+		result.timeHit = bestTimeHit;
+		return bestShape != null;
+	}
+
+	@Override
+	public void closestHits (RayPacket packet, Intersection scratch) {
+
+		// Guard clause: the rays of an incoherent packet visit the children of
+		// a node in different orders, and its bounds bound nothing; it falls
+		// back to tracing one ray at a time.
+		if (!packet.isCoherent()) {
+			Accelerator.super.closestHits(packet, scratch);
+			return;
+		}
+
+		int size = packet.size();
+		for (int i = 0; i < size; i++) {
+			packet.setHit(i, null, Double.POSITIVE_INFINITY);
+		}
+		if (this.nodeCount == 0) {
+			return;
+		}
+
+		// The time past which no ray of the packet needs a hit anymore
+		double packetTimeHit = Double.POSITIVE_INFINITY;
+
+		// Same traversal as closestHit, for the whole packet. A node is first
+		// tested against the bounds of the packet, which culls it for all the
+		// rays at once. Otherwise, the rays are tested in order until one hits
+		// the node; the rays before it are inactive in the whole subtree, since
+		// the boxes of the children are within the box of the node. The stack
+		// holds the node, and the first active ray of the packet for it.
+		int[] stack = scratch.getIntegerScratch(2 * (this.depth + 1));
+		int stackSize = 0;
+		int node = 0;
+		int first = 0;
+
+		while (true) {
+
+			if (this.intersectsPacket(node, packet, packetTimeHit)) {
+
+				while (first < size && !this.intersectsNode(node, 
+						packet.getOriginX(first), packet.getOriginY(first), packet.getOriginZ(first),
+						packet.getInverseX(first), packet.getInverseY(first), packet.getInverseZ(first),
+						packet.getTimeHit(first))) {
+					first++;
+				}
+			}
+			else {
+				first = size;
+			}
+
+			if (first < size) {
+
+				int count = this.nodeCounts[node];
+				int offset = this.nodeOffsets[node];
+
+				if (count > 0) {
+					if (this.batch != null) {
+						this.batch.closestHits(packet, first, offset, offset + count);
+					}
+					else {
+						for (int r = first; r < size; r++) {
+							Ray ray = packet.getRay(r);
+							for (int i = offset; i < offset + count; i++) {
+								double timeHit = this.primitives[i].calculateHitTime(ray);
+								if (packet.getTimeHit(r) > timeHit) {
+									packet.setHit(r, this.primitives[i], timeHit);
+								}
+							}
+						}
+					}
+
+					packetTimeHit = 0.0;
+					for (int r = 0; r < size; r++) {
+						packetTimeHit = Math.max(packetTimeHit, packet.getTimeHit(r));
+					}
+				}
+				else {
+					// All the rays have the same direction signs, so the near
+					// child of the first active ray is near for all of them.
+					int axis = this.nodeAxes[node];
+					double direction = (axis == 0) ? packet.getDirectionX(first) : 
+							(axis == 1) ? packet.getDirectionY(first) : packet.getDirectionZ(first);
+
+					stack[stackSize++] = (direction < 0) ? node + 1 : offset;
+					stack[stackSize++] = first;
+					node = (direction < 0) ? offset : node + 1;
+					continue;
+				}
+			}
+
+			if (stackSize == 0) {
+				break;
+			}
+			first = stack[--stackSize];
+			node = stack[--stackSize];
+		}
+	}
+
+	@Override
+	public boolean anyHit (Ray ray, double minTime, double maxTime, Intersection scratch) {
+
+		if (this.nodeCount == 0) {
+			return false;
+		}
+
+		double originX = ray.getOriginX();
+		double originY = ray.getOriginY();
+		double originZ = ray.getOriginZ();
+		double directionX = ray.getDirectionX();
+		double directionY = ray.getDirectionY();
+		double directionZ = ray.getDirectionZ();
+		double inverseX = 1.0 / directionX;
+		double inverseY = 1.0 / directionY;
+		double inverseZ = 1.0 / directionZ;
+
+		// Same traversal as closestHit, but any hit ends the query. The near
+		// child is still visited first, since occluders near the origin are
+		// the most likely to be hit.
+		int[] stack = scratch.getIntegerScratch(this.depth + 1);
+		int stackSize = 0;
+		int node = 0;
+
+		while (true) {
+
+			if (this.intersectsNode(node, originX, originY, originZ,
+					inverseX, inverseY, inverseZ, maxTime)) {
+
+				int count = this.nodeCounts[node];
+				int first = this.nodeOffsets[node];
+
+				if (count > 0 && this.batch != null) {
+					if (this.batch.anyHit(ray, first, first + count, minTime, maxTime)) {
+						return true;
+					}
+				}
+				else if (count > 0) {
+					for (int i = first; i < first + count; i++) {
+						if (this.primitives[i].anyHit(ray, minTime, maxTime)) {
+							return true;
+						}
+					}
+				}
+				else {
+					int axis = this.nodeAxes[node];
+					double direction = (axis == 0) ? directionX : (axis == 1) ? directionY : directionZ;
+
+					if (direction < 0) {
+						stack[stackSize++] = node + 1;
+						node = first;
+					}
+					else {
+						stack[stackSize++] = first;
+						node = node + 1;
+					}
+					continue;
+				}
+			}
+
+			if (stackSize == 0) {
+				return false;
+			}
+			node = stack[--stackSize];
+		}
+	}
+
+	/**
+	 * Gets the number of shapes enclosed by this hierarchy.
+	 * @return    the number of shapes
+	 */
+	public int getShapeCount () {
+		return this.primitives.length;
+	}
+
+	/**
+	 * Gets the number of nodes in this hierarchy.
+	 * @return    the number of nodes
+	 */
+	public int getNodeCount () {
+		return this.nodeCount;
+	}
+
+	/**
+	 * Checks if the leaves of this hierarchy are tested with a SphereBatch.
+	 * @return    true if every shape is a Sphere, false otherwise
+	 */
+	public boolean isPacked () {
+		return this.batch != null;
+	}
+
+	/**
+	 * Gets the depth of this hierarchy, i.e. the number of inner nodes on the
+	 * longest path from the root to a leaf.
+	 * @return    the depth of this hierarchy
+	 */
+	public int getDepth () {
+		return this.depth;
+	}
+
+	/**
+	 * Refits this hierarchy over the given shapes, which replace the shapes of
+	 * the same index in the list the hierarchy was built over (i.e. the same
+	 * shapes, moved). The tree is kept, and the bounds of its nodes are
+	 * recomputed, in time linear in the number of shapes. This hierarchy is
+	 * left untouched, so it may still be queried while the refit one is made.
+	 *
+	 * @param shapes    the shapes to be enclosed by the hierarchy
+	 * @return          the refit hierarchy
+	 * @throws IllegalArgumentException    if the number of shapes changed, or the
+	 *                                     leaves are packed and a shape is not a Sphere
+	 */
+	public BoundingVolumeHierarchy refit (List<Shape> shapes) {
+		if (shapes.size() != this.primitives.length) {
+			throw new IllegalArgumentException("A refit needs the same number of shapes");
+		}
+		if (this.batch != null && !SphereBatch.accepts(shapes)) {
+			throw new IllegalArgumentException("A refit of packed leaves needs spheres");
+		}
+		return new BoundingVolumeHierarchy(this, shapes);
+	}
+
+	/**
+	 * Gets the cost of this hierarchy by the Surface Area Heuristic: the
+	 * expected cost of tracing a ray through it, in shape intersections, for
+	 * a ray that hits the bounds of the root. The cost of a refit hierarchy
+	 * grows as its shapes move away from where it was built, so the ratio to
+	 * the cost of the built hierarchy tells when a rebuild pays off.
+	 *
+	 * @return    the cost of this hierarchy, zero if it is empty
+	 */
+	public double getCost () {
+		if (this.nodeCount == 0) {
+			return 0.0;
+		}
+		double cost = 0.0;
+		for (int node = 0; node < this.nodeCount; node++) {
+			double area = surfaceArea(this.nodeBounds, 6 * node);
+			cost += (this.nodeCounts[node] > 0) ? this.nodeCounts[node] * area : TRAVERSAL_COST * area;
+		}
+		double rootArea = surfaceArea(this.nodeBounds, 0);
+		return (rootArea > 0) ? cost / rootArea : this.primitives.length;
+	}
+
+	/**
+	 * Writes the arrays of this hierarchy, to be loaded over the same shapes
+	 * (See AcceleratorCache).
+	 *
+	 * @param output    the output of the arrays
+	 * @throws IOException    if the arrays cannot be written
+	 */
+	void write (AcceleratorCache.Output output) throws IOException {
+		output.writeInt(this.depth);
+		output.writeInts(this.primitiveIndices);
+		output.writeDoubles(this.nodeBounds);
+		output.writeInts(this.nodeOffsets);
+		output.writeInts(this.nodeCounts);
+		output.writeInts(this.nodeAxes);
+	}
+
+
+	/**
+	 * Packs the given primitives, which are all spheres, into a batch.
+	 */
+	private static SphereBatch createBatch (Shape[] primitives) {
+		List<Sphere> spheres = new ArrayList<Sphere>(primitives.length);
+		for (Shape primitive : primitives) {
+			spheres.add((Sphere) primitive);
+		}
+		return new SphereBatch(spheres);
+	}
+
+	/**
+	 * Grows the bounds of the node at the given offset to enclose the given box.
+	 */
+	private void grow (int offset, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		double[] bounds = this.nodeBounds;
+		bounds[offset] = Math.min(bounds[offset], minX);
+		bounds[offset + 1] = Math.min(bounds[offset + 1], minY);
+		bounds[offset + 2] = Math.min(bounds[offset + 2], minZ);
+		bounds[offset + 3] = Math.max(bounds[offset + 3], maxX);
+		bounds[offset + 4] = Math.max(bounds[offset + 4], maxY);
+		bounds[offset + 5] = Math.max(bounds[offset + 5], maxZ);
+	}
+
+	/**
+	 * Grows the bounds of the node at the given offset to enclose the bounds
+	 * at the given offset of the given array.
+	 */
+	private void grow (int offset, double[] bounds, int boundsOffset) {
+		this.grow(offset, bounds[boundsOffset], bounds[boundsOffset + 1], bounds[boundsOffset + 2],
+				bounds[boundsOffset + 3], bounds[boundsOffset + 4], bounds[boundsOffset + 5]);
+	}
+
+	/**
+	 * Computes the surface area of the bounds at the given offset.
+	 */
+	private static double surfaceArea (double[] bounds, int offset) {
+		double dx = bounds[offset + 3] - bounds[offset];
+		double dy = bounds[offset + 4] - bounds[offset + 1];
+		double dz = bounds[offset + 5] - bounds[offset + 2];
+		return 2.0 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Tests the ray against the bounding box of the given node with the slab
+	 * method, limited to the hits between the ray origin and the given time.
+	 */
+	private boolean intersectsNode (int node, double originX, double originY, double originZ,
+			double inverseX, double inverseY, double inverseZ, double maxTime) {
+
+		int offset = 6 * node;
+		double near = 0.0;
+		double far = maxTime;
+
+		double timeOne = (this.nodeBounds[offset] - originX) * inverseX;
+		double timeTwo = (this.nodeBounds[offset + 3] - originX) * inverseX;
+		near = Math.max(near, Math.min(timeOne, timeTwo));
+		far = Math.min(far, Math.max(timeOne, timeTwo));
+
+		timeOne = (this.nodeBounds[offset + 1] - originY) * inverseY;
+		timeTwo = (this.nodeBounds[offset + 4] - originY) * inverseY;
+		near = Math.max(near, Math.min(timeOne, timeTwo));
+		far = Math.min(far, Math.max(timeOne, timeTwo));
+
+		timeOne = (this.nodeBounds[offset + 2] - originZ) * inverseZ;
+		timeTwo = (this.nodeBounds[offset + 5] - originZ) * inverseZ;
+		near = Math.max(near, Math.min(timeOne, timeTwo));
+		far = Math.min(far, Math.max(timeOne, timeTwo));
+
+		// A ray parallel to a slab, starting on its boundary, yields NaN times.
+		// Such a ray is treated as a hit; the shapes are tested exactly anyway.
+		return !(near > far);
+	}
+
+	/**
+	 * Tests the bounds of the given packet against the bounding box of the given
+	 * node with interval arithmetic, limited to the hits between the ray origins
+	 * and the given time. The times of every ray of the packet are within the 
+	 * times computed from the bounds, so if the bounds miss the box, every ray
+	 * of the packet does. The packet must be coherent.
+	 */
+	private boolean intersectsPacket (int node, RayPacket packet, double maxTime) {
+
+		int offset = 6 * node;
+		double near = 0.0;
+		double far = maxTime;
+
+		for (int axis = 0; axis < 3; axis++) {
+			double originMin = packet.getOriginBound(axis);
+			double originMax = packet.getOriginBound(axis + 3);
+			double inverseMin = packet.getInverseBound(axis);
+			double inverseMax = packet.getInverseBound(axis + 3);
+
+			// The rays enter the slab through the min plane if their direction
+			// is positive, and through the max plane otherwise.
+			double entry = (inverseMin < 0) ? this.nodeBounds[offset + axis + 3] : this.nodeBounds[offset + axis];
+			double exit = (inverseMin < 0) ? this.nodeBounds[offset + axis] : this.nodeBounds[offset + axis + 3];
+
+			double entryOne = (entry - originMin) * inverseMin;
+			double entryTwo = (entry - originMin) * inverseMax;
+			double entryThree = (entry - originMax) * inverseMin;
+			double entryFour = (entry - originMax) * inverseMax;
+			near = Math.max(near, Math.min(Math.min(entryOne, entryTwo), Math.min(entryThree, entryFour)));
+
+			double exitOne = (exit - originMin) * inverseMin;
+			double exitTwo = (exit - originMin) * inverseMax;
+			double exitThree = (exit - originMax) * inverseMin;
+			double exitFour = (exit - originMax) * inverseMax;
+			far = Math.min(far, Math.max(Math.max(exitOne, exitTwo), Math.max(exitThree, exitFour)));
+		}
+
+		return !(near > far);
+	}
+
+	/**
+	 * Writes the given build node and its subtree into the flat arrays in
+	 * depth-first order, starting at the given index.
+	 */
+	private void flatten (BuildNode buildNode, int index) {
+
+		System.arraycopy(buildNode.bounds, 0, this.nodeBounds, 6 * index, 6);
+
+		if (buildNode.left == null) {
+			this.nodeOffsets[index] = buildNode.start;
+			this.nodeCounts[index] = buildNode.count;
+			return;
+		}
+
+		int secondChild = index + 1 + buildNode.left.size;
+		this.nodeOffsets[index] = secondChild;
+		this.nodeCounts[index] = 0;
+		this.nodeAxes[index] = buildNode.axis;
+
+		this.flatten(buildNode.left, index + 1);
+		this.flatten(buildNode.right, secondChild);
+	}
+
+
+	/**
+	 * The BuildNode is a private static inner class of the BoundingVolumeHierarchy,
+	 * holding a node of the tree while it is being built, before it is flattened.
+	 * A leaf has no children, and covers the primitives in [start, start + count).
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class BuildNode {
+		private final double[] bounds = new double[6];
+		private BuildNode left;
+		private BuildNode right;
+		private int start;
+		private int count;
+		private int axis;
+		private int size;
+		private int depth;
+	}
+
+
+	/**
+	 * The BuildTask is a private static inner class of the BoundingVolumeHierarchy.
+	 * The task builds the subtree over a range of the primitive indices, and
+	 * partitions that range in place, so that the tasks of sibling subtrees
+	 * never touch the same indices and can run in parallel.
+	 *
+	 * @author Jin W. Roh
+	 * @version 1.0.0
+	 */
+	private static final class BuildTask extends RecursiveTask<BuildNode> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The bounding boxes (6 per primitive) and the centroids (3 per primitive)
+		 * of all primitives, the shared index array, the range of indices covered
+		 * by this task, the largest leaf, and whether leaves up to that size are
+		 * always kept (for packed spheres).
+		 */
+		private final double[] boxes;
+		private final double[] centroids;
+		private final int[] indices;
+		private final int start;
+		private final int end;
+		private final int maxLeafSize;
+		private final boolean packed;
+
+
+		/**
+		 * Constructs a BuildTask over the range [start, end) of the indices.
+		 *
+		 * @param boxes          the bounding boxes of all primitives
+		 * @param centroids      the centroids of all primitives
+		 * @param indices        the primitive indices, partitioned in place
+		 * @param start          the first index of the range
+		 * @param end            the index after the last index of the range
+		 * @param maxLeafSize    the largest leaf that may be kept
+		 * @param packed         true if leaves up to maxLeafSize are always kept
+		 */
+		public BuildTask (double[] boxes, double[] centroids, int[] indices, int start, int end,
+				int maxLeafSize, boolean packed) {
+			this.boxes = boxes;
+			this.centroids = centroids;
+			this.indices = indices;
+			this.start = start;
+			this.end = end;
+			this.maxLeafSize = maxLeafSize;
+			this.packed = packed;
+		}
+
+		@Override
+		protected BuildNode compute () {
+
+			BuildNode node = new BuildNode();
+			int count = this.end - this.start;
+
+			// Bounds of the primitives, and the bounds of their centroids
+			double[] bounds = node.bounds;
+			double[] centroidBounds = new double[6];
+			for (int axis = 0; axis < 3; axis++) {
+				bounds[axis] = centroidBounds[axis] = Double.POSITIVE_INFINITY;
+				bounds[axis + 3] = centroidBounds[axis + 3] = Double.NEGATIVE_INFINITY;
+			}
+			for (int i = this.start; i < this.end; i++) {
+				int primitive = this.indices[i];
+				for (int axis = 0; axis < 3; axis++) {
+					bounds[axis] = Math.min(bounds[axis], this.boxes[6 * primitive + axis]);
+					bounds[axis + 3] = Math.max(bounds[axis + 3], this.boxes[6 * primitive + axis + 3]);
+					centroidBounds[axis] = Math.min(centroidBounds[axis], this.centroids[3 * primitive + axis]);
+					centroidBounds[axis + 3] = Math.max(centroidBounds[axis + 3], this.centroids[3 * primitive + axis]);
+				}
+			}
+
+			// Split along the axis with the largest centroid extent. If all centroids
+			// coincide, no split can separate the primitives.
+			int axis = 0;
+			for (int i = 1; i < 3; i++) {
+				if (centroidBounds[i + 3] - centroidBounds[i] > centroidBounds[axis + 3] - centroidBounds[axis]) {
+					axis = i;
+				}
+			}
+			double extentMin = centroidBounds[axis];
+			double extent = centroidBounds[axis + 3] - extentMin;
+
+			if (count == 1 || !(extent > 0) || (this.packed && count <= this.maxLeafSize)) {
+				return this.makeLeaf(node, count);
+			}
+
+			// Bin the primitives by their centroids
+			int[] binCounts = new int[BIN_COUNT];
+			double[] binBounds = new double[6 * BIN_COUNT];
+			for (int bin = 0; bin < BIN_COUNT; bin++) {
+				for (int i = 0; i < 3; i++) {
+					binBounds[6 * bin + i] = Double.POSITIVE_INFINITY;
+					binBounds[6 * bin + i + 3] = Double.NEGATIVE_INFINITY;
+				}
+			}
+			for (int i = this.start; i < this.end; i++) {
+				int primitive = this.indices[i];
+				int bin = binOf(this.centroids[3 * primitive + axis], extentMin, extent);
+				binCounts[bin]++;
+				for (int j = 0; j < 6; j++) {
+					binBounds[6 * bin + j] = (j < 3) ?
+							Math.min(binBounds[6 * bin + j], this.boxes[6 * primitive + j]) :
+							Math.max(binBounds[6 * bin + j], this.boxes[6 * primitive + j]);
+				}
+			}
+
+			// Sweep from the right to collect the cost of the right side of each
+			// split, then sweep from the left and evaluate the SAH of each split.
+			// The SAH is scaled by the node area, which does not change the best split.
+			double[] rightCosts = new double[BIN_COUNT];
+			double[] sweep = emptyBounds();
+			int sweepCount = 0;
+			for (int bin = BIN_COUNT - 1; bin > 0; bin--) {
+				sweepCount += binCounts[bin];
+				grow(sweep, binBounds, bin);
+				rightCosts[bin] = sweepCount * surfaceArea(sweep);
+			}
+
+			int bestSplit = -1;
+			double bestCost = Double.POSITIVE_INFINITY;
+			sweep = emptyBounds();
+			sweepCount = 0;
+			for (int bin = 0; bin < BIN_COUNT - 1; bin++) {
+				sweepCount += binCounts[bin];
+				grow(sweep, binBounds, bin);
+				if (sweepCount == 0 || sweepCount == count) {
+					continue;
+				}
+				double cost = sweepCount * surfaceArea(sweep) + rightCosts[bin + 1];
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestSplit = bin;
+				}
+			}
+
+			double nodeArea = surfaceArea(bounds);
+			double leafCost = count * nodeArea;
+			double splitCost = TRAVERSAL_COST * nodeArea + bestCost;
+
+			if (bestSplit < 0 || (count <= this.maxLeafSize && splitCost >= leafCost)) {
+				return this.makeLeaf(node, count);
+			}
+
+			// Partition the indices in place: the bins up to the best split go left
+			int left = this.start;
+			int right = this.end - 1;
+			while (left <= right) {
+				int primitive = this.indices[left];
+				if (binOf(this.centroids[3 * primitive + axis], extentMin, extent) <= bestSplit) {
+					left++;
+				}
+				else {
+					this.indices[left] = this.indices[right];
+					this.indices[right] = primitive;
+					right--;
+				}
+			}
+			int middle = left;
+
+			BuildTask leftTask = new BuildTask(this.boxes, this.centroids, this.indices, 
+					this.start, middle, this.maxLeafSize, this.packed);
+			BuildTask rightTask = new BuildTask(this.boxes, this.centroids, this.indices, 
+					middle, this.end, this.maxLeafSize, this.packed);
+
+			if (count > PARALLEL_THRESHOLD) {
+				leftTask.fork();
+				node.right = rightTask.compute();
+				node.left = leftTask.join();
+			}
+			else {
+				node.left = leftTask.compute();
+				node.right = rightTask.compute();
+			}
+
+			node.axis = axis;
+			node.size = 1 + node.left.size + node.right.size;
+			node.depth = 1 + Math.max(node.left.depth, node.right.depth);
+			return node;
+		}
+
+		/**
+		 * Turns the given node into a leaf over the whole range of this task.
+		 */
+		private BuildNode makeLeaf (BuildNode node, int count) {
+			node.start = this.start;
+			node.count = count;
+			node.size = 1;
+			node.depth = 0;
+			return node;
+		}
+
+		/**
+		 * Computes the bin of a centroid coordinate along the split axis.
+		 */
+		private static int binOf (double centroid, double extentMin, double extent) {
+			int bin = (int) (BIN_COUNT * ((centroid - extentMin) / extent));
+			return Math.min(BIN_COUNT - 1, Math.max(0, bin));
+		}
+
+		/**
+		 * Creates empty bounds, that any box grows.
+		 */
+		private static double[] emptyBounds () {
+			return new double[] {
+					Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+					Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		}
+
+		/**
+		 * Grows the bounds to enclose the bounds of the given bin.
+		 */
+		private static void grow (double[] bounds, double[] binBounds, int bin) {
+			for (int i = 0; i < 3; i++) {
+				bounds[i] = Math.min(bounds[i], binBounds[6 * bin + i]);
+				bounds[i + 3] = Math.max(bounds[i + 3], binBounds[6 * bin + i + 3]);
+			}
+		}
+
+		/**
+		 * Computes the surface area of the given bounds; zero for empty bounds.
+		 */
+		private static double surfaceArea (double[] bounds) {
+			double dx = bounds[3] - bounds[0];
+			double dy = bounds[4] - bounds[1];
+			double dz = bounds[5] - bounds[2];
+			if (dx < 0 || dy < 0 || dz < 0) {
+				return 0.0;
+			}
+			return 2.0 * (dx * dy + dy * dz + dz * dx);
+		}
+	}
+}
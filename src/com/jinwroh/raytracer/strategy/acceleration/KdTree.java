@@ -0,0 +1,515 @@
+package com.jinwroh.raytracer.strategy.acceleration;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.jinwroh.raytracer.geometric.BoundingBox;
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * The KdTree class is a concrete implementation of the Accelerator interface.
+ * Space is split recursively by axis-aligned planes, and every leaf lists the
+ * shapes whose bounding boxes overlap its region. Unlike a bounding volume
+ * hierarchy, the regions never overlap, so a ray visits the leaves strictly
+ * front to back and stops at the first leaf that contains a hit. A shape that
+ * straddles a plane is listed on both sides. This suits sparse scenes of
+ * small, separate shapes well.
+ *
+ * The split planes are chosen with a binned Surface Area Heuristic. The tree
+ * is stored in flat arrays: the first child of a node directly follows it,
+ * and the node stores the index of its second child. These arrays are what an
+ * AcceleratorCache stores.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class KdTree implements Accelerator {
+
+	/**
+	 * The build parameters: the number of candidate planes per split, the leaf
+	 * size that is never split, and the cost of visiting a node relative to the
+	 * cost of intersecting a shape.
+	 */
+	private static final int BIN_COUNT = 32;
+	private static final int MIN_LEAF_SIZE = 2;
+	private static final double TRAVERSAL_COST = 1.0;
+
+	private final Shape[] shapes;
+	private final double[] bounds = new double[6];
+
+	/**
+	 * The flattened nodes. For an inner node, the axis is 0, 1 or 2, the split
+	 * is the position of the plane, and the offset is the index of the second
+	 * child. For a leaf, the axis is 3, and its shapes are leafItems[offset] up
+	 * to leafItems[offset + count].
+	 */
+	private int[] nodeAxes = new int[64];
+	private double[] nodeSplits = new double[64];
+	private int[] nodeOffsets = new int[64];
+	private int[] nodeCounts = new int[64];
+	private int nodeCount;
+	private int[] leafItems = new int[64];
+	private int leafItemCount;
+	private int depth;
+
+	/**
+	 * The bounding boxes of the shapes, only kept while the tree is built.
+	 */
+	private double[] boxes;
+
+
+	/**
+	 * Constructs a KdTree over the given shapes.
+	 *
+	 * @param shapes    the shapes to be indexed by the tree
+	 */
+	public KdTree (List<Shape> shapes) {
+
+		int size = shapes.size();
+		this.shapes = shapes.toArray(new Shape[size]);
+		this.boxes = new double[6 * size];
+
+		for (int axis = 0; axis < 3; axis++) {
+			this.bounds[axis] = Double.POSITIVE_INFINITY;
+			this.bounds[axis + 3] = Double.NEGATIVE_INFINITY;
+		}
+		int[] items = new int[size];
+		for (int i = 0; i < size; i++) {
+			BoundingBox box = this.shapes[i].getBoundingBox();
+			this.boxes[6 * i] = box.getMin().getX();
+			this.boxes[6 * i + 1] = box.getMin().getY();
+			this.boxes[6 * i + 2] = box.getMin().getZ();
+			this.boxes[6 * i + 3] = box.getMax().getX();
+			this.boxes[6 * i + 4] = box.getMax().getY();
+			this.boxes[6 * i + 5] = box.getMax().getZ();
+			for (int axis = 0; axis < 3; axis++) {
+				this.bounds[axis] = Math.min(this.bounds[axis], this.boxes[6 * i + axis]);
+				this.bounds[axis + 3] = Math.max(this.bounds[axis + 3], this.boxes[6 * i + axis + 3]);
+			}
+			items[i] = i;
+		}
+
+		if (size > 0) {
+			// The usual depth limit: 8 + 1.3 log2(n), See Physically Based Rendering
+			int maxDepth = (int) Math.round(8 + 1.3 * (Math.log(size) / Math.log(2)));
+			this.build(items, size, this.bounds.clone(), maxDepth, 0);
+		}
+
+		this.boxes = null;
+		this.nodeAxes = Arrays.copyOf(this.nodeAxes, this.nodeCount);
+		this.nodeSplits = Arrays.copyOf(this.nodeSplits, this.nodeCount);
+		this.nodeOffsets = Arrays.copyOf(this.nodeOffsets, this.nodeCount);
+		this.nodeCounts = Arrays.copyOf(this.nodeCounts, this.nodeCount);
+		this.leafItems = Arrays.copyOf(this.leafItems, this.leafItemCount);
+	}
+
+	/**
+	 * Constructs a KdTree over the given shapes, from the arrays of a tree
+	 * built over the same shapes (See AcceleratorCache).
+	 *
+	 * @param shapes    the shapes indexed by the tree
+	 * @param input     the arrays of the tree, as written by write
+	 * @throws IOException    if the arrays cannot be read, or do not fit the shapes
+	 */
+	KdTree (List<Shape> shapes, AcceleratorCache.Input input) throws IOException {
+
+		this.shapes = shapes.toArray(new Shape[shapes.size()]);
+		double[] bounds = input.readDoubles();
+		this.depth = input.readInt();
+		this.nodeAxes = input.readInts();
+		this.nodeSplits = input.readDoubles();
+		this.nodeOffsets = input.readInts();
+		this.nodeCounts = input.readInts();
+		this.leafItems = input.readInts();
+		this.nodeCount = this.nodeAxes.length;
+		this.leafItemCount = this.leafItems.length;
+
+		if (bounds.length != 6 || this.nodeSplits.length != this.nodeCount
+				|| this.nodeOffsets.length != this.nodeCount || this.nodeCounts.length != this.nodeCount) {
+			throw new IOException("corrupt");
+		}
+		System.arraycopy(bounds, 0, this.bounds, 0, 6);
+	}
+
+
+	@Override
+	public boolean closestHit (Ray ray, Intersection result) {
+
+		result.shape = null;
+		if (this.nodeCount == 0) {
+			return false;
+		}
+
+		double originX = ray.getOriginX();
+		double originY = ray.getOriginY();
+		double originZ = ray.getOriginZ();
+		double directionX = ray.getDirectionX();
+		double directionY = ray.getDirectionY();
+		double directionZ = ray.getDirectionZ();
+
+		// Clip the ray against the bounds of the tree
+		double entry = 0.0;
+		double exit = Double.POSITIVE_INFINITY;
+		for (int axis = 0; axis < 3; axis++) {
+			double origin = (axis == 0) ? originX : (axis == 1) ? originY : originZ;
+			double inverse = 1.0 / ((axis == 0) ? directionX : (axis == 1) ? directionY : directionZ);
+			double timeOne = (this.bounds[axis] - origin) * inverse;
+			double timeTwo = (this.bounds[axis + 3] - origin) * inverse;
+			entry = Math.max(entry, Math.min(timeOne, timeTwo));
+			exit = Math.min(exit, Math.max(timeOne, timeTwo));
+		}
+		if (entry > exit) {
+			return false;
+		}
+
+		double bestTimeHit = Double.POSITIVE_INFINITY;
+		Shape bestShape = null;
+
+		// Front to back traversal. The stack keeps the far children still to be
+		// visited, with the part of the ray [near, far] that lies inside them.
+		// The near and far times of the stack are interleaved in one array.
+		int[] stackNodes = result.getIntegerScratch(this.depth + 1);
+		double[] stackTimes = result.getDoubleScratch(2 * (this.depth + 1));
+		int stackSize = 0;
+
+		int node = 0;
+		double near = entry;
+		double far = exit;
+
+		while (true) {
+
+			if (near > bestTimeHit) {
+				break;
+			}
+
+			int axis = this.nodeAxes[node];
+
+			if (axis < 3) {
+				double split = this.nodeSplits[node];
+				double origin = (axis == 0) ? originX : (axis == 1) ? originY : originZ;
+				double direction = (axis == 0) ? directionX : (axis == 1) ? directionY : directionZ;
+				double time = (split - origin) / direction;
+
+				// The child on the origin side of the plane is the near child
+				boolean belowFirst = (origin < split) ||
+						(origin == split && direction <= 0);
+				int first = belowFirst ? node + 1 : this.nodeOffsets[node];
+				int second = belowFirst ? this.nodeOffsets[node] : node + 1;
+
+				// A plane behind the origin (or a ray within it) only leaves the near child
+				if (time > far || !(time > 0)) {
+					node = first;
+				}
+				else if (time < near) {
+					node = second;
+				}
+				else {
+					stackNodes[stackSize] = second;
+					stackTimes[2 * stackSize] = time;
+					stackTimes[2 * stackSize + 1] = far;
+					stackSize++;
+					node = first;
+					far = time;
+				}
+				continue;
+			}
+
+			int offset = this.nodeOffsets[node];
+			for (int i = offset; i < offset + this.nodeCounts[node]; i++) {
+				Shape shape = this.shapes[this.leafItems[i]];
+				if (shape == bestShape) {
+					continue;
+				}
+				double timeHit = shape.calculateHitTime(ray);
+				if (bestTimeHit > timeHit) {
+					bestTimeHit = timeHit;
+					bestShape = shape;
+				}
+			}
+
+			// The leaves are visited in order, so a hit inside this leaf is final
+			if (bestTimeHit <= far || stackSize == 0) {
+				break;
+			}
+
+			stackSize--;
+			node = stackNodes[stackSize];
+			near = stackTimes[2 * stackSize];
+			far = stackTimes[2 * stackSize + 1];
+		}
+
+		result.shape = bestShape;
+		result.timeHit = bestTimeHit;
+		return bestShape != null;
+	}
+
+	@Override
+	public boolean anyHit (Ray ray, double minTime, double maxTime, Intersection scratch) {
+
+		if (this.nodeCount == 0) {
+			return false;
+		}
+
+		double originX = ray.getOriginX();
+		double originY = ray.getOriginY();
+		double originZ = ray.getOriginZ();
+		double directionX = ray.getDirectionX();
+		double directionY = ray.getDirectionY();
+		double directionZ = ray.getDirectionZ();
+
+		// Clip the ray against the bounds of the tree, and the end of the interval
+		double entry = 0.0;
+		double exit = maxTime;
+		for (int axis = 0; axis < 3; axis++) {
+			double origin = (axis == 0) ? originX : (axis == 1) ? originY : originZ;
+			double inverse = 1.0 / ((axis == 0) ? directionX : (axis == 1) ? directionY : directionZ);
+			double timeOne = (this.bounds[axis] - origin) * inverse;
+			double timeTwo = (this.bounds[axis + 3] - origin) * inverse;
+			entry = Math.max(entry, Math.min(timeOne, timeTwo));
+			exit = Math.min(exit, Math.max(timeOne, timeTwo));
+		}
+		if (entry > exit) {
+			return false;
+		}
+
+		// Same front to back traversal as closestHit, which finds the nearest
+		// occluders first; any hit within the interval ends the query.
+		int[] stackNodes = scratch.getIntegerScratch(this.depth + 1);
+		double[] stackTimes = scratch.getDoubleScratch(2 * (this.depth + 1));
+		int stackSize = 0;
+
+		int node = 0;
+		double near = entry;
+		double far = exit;
+
+		while (true) {
+
+			int axis = this.nodeAxes[node];
+
+			if (axis < 3) {
+				double split = this.nodeSplits[node];
+				double origin = (axis == 0) ? originX : (axis == 1) ? originY : originZ;
+				double direction = (axis == 0) ? directionX : (axis == 1) ? directionY : directionZ;
+				double time = (split - origin) / direction;
+
+				boolean belowFirst = (origin < split) ||
+						(origin == split && direction <= 0);
+				int first = belowFirst ? node + 1 : this.nodeOffsets[node];
+				int second = belowFirst ? this.nodeOffsets[node] : node + 1;
+
+				if (time > far || !(time > 0)) {
+					node = first;
+				}
+				else if (time < near) {
+					node = second;
+				}
+				else {
+					stackNodes[stackSize] = second;
+					stackTimes[2 * stackSize] = time;
+					stackTimes[2 * stackSize + 1] = far;
+					stackSize++;
+					node = first;
+					far = time;
+				}
+				continue;
+			}
+
+			int offset = this.nodeOffsets[node];
+			for (int i = offset; i < offset + this.nodeCounts[node]; i++) {
+				if (this.shapes[this.leafItems[i]].anyHit(ray, minTime, maxTime)) {
+					return true;
+				}
+			}
+
+			if (stackSize == 0) {
+				return false;
+			}
+
+			stackSize--;
+			node = stackNodes[stackSize];
+			near = stackTimes[2 * stackSize];
+			far = stackTimes[2 * stackSize + 1];
+		}
+	}
+
+	/**
+	 * Gets the number of nodes in this tree.
+	 * @return    the number of nodes
+	 */
+	public int getNodeCount () {
+		return this.nodeCount;
+	}
+
+	/**
+	 * Gets the depth of this tree.
+	 * @return    the depth of this tree
+	 */
+	public int getDepth () {
+		return this.depth;
+	}
+
+	/**
+	 * Writes the arrays of this tree, to be loaded over the same shapes (See
+	 * AcceleratorCache).
+	 *
+	 * @param output    the output of the arrays
+	 * @throws IOException    if the arrays cannot be written
+	 */
+	void write (AcceleratorCache.Output output) throws IOException {
+		output.writeDoubles(this.bounds);
+		output.writeInt(this.depth);
+		output.writeInts(this.nodeAxes);
+		output.writeDoubles(this.nodeSplits);
+		output.writeInts(this.nodeOffsets);
+		output.writeInts(this.nodeCounts);
+		output.writeInts(this.leafItems);
+	}
+
+
+	/**
+	 * Builds the subtree over the given shapes and region, and returns the
+	 * index of its root node.
+	 */
+	private int build (int[] items, int count, double[] region, int maxDepth, int level) {
+
+		int node = this.allocateNode();
+		this.depth = Math.max(this.depth, level);
+
+		if (count <= MIN_LEAF_SIZE || level >= maxDepth) {
+			this.makeLeaf(node, items, count);
+			return node;
+		}
+
+		// Evaluate BIN_COUNT - 1 evenly spaced planes along each axis. The shapes
+		// below a plane start before it, the shapes above it end after it.
+		double regionArea = surfaceArea(region);
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestAxis = -1;
+		double bestSplit = 0.0;
+
+		for (int axis = 0; axis < 3; axis++) {
+
+			double low = region[axis];
+			double extent = region[axis + 3] - low;
+			if (!(extent > 0)) {
+				continue;
+			}
+
+			int[] starts = new int[BIN_COUNT];
+			int[] ends = new int[BIN_COUNT];
+			for (int i = 0; i < count; i++) {
+				int shape = items[i];
+				starts[binOf(this.boxes[6 * shape + axis], low, extent)]++;
+				ends[binOf(this.boxes[6 * shape + axis + 3], low, extent)]++;
+			}
+
+			int below = 0;
+			int above = count;
+			for (int bin = 0; bin < BIN_COUNT - 1; bin++) {
+				below += starts[bin];
+				above -= ends[bin];
+				double split = low + extent * (bin + 1) / BIN_COUNT;
+
+				double cost = TRAVERSAL_COST * regionArea
+						+ below * surfaceArea(region, axis, low, split)
+						+ above * surfaceArea(region, axis, split, region[axis + 3]);
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestAxis = axis;
+					bestSplit = split;
+				}
+			}
+		}
+
+		if (bestAxis < 0 || bestCost >= count * regionArea) {
+			this.makeLeaf(node, items, count);
+			return node;
+		}
+
+		int[] lowerItems = new int[count];
+		int[] upperItems = new int[count];
+		int lowerCount = 0;
+		int upperCount = 0;
+		for (int i = 0; i < count; i++) {
+			int shape = items[i];
+			if (this.boxes[6 * shape + bestAxis] <= bestSplit) {
+				lowerItems[lowerCount++] = shape;
+			}
+			if (this.boxes[6 * shape + bestAxis + 3] >= bestSplit) {
+				upperItems[upperCount++] = shape;
+			}
+		}
+
+		double[] lowerRegion = region.clone();
+		lowerRegion[bestAxis + 3] = bestSplit;
+		double[] upperRegion = region.clone();
+		upperRegion[bestAxis] = bestSplit;
+
+		// The arrays may grow while the children are built, so the node is only
+		// written once both children are done.
+		this.build(lowerItems, lowerCount, lowerRegion, maxDepth, level + 1);
+		int secondChild = this.build(upperItems, upperCount, upperRegion, maxDepth, level + 1);
+		this.nodeAxes[node] = bestAxis;
+		this.nodeSplits[node] = bestSplit;
+		this.nodeOffsets[node] = secondChild;
+		return node;
+	}
+
+	/**
+	 * Appends a new node to the flat arrays, and returns its index.
+	 */
+	private int allocateNode () {
+		if (this.nodeCount == this.nodeAxes.length) {
+			int capacity = 2 * this.nodeCount;
+			this.nodeAxes = Arrays.copyOf(this.nodeAxes, capacity);
+			this.nodeSplits = Arrays.copyOf(this.nodeSplits, capacity);
+			this.nodeOffsets = Arrays.copyOf(this.nodeOffsets, capacity);
+			this.nodeCounts = Arrays.copyOf(this.nodeCounts, capacity);
+		}
+		return this.nodeCount++;
+	}
+
+	/**
+	 * Turns the given node into a leaf over the given shapes.
+	 */
+	private void makeLeaf (int node, int[] items, int count) {
+		if (this.leafItemCount + count > this.leafItems.length) {
+			this.leafItems = Arrays.copyOf(this.leafItems, Math.max(2 * this.leafItems.length, this.leafItemCount + count));
+		}
+		System.arraycopy(items, 0, this.leafItems, this.leafItemCount, count);
+		this.nodeAxes[node] = 3;
+		this.nodeOffsets[node] = this.leafItemCount;
+		this.nodeCounts[node] = count;
+		this.leafItemCount += count;
+	}
+
+	/**
+	 * Computes the bin of a coordinate within the given extent.
+	 */
+	private static int binOf (double coordinate, double low, double extent) {
+		int bin = (int) (BIN_COUNT * ((coordinate - low) / extent));
+		return Math.min(BIN_COUNT - 1, Math.max(0, bin));
+	}
+
+	/**
+	 * Computes the surface area of the given bounds.
+	 */
+	private static double surfaceArea (double[] bounds) {
+		return surfaceArea(bounds, 0, bounds[0], bounds[3]);
+	}
+
+	/**
+	 * Computes the surface area of the given bounds, cut to [low, high] along
+	 * the given axis.
+	 */
+	private static double surfaceArea (double[] bounds, int axis, double low, double high) {
+		double dx = (axis == 0) ? high - low : bounds[3] - bounds[0];
+		double dy = (axis == 1) ? high - low : bounds[4] - bounds[1];
+		double dz = (axis == 2) ? high - low : bounds[5] - bounds[2];
+		return 2.0 * (dx * dy + dy * dz + dz * dx);
+	}
+}
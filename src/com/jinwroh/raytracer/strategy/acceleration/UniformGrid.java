@@ -0,0 +1,373 @@
+package com.jinwroh.raytracer.strategy.acceleration;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.jinwroh.raytracer.geometric.BoundingBox;
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * The UniformGrid class is a concrete implementation of the Accelerator
+ * interface. The bounds of the scene are split into a regular grid of equally
+ * sized cells, and every cell lists the shapes whose bounding boxes overlap it.
+ * A ray walks through the cells it passes, front to back, with the 3D-DDA
+ * algorithm of Amanatides and Woo, and stops at the first cell that contains
+ * a hit. This suits dense, evenly spread scenes (i.e. particle clouds) well.
+ * See: http://www.cse.yorku.ca/~amana/research/grid.pdf
+ *
+ * The cell lists are stored in compressed rows: the shapes of cell i are at
+ * cellItems[cellStarts[i]] up to cellItems[cellStarts[i + 1]]. These arrays
+ * are what an AcceleratorCache stores.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public class UniformGrid implements Accelerator {
+
+	/**
+	 * The target number of cells per shape, and the largest resolution along
+	 * a single axis.
+	 */
+	private static final double CELLS_PER_SHAPE = 2.0;
+	private static final int MAX_RESOLUTION = 256;
+
+	private final Shape[] shapes;
+
+	/**
+	 * The bounds of the grid (min x, min y, min z, max x, max y, max z),
+	 * the number of cells along each axis and the size of a cell.
+	 */
+	private final double[] bounds = new double[6];
+	private final int[] resolution = new int[3];
+	private final double[] cellSize = new double[3];
+
+	private final int[] cellStarts;
+	private final int[] cellItems;
+
+
+	/**
+	 * Constructs a UniformGrid over the given shapes.
+	 *
+	 * @param shapes    the shapes to be indexed by the grid
+	 */
+	public UniformGrid (List<Shape> shapes) {
+
+		int size = shapes.size();
+		this.shapes = shapes.toArray(new Shape[size]);
+
+		double[] boxes = new double[6 * size];
+		for (int axis = 0; axis < 3; axis++) {
+			this.bounds[axis] = Double.POSITIVE_INFINITY;
+			this.bounds[axis + 3] = Double.NEGATIVE_INFINITY;
+		}
+		for (int i = 0; i < size; i++) {
+			BoundingBox box = this.shapes[i].getBoundingBox();
+			boxes[6 * i] = box.getMin().getX();
+			boxes[6 * i + 1] = box.getMin().getY();
+			boxes[6 * i + 2] = box.getMin().getZ();
+			boxes[6 * i + 3] = box.getMax().getX();
+			boxes[6 * i + 4] = box.getMax().getY();
+			boxes[6 * i + 5] = box.getMax().getZ();
+			for (int axis = 0; axis < 3; axis++) {
+				this.bounds[axis] = Math.min(this.bounds[axis], boxes[6 * i + axis]);
+				this.bounds[axis + 3] = Math.max(this.bounds[axis + 3], boxes[6 * i + axis + 3]);
+			}
+		}
+
+		if (size == 0) {
+			this.cellStarts = new int[1];
+			this.cellItems = new int[0];
+			return;
+		}
+
+		// Choose the resolution so that the cells are roughly cubes, and there
+		// are about CELLS_PER_SHAPE cells for every shape.
+		double[] extent = new double[3];
+		double volume = 1.0;
+		for (int axis = 0; axis < 3; axis++) {
+			extent[axis] = Math.max(this.bounds[axis + 3] - this.bounds[axis], 1e-9);
+			this.bounds[axis + 3] = this.bounds[axis] + extent[axis];
+			volume *= extent[axis];
+		}
+		double cellsPerUnit = Math.cbrt(CELLS_PER_SHAPE * size / volume);
+		for (int axis = 0; axis < 3; axis++) {
+			int cells = (int) Math.ceil(extent[axis] * cellsPerUnit);
+			this.resolution[axis] = Math.max(1, Math.min(MAX_RESOLUTION, cells));
+			this.cellSize[axis] = extent[axis] / this.resolution[axis];
+		}
+
+		// Two passes over the shapes: count the shapes of every cell, then fill
+		// the cells once their starting offsets are known.
+		int cellCount = this.resolution[0] * this.resolution[1] * this.resolution[2];
+		this.cellStarts = new int[cellCount + 1];
+		int[] range = new int[6];
+
+		for (int i = 0; i < size; i++) {
+			this.cellRange(boxes, i, range);
+			for (int z = range[2]; z <= range[5]; z++) {
+				for (int y = range[1]; y <= range[4]; y++) {
+					for (int x = range[0]; x <= range[3]; x++) {
+						this.cellStarts[this.cellIndex(x, y, z) + 1]++;
+					}
+				}
+			}
+		}
+		for (int cell = 0; cell < cellCount; cell++) {
+			this.cellStarts[cell + 1] += this.cellStarts[cell];
+		}
+
+		this.cellItems = new int[this.cellStarts[cellCount]];
+		int[] fill = new int[cellCount];
+		for (int i = 0; i < size; i++) {
+			this.cellRange(boxes, i, range);
+			for (int z = range[2]; z <= range[5]; z++) {
+				for (int y = range[1]; y <= range[4]; y++) {
+					for (int x = range[0]; x <= range[3]; x++) {
+						int cell = this.cellIndex(x, y, z);
+						this.cellItems[this.cellStarts[cell] + fill[cell]++] = i;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Constructs a UniformGrid over the given shapes, from the arrays of a grid
+	 * built over the same shapes (See AcceleratorCache).
+	 *
+	 * @param shapes    the shapes indexed by the grid
+	 * @param input     the arrays of the grid, as written by write
+	 * @throws IOException    if the arrays cannot be read, or do not fit the shapes
+	 */
+	UniformGrid (List<Shape> shapes, AcceleratorCache.Input input) throws IOException {
+
+		this.shapes = shapes.toArray(new Shape[shapes.size()]);
+		double[] bounds = input.readDoubles();
+		int[] resolution = input.readInts();
+		double[] cellSize = input.readDoubles();
+		this.cellStarts = input.readInts();
+		this.cellItems = input.readInts();
+
+		if (bounds.length != 6 || resolution.length != 3 || cellSize.length != 3
+				|| this.cellStarts.length != (long) resolution[0] * resolution[1] * resolution[2] + 1) {
+			throw new IOException("corrupt");
+		}
+		System.arraycopy(bounds, 0, this.bounds, 0, 6);
+		System.arraycopy(resolution, 0, this.resolution, 0, 3);
+		System.arraycopy(cellSize, 0, this.cellSize, 0, 3);
+	}
+
+
+	@Override
+	public boolean closestHit (Ray ray, Intersection result) {
+
+		result.shape = null;
+		if (this.shapes.length == 0) {
+			return false;
+		}
+
+		int[] cell = result.getIntegerScratch(6);
+		double[] crossing = result.getDoubleScratch(6);
+		double exit = this.startTraversal(ray, Double.POSITIVE_INFINITY, cell, crossing);
+		if (exit < 0) {
+			return false;
+		}
+
+		double bestTimeHit = Double.POSITIVE_INFINITY;
+		Shape bestShape = null;
+
+		while (true) {
+
+			int index = this.cellIndex(cell[0], cell[1], cell[2]);
+			for (int i = this.cellStarts[index]; i < this.cellStarts[index + 1]; i++) {
+				Shape shape = this.shapes[this.cellItems[i]];
+				if (shape == bestShape) {
+					continue;
+				}
+				double timeHit = shape.calculateHitTime(ray);
+				if (bestTimeHit > timeHit) {
+					bestTimeHit = timeHit;
+					bestShape = shape;
+				}
+			}
+
+			// A shape may span several cells, and be hit past the current cell.
+			// The hit is only final once the ray has left the cell beyond it.
+			int axis = (crossing[0] < crossing[1]) ?
+					((crossing[0] < crossing[2]) ? 0 : 2) :
+					((crossing[1] < crossing[2]) ? 1 : 2);
+			if (bestTimeHit <= crossing[axis] || crossing[axis] > exit) {
+				break;
+			}
+
+			cell[axis] += cell[axis + 3];
+			if (cell[axis] < 0 || cell[axis] >= this.resolution[axis]) {
+				break;
+			}
+			crossing[axis] += crossing[axis + 3];
+		}
+
+		result.shape = bestShape;
+		result.timeHit = bestTimeHit;
+		return bestShape != null;
+	}
+
+	@Override
+	public boolean anyHit (Ray ray, double minTime, double maxTime, Intersection scratch) {
+
+		if (this.shapes.length == 0) {
+			return false;
+		}
+
+		int[] cell = scratch.getIntegerScratch(6);
+		double[] crossing = scratch.getDoubleScratch(6);
+		double exit = this.startTraversal(ray, maxTime, cell, crossing);
+		if (exit < 0) {
+			return false;
+		}
+
+		// Any hit within the interval ends the query, wherever it is along the
+		// ray, so the traversal stops at the first one.
+		while (true) {
+
+			int index = this.cellIndex(cell[0], cell[1], cell[2]);
+			for (int i = this.cellStarts[index]; i < this.cellStarts[index + 1]; i++) {
+				if (this.shapes[this.cellItems[i]].anyHit(ray, minTime, maxTime)) {
+					return true;
+				}
+			}
+
+			int axis = (crossing[0] < crossing[1]) ?
+					((crossing[0] < crossing[2]) ? 0 : 2) :
+					((crossing[1] < crossing[2]) ? 1 : 2);
+			if (crossing[axis] > exit) {
+				return false;
+			}
+
+			cell[axis] += cell[axis + 3];
+			if (cell[axis] < 0 || cell[axis] >= this.resolution[axis]) {
+				return false;
+			}
+			crossing[axis] += crossing[axis + 3];
+		}
+	}
+
+	/**
+	 * Gets the number of cells along the x, y, z axes.
+	 * @return    the resolution of the grid
+	 */
+	public int[] getResolution () {
+		return this.resolution.clone();
+	}
+
+	/**
+	 * Writes the arrays of this grid, to be loaded over the same shapes (See
+	 * AcceleratorCache).
+	 *
+	 * @param output    the output of the arrays
+	 * @throws IOException    if the arrays cannot be written
+	 */
+	void write (AcceleratorCache.Output output) throws IOException {
+		output.writeDoubles(this.bounds);
+		output.writeInts(this.resolution);
+		output.writeDoubles(this.cellSize);
+		output.writeInts(this.cellStarts);
+		output.writeInts(this.cellItems);
+	}
+
+
+	/**
+	 * Computes the range of cells (min x, min y, min z, max x, max y, max z)
+	 * overlapped by the bounding box of the given shape.
+	 */
+	private void cellRange (double[] boxes, int shape, int[] range) {
+		for (int axis = 0; axis < 3; axis++) {
+			range[axis] = this.cellOf(boxes[6 * shape + axis], axis);
+			range[axis + 3] = this.cellOf(boxes[6 * shape + axis + 3], axis);
+		}
+	}
+
+	/**
+	 * Computes the cell along the given axis containing the given coordinate.
+	 */
+	private int cellOf (double coordinate, int axis) {
+		int index = (int) Math.floor((coordinate - this.bounds[axis]) / this.cellSize[axis]);
+		return Math.max(0, Math.min(this.resolution[axis] - 1, index));
+	}
+
+	/**
+	 * Clips the given ray against the bounds of the grid and the given end time,
+	 * and sets up the 3D-DDA traversal of the cells it crosses. The state is
+	 * kept in the given arrays: the cell at [0, 3) and the step at [3, 6) of 
+	 * the cell array, the next crossing at [0, 3) and the delta at [3, 6) of
+	 * the crossing array.
+	 *
+	 * @return    the time at which the ray leaves the grid, or a negative time
+	 *            if the ray misses the grid
+	 */
+	private double startTraversal (Ray ray, double maxTime, int[] cell, double[] crossing) {
+
+		double originX = ray.getOriginX();
+		double originY = ray.getOriginY();
+		double originZ = ray.getOriginZ();
+		double directionX = ray.getDirectionX();
+		double directionY = ray.getDirectionY();
+		double directionZ = ray.getDirectionZ();
+
+		// Clip the ray against the bounds of the grid, and the end of the interval
+		double entry = 0.0;
+		double exit = maxTime;
+		for (int axis = 0; axis < 3; axis++) {
+			double origin = (axis == 0) ? originX : (axis == 1) ? originY : originZ;
+			double inverse = 1.0 / ((axis == 0) ? directionX : (axis == 1) ? directionY : directionZ);
+			double timeOne = (this.bounds[axis] - origin) * inverse;
+			double timeTwo = (this.bounds[axis + 3] - origin) * inverse;
+			entry = Math.max(entry, Math.min(timeOne, timeTwo));
+			exit = Math.min(exit, Math.max(timeOne, timeTwo));
+		}
+		if (entry > exit) {
+			return -1.0;
+		}
+
+		// Set up the 3D-DDA: the current cell, the step along each axis, the time
+		// at which the ray crosses into the next cell along each axis, and the
+		// time it takes to cross a whole cell along each axis.
+		for (int axis = 0; axis < 3; axis++) {
+			double origin = (axis == 0) ? originX : (axis == 1) ? originY : originZ;
+			double direction = (axis == 0) ? directionX : (axis == 1) ? directionY : directionZ;
+			double position = origin + direction * entry;
+			int index = (int) Math.floor((position - this.bounds[axis]) / this.cellSize[axis]);
+			cell[axis] = Math.max(0, Math.min(this.resolution[axis] - 1, index));
+
+			if (direction > 0) {
+				cell[axis + 3] = 1;
+				double boundary = this.bounds[axis] + (cell[axis] + 1) * this.cellSize[axis];
+				crossing[axis] = (boundary - origin) / direction;
+				crossing[axis + 3] = this.cellSize[axis] / direction;
+			}
+			else if (direction < 0) {
+				cell[axis + 3] = -1;
+				double boundary = this.bounds[axis] + cell[axis] * this.cellSize[axis];
+				crossing[axis] = (boundary - origin) / direction;
+				crossing[axis + 3] = -this.cellSize[axis] / direction;
+			}
+			else {
+				cell[axis + 3] = 0;
+				crossing[axis] = Double.POSITIVE_INFINITY;
+				crossing[axis + 3] = Double.POSITIVE_INFINITY;
+			}
+		}
+
+		return exit;
+	}
+
+	/**
+	 * Computes the flat index of the given cell.
+	 */
+	private int cellIndex (int x, int y, int z) {
+		return (z * this.resolution[1] + y) * this.resolution[0] + x;
+	}
+}
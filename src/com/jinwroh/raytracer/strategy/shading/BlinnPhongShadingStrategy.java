@@ -3,9 +3,8 @@ package com.jinwroh.raytracer.strategy.shading;
 import com.jinwroh.raytracer.geometric.Ray;
 import com.jinwroh.raytracer.geometric.Shape;
 import com.jinwroh.raytracer.geometric.Vector;
-import com.jinwroh.raytracer.graphics.Color;
-import com.jinwroh.raytracer.graphics.Light;
-import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.CompiledScene;
+import com.jinwroh.raytracer.graphics.Tracer;
 
 
 /**
@@ -14,63 +13,99 @@ import com.jinwroh.raytracer.graphics.Scene;
  * developed by Blinn Phong and Bui Tuong Phong.
  * See link for more information: http://en.wikipedia.org/wiki/Blinn%E2%80%93Phong_shading_model
  * 
+ * The vectors of the model are expanded into their x, y, z coordinates, so
+ * the shading does not allocate a Vector per light.
+ * 
  * @author Jin W. Roh
  * @version 1.0.0
  */
 public class BlinnPhongShadingStrategy implements ShadingStrategy {
 
+	/**
+	 * The shadow rays start this far from the shaded point, so the surface of
+	 * the shape does not shadow itself because of rounding errors.
+	 */
+	private static final double SHADOW_BIAS = 1e-6;
+	
+	
 	@Override
-	public Color shade (Ray viewRay, Shape.LocalCalculations localCalculations, 
-			Shape.Properties properties, Scene scene) {
+	public void shade (Ray viewRay, Shape.LocalCalculations localCalculations, 
+			Shape.Properties properties, Tracer tracer, double[] color) {
 
 		// red, green, blue values; range from 0.0 to 1.0
 		double r = 0.0;
 		double g = 0.0;
 		double b = 0.0;
 		
+		// The normal (n) and the direction towards the viewer (v) are the same
+		// for every light.
+		double nMagnitude = Vector.magnitude(localCalculations.normalX, 
+				localCalculations.normalY, localCalculations.normalZ);
+		double nx = localCalculations.normalX / nMagnitude;
+		double ny = localCalculations.normalY / nMagnitude;
+		double nz = localCalculations.normalZ / nMagnitude;
+		
+		double vx = viewRay.getOriginX() - localCalculations.pointX;
+		double vy = viewRay.getOriginY() - localCalculations.pointY;
+		double vz = viewRay.getOriginZ() - localCalculations.pointZ;
+		double vMagnitude = Vector.magnitude(vx, vy, vz);
+		vx /= vMagnitude;
+		vy /= vMagnitude;
+		vz /= vMagnitude;
 		
 		// Take all the lights in the scene into account. Light is additive.
-		for (Light light : scene.getLights()) {
+		// The compiled scene only holds the lights that are on, with their
+		// directions already normalized.
+		CompiledScene scene = tracer.getScene();
+		for (int i = 0; i < scene.getLightCount(); i++) {
 			
 			// Magical shading algorithm computation:
 			// In a nutshell, we compute the ambient, diffuse, and specular colors, and add them up
-			Vector l = Vector.multiply(light.getDirection(), -1);
-			Vector n = localCalculations.normal;
-			Vector v = new Vector(localCalculations.point, viewRay.getOrigin());
+			double lx = scene.getLightDirectionX(i) * -1;
+			double ly = scene.getLightDirectionY(i) * -1;
+			double lz = scene.getLightDirectionZ(i) * -1;
 			
-			l.normalize();
-			n.normalize();
-			v.normalize();
+			// rv = n * (2 * (l . n)) - l
+			double scale = (lx*nx + ly*ny + lz*nz) * 2.0;
+			double rvx = nx*scale - lx;
+			double rvy = ny*scale - ly;
+			double rvz = nz*scale - lz;
+			double rvMagnitude = Vector.magnitude(rvx, rvy, rvz);
+			rvx /= rvMagnitude;
+			rvy /= rvMagnitude;
+			rvz /= rvMagnitude;
 			
-			Vector rv = Vector.subtract(Vector.multiply(n, (Vector.dotProduct(l, n) * 2.0)), l);
-			rv.normalize();
+			// A point in the shadow of another shape (or of its own shape) is only
+			// lit by the ambient light. The shadow ray only needs to know if 
+			// anything is in the way, so it stops at the first hit.
+			boolean shadowed = tracer.isOccluded(localCalculations.pointX, localCalculations.pointY, 
+					localCalculations.pointZ, lx, ly, lz, SHADOW_BIAS, Double.POSITIVE_INFINITY);
+			
+			double diffuse = shadowed ? 0.0 : Math.max(0, nx*lx + ny*ly + nz*lz);
+			double specular = shadowed ? 0.0 : 
+					Math.pow(Math.max(0, vx*rvx + vy*rvy + vz*rvz), properties.specularCoefficient);
+			double lightR = scene.getLightR(i);
+			double lightG = scene.getLightG(i);
+			double lightB = scene.getLightB(i);
 
-			double rAmbient = properties.ambientColorProperty.getR() * light.getColor().getR();
-			double rDiffuse = properties.diffuseColorProperty.getR() * light.getColor().getR() 
-					* Math.max(0, Vector.dotProduct(n, l));
-			double rSpecular = properties.specularColorProperty.getR() * light.getColor().getR() 
-					* Math.pow(Math.max(0, Vector.dotProduct(v, rv)), properties.specularCoefficient);
+			double rAmbient = properties.ambientColorProperty.getR() * lightR;
+			double rDiffuse = properties.diffuseColorProperty.getR() * lightR * diffuse;
+			double rSpecular = properties.specularColorProperty.getR() * lightR * specular;
 			r += rAmbient + rDiffuse + rSpecular;
 			
-			double gAmbient = properties.ambientColorProperty.getG() * light.getColor().getG();
-			double gDiffuse = properties.diffuseColorProperty.getG() * light.getColor().getG() 
-					* Math.max(0, Vector.dotProduct(n, l));
-			double gSpecular = properties.specularColorProperty.getG() * light.getColor().getG() 
-					* Math.pow(Math.max(0, Vector.dotProduct(v, rv)), properties.specularCoefficient);
+			double gAmbient = properties.ambientColorProperty.getG() * lightG;
+			double gDiffuse = properties.diffuseColorProperty.getG() * lightG * diffuse;
+			double gSpecular = properties.specularColorProperty.getG() * lightG * specular;
 			g += gAmbient + gDiffuse + gSpecular;
 			
-			double bAmbient = properties.ambientColorProperty.getB() * light.getColor().getB();
-			double bDiffuse = properties.diffuseColorProperty.getB() * light.getColor().getB() 
-					* Math.max(0, Vector.dotProduct(n, l));
-			double bSpecular = properties.specularColorProperty.getB() * light.getColor().getB() 
-					* Math.pow(Math.max(0, Vector.dotProduct(v, rv)), properties.specularCoefficient);
+			double bAmbient = properties.ambientColorProperty.getB() * lightB;
+			double bDiffuse = properties.diffuseColorProperty.getB() * lightB * diffuse;
+			double bSpecular = properties.specularColorProperty.getB() * lightB * specular;
 			b += bAmbient + bDiffuse + bSpecular;
 		}
 		
-		r = Math.min(1.0, r);
-		g = Math.min(1.0, g);
-		b = Math.min(1.0, b);
-		
-		return new Color(r, g, b);
+		color[0] = Math.min(1.0, r);
+		color[1] = Math.min(1.0, g);
+		color[2] = Math.min(1.0, b);
 	}
 }
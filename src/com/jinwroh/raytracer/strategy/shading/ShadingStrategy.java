@@ -4,6 +4,7 @@ import com.jinwroh.raytracer.geometric.Ray;
 import com.jinwroh.raytracer.geometric.Shape;
 import com.jinwroh.raytracer.graphics.Color;
 import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.Tracer;
 
 
 /**
@@ -19,14 +20,40 @@ public interface ShadingStrategy {
 
 	/**
 	 * Computes the shading algorithm, and returns a color at the specified point.
+	 * The point is shaded with the lights of the scene alone, without shadows,
+	 * as in version 1.0.0 (See Tracer.ofLights).
 	 * 
 	 * @param viewRay             the ray towards
 	 * @param localCalculations   the local calculation bundle
 	 * @param properties          the local property of the shape
 	 * @param scene               the entire raytracing scene.
 	 * @return                    the computed Color at the local point
+	 * @deprecated a render shades its points with a Tracer, which also casts
+	 *             the shadows; use shade(Ray, Shape.LocalCalculations,
+	 *             Shape.Properties, Tracer, double[]) instead
 	 */
-	public Color shade (Ray viewRay, Shape.LocalCalculations localCalculations, 
-			Shape.Properties properties, Scene scene);
+	@Deprecated
+	public default Color shade (Ray viewRay, Shape.LocalCalculations localCalculations, 
+			Shape.Properties properties, Scene scene) {
+		Tracer tracer = Tracer.ofLights(scene);
+		double[] color = new double[3];
+		this.shade(viewRay, localCalculations, properties, tracer, color);
+		return new Color(color[0], color[1], color[2]);
+	}
+	
+	/**
+	 * Computes the shading algorithm into the given r, g, b array, so the 
+	 * caller can reuse a single array for many points, without allocating.
+	 * The secondary rays of the algorithm (i.e. shadow rays) are traced
+	 * with the given tracer.
+	 * 
+	 * @param viewRay             the ray towards
+	 * @param localCalculations   the local calculation bundle
+	 * @param properties          the local property of the shape
+	 * @param tracer              the tracer of the entire raytracing scene.
+	 * @param color               the array to be filled with the r, g, b values
+	 */
+	public void shade (Ray viewRay, Shape.LocalCalculations localCalculations, 
+			Shape.Properties properties, Tracer tracer, double[] color);
 
 }
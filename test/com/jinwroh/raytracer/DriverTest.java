@@ -0,0 +1,59 @@
+package com.jinwroh.raytracer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.FrameBuffer;
+
+
+/**
+ * Checks that the Driver scene, which the benchmarks render, still renders
+ * the image of version 1.0.0, pixel for pixel, on any number of threads.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class DriverTest {
+
+	/**
+	 * The MD5 of the packed RGB values of the image, row by row.
+	 */
+	private static final String IMAGE_DIGEST = "203212c9794976e6bfba0232d8ef5927";
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	void rendersTheImageOfVersion1 (int threadCount) throws NoSuchAlgorithmException {
+
+		Camera camera = Driver.createCamera();
+		camera.setThreadCount(threadCount);
+		camera.shoot(Driver.createScene());
+
+		FrameBuffer frameBuffer = camera.getFrameBuffer();
+		assertEquals(500, frameBuffer.getWidth());
+		assertEquals(500, frameBuffer.getHeight());
+		assertEquals(IMAGE_DIGEST, digest(frameBuffer));
+	}
+
+	private static String digest (FrameBuffer frameBuffer) throws NoSuchAlgorithmException {
+
+		MessageDigest digest = MessageDigest.getInstance("MD5");
+		for (int y = 0; y < frameBuffer.getHeight(); y++) {
+			for (int x = 0; x < frameBuffer.getWidth(); x++) {
+				int rgb = frameBuffer.getRGB(x, y);
+				digest.update(new byte[] {(byte) (rgb >> 16), (byte) (rgb >> 8), (byte) rgb});
+			}
+		}
+
+		StringBuilder builder = new StringBuilder();
+		for (byte b : digest.digest()) {
+			builder.append(String.format("%02x", b));
+		}
+		return builder.toString();
+	}
+}
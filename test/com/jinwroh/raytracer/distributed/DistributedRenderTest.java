@@ -0,0 +1,124 @@
+package com.jinwroh.raytracer.distributed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.jinwroh.raytracer.graphics.Camera;
+import com.jinwroh.raytracer.graphics.Scene;
+import com.jinwroh.raytracer.graphics.TestScenes;
+
+
+/**
+ * Checks that a render on workers gives the same image as Camera.shoot: the
+ * workers render their tiles independently, on as many threads as their
+ * cameras have, with or without adaptive supersampling. A worker that stops
+ * answering while it holds tiles is dropped, and its tiles are rendered by
+ * the others.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class DistributedRenderTest {
+
+	private static final int TILE_SIZE = 16;
+
+	@ParameterizedTest
+	@CsvSource({"1, 1, 1", "1, 4, 2", "4, 3, 1", "16, 2, 4"})
+	void distributedRenderMatchesShoot (int maxSamples, int firstThreads, int secondThreads) throws Exception {
+
+		Camera camera = this.createCamera(maxSamples, 1);
+		camera.shoot(TestScenes.createSphereCloud(150, 31));
+
+		Camera coordinated = this.createCamera(maxSamples, 1);
+		ExecutorService workers = Executors.newFixedThreadPool(2);
+		try (RenderCoordinator coordinator = new RenderCoordinator(coordinated, TestScenes.createSphereCloud(150, 31), 0)) {
+			List<Future<Integer>> tileCounts = new ArrayList<Future<Integer>>();
+			for (int threads : new int[] {firstThreads, secondThreads}) {
+				RenderWorker worker = new RenderWorker(this.createCamera(maxSamples, threads), TestScenes.createSphereCloud(150, 31));
+				tileCounts.add(workers.submit(() -> worker.run("localhost", coordinator.getPort())));
+			}
+			assertTrue(coordinator.awaitWorkers(2, 30000), "the workers did not connect");
+
+			coordinator.shoot();
+			coordinator.close();
+
+			int tiles = 0;
+			for (Future<Integer> tileCount : tileCounts) {
+				tiles += tileCount.get(30, TimeUnit.SECONDS);
+			}
+			assertTrue(tiles >= coordinator.getStatistics().tiles, "tiles rendered");
+			assertEquals(100 * 70, coordinator.getStatistics().pixels);
+		}
+		finally {
+			workers.shutdownNow();
+		}
+
+		TestScenes.assertSameImage(camera.getFrameBuffer(), coordinated.getFrameBuffer());
+	}
+
+	@Test
+	void hungWorkerIsDropped () throws Exception {
+
+		Camera camera = this.createCamera(1, 1);
+		camera.shoot(TestScenes.createSphereCloud(150, 31));
+
+		Camera coordinated = this.createCamera(1, 1);
+		Scene scene = TestScenes.createSphereCloud(150, 31);
+		ExecutorService workers = Executors.newFixedThreadPool(1);
+		try (RenderCoordinator coordinator = new RenderCoordinator(coordinated, scene, 0);
+				Socket hung = new Socket("localhost", coordinator.getPort())) {
+			coordinator.setTileTimeout(200);
+
+			// The hung worker joins, and never sends back the tiles it is handed
+			DataOutputStream out = new DataOutputStream(hung.getOutputStream());
+			out.writeInt(RenderCoordinator.MAGIC);
+			out.writeInt(RenderCoordinator.VERSION);
+			out.writeLong(coordinated.fingerprint(scene));
+			out.writeInt(1);
+			out.flush();
+			assertEquals(RenderCoordinator.ACCEPTED, new DataInputStream(hung.getInputStream()).readInt());
+			assertTrue(coordinator.awaitWorkers(1, 30000), "the hung worker did not connect");
+
+			RenderWorker worker = new RenderWorker(this.createCamera(1, 2), TestScenes.createSphereCloud(150, 31));
+			Future<Integer> tileCount = workers.submit(() -> worker.run("localhost", coordinator.getPort()));
+			assertTrue(coordinator.awaitWorkers(2, 30000), "the worker did not connect");
+
+			coordinator.shoot();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+			while (coordinator.getWorkerCount() > 1 && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, coordinator.getWorkerCount(), "the hung worker is dropped");
+
+			coordinator.close();
+			assertTrue(tileCount.get(30, TimeUnit.SECONDS) > 0, "tiles rendered");
+		}
+		finally {
+			workers.shutdownNow();
+		}
+
+		TestScenes.assertSameImage(camera.getFrameBuffer(), coordinated.getFrameBuffer());
+	}
+
+	private Camera createCamera (int maxSamples, int threadCount) {
+		Camera camera = TestScenes.createCamera(100, 70);
+		camera.setMaxSamples(maxSamples);
+		camera.setThreadCount(threadCount);
+		camera.setTileSize(TILE_SIZE);
+		return camera;
+	}
+}
@@ -0,0 +1,128 @@
+package com.jinwroh.raytracer.geometric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+
+/**
+ * Checks the vectorized sphere kernel against the scalar kernel: over runs
+ * of every length and alignment, both find the same closest sphere at the
+ * same hit time, and give the same answer to an occlusion query.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class SphereKernelTest {
+
+	private static SphereBatch batch;
+	private static List<Ray> rays;
+
+	private final SphereKernel scalar = new ScalarSphereKernel();
+	private final SphereKernel vector = new VectorSphereKernel();
+
+	@BeforeAll
+	static void createBatchAndRays () {
+
+		Random random = new Random(9);
+		Shape.Properties properties = new Shape.Properties();
+		properties.diffuseColorProperty = new Color(1, 1, 1);
+
+		List<Sphere> spheres = new ArrayList<Sphere>();
+		for (int i = 0; i < 67; i++) {
+			Point center = new Point(random.nextDouble() * 8 - 4, random.nextDouble() * 8 - 4, random.nextDouble() * 8 + 4);
+			spheres.add(new Sphere(center, 0.2 + random.nextDouble(), properties, new BlinnPhongShadingStrategy()));
+		}
+		batch = new SphereBatch(spheres);
+
+		// Rays from the eye, and rays from inside the spheres
+		rays = new ArrayList<Ray>();
+		for (int i = 0; i < 500; i++) {
+			Ray ray = new Ray();
+			if (i % 2 == 0) {
+				ray.set(0, 0, 0, random.nextDouble() - 0.5, random.nextDouble() - 0.5, 1);
+			}
+			else {
+				Sphere sphere = spheres.get(random.nextInt(spheres.size()));
+				ray.set(sphere.getCenter().getX(), sphere.getCenter().getY(), sphere.getCenter().getZ(),
+						random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+			}
+			rays.add(ray);
+		}
+	}
+
+	@Test
+	void vectorClosestHitMatchesScalar () {
+
+		SphereBatch.Hit expected = new SphereBatch.Hit();
+		SphereBatch.Hit actual = new SphereBatch.Hit();
+		int hits = 0;
+		for (int start = 0; start < 5; start++) {
+			for (int end = start; end <= batch.size(); end += 1 + end / 8) {
+				for (Ray ray : rays) {
+					double maxTime = (end % 3 == 0) ? 6.0 : Double.POSITIVE_INFINITY;
+					boolean hit = this.scalar.closestHit(batch, start, end, ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+							ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), maxTime, expected);
+					assertEquals(hit, this.vector.closestHit(batch, start, end, ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+							ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), maxTime, actual), "hit of run " + start + ", " + end);
+					if (hit) {
+						assertEquals(expected.index, actual.index, "sphere of run " + start + ", " + end);
+						assertEquals(expected.timeHit, actual.timeHit, 1e-12 * expected.timeHit, "time of run " + start + ", " + end);
+						hits++;
+					}
+				}
+			}
+		}
+		assertTrue(hits > 1000, "the rays hit the spheres");
+	}
+
+	@Test
+	void vectorAnyHitMatchesScalar () {
+
+		for (int start = 0; start < 5; start++) {
+			for (int end = start; end <= batch.size(); end += 1 + end / 8) {
+				for (int r = 0; r < rays.size(); r++) {
+					Ray ray = rays.get(r);
+					double maxTime = 1.0 + r % 9;
+					assertEquals(this.scalar.anyHit(batch, start, end, ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+							ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), 1e-6, maxTime),
+							this.vector.anyHit(batch, start, end, ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+							ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), 1e-6, maxTime),
+							"occlusion of ray " + r + " by run " + start + ", " + end);
+				}
+			}
+		}
+	}
+
+	@Test
+	void vectorPacketsMatchScalar () {
+
+		RayPacket expected = new RayPacket(16);
+		RayPacket actual = new RayPacket(16);
+		for (int first = 0; first + 16 <= rays.size(); first += 16) {
+			expected.clear();
+			actual.clear();
+			for (int r = first; r < first + 16; r++) {
+				Ray ray = rays.get(r);
+				expected.add(ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(), ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ());
+				actual.add(ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(), ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ());
+			}
+
+			this.scalar.closestHits(batch, 3, batch.size() - 2, expected, first % 5);
+			this.vector.closestHits(batch, 3, batch.size() - 2, actual, first % 5);
+			for (int i = 0; i < 16; i++) {
+				assertEquals(expected.getShape(i), actual.getShape(i), "sphere of packet ray " + (first + i));
+				assertEquals(expected.getTimeHit(i), actual.getTimeHit(i), 1e-12 * expected.getTimeHit(i), "time of packet ray " + (first + i));
+			}
+		}
+	}
+}
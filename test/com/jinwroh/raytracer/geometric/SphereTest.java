@@ -0,0 +1,104 @@
+package com.jinwroh.raytracer.geometric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+
+/**
+ * Checks the intersection queries of the sphere against each other: a ray
+ * occluded within an interval is the ray whose closest hit falls in it, and
+ * the hit time of the first phase materializes into a point on the sphere,
+ * with its outward normal and the mirrored direction.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class SphereTest {
+
+	private static final double EPSILON = 1e-9;
+
+	private final Random random = new Random(6);
+	private final Sphere sphere = this.createSphere();
+
+	@Test
+	void anyHitAgreesWithClosestHit () {
+
+		Ray ray = new Ray();
+		int hits = 0;
+		for (int i = 0; i < 5000; i++) {
+			this.setOutside(ray);
+			double timeHit = this.sphere.calculateHitTime(ray);
+			for (double maxTime : new double[] {5.0, 10.0, 20.0, Double.POSITIVE_INFINITY}) {
+				assertEquals(timeHit < maxTime, this.sphere.anyHit(ray, EPSILON, maxTime), "occlusion of ray " + i + " before " + maxTime);
+			}
+			assertFalse(this.sphere.anyHit(ray, timeHit + 2 * this.sphere.getRadius(), Double.POSITIVE_INFINITY), "occlusion behind ray " + i);
+			hits += (timeHit < Double.POSITIVE_INFINITY) ? 1 : 0;
+		}
+		assertTrue(hits > 500 && hits < 4500, "the rays hit and miss the sphere");
+
+		// From inside, the ray always leaves through the sphere
+		Point center = this.sphere.getCenter();
+		ray.set(center.getX(), center.getY(), center.getZ(), 0.3, -0.2, 0.9);
+		assertTrue(this.sphere.anyHit(ray, EPSILON, Double.POSITIVE_INFINITY));
+		assertEquals(this.sphere.getRadius() / Math.sqrt(0.3 * 0.3 + 0.2 * 0.2 + 0.9 * 0.9), this.sphere.calculateHitTime(ray), EPSILON);
+	}
+
+	@Test
+	void hitTimeMaterializesOnTheSphere () {
+
+		Ray ray = new Ray();
+		Shape.LocalCalculations calculations = new Shape.LocalCalculations();
+		Point center = this.sphere.getCenter();
+		for (int i = 0; i < 5000; i++) {
+			this.setOutside(ray);
+			double timeHit = this.sphere.calculateHitTime(ray);
+			this.sphere.calculateIntersection(ray, calculations);
+			assertEquals(timeHit < Double.POSITIVE_INFINITY, calculations.hits, "hit of ray " + i);
+			if (!calculations.hits) {
+				continue;
+			}
+			assertEquals(timeHit, calculations.timeHit, "time of ray " + i);
+
+			double px = calculations.pointX - center.getX();
+			double py = calculations.pointY - center.getY();
+			double pz = calculations.pointZ - center.getZ();
+			assertEquals(this.sphere.getRadius(), Vector.magnitude(px, py, pz), 1e-6, "point of ray " + i);
+
+			// The normal points out of the sphere, along the radius
+			double normal = Vector.magnitude(calculations.normalX, calculations.normalY, calculations.normalZ);
+			double cosine = (px * calculations.normalX + py * calculations.normalY + pz * calculations.normalZ) / (normal * this.sphere.getRadius());
+			assertEquals(1.0, cosine, 1e-9, "normal of ray " + i);
+
+			// The reflection is a unit vector, mirrored about the normal
+			double dMagnitude = Vector.magnitude(ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ());
+			double incoming = (ray.getDirectionX() * calculations.normalX + ray.getDirectionY() * calculations.normalY
+					+ ray.getDirectionZ() * calculations.normalZ) / (dMagnitude * normal);
+			double outgoing = (calculations.reflectionX * calculations.normalX + calculations.reflectionY * calculations.normalY
+					+ calculations.reflectionZ * calculations.normalZ) / normal;
+			assertEquals(1.0, Vector.magnitude(calculations.reflectionX, calculations.reflectionY, calculations.reflectionZ), 1e-9, "reflection of ray " + i);
+			assertEquals(-incoming, outgoing, 1e-9, "reflection angle of ray " + i);
+		}
+	}
+
+	private Sphere createSphere () {
+		Shape.Properties properties = new Shape.Properties();
+		properties.diffuseColorProperty = new Color(1, 1, 1);
+		return new Sphere(new Point(1, -2, 12), 3, properties, new BlinnPhongShadingStrategy());
+	}
+
+	/**
+	 * Sets the given ray from a point outside the sphere, towards it or not.
+	 */
+	private void setOutside (Ray ray) {
+		ray.set(this.random.nextDouble() * 4 - 2, this.random.nextDouble() * 4 - 2, this.random.nextDouble() * 4 - 2,
+				this.random.nextDouble() * 0.8 - 0.4 + 0.08, this.random.nextDouble() * 0.8 - 0.4 - 0.17, 1.0);
+	}
+}
@@ -0,0 +1,49 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Guards the allocation-free render hot path: a serial shot allocates the
+ * frame buffer of the image and a few objects per shot and per tile, but
+ * nothing per ray, so the bytes allocated per pixel stay close to the 4 bytes
+ * of the frame buffer.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class AllocationTest {
+
+	private static final int SIZE = 256;
+	private static final double MAX_BYTES_PER_PIXEL = 8.0;
+
+	@Test
+	void serialShotAllocatesNothingPerRay () {
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported(), "thread allocation counters are not supported");
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		// A single thread renders on the calling thread, so its counter sees
+		// every allocation of the shot
+		Scene scene = TestScenes.createSphereCloud(20, 1);
+		Camera camera = TestScenes.createCamera(SIZE, SIZE);
+		for (int i = 0; i < 5; i++) {
+			camera.shoot(scene);
+		}
+
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		camera.shoot(scene);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		double bytesPerPixel = (double) allocated / (SIZE * SIZE);
+		assertTrue(bytesPerPixel <= MAX_BYTES_PER_PIXEL,
+				String.format("%.2f bytes allocated per pixel (%d bytes)", bytesPerPixel, allocated));
+	}
+}
@@ -0,0 +1,74 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Sphere;
+
+
+/**
+ * Checks that every frame of an animation, whether its hierarchy was refit
+ * or rebuilt, is the image of a single shot of the scene as the script left
+ * it, and that the frames are counted as refit or built by the threshold.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class AnimationTest {
+
+	private static final int FRAME_COUNT = 5;
+
+	@ParameterizedTest
+	@ValueSource(doubles = {0.0, 1.5, 1000.0})
+	void framesMatchSingleShots (double rebuildThreshold) {
+
+		Scene scene = TestScenes.createSphereCloud(400, 43);
+		Animation animation = new Animation(TestScenes.createCamera(64, 48), scene);
+		animation.setRebuildThreshold(rebuildThreshold);
+
+		List<FrameBuffer> frames = new ArrayList<FrameBuffer>();
+		animation.render(FRAME_COUNT, AnimationTest::move, (frameBuffer, frame, frameCount) -> frames.add(TestScenes.copy(frameBuffer)));
+
+		assertEquals(FRAME_COUNT, frames.size());
+		assertEquals(FRAME_COUNT, animation.getFrameCount());
+		assertEquals(FRAME_COUNT, animation.getBuildCount() + animation.getRefitCount());
+		if (rebuildThreshold == 0.0) {
+			assertEquals(0, animation.getRefitCount(), "a threshold of zero rebuilds every frame");
+		}
+		if (rebuildThreshold == 1000.0) {
+			assertEquals(1, animation.getBuildCount(), "only the first frame is built");
+		}
+
+		// Replays the script on a scene of its own, shot frame by frame
+		Scene expectedScene = TestScenes.createSphereCloud(400, 43);
+		Animation replay = new Animation(TestScenes.createCamera(64, 48), expectedScene);
+		for (int frame = 0; frame < FRAME_COUNT; frame++) {
+			move(replay, frame);
+			Camera camera = TestScenes.createCamera(64, 48);
+			camera.shoot(expectedScene);
+			TestScenes.assertSameImage(camera.getFrameBuffer(), frames.get(frame));
+		}
+		assertTrue(animation.toString().contains(FRAME_COUNT + " frames"));
+	}
+
+	/**
+	 * Moves every third sphere a little, and one far across the scene. The
+	 * spheres of the scene are numbered from 1, in the order they were added.
+	 */
+	private static void move (Animation animation, int frame) {
+		Scene scene = animation.getScene();
+		int shapeCount = scene.getShapes().size();
+		for (int i = 0; i < shapeCount; i += 3) {
+			Point center = ((Sphere) scene.getShape(i + 1)).getCenter();
+			double step = (i == 0) ? 10.0 : 0.3;
+			animation.moveSphere(i + 1, new Point(center.getX() + step * ((i + frame) % 3 - 1), center.getY() + step * 0.5, center.getZ()));
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+/**
+ * Checks that a render resumed from a checkpoint cut short by a crash gives
+ * the same image as an uninterrupted render, with and without adaptive
+ * supersampling. The crash is simulated by truncating the checkpoint file of
+ * a finished render after some of its tiles.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class CheckpointTest {
+
+	private static final int WIDTH = 128;
+	private static final int HEIGHT = 96;
+	private static final int TILE_SIZE = 32;
+
+	/**
+	 * The sizes of the header of a checkpoint file, and of a record of a
+	 * TILE_SIZE x TILE_SIZE tile (See Checkpoint).
+	 */
+	private static final int HEADER_BYTES = 24;
+	private static final int TILE_BYTES = 20 + 4 * TILE_SIZE * TILE_SIZE;
+
+	@TempDir
+	File directory;
+
+	@ParameterizedTest
+	@CsvSource({"1, 1, 5", "4, 1, 5", "4, 3, 7", "16, 2, 1", "4, 4, 11"})
+	void resumedRenderMatchesAnUninterruptedRender (int maxSamples, int threadCount, int keptTiles) throws IOException {
+
+		Scene scene = TestScenes.createSphereCloud(150, 21);
+
+		Camera uninterrupted = this.createCamera(maxSamples, threadCount);
+		uninterrupted.shoot(scene);
+
+		File file = new File(this.directory, "render.checkpoint");
+		Camera crashed = this.createCamera(maxSamples, threadCount);
+		crashed.setCheckpointFile(file);
+		crashed.shoot(scene);
+		try (RandomAccessFile checkpoint = new RandomAccessFile(file, "rw")) {
+			checkpoint.setLength(HEADER_BYTES + (long) keptTiles * TILE_BYTES);
+		}
+
+		Camera resumed = this.createCamera(maxSamples, threadCount);
+		resumed.setCheckpointFile(file);
+		resumed.shoot(scene);
+
+		assertEquals(keptTiles, resumed.getRestoredTileCount());
+		TestScenes.assertSameImage(uninterrupted.getFrameBuffer(), resumed.getFrameBuffer());
+
+		Camera restored = this.createCamera(maxSamples, threadCount);
+		restored.setCheckpointFile(file);
+		restored.shoot(scene);
+
+		assertEquals((WIDTH / TILE_SIZE) * (HEIGHT / TILE_SIZE), restored.getRestoredTileCount());
+		TestScenes.assertSameImage(uninterrupted.getFrameBuffer(), restored.getFrameBuffer());
+	}
+
+	private Camera createCamera (int maxSamples, int threadCount) {
+		Camera camera = TestScenes.createCamera(WIDTH, HEIGHT);
+		camera.setMaxSamples(maxSamples);
+		camera.setThreadCount(threadCount);
+		camera.setTileSize(TILE_SIZE);
+		return camera;
+	}
+}
@@ -0,0 +1,96 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * Checks that a compiled scene is shaded as the scene was when it was
+ * compiled: the materials of its shapes edited afterwards, in place or
+ * replaced, and their shading strategies replaced, do not show in a render
+ * or in the fingerprint of the compiled scene.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class CompiledSceneTest {
+
+	@ParameterizedTest
+	@CsvSource({"1, 1", "4, 3"})
+	void materialEditsDoNotLeakIntoACompiledScene (int maxSamples, int threadCount) {
+
+		Random random = new Random(5);
+		Scene scene = TestScenes.createSphereCloud(120, 13);
+
+		Camera before = this.createCamera(maxSamples, threadCount);
+		before.shoot(scene);
+
+		Camera camera = this.createCamera(maxSamples, threadCount);
+		CompiledScene compiled = scene.compile();
+		Shot shot = camera.createShot(compiled, camera.selectAccelerator(compiled));
+
+		List<Shape> shapes = scene.getShapes();
+		for (int i = 0; i < shapes.size(); i++) {
+			Shape shape = shapes.get(i);
+			switch (i % 3) {
+			case 0:
+				shape.getProperties().diffuseColorProperty = new Color(0.0, 1.0, 0.0);
+				shape.getProperties().reflectionCoefficient = 0.8;
+				break;
+			case 1:
+				shape.setProperties(TestScenes.createProperties(random));
+				break;
+			default:
+				shape.setShadingStrategy((ray, calculations, properties, tracer, color) -> {
+					color[0] = 0;
+					color[1] = 0;
+					color[2] = 1;
+				});
+				break;
+			}
+		}
+
+		camera.shoot(shot);
+		TestScenes.assertSameImage(before.getFrameBuffer(), camera.getFrameBuffer());
+	}
+
+	@Test
+	void materialEditsDoNotLeakIntoTheFingerprint () {
+
+		Scene scene = TestScenes.createSphereCloud(40, 3);
+		CompiledScene compiled = scene.compile();
+		long before = fingerprint(compiled);
+
+		Shape shape = scene.getShapes().get(0);
+		shape.getProperties().reflectionCoefficient = 0.5;
+		assertEquals(before, fingerprint(compiled));
+		assertNotEquals(before, fingerprint(scene.compile()));
+
+		shape.setShadingStrategy((ray, calculations, properties, tracer, color) -> color[0] = 1);
+		CompiledScene edited = scene.compile();
+		assertEquals(before, fingerprint(compiled));
+		assertNotEquals(fingerprint(edited), fingerprint(compiled));
+	}
+
+	private static long fingerprint (CompiledScene compiled) {
+		Fingerprint fingerprint = new Fingerprint();
+		compiled.fingerprint(fingerprint);
+		return fingerprint.getValue();
+	}
+
+	private Camera createCamera (int maxSamples, int threadCount) {
+		Camera camera = TestScenes.createCamera(96, 64);
+		camera.setMaxSamples(maxSamples);
+		camera.setThreadCount(threadCount);
+		return camera;
+	}
+}
@@ -0,0 +1,61 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Checks the layout of the array frame buffer: it starts black, every pixel
+ * is stored apart from the others, a row is read in order at the given
+ * offset, and the packed values are the quantized colors of the image.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class FrameBufferTest {
+
+	@Test
+	void storesEveryPixelApart () {
+
+		FrameBuffer frameBuffer = new ArrayFrameBuffer(37, 23);
+		assertEquals(37, frameBuffer.getWidth());
+		assertEquals(23, frameBuffer.getHeight());
+
+		int[][] expected = new int[23][37];
+		Random random = new Random(2);
+		for (int y = 0; y < 23; y++) {
+			for (int x = 0; x < 37; x++) {
+				assertEquals(0, frameBuffer.getRGB(x, y), "a new frame buffer is black");
+				expected[y][x] = random.nextInt(0x1000000);
+				frameBuffer.setRGB(x, y, expected[y][x]);
+			}
+		}
+
+		for (int y = 0; y < 23; y++) {
+			for (int x = 0; x < 37; x++) {
+				assertEquals(expected[y][x], frameBuffer.getRGB(x, y));
+			}
+			int[] row = new int[37 + 5];
+			frameBuffer.getRow(y, row, 5);
+			int[] copy = new int[37 + 5];
+			System.arraycopy(expected[y], 0, copy, 5, 37);
+			assertArrayEquals(copy, row);
+		}
+	}
+
+	@Test
+	void packsQuantizedColors () {
+
+		assertEquals(0x000000, new Color(0, 0, 0).toRGB());
+		assertEquals(0xffffff, new Color(1, 1, 1).toRGB());
+		assertEquals((51 << 16) | (127 << 8) | 229, new Color(0.2, 0.5, 0.9).toRGB());
+
+		for (int rgb : new int[] {0x000000, 0x123456, 0xfedcba, 0xffffff}) {
+			assertEquals(rgb, Color.fromRGB(rgb).toRGB());
+		}
+	}
+}
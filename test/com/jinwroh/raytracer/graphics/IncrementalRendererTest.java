@@ -0,0 +1,101 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Sphere;
+
+
+/**
+ * Checks that an IncrementalRenderer gives the same image as a fresh render
+ * of the scene after every edit: shapes removed, added, moved, recolored in
+ * place or given new Properties. The edits are picked at random, with a
+ * fixed seed.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class IncrementalRendererTest {
+
+	private static final int EDIT_COUNT = 40;
+
+	@ParameterizedTest
+	@CsvSource({"1, 1, 1", "1, 4, 2", "4, 1, 2", "4, 4, 1"})
+	void everyEditMatchesAFreshRender (int maxSamples, int packetSize, int threadCount) {
+
+		Random random = new Random(8);
+		Scene scene = TestScenes.createSphereCloud(120, 7);
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int id : scene.getShapeIds()) {
+			ids.add(id);
+		}
+
+		Camera camera = this.createCamera(maxSamples, packetSize, threadCount);
+		IncrementalRenderer renderer = new IncrementalRenderer(camera, scene);
+		renderer.render();
+
+		long tracedTiles = 0;
+		long tiles = 0;
+		for (int edit = 0; edit < EDIT_COUNT; edit++) {
+			int index = random.nextInt(ids.size());
+			int id = ids.get(index);
+			String description;
+			switch (random.nextInt(5)) {
+			case 0:
+				scene.removeShape(id);
+				ids.remove(index);
+				description = "remove shape " + id;
+				break;
+			case 1:
+				ids.add(scene.addShape(TestScenes.createSphere(random)));
+				description = "add a shape";
+				break;
+			case 2:
+				scene.getShape(id).getProperties().diffuseColorProperty = new Color(random.nextDouble(), 0.2, 0.9);
+				description = "recolor shape " + id;
+				break;
+			case 3:
+				scene.getShape(id).setProperties(TestScenes.createProperties(random));
+				description = "replace the properties of shape " + id;
+				break;
+			default:
+				Sphere sphere = (Sphere) scene.getShape(id);
+				Point center = sphere.getCenter();
+				scene.setShape(id, new Sphere(new Point(center.getX() + 0.7, center.getY() - 0.3, center.getZ()),
+						sphere.getRadius(), sphere.getProperties(), sphere.getShadingStrategy()));
+				description = "move shape " + id;
+				break;
+			}
+
+			renderer.render();
+			tracedTiles += renderer.getTracedTileCount();
+			tiles += renderer.getTileCount();
+
+			Camera fresh = this.createCamera(maxSamples, packetSize, threadCount);
+			fresh.shoot(scene);
+			try {
+				TestScenes.assertSameImage(fresh.getFrameBuffer(), camera.getFrameBuffer());
+			}
+			catch (AssertionError e) {
+				throw new AssertionError("after edit " + edit + " (" + description + "): " + e.getMessage(), e);
+			}
+		}
+		assertTrue(tracedTiles < tiles, tracedTiles + " of " + tiles + " tiles traced");
+	}
+
+	private Camera createCamera (int maxSamples, int packetSize, int threadCount) {
+		Camera camera = TestScenes.createCamera(128, 128);
+		camera.setMaxSamples(maxSamples);
+		camera.setPacketSize(packetSize);
+		camera.setThreadCount(threadCount);
+		camera.setTileSize(16);
+		return camera;
+	}
+}
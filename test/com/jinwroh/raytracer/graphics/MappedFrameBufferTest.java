@@ -0,0 +1,102 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Checks the layout of the mapped frame buffer: it holds the same pixels as
+ * an array frame buffer, whatever the tile size, stores them tile by tile in
+ * the file, and addresses tiles past the range of an int.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class MappedFrameBufferTest {
+
+	@TempDir
+	File directory;
+
+	@Test
+	void holdsTheSamePixelsAsAnArray () throws IOException {
+
+		for (int tileSize : new int[] {1, 7, 16, 64}) {
+			FrameBuffer expected = new ArrayFrameBuffer(45, 29);
+			try (MappedFrameBuffer frameBuffer = new MappedFrameBuffer(new File(this.directory, "image" + tileSize), 45, 29, tileSize)) {
+				Random random = new Random(tileSize);
+				for (int i = 0; i < 2000; i++) {
+					int x = random.nextInt(45);
+					int y = random.nextInt(29);
+					int rgb = random.nextInt(0x1000000);
+					expected.setRGB(x, y, rgb);
+					frameBuffer.setRGB(x, y, rgb);
+				}
+
+				int[] row = new int[45];
+				int[] expectedRow = new int[45];
+				for (int y = 0; y < 29; y++) {
+					frameBuffer.getRow(y, row, 0);
+					expected.getRow(y, expectedRow, 0);
+					assertArrayEquals(expectedRow, row, "row " + y + " with tiles of " + tileSize);
+				}
+			}
+		}
+	}
+
+	@Test
+	void storesThePixelsTileByTile () throws IOException {
+
+		File file = new File(this.directory, "image");
+		try (MappedFrameBuffer frameBuffer = new MappedFrameBuffer(file, 10, 6, 4)) {
+			for (int y = 0; y < 6; y++) {
+				for (int x = 0; x < 10; x++) {
+					frameBuffer.setRGB(x, y, 1 + y * 10 + x);
+				}
+			}
+		}
+
+		ByteBuffer pixel = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+
+		// 3 x 2 tiles of 4 x 4 pixels, the edge tiles padded
+		assertEquals(6 * 16 * 4, file.length());
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			for (int y = 0; y < 6; y++) {
+				for (int x = 0; x < 10; x++) {
+					int tile = (y / 4) * 3 + (x / 4);
+					in.seek(4L * (tile * 16 + (y % 4) * 4 + (x % 4)));
+					in.readFully(pixel.array());
+					assertEquals(1 + y * 10 + x, pixel.getInt(0), "pixel " + x + ", " + y);
+				}
+			}
+		}
+	}
+
+	@Test
+	void addressesMoreTilesThanAnIntCounts () throws IOException {
+
+		// 2^31 + 2^16 tiles of a single pixel, in a sparse file of 8 GB that
+		// is never written but for the pixels below
+		int width = 1 << 16;
+		int height = (1 << 15) + 1;
+		try (MappedFrameBuffer frameBuffer = new MappedFrameBuffer(new File(this.directory, "huge"), width, height, 1)) {
+			frameBuffer.setRGB(width - 1, height - 1, 0x123456);
+			frameBuffer.setRGB(3, height - 1, 0x654321);
+			frameBuffer.setRGB(width - 1, 0, 0xabcdef);
+
+			assertEquals(0x123456, frameBuffer.getRGB(width - 1, height - 1));
+			assertEquals(0x654321, frameBuffer.getRGB(3, height - 1));
+			assertEquals(0xabcdef, frameBuffer.getRGB(width - 1, 0));
+			assertEquals(0, frameBuffer.getRGB(width - 1, height - 2));
+		}
+	}
+}
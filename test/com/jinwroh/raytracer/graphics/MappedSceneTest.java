@@ -0,0 +1,134 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+
+
+/**
+ * Checks that a mapped binary scene holds the same scene and camera as the
+ * scene it was written or converted from, and renders the same image, and
+ * that an invalid binary scene file is rejected when opened.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class MappedSceneTest {
+
+	@TempDir
+	File directory;
+
+	@Test
+	void writtenSceneMapsToTheSameScene () throws IOException {
+
+		Scene scene = TestScenes.createSphereCloud(300, 23);
+		Camera camera = new Camera(new Point(0.25, 0.5, -0.5), new Viewport(2, 2, new Point(0.25, 0.5, 1.5)), new Window(80, 60));
+		File file = new File(this.directory, "scene.rts");
+		MappedScene.write(file, camera, scene);
+
+		assertTrue(MappedScene.accepts(file));
+		MappedScene mapped = new MappedScene(file);
+		Camera mappedCamera = mapped.createCamera();
+		assertTrue(mapped.hasCamera());
+		assertEquals(300, mapped.getSphereCount());
+		assertEquals(scene.getLights().size(), mapped.getLights().size());
+		assertEquals(camera.fingerprint(scene.compile()), mappedCamera.fingerprint(mapped.compile()),
+				"the scene or the camera changed");
+
+		camera.shoot(scene);
+		mappedCamera.shoot(mapped);
+		TestScenes.assertSameImage(camera.getFrameBuffer(), mappedCamera.getFrameBuffer());
+	}
+
+	@Test
+	void convertedSceneMapsToTheSceneOfTheTextFile () throws IOException {
+
+		Scene scene = TestScenes.createSphereCloud(120, 29);
+		Camera camera = TestScenes.createCamera(40, 30);
+		File text = new File(this.directory, "scene.txt");
+		File file = new File(this.directory, "scene.rts");
+		SceneFile.write(text, camera, scene);
+		MappedScene.convert(text, file);
+
+		assertFalse(MappedScene.accepts(text));
+		SceneFile sceneFile = SceneFile.read(text);
+		MappedScene mapped = new MappedScene(file);
+		assertEquals(sceneFile.createCamera().fingerprint(sceneFile.getScene().compile()),
+				mapped.createCamera().fingerprint(mapped.compile()));
+	}
+
+	@Test
+	void sceneWithoutCameraUsesTheCameraOfTheDriver () throws IOException {
+
+		File file = new File(this.directory, "scene.rts");
+		MappedScene.write(file, null, TestScenes.createSphereCloud(10, 31));
+		MappedScene mapped = new MappedScene(file);
+
+		assertFalse(mapped.hasCamera());
+		Camera camera = new Camera(new Point(0.0, 0.0, 0.0), new Viewport(2, 2, new Point(0, 0, 2)), new Window(500, 500));
+		assertEquals(camera.fingerprint(mapped.compile()), mapped.createCamera().fingerprint(mapped.compile()));
+	}
+
+	@Test
+	void shapesAreReadOnly () throws IOException {
+
+		File file = new File(this.directory, "scene.rts");
+		MappedScene.write(file, null, TestScenes.createSphereCloud(10, 37));
+		MappedScene mapped = new MappedScene(file);
+		Shape shape = mapped.getShapes().get(0);
+
+		assertThrows(UnsupportedOperationException.class, () -> mapped.addShape(shape));
+		assertThrows(UnsupportedOperationException.class, () -> mapped.setShape(1, shape));
+		assertThrows(UnsupportedOperationException.class, () -> mapped.removeShape(1));
+	}
+
+	@Test
+	void rejectsInvalidFiles () throws IOException {
+
+		File file = new File(this.directory, "scene.rts");
+		MappedScene.write(file, null, TestScenes.createSphereCloud(10, 41));
+		byte[] valid = Files.readAllBytes(file.toPath());
+
+		File magic = this.corrupt(valid, "magic.rts", 0, (byte) 0);
+		assertFalse(MappedScene.accepts(magic));
+		assertThrows(IOException.class, () -> new MappedScene(magic));
+
+		File version = this.corrupt(valid, "version.rts", 4, (byte) 9);
+		assertTrue(MappedScene.accepts(version));
+		assertThrows(IOException.class, () -> new MappedScene(version));
+
+		File count = this.corrupt(valid, "count.rts", 8, (byte) 11);
+		assertThrows(IOException.class, () -> new MappedScene(count));
+
+		File truncated = new File(this.directory, "truncated.rts");
+		Files.write(truncated.toPath(), Arrays.copyOf(valid, valid.length - 1));
+		assertThrows(IOException.class, () -> new MappedScene(truncated));
+
+		File header = new File(this.directory, "header.rts");
+		Files.write(header.toPath(), Arrays.copyOf(valid, 100));
+		assertThrows(IOException.class, () -> new MappedScene(header));
+	}
+
+	private File corrupt (byte[] valid, String name, int offset, byte value) throws IOException {
+		File file = new File(this.directory, name);
+		Files.write(file.toPath(), valid);
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.seek(offset);
+			out.write(value);
+		}
+		return file;
+	}
+}
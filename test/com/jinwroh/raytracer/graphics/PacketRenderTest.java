@@ -0,0 +1,42 @@
+package com.jinwroh.raytracer.graphics;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+
+
+/**
+ * Checks that tracing the primary rays as packets gives the same image as
+ * tracing every ray alone, for any packet size, with every accelerator.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class PacketRenderTest {
+
+	@ParameterizedTest
+	@CsvSource({
+			"BOUNDING_VOLUME_HIERARCHY, 4, 1",
+			"BOUNDING_VOLUME_HIERARCHY, 8, 4",
+			"BOUNDING_VOLUME_HIERARCHY, 3, 2",
+			"UNIFORM_GRID, 4, 1",
+			"KD_TREE, 4, 2"})
+	void packetsMatchSingleRays (AcceleratorSelector.Type type, int packetSize, int threadCount) {
+
+		Scene scene = TestScenes.createSphereCloud(2000, 4);
+
+		Camera single = TestScenes.createCamera(128, 128);
+		single.setAcceleratorType(type);
+		single.shoot(scene);
+
+		Camera packets = TestScenes.createCamera(128, 128);
+		packets.setAcceleratorType(type);
+		packets.setPacketSize(packetSize);
+		packets.setThreadCount(threadCount);
+		packets.setTileSize(20);
+		packets.shoot(scene);
+
+		TestScenes.assertSameImage(single.getFrameBuffer(), packets.getFrameBuffer());
+	}
+}
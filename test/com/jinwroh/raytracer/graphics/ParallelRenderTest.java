@@ -0,0 +1,58 @@
+package com.jinwroh.raytracer.graphics;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+/**
+ * Checks that rendering the tiles of the Window in parallel gives the same
+ * image as the serial render, whatever the number of threads and the size of
+ * the tiles.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class ParallelRenderTest {
+
+	private static Scene scene;
+	private static FrameBuffer serial;
+
+	@BeforeAll
+	static void renderSerially () {
+		scene = TestScenes.createSphereCloud(200, 2);
+		Camera camera = TestScenes.createCamera(160, 120);
+		camera.shoot(scene);
+		serial = camera.getFrameBuffer();
+	}
+
+	@ParameterizedTest
+	@CsvSource({"2, 32", "4, 7", "8, 1", "3, 200"})
+	void parallelTilesMatchSerialRender (int threadCount, int tileSize) {
+
+		Camera camera = TestScenes.createCamera(160, 120);
+		camera.setThreadCount(threadCount);
+		camera.setTileSize(tileSize);
+		camera.shoot(scene);
+		TestScenes.assertSameImage(serial, camera.getFrameBuffer());
+	}
+
+	@Test
+	void sharedRenderPoolMatchesSerialRender () {
+
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			Camera camera = TestScenes.createCamera(160, 120);
+			camera.setRenderPool(pool);
+			camera.setTileSize(16);
+			camera.shoot(scene);
+			TestScenes.assertSameImage(serial, camera.getFrameBuffer());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}
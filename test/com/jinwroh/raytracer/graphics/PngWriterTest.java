@@ -0,0 +1,144 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Checks that the streamed PNG decodes into the image that was written, on
+ * any number of threads: its chunks are intact, its strips inflate as one
+ * zlib stream with the checksum of the whole image (See combineAdler32), and
+ * the decoder reads back every pixel.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class PngWriterTest {
+
+	@Test
+	void decodesIntoTheImageWritten () throws IOException, DataFormatException {
+
+		// Tall enough for several strips, and noisy enough for every filter
+		int width = 700;
+		int height = 1300;
+		FrameBuffer image = new ArrayFrameBuffer(width, height);
+		Random random = new Random(8);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int noise = random.nextInt(8);
+				image.setRGB(x, y, ((x & 0xFF) << 16) | (((x + y) & 0xFF) << 8) | ((y * 7 + noise) & 0xFF));
+			}
+		}
+
+		byte[] serial = write(image, 1);
+		assertArrayEquals(serial, write(image, 4), "the threads change the bytes of the stream");
+
+		assertEquals(height * (1 + 3 * width), inflate(serial).length);
+
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(serial));
+		assertEquals(width, decoded.getWidth());
+		assertEquals(height, decoded.getHeight());
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				assertEquals(image.getRGB(x, y), decoded.getRGB(x, y) & 0xFFFFFF, "pixel " + x + ", " + y);
+			}
+		}
+	}
+
+	@Test
+	void rejectsMissingAndMisplacedRows () throws IOException {
+
+		PngWriter writer = new PngWriter(new ByteArrayOutputStream(), 4, 3);
+		writer.writeRow(new int[4], 0);
+		assertThrows(IllegalStateException.class, () -> writer.writeRows(new ArrayFrameBuffer(4, 3), 2, 1));
+		assertThrows(IllegalStateException.class, writer::close);
+	}
+
+	@Test
+	void combinesAdler32OfConsecutiveBytes () {
+
+		Random random = new Random(1);
+		byte[] bytes = new byte[200000];
+		random.nextBytes(bytes);
+
+		for (int split : new int[] {0, 1, 5552, 65520, 65521, 65522, 131042, 199999, 200000}) {
+			Adler32 whole = new Adler32();
+			whole.update(bytes, 0, bytes.length);
+			Adler32 first = new Adler32();
+			first.update(bytes, 0, split);
+			Adler32 second = new Adler32();
+			second.update(bytes, split, bytes.length - split);
+
+			int combined = PngWriter.combineAdler32((int) first.getValue(), (int) second.getValue(), bytes.length - split);
+			assertEquals((int) whole.getValue(), combined, "split at " + split);
+		}
+	}
+
+	private static byte[] write (FrameBuffer image, int threadCount) throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PngWriter writer = new PngWriter(out, image.getWidth(), image.getHeight(), threadCount)) {
+			writer.writeRows(image, 0, 10);
+			int[] row = new int[image.getWidth() + 3];
+			for (int y = 10; y < image.getHeight(); y++) {
+				image.getRow(y, row, 3);
+				writer.writeRow(row, 3);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Checks the CRC of every chunk, and inflates the data of the IDAT chunks,
+	 * which fails if the checksum of the zlib stream is wrong.
+	 */
+	private static byte[] inflate (byte[] png) throws IOException, DataFormatException {
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(png));
+		in.skipBytes(8);
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		String type;
+		do {
+			int length = in.readInt();
+			byte[] chunk = new byte[4 + length];
+			in.readFully(chunk);
+			CRC32 crc = new CRC32();
+			crc.update(chunk);
+			type = new String(chunk, 0, 4, StandardCharsets.US_ASCII);
+			assertEquals((int) crc.getValue(), in.readInt(), "CRC of " + type);
+			if (type.equals("IDAT")) {
+				data.write(chunk, 4, length);
+			}
+		} while (!type.equals("IEND"));
+
+		Inflater inflater = new Inflater();
+		inflater.setInput(data.toByteArray());
+		ByteArrayOutputStream raw = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 16];
+		while (!inflater.finished()) {
+			int count = inflater.inflate(buffer);
+			assertTrue(count > 0 || !inflater.needsInput(), "the zlib stream is truncated");
+			raw.write(buffer, 0, count);
+		}
+		inflater.end();
+		return raw.toByteArray();
+	}
+}
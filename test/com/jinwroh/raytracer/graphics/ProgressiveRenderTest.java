@@ -0,0 +1,70 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+/**
+ * Checks that a progressive render ends with the same image as a render in
+ * a single pass, that its passes add up to a single render, and that every
+ * coarse pass shows the samples of the final image.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class ProgressiveRenderTest {
+
+	@ParameterizedTest
+	@CsvSource({"1, 1, 1", "1, 3, 4", "4, 1, 1", "4, 4, 2"})
+	void passesEndWithTheSingleRenderImage (int maxSamples, int threadCount, int packetSize) {
+
+		Scene scene = TestScenes.createSphereCloud(150, 6);
+
+		Camera single = TestScenes.createCamera(100, 90);
+		single.setMaxSamples(maxSamples);
+		single.shoot(scene);
+		FrameBuffer expected = single.getFrameBuffer();
+
+		List<FrameBuffer> passes = new ArrayList<FrameBuffer>();
+		List<Integer> passCounts = new ArrayList<Integer>();
+		Camera progressive = TestScenes.createCamera(100, 90);
+		progressive.setMaxSamples(maxSamples);
+		progressive.setThreadCount(threadCount);
+		progressive.setPacketSize(packetSize);
+		progressive.setTileSize(16);
+		progressive.setProgressListener((frameBuffer, pass, passCount) -> {
+			assertEquals(passes.size(), pass, "pass index");
+			passes.add(TestScenes.copy(frameBuffer));
+			passCounts.add(passCount);
+		});
+		progressive.shoot(scene);
+
+		int passCount = (maxSamples > 1) ? 4 : 3;
+		assertEquals(passCount, passes.size(), "passes");
+		for (int count : passCounts) {
+			assertEquals(passCount, count, "pass count");
+		}
+		TestScenes.assertSameImage(expected, passes.get(passCount - 1));
+		TestScenes.assertSameImage(expected, progressive.getFrameBuffer());
+		assertEquals(single.getTraceStatistics().primaryRays, progressive.getTraceStatistics().primaryRays, "primary rays");
+
+		// Without refinement, the samples of the coarse passes are final
+		if (maxSamples == 1) {
+			int[] steps = {4, 2};
+			for (int pass = 0; pass < steps.length; pass++) {
+				for (int y = 0; y < 90; y++) {
+					for (int x = 0; x < 100; x++) {
+						int step = steps[pass];
+						assertEquals(expected.getRGB(x - x % step, y - y % step), passes.get(pass).getRGB(x, y),
+								"pixel (" + x + ", " + y + ") of pass " + pass);
+					}
+				}
+			}
+		}
+	}
+}
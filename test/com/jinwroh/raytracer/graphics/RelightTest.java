@@ -0,0 +1,107 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+
+
+/**
+ * Checks that relighting a scene from the geometry buffer gives the same
+ * image as a fresh render after its lights or materials are edited, and that
+ * an edit of the geometry or of the view falls back to a fresh render.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class RelightTest {
+
+	private static final int EDIT_COUNT = 30;
+
+	@ParameterizedTest
+	@CsvSource({"1, 1, 1", "1, 4, 2", "4, 1, 2", "4, 4, 1"})
+	void relightMatchesAFreshRender (int maxSamples, int packetSize, int threadCount) {
+
+		Random random = new Random(11);
+		Scene scene = TestScenes.createSphereCloud(120, 9);
+		int[] ids = scene.getShapeIds();
+
+		Camera camera = this.createCamera(maxSamples, packetSize, threadCount);
+		camera.setGeometryBufferEnabled(true);
+		assertFalse(camera.relight(scene), "relight without a geometry buffer");
+		assertNotNull(camera.getGeometryBuffer());
+
+		for (int edit = 0; edit < EDIT_COUNT; edit++) {
+			int id = ids[random.nextInt(ids.length)];
+			int kind = random.nextInt(6);
+			switch (kind) {
+			case 0:
+				scene.addLight(new Light(new Vector(random.nextDouble() - 0.5, -0.5, 0.6), new Color(0.3, 0.2, 0.1)));
+				break;
+			case 1:
+				scene.getShape(id).getProperties().diffuseColorProperty = new Color(random.nextDouble(), 0.2, 0.9);
+				break;
+			case 2:
+				scene.getShape(id).setProperties(TestScenes.createProperties(random));
+				break;
+			case 3:
+				scene.getShape(id).getProperties().specularCoefficient = 5 + random.nextInt(80);
+				break;
+			case 4:
+				scene.getShape(id).getProperties().reflectionCoefficient = random.nextDouble();
+				break;
+			default:
+				Sphere sphere = (Sphere) scene.getShape(id);
+				Point center = sphere.getCenter();
+				scene.setShape(id, new Sphere(new Point(center.getX() + 0.7, center.getY(), center.getZ()),
+						sphere.getRadius(), sphere.getProperties(), sphere.getShadingStrategy()));
+				ids = scene.getShapeIds();
+				break;
+			}
+
+			// Moving a shape changes the geometry, so the scene is shot from scratch
+			assertEquals(kind != 5, camera.relight(scene), "relit after edit " + edit);
+
+			Camera fresh = this.createCamera(maxSamples, packetSize, threadCount);
+			fresh.shoot(scene);
+			TestScenes.assertSameImage(fresh.getFrameBuffer(), camera.getFrameBuffer());
+		}
+	}
+
+	@Test
+	void viewChangeShootsFromScratch () {
+
+		Scene scene = TestScenes.createSphereCloud(50, 10);
+		Camera camera = this.createCamera(1, 1, 1);
+		camera.setGeometryBufferEnabled(true);
+		camera.shoot(scene);
+		assertTrue(camera.relight(scene), "relight of the same view");
+
+		camera.getViewport().setDimensions(2, 2, new Point(0.3, 0, 2));
+		assertFalse(camera.relight(scene), "relight of another view");
+
+		Camera fresh = this.createCamera(1, 1, 1);
+		fresh.getViewport().setDimensions(2, 2, new Point(0.3, 0, 2));
+		fresh.shoot(scene);
+		TestScenes.assertSameImage(fresh.getFrameBuffer(), camera.getFrameBuffer());
+	}
+
+	private Camera createCamera (int maxSamples, int packetSize, int threadCount) {
+		Camera camera = TestScenes.createCamera(128, 128);
+		camera.setMaxSamples(maxSamples);
+		camera.setPacketSize(packetSize);
+		camera.setThreadCount(threadCount);
+		camera.setTileSize(16);
+		return camera;
+	}
+}
@@ -0,0 +1,113 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Vector;
+
+
+/**
+ * Checks that a scene written to a scene file reads back as the same scene,
+ * with the same camera, down to the last bit of every number, and that an
+ * invalid statement is rejected with the line it is on.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class SceneFileTest {
+
+	@Test
+	void sceneRoundTrips () throws IOException {
+
+		Scene scene = TestScenes.createSphereCloud(300, 17);
+		Light off = new Light(new Vector(0.1, 0.2, -0.7), new Color(0.3, 0.2, 0.1));
+		off.turnOff();
+		scene.addLight(off);
+		Camera camera = new Camera(new Point(0.5, -1.25, 0.1), new Viewport(3, 2, new Point(0.5, -1.25, 2.1)), new Window(96, 64));
+
+		byte[] written = write(camera, scene);
+		SceneFile file = SceneFile.read(new ByteArrayInputStream(written));
+		Camera readCamera = file.createCamera();
+
+		assertEquals(scene.getShapes().size(), file.getScene().getShapes().size());
+		assertEquals(scene.getLights().size(), file.getScene().getLights().size());
+		assertEquals(camera.fingerprint(scene.compile()), readCamera.fingerprint(file.getScene().compile()),
+				"the scene or the camera changed");
+		assertArrayEquals(written, write(readCamera, file.getScene()), "a scene file written again changes");
+
+		camera.shoot(scene);
+		readCamera.shoot(file.getScene());
+		TestScenes.assertSameImage(camera.getFrameBuffer(), readCamera.getFrameBuffer());
+	}
+
+	@Test
+	void readsCommentsDefaultsAndSharedMaterials () throws IOException {
+
+		SceneFile file = read(String.join("\n",
+				"# a comment line",
+				"",
+				"material glass diffuse 0 0 1 reflection 0.25 refraction 0.5 index 1.5   # trailing comment",
+				"light 0 0 1 1 1 1 off",
+				"sphere 0 0 10 1 glass",
+				"sphere 2 0 10 1 glass"));
+
+		Scene scene = file.getScene();
+		assertEquals(2, scene.getShapes().size());
+		assertTrue(scene.getShapes().get(0).getProperties() == scene.getShapes().get(1).getProperties(), "the spheres share their material");
+		assertEquals(0.25, scene.getShapes().get(0).getProperties().reflectionCoefficient);
+		assertEquals(1.5, scene.getShapes().get(0).getProperties().refractiveIndex);
+		assertFalse(scene.getLights().get(0).isOn());
+		assertEquals(500, file.getWindow().getWidth(), "the window of the Driver");
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+			"2 | cube 0 0 0 1",
+			"2 | sphere 0 0 10 1 blue",
+			"2 | sphere 0 0 10 -1 red",
+			"2 | sphere 0 0 10 1",
+			"2 | material red diffuse 1 0 0",
+			"2 | material blue shininess",
+			"2 | material blue shading toon",
+			"2 | viewport 2 2 0 0",
+			"2 | light 0 0 1 1 1 1 on",
+			"2 | window 40 x"})
+	void rejectsInvalidStatements (int line, String statement) {
+
+		IOException e = assertThrows(IOException.class,
+				() -> read("material red diffuse 1 0 0\n" + statement + "\nsphere 0 0 20 1 red\n"));
+		assertTrue(e.getMessage().contains("line " + line), e.getMessage());
+	}
+
+	@Test
+	void rejectsScenesOverTheSphereLimit () throws IOException {
+
+		String text = "material red diffuse 1 0 0\nsphere 0 0 10 1 red\nsphere 0 0 20 1 red\n";
+		assertEquals(2, SceneFile.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), 2).getScene().getShapes().size());
+		assertThrows(IllegalArgumentException.class,
+				() -> SceneFile.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), 1));
+	}
+
+	private static SceneFile read (String text) throws IOException {
+		return SceneFile.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static byte[] write (Camera camera, Scene scene) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SceneFile.write(out, camera, scene);
+		return out.toByteArray();
+	}
+}
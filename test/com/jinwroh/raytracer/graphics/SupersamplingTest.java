@@ -0,0 +1,44 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+/**
+ * Checks that adaptive supersampling gives the same image however the
+ * Window is split and traced: the pixels to refine are marked over the whole
+ * Window before any pixel is refined, so the image does not depend on the
+ * number of threads, the size of the tiles or the size of the packets.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class SupersamplingTest {
+
+	@ParameterizedTest
+	@CsvSource({
+			"4, 4, 16, 1",
+			"4, 2, 7, 4",
+			"16, 3, 32, 1",
+			"16, 8, 1, 2"})
+	void refinementDoesNotDependOnTiling (int maxSamples, int threadCount, int tileSize, int packetSize) {
+
+		Scene scene = TestScenes.createSphereCloud(150, 5);
+
+		Camera serial = TestScenes.createCamera(120, 100);
+		serial.setMaxSamples(maxSamples);
+		serial.shoot(scene);
+		assertTrue(serial.getTraceStatistics().refinedPixels > 0, "no pixel was refined");
+
+		Camera tiled = TestScenes.createCamera(120, 100);
+		tiled.setMaxSamples(maxSamples);
+		tiled.setThreadCount(threadCount);
+		tiled.setTileSize(tileSize);
+		tiled.setPacketSize(packetSize);
+		tiled.shoot(scene);
+
+		TestScenes.assertSameImage(serial.getFrameBuffer(), tiled.getFrameBuffer());
+	}
+}
@@ -0,0 +1,131 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+
+/**
+ * The scenes and cameras the tests render, and the comparison of their
+ * images. The scenes are scattered at random with a fixed seed, so every run
+ * renders the same images.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+public final class TestScenes {
+
+	private TestScenes () {
+	}
+
+
+	/**
+	 * Creates a camera looking down the z axis, with a Window of the given size.
+	 * @param width     the width of the Window, in pixels
+	 * @param height    the height of the Window, in pixels
+	 * @return          the camera
+	 */
+	public static Camera createCamera (int width, int height) {
+		return new Camera(new Point(0, 0, 0), new Viewport(2, 2, new Point(0, 0, 2)), new Window(width, height));
+	}
+
+	/**
+	 * Creates a scene of the given number of spheres in front of the camera,
+	 * lit by two lights. A quarter of the spheres reflect, and a sixth refract,
+	 * so the reflected, refracted and shadow rays all show in the image.
+	 * @param sphereCount    the number of spheres
+	 * @param seed           the seed of the positions and the materials
+	 * @return               the scene
+	 */
+	public static Scene createSphereCloud (int sphereCount, long seed) {
+
+		Scene scene = new Scene();
+		scene.addLight(new Light(new Vector(0.5, -0.5, 0.5), new Color(0.7, 0.7, 0.7)));
+		scene.addLight(new Light(new Vector(-0.5, -0.3, 0.6), new Color(0.4, 0.3, 0.3)));
+
+		Random random = new Random(seed);
+		for (int i = 0; i < sphereCount; i++) {
+			scene.addShape(createSphere(random));
+		}
+		return scene;
+	}
+
+	/**
+	 * Creates a sphere at random in front of the camera.
+	 * @param random    the source of the position and the material
+	 * @return          the sphere
+	 */
+	public static Sphere createSphere (Random random) {
+		Point center = new Point(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10, random.nextDouble() * 20 + 15);
+		return new Sphere(center, 0.5 + random.nextDouble() * 1.5, createProperties(random), new BlinnPhongShadingStrategy());
+	}
+
+	/**
+	 * Creates a material at random.
+	 * @param random    the source of the material
+	 * @return          the properties of the material
+	 */
+	public static Shape.Properties createProperties (Random random) {
+
+		Shape.Properties properties = new Shape.Properties();
+		properties.ambientColorProperty = new Color(0.1, 0.1, 0.1);
+		properties.diffuseColorProperty = new Color(random.nextDouble(), random.nextDouble(), random.nextDouble());
+		properties.specularColorProperty = new Color(1, 1, 1);
+		properties.specularCoefficient = 20 + random.nextInt(50);
+		if (random.nextInt(4) == 0) {
+			properties.reflectionCoefficient = 0.5;
+		}
+		if (random.nextInt(6) == 0) {
+			properties.refractionCoefficient = 0.5;
+			properties.refractiveIndex = 1.5;
+		}
+		return properties;
+	}
+
+	/**
+	 * Copies the given frame buffer onto the heap.
+	 * @param frameBuffer    the frame buffer of a render
+	 * @return               the copy
+	 */
+	public static FrameBuffer copy (FrameBuffer frameBuffer) {
+
+		ArrayFrameBuffer copy = new ArrayFrameBuffer(frameBuffer.getWidth(), frameBuffer.getHeight());
+		for (int y = 0; y < frameBuffer.getHeight(); y++) {
+			for (int x = 0; x < frameBuffer.getWidth(); x++) {
+				copy.setRGB(x, y, frameBuffer.getRGB(x, y));
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Asserts that the given images are the same, pixel for pixel.
+	 * @param expected    the expected image
+	 * @param actual      the image of the render under test
+	 */
+	public static void assertSameImage (FrameBuffer expected, FrameBuffer actual) {
+
+		assertEquals(expected.getWidth(), actual.getWidth(), "width");
+		assertEquals(expected.getHeight(), actual.getHeight(), "height");
+
+		int differences = 0;
+		String first = null;
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+					if (first == null) {
+						first = String.format("(%d, %d): %06x instead of %06x", x, y, actual.getRGB(x, y), expected.getRGB(x, y));
+					}
+					differences++;
+				}
+			}
+		}
+		assertEquals(0, differences, "pixels that differ, first at " + first);
+	}
+}
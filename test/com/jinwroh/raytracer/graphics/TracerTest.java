@@ -0,0 +1,201 @@
+package com.jinwroh.raytracer.graphics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.strategy.acceleration.AcceleratorSelector;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+
+/**
+ * Checks the rays the tracer casts past the primary ray: a shape between a
+ * point and a light leaves the point lit by the ambient light only, a mirror
+ * shows what it faces, a clear shape shows what is behind it, and each trace
+ * limit cuts the secondary rays, and is counted, as documented. The ray budget
+ * is shared by all the samples of a pixel.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class TracerTest {
+
+	private static final double EPSILON = 1e-9;
+
+	private static final Color BLACK = new Color(0, 0, 0);
+	private static final Color WHITE = new Color(1, 1, 1);
+
+	@Test
+	void shadowedPointIsLitByTheAmbientOnly () {
+
+		// The light shines along (1, 0, 1), onto the front of the wall at (0, 0, 15)
+		Scene scene = new Scene();
+		scene.addLight(new Light(new Vector(1, 0, 1), WHITE));
+		scene.addShape(createSphere(new Point(0, 0, 20), 5, new Color(0.1, 0.2, 0.3), WHITE, 0, 0));
+
+		double[] lit = new double[3];
+		createTracer(scene, new TraceLimits()).trace(new Ray(new Point(0, 0, 0), new Vector(0, 0, 1)), lit);
+		assertTrue(lit[0] > 0.5, "the wall is lit");
+
+		// The blocker stands between the wall and the light, off the primary ray
+		scene.addShape(createSphere(new Point(-5, 0, 10), 1, BLACK, WHITE, 0, 0));
+		Tracer tracer = createTracer(scene, new TraceLimits());
+		assertTrue(tracer.isOccluded(0, 0, 15, -1, 0, -1, 1e-6, Double.POSITIVE_INFINITY));
+		assertFalse(tracer.isOccluded(0, 0, 15, -1, 0, -1, 1e-6, 2), "the blocker is further away");
+		assertFalse(tracer.isOccluded(0, 0, 15, 1, 0, -1, 1e-6, Double.POSITIVE_INFINITY));
+
+		double[] shadowed = new double[3];
+		tracer.trace(new Ray(new Point(0, 0, 0), new Vector(0, 0, 1)), shadowed);
+		assertArrayEquals(new double[] {0.1, 0.2, 0.3}, shadowed, EPSILON);
+	}
+
+	@Test
+	void mirrorShowsWhatItFaces () {
+
+		// The mirror reflects the ray back through the eye, onto a red sphere
+		// behind the camera
+		Scene scene = new Scene();
+		scene.addLight(new Light(new Vector(0, 0, 1), WHITE));
+		scene.addShape(createSphere(new Point(0, 0, 20), 5, BLACK, BLACK, 0.5, 0));
+		scene.addShape(createSphere(new Point(0, 0, -10), 2, new Color(0.8, 0, 0), BLACK, 0, 0));
+
+		Tracer tracer = createTracer(scene, new TraceLimits());
+		double[] color = new double[3];
+		tracer.trace(new Ray(new Point(0, 0, 0), new Vector(0, 0, 1)), color);
+		assertArrayEquals(new double[] {0.4, 0, 0}, color, EPSILON);
+		assertEquals(1, tracer.getStatistics().secondaryRays);
+	}
+
+	@Test
+	void clearShapeShowsWhatIsBehindIt () {
+
+		Scene scene = new Scene();
+		scene.addLight(new Light(new Vector(0, 0, 1), WHITE));
+		scene.addShape(createSphere(new Point(0, 0, 10), 1, BLACK, BLACK, 0, 1));
+		scene.addShape(createSphere(new Point(0, 0, 20), 3, new Color(0, 0.6, 0), BLACK, 0, 0));
+
+		// Through the center, the ray is not bent, whatever the index: it
+		// enters and leaves the glass, and hits the green sphere
+		for (double index : new double[] {1.0, 1.5}) {
+			scene.getShapes().get(0).getProperties().refractiveIndex = index;
+			Tracer tracer = createTracer(scene, new TraceLimits());
+			double[] color = new double[3];
+			tracer.trace(new Ray(new Point(0, 0, 0), new Vector(0, 0, 1)), color);
+			assertArrayEquals(new double[] {0, 0.6, 0}, color, EPSILON, "index " + index);
+			assertEquals(2, tracer.getStatistics().secondaryRays, "index " + index);
+		}
+
+		// A ray through the edge is bent off the green sphere by the glass
+		Tracer tracer = createTracer(scene, new TraceLimits());
+		double[] color = new double[3];
+		tracer.trace(new Ray(new Point(0, 0, 0), new Vector(0.09, 0, 1)), color);
+		assertArrayEquals(new double[] {0, 0, 0}, color, EPSILON);
+	}
+
+	@Test
+	void traceLimitsCutTheSecondaryRays () {
+
+		// Inside a mirror, a ray bounces until a limit cuts it
+		TraceLimits limits = new TraceLimits();
+		limits.setRouletteDepth(100);
+		limits.setRayBudget(1000);
+		limits.setContributionThreshold(0);
+
+		limits.setMaxDepth(3);
+		TraceStatistics statistics = this.traceInsideMirror(1.0, limits, 1);
+		assertEquals(3, statistics.secondaryRays);
+		assertEquals(1, statistics.depthCutoffs);
+
+		limits.setMaxDepth(10);
+		limits.setContributionThreshold(0.2);
+		statistics = this.traceInsideMirror(0.5, limits, 1);
+		assertEquals(2, statistics.secondaryRays, "weights 0.5 and 0.25 are traced, 0.125 is not");
+		assertEquals(1, statistics.contributionCutoffs);
+
+		limits.setContributionThreshold(0);
+		limits.setRayBudget(4);
+		statistics = this.traceInsideMirror(1.0, limits, 1);
+		assertEquals(4, statistics.secondaryRays);
+		assertEquals(1, statistics.budgetCutoffs);
+
+		// The roulette stops some of the rays past its depth, and no others
+		limits.setRayBudget(1000);
+		limits.setRouletteDepth(2);
+		statistics = this.traceInsideMirror(0.5, limits, 200);
+		assertTrue(statistics.rouletteTerminations > 0, "roulette terminations");
+		assertEquals(200, statistics.rouletteTerminations + statistics.depthCutoffs, "every path ends once");
+		assertTrue(statistics.secondaryRays >= 200, "the first bounce is before the roulette");
+	}
+
+	@Test
+	void rayBudgetIsSharedByTheSamplesOfAPixel () {
+
+		// Every pixel sees the two mirrors, so every sample would spend the
+		// whole budget; the small spheres make edges to refine
+		Scene scene = new Scene();
+		scene.addLight(new Light(new Vector(0.3, -0.3, 1), WHITE));
+		scene.addShape(createSphere(new Point(0, 0, 1000), 990, BLACK, BLACK, 1.0, 0));
+		scene.addShape(createSphere(new Point(0, 0, -1000), 990, BLACK, BLACK, 1.0, 0));
+		for (int i = 0; i < 4; i++) {
+			scene.addShape(createSphere(new Point(i * 2 - 3, i % 2 - 0.5, 6), 0.6, new Color(0.2, 0.2, 0.2), new Color(0.2, 0.5, 0.8), 0, 0));
+		}
+
+		Camera camera = TestScenes.createCamera(16, 16);
+		TraceLimits limits = new TraceLimits();
+		limits.setMaxDepth(100);
+		limits.setRouletteDepth(100);
+		limits.setContributionThreshold(0);
+		limits.setRayBudget(4);
+		camera.setTraceLimits(limits);
+		camera.setMaxSamples(16);
+		camera.shoot(scene);
+
+		TraceStatistics statistics = camera.getTraceStatistics();
+		assertTrue(statistics.refinedPixels > 0, "refined pixels");
+		assertTrue(statistics.primaryRays > 16 * 16, "extra samples");
+		assertTrue(statistics.secondaryRays <= 4 * 16 * 16, statistics.secondaryRays + " secondary rays for 256 pixels");
+	}
+
+	/**
+	 * Traces the given number of rays from the center of a mirror sphere, in
+	 * different directions, and gets the counts of the rays.
+	 */
+	private TraceStatistics traceInsideMirror (double reflection, TraceLimits limits, int rayCount) {
+
+		Scene scene = new Scene();
+		scene.addLight(new Light(new Vector(0, 0, 1), WHITE));
+		scene.addShape(createSphere(new Point(0, 0, 0), 10, BLACK, BLACK, reflection, 0));
+
+		Tracer tracer = createTracer(scene, limits);
+		double[] color = new double[3];
+		for (int i = 0; i < rayCount; i++) {
+			tracer.trace(new Ray(new Point(0, 0, 0), new Vector(Math.cos(i), Math.sin(i), 0.3)), color);
+		}
+		return tracer.getStatistics();
+	}
+
+	private static Tracer createTracer (Scene scene, TraceLimits limits) {
+		CompiledScene compiled = scene.compile();
+		return new Tracer(compiled, AcceleratorSelector.select(compiled.getShapes()).accelerator, limits);
+	}
+
+	private static Sphere createSphere (Point center, double radius, Color ambient, Color diffuse, double reflection, double refraction) {
+
+		Shape.Properties properties = new Shape.Properties();
+		properties.ambientColorProperty = ambient;
+		properties.diffuseColorProperty = diffuse;
+		properties.specularColorProperty = BLACK;
+		properties.specularCoefficient = 1;
+		properties.reflectionCoefficient = reflection;
+		properties.refractionCoefficient = refraction;
+		return new Sphere(center, radius, properties, new BlinnPhongShadingStrategy());
+	}
+}
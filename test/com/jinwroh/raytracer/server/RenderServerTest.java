@@ -0,0 +1,168 @@
+package com.jinwroh.raytracer.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Checks that the render server renders the job of the query of a request,
+ * and the scene file in its body with the camera of the file, answers 400 for
+ * an invalid query or a scene file that cannot be parsed or is too large, and
+ * answers the requests that reach it while it starts.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class RenderServerTest {
+
+	private static final String SCENE = String.join("\n",
+			"window 40 30",
+			"material red ambient 0.1 0.1 0.1 diffuse 1 0 0 specular 1 1 1 shininess 500",
+			"light 0.57735027 -0.57735027 0.57735027 1 1 1",
+			"sphere 0 0 20 3 red",
+			"");
+
+	private RenderServer server;
+	private HttpClient client;
+
+	@BeforeEach
+	void startServer () throws IOException {
+		this.server = new RenderServer(0, 2, 1);
+		this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+	}
+
+	@AfterEach
+	void closeServer () {
+		this.server.close();
+	}
+
+	@Test
+	void rendersTheJobOfTheQuery () throws Exception {
+
+		HttpResponse<byte[]> response = this.post("?scene=cloud&spheres=50&width=40&height=30&samples=4", "");
+		assertEquals(200, response.statusCode());
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.body()));
+		assertEquals(40, image.getWidth());
+		assertEquals(30, image.getHeight());
+	}
+
+	@Test
+	void rejectsAnInvalidQuery () throws Exception {
+
+		assertEquals(400, this.post("?scene=moon", "").statusCode());
+		assertEquals(400, this.post("?width=0", "").statusCode());
+		assertEquals(400, this.post("?samples=many", "").statusCode());
+		assertEquals(400, this.post("?threshold=2", "").statusCode());
+		assertEquals(400, this.post("?color=red", "").statusCode());
+	}
+
+	@Test
+	void rendersTheSceneOfTheBody () throws Exception {
+
+		HttpResponse<byte[]> response = this.post("", SCENE);
+		assertEquals(200, response.statusCode());
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.body()));
+		assertEquals(40, image.getWidth());
+		assertEquals(30, image.getHeight());
+		assertTrue((image.getRGB(20, 15) & 0xff0000) != 0, "the sphere is red");
+
+		response = this.post("?width=16&height=12", SCENE);
+		assertEquals(200, response.statusCode());
+		image = ImageIO.read(new ByteArrayInputStream(response.body()));
+		assertEquals(16, image.getWidth());
+		assertEquals(12, image.getHeight());
+	}
+
+	@Test
+	void rejectsAnInvalidScene () throws Exception {
+
+		HttpResponse<byte[]> response = this.post("", "sphere 0 0 20 3 blue\n");
+		assertEquals(400, response.statusCode());
+		assertTrue(new String(response.body(), StandardCharsets.UTF_8).contains("line 1"), "the error names the line");
+
+		assertEquals(400, this.post("", "window 40\n").statusCode());
+		assertEquals(400, this.post("?scene=cloud", SCENE).statusCode());
+		assertEquals(400, this.post("", "window 20000 20000\n" + SCENE.substring(SCENE.indexOf('\n') + 1)).statusCode());
+	}
+
+	@Test
+	void answersRequestsSentWhileStarting () throws Exception {
+
+		int port;
+		try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+			port = socket.getLocalPort();
+		}
+
+		// The clients retry until the server accepts them, so their first
+		// requests reach it as soon as it listens
+		String address = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port;
+		ExecutorService clients = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> statuses = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 4; i++) {
+				HttpRequest request = (i % 2 == 0)
+						? HttpRequest.newBuilder(URI.create(address + "/metrics")).timeout(Duration.ofSeconds(30)).GET().build()
+						: HttpRequest.newBuilder(URI.create(address + "/render?width=8&height=8")).timeout(Duration.ofSeconds(30))
+								.POST(HttpRequest.BodyPublishers.noBody()).build();
+				statuses.add(clients.submit(() -> this.sendUntilAccepted(request)));
+			}
+
+			try (RenderServer starting = new RenderServer(port, 1, 1)) {
+				for (Future<Integer> status : statuses) {
+					assertEquals(200, status.get(60, TimeUnit.SECONDS));
+				}
+			}
+		}
+		finally {
+			clients.shutdownNow();
+		}
+	}
+
+	private int sendUntilAccepted (HttpRequest request) throws IOException, InterruptedException {
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (true) {
+			try {
+				return this.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+			}
+			catch (ConnectException e) {
+				if (System.nanoTime() > deadline) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private HttpResponse<byte[]> post (String query, String body) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + this.server.getPort() + "/render" + query))
+				.timeout(Duration.ofSeconds(60))
+				.POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+				.build();
+		return this.client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+	}
+}
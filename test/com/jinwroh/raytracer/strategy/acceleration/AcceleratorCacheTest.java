@@ -0,0 +1,164 @@
+package com.jinwroh.raytracer.strategy.acceleration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+
+/**
+ * Checks that the accelerator cache loads an accelerator that finds the same
+ * hits as the one it built, keeps its key when only the materials change,
+ * and treats a stale or corrupt file as a miss, which it replaces.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class AcceleratorCacheTest {
+
+	@TempDir
+	File directory;
+
+	@ParameterizedTest
+	@EnumSource(AcceleratorSelector.Type.class)
+	void loadedAcceleratorMatchesTheBuiltOne (AcceleratorSelector.Type type) throws IOException {
+
+		List<Shape> shapes = createShapes(2000, 5, new Color(1, 1, 1));
+		AcceleratorCache cache = new AcceleratorCache(this.directory);
+
+		AcceleratorSelector.Selection built = cache.select(type, shapes);
+		AcceleratorSelector.Selection loaded = cache.select(type, shapes);
+		assertEquals("miss", built.cacheResult);
+		assertEquals("hit", loaded.cacheResult);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(built.type, loaded.type);
+		assertEquals(built.reason, loaded.reason);
+		assertSameHits(built.accelerator, loaded.accelerator);
+	}
+
+	@Test
+	void editedMaterialsHitAndMovedShapesMiss () throws IOException {
+
+		AcceleratorCache cache = new AcceleratorCache(this.directory);
+		cache.select(createShapes(500, 7, new Color(1, 1, 1)));
+
+		List<Shape> recolored = createShapes(500, 7, new Color(0.2, 0.4, 0.6));
+		AcceleratorSelector.Selection hit = cache.select(recolored);
+		assertEquals("hit", hit.cacheResult);
+		assertSameHits(AcceleratorSelector.select(recolored).accelerator, hit.accelerator);
+
+		assertEquals("miss", cache.select(createShapes(500, 8, new Color(1, 1, 1))).cacheResult);
+		assertEquals("miss", cache.select(createShapes(499, 7, new Color(1, 1, 1))).cacheResult);
+		assertEquals(2, Files.list(this.directory.toPath()).count() - 1, "one file per key");
+	}
+
+	@Test
+	void staleFileIsAMissAndIsReplaced () throws IOException {
+
+		AcceleratorCache cache = new AcceleratorCache(this.directory);
+		List<Shape> shapes = createShapes(500, 9, new Color(1, 1, 1));
+		List<Shape> others = createShapes(500, 10, new Color(1, 1, 1));
+		cache.select(shapes);
+		File file = this.getOnlyFile();
+		cache.select(others);
+
+		// The file of the first shapes, under the name of the others
+		File othersFile = new File(this.directory, String.format("%016x", AcceleratorCache.key(AcceleratorSelector.Type.AUTOMATIC, others)) + ".rtac");
+		Files.copy(file.toPath(), othersFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		AcceleratorSelector.Selection stale = cache.select(others);
+		assertEquals("miss (stale)", stale.cacheResult);
+		assertSameHits(AcceleratorSelector.select(others).accelerator, stale.accelerator);
+		assertEquals("hit", cache.select(others).cacheResult);
+	}
+
+	@Test
+	void corruptFileIsAMissAndIsReplaced () throws IOException {
+
+		AcceleratorCache cache = new AcceleratorCache(this.directory);
+		List<Shape> shapes = createShapes(500, 11, new Color(1, 1, 1));
+		cache.select(shapes);
+		File file = this.getOnlyFile();
+
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.seek(file.length() - 3);
+			int b = out.read();
+			out.seek(file.length() - 3);
+			out.write(b ^ 0x10);
+		}
+		AcceleratorSelector.Selection corrupt = cache.select(shapes);
+		assertEquals("miss (corrupt)", corrupt.cacheResult);
+		assertSameHits(AcceleratorSelector.select(shapes).accelerator, corrupt.accelerator);
+
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.setLength(file.length() - 8);
+		}
+		assertEquals("miss (cut short)", cache.select(shapes).cacheResult);
+
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.setLength(20);
+		}
+		assertEquals("miss (cut short)", cache.select(shapes).cacheResult);
+		assertEquals("hit", cache.select(shapes).cacheResult);
+	}
+
+	private File getOnlyFile () {
+		File[] files = this.directory.listFiles();
+		assertEquals(1, files.length);
+		return files[0];
+	}
+
+	private static List<Shape> createShapes (int count, long seed, Color color) {
+
+		Random random = new Random(seed);
+		Shape.Properties properties = new Shape.Properties();
+		properties.diffuseColorProperty = color;
+
+		List<Shape> shapes = new ArrayList<Shape>();
+		for (int i = 0; i < count; i++) {
+			Point center = new Point(random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, random.nextDouble() * 40 + 5);
+			shapes.add(new Sphere(center, 0.05 + random.nextDouble() * 0.8, properties, new BlinnPhongShadingStrategy()));
+		}
+		return shapes;
+	}
+
+	private static void assertSameHits (Accelerator expected, Accelerator actual) {
+
+		Random random = new Random(13);
+		Intersection expectedHit = new Intersection();
+		Intersection actualHit = new Intersection();
+		Ray ray = new Ray();
+		for (int r = 0; r < 2000; r++) {
+			ray.set(random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, random.nextDouble() * 40 + 5,
+					random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+
+			boolean hit = expected.closestHit(ray, expectedHit);
+			assertEquals(hit, actual.closestHit(ray, actualHit), "hit of ray " + r);
+			if (hit) {
+				assertSame(expectedHit.shape, actualHit.shape, "shape of ray " + r);
+				assertEquals(expectedHit.timeHit, actualHit.timeHit, "time of ray " + r);
+			}
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package com.jinwroh.raytracer.strategy.acceleration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.jinwroh.raytracer.geometric.Intersection;
+import com.jinwroh.raytracer.geometric.Point;
+import com.jinwroh.raytracer.geometric.Ray;
+import com.jinwroh.raytracer.geometric.RayPacket;
+import com.jinwroh.raytracer.geometric.Shape;
+import com.jinwroh.raytracer.geometric.Sphere;
+import com.jinwroh.raytracer.geometric.Vector;
+import com.jinwroh.raytracer.graphics.Color;
+import com.jinwroh.raytracer.strategy.shading.BlinnPhongShadingStrategy;
+
+
+/**
+ * Checks the accelerators against a linear scan of the shapes: every ray
+ * finds the same closest Shape at the same hit time, alone or in a packet,
+ * and the same answer to an occlusion query, so a render does not depend on
+ * the accelerator it uses, also for degenerate scenes (none, one, coincident
+ * or coplanar shapes). The automatic selection picks an accelerator by the
+ * distribution of the shapes. A refit hierarchy finds the same hits over
+ * the moved shapes as a linear scan, and leaves the hierarchy it was refit
+ * from untouched.
+ *
+ * @author Jin W. Roh
+ * @version 1.0.0
+ */
+class AcceleratorTest {
+
+	private static final int RAY_COUNT = 4000;
+
+	private static List<Shape> shapes;
+	private static List<Ray> rays;
+
+	@BeforeAll
+	static void createShapesAndRays () {
+
+		Random random = new Random(3);
+		Shape.Properties properties = new Shape.Properties();
+		properties.diffuseColorProperty = new Color(1, 1, 1);
+
+		shapes = new ArrayList<Shape>();
+		for (int i = 0; i < 3000; i++) {
+			Point center = new Point(random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, random.nextDouble() * 40 + 5);
+			shapes.add(new Sphere(center, 0.05 + random.nextDouble() * 0.8, properties, new BlinnPhongShadingStrategy()));
+		}
+
+		// Coherent rays from the eye, and rays in every direction from inside the cloud
+		rays = new ArrayList<Ray>();
+		for (int i = 0; i < RAY_COUNT; i++) {
+			if (i % 2 == 0) {
+				rays.add(new Ray(new Point(0, 0, 0), new Vector(random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, 2)));
+			}
+			else {
+				rays.add(new Ray(new Point(random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, random.nextDouble() * 40 + 5),
+						new Vector(random.nextGaussian(), random.nextGaussian(), random.nextGaussian())));
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(AcceleratorSelector.Type.class)
+	void closestHitMatchesLinearScan (AcceleratorSelector.Type type) {
+		assertClosestHitsMatchLinearScan(AcceleratorSelector.select(type, shapes).accelerator, shapes);
+	}
+
+	@ParameterizedTest
+	@EnumSource(AcceleratorSelector.Type.class)
+	void degenerateScenesMatchLinearScan (AcceleratorSelector.Type type) {
+
+		Shape.Properties properties = new Shape.Properties();
+		properties.diffuseColorProperty = new Color(1, 1, 1);
+
+		List<Shape> coincident = new ArrayList<Shape>();
+		List<Shape> coplanar = new ArrayList<Shape>();
+		for (int i = 0; i < 100; i++) {
+			coincident.add(new Sphere(new Point(1, 2, 10), 1.5, properties, new BlinnPhongShadingStrategy()));
+			coplanar.add(new Sphere(new Point(i % 10 - 5, i / 10 - 5, 12), 0.3, properties, new BlinnPhongShadingStrategy()));
+		}
+
+		for (List<Shape> scene : List.of(new ArrayList<Shape>(), coincident.subList(0, 1), coincident, coplanar)) {
+			assertClosestHitsMatchLinearScan(AcceleratorSelector.select(type, scene).accelerator, scene);
+		}
+	}
+
+	@Test
+	void automaticSelectionFollowsTheDistribution () {
+
+		Random random = new Random(4);
+		Shape.Properties properties = new Shape.Properties();
+		List<Shape> lattice = new ArrayList<Shape>();
+		List<Shape> clusters = new ArrayList<Shape>();
+		List<Shape> blob = new ArrayList<Shape>();
+		for (int i = 0; i < 1000; i++) {
+			lattice.add(new Sphere(new Point(i % 10, (i / 10) % 10, i / 100 + 5), 0.45, properties, new BlinnPhongShadingStrategy()));
+
+			double corner = 100 * (i % 5);
+			Point center = new Point(corner + random.nextDouble(), corner + random.nextDouble(), corner + random.nextDouble());
+			clusters.add(new Sphere(center, 0.01, properties, new BlinnPhongShadingStrategy()));
+
+			center = new Point(random.nextGaussian(), random.nextGaussian(), random.nextGaussian() + 10);
+			blob.add(new Sphere(center, 3, properties, new BlinnPhongShadingStrategy()));
+		}
+
+		assertEquals(AcceleratorSelector.Type.BOUNDING_VOLUME_HIERARCHY, AcceleratorSelector.select(lattice.subList(0, 10)).type);
+		assertEquals(AcceleratorSelector.Type.UNIFORM_GRID, AcceleratorSelector.select(lattice).type);
+		assertEquals(AcceleratorSelector.Type.KD_TREE, AcceleratorSelector.select(clusters).type);
+		assertEquals(AcceleratorSelector.Type.BOUNDING_VOLUME_HIERARCHY, AcceleratorSelector.select(blob).type);
+	}
+
+	private static void assertClosestHitsMatchLinearScan (Accelerator accelerator, List<Shape> shapes) {
+
+		Intersection intersection = new Intersection();
+		for (int r = 0; r < rays.size(); r++) {
+			Ray ray = rays.get(r);
+			Shape expected = null;
+			double expectedTime = Double.POSITIVE_INFINITY;
+			for (Shape shape : shapes) {
+				double timeHit = shape.calculateHitTime(ray);
+				if (timeHit < expectedTime) {
+					expected = shape;
+					expectedTime = timeHit;
+				}
+			}
+
+			boolean hit = accelerator.closestHit(ray, intersection);
+			assertEquals(expected != null, hit, "hit of ray " + r);
+			if (hit) {
+				assertSame(expected, intersection.shape, "shape of ray " + r);
+				assertEquals(expectedTime, intersection.timeHit, "time of ray " + r);
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(AcceleratorSelector.Type.class)
+	void packetsMatchSingleRays (AcceleratorSelector.Type type) {
+
+		Accelerator accelerator = AcceleratorSelector.select(type, shapes).accelerator;
+		Intersection intersection = new Intersection();
+		RayPacket packet = new RayPacket(16);
+
+		for (int first = 0; first < rays.size(); first += 32) {
+			packet.clear();
+			for (int r = first; r < first + 32 && packet.size() < packet.capacity(); r += 2) {
+				Ray ray = rays.get(r);
+				packet.add(ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+						ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ());
+			}
+			accelerator.closestHits(packet, intersection);
+
+			for (int i = 0; i < packet.size(); i++) {
+				Ray ray = packet.getRay(i);
+				if (accelerator.closestHit(ray, intersection)) {
+					assertSame(intersection.shape, packet.getShape(i), "shape of packet ray " + i);
+					assertEquals(intersection.timeHit, packet.getTimeHit(i), "time of packet ray " + i);
+				}
+				else {
+					assertEquals(null, packet.getShape(i), "miss of packet ray " + i);
+				}
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(AcceleratorSelector.Type.class)
+	void anyHitMatchesLinearScan (AcceleratorSelector.Type type) {
+
+		Accelerator accelerator = AcceleratorSelector.select(type, shapes).accelerator;
+		Intersection scratch = new Intersection();
+
+		for (int r = 0; r < rays.size(); r++) {
+			Ray ray = rays.get(r);
+			double maxTime = (r % 3 == 0) ? Double.POSITIVE_INFINITY : 1.0 + r % 7;
+			boolean expected = false;
+			for (Shape shape : shapes) {
+				expected |= shape.anyHit(ray, 1e-6, maxTime);
+			}
+			assertEquals(expected, accelerator.anyHit(ray, 1e-6, maxTime, scratch), "occlusion of ray " + r);
+		}
+	}
+
+	@Test
+	void refitMatchesLinearScanOverTheMovedShapes () {
+
+		BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy(shapes);
+		assertEquals(hierarchy.getCost(), hierarchy.refit(shapes).getCost(), "a refit over the same shapes changes nothing");
+
+		Random random = new Random(29);
+		List<Shape> moved = new ArrayList<Shape>();
+		for (Shape shape : shapes) {
+			Sphere sphere = (Sphere) shape;
+			Point center = sphere.getCenter();
+			double step = (moved.size() % 10 == 0) ? 20.0 : 0.5;
+			moved.add(new Sphere(new Point(center.getX() + random.nextGaussian() * step, center.getY() + random.nextGaussian() * step,
+					center.getZ() + random.nextGaussian() * step), sphere.getRadius(), sphere.getProperties(), sphere.getShadingStrategy()));
+		}
+
+		BoundingVolumeHierarchy refit = hierarchy.refit(moved);
+		assertEquals(hierarchy.getNodeCount(), refit.getNodeCount(), "a refit keeps the tree");
+		assertClosestHitsMatchLinearScan(refit, moved);
+		assertClosestHitsMatchLinearScan(new BoundingVolumeHierarchy(moved), moved);
+		assertClosestHitsMatchLinearScan(hierarchy, shapes);
+		assertThrows(IllegalArgumentException.class, () -> hierarchy.refit(moved.subList(1, moved.size())));
+	}
+}